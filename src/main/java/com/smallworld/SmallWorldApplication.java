@@ -1,19 +1,36 @@
 package com.smallworld;
 
 import com.smallworld.model.Transaction;
+import com.smallworld.server.TransactionQueryServer;
+import com.smallworld.service.ConcurrentTransactionDataFetcher;
 import com.smallworld.service.TransactionDataFetcher;
 
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.util.*;
 
 public class SmallWorldApplication {
+
+    private static final int DEFAULT_PORT = 8080;
+
+    /**
+     * Prints the results of every query, or with the arguments "serve [dataset file] [port]" serves them over HTTP
+     * on the loopback address, see TransactionQueryServer.
+     */
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("serve")) {
+            serve(args.length > 1 ? args[1] : "../coding_test/transactions.json",
+                    args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PORT);
+            return;
+        }
         TransactionDataFetcher transactionDataFetcher = new TransactionDataFetcher();
 
         try {
             String filePath = "../coding_test/transactions.json";
             // Assuming setTransactionsFromJSONFile method is implemented to load data from the JSON file
             transactionDataFetcher.setTransactionsFromJSON(filePath);
+            System.out.println("Loaded : " + transactionDataFetcher.getNormalizationStats());
 
             // Test each method by calling them and printing results
             double totalAmount = transactionDataFetcher.getTotalTransactionAmount();
@@ -69,4 +86,26 @@ public class SmallWorldApplication {
             e.printStackTrace();
         }
     }
+
+    private static void serve(String datasetPath, int port) {
+        //the responses of keep-alive connections are not delayed by Nagle's algorithm, unless set otherwise at launch
+        if (System.getProperty(TransactionQueryServer.NODELAY_PROPERTY) == null) {
+            System.setProperty(TransactionQueryServer.NODELAY_PROPERTY, "true");
+        }
+        ConcurrentTransactionDataFetcher dataFetcher = new ConcurrentTransactionDataFetcher();
+        dataFetcher.setIndexingEnabled(true);
+        try {
+            TransactionQueryServer server = new TransactionQueryServer(dataFetcher, datasetPath,
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            server.reload();
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+            System.out.println("Loaded : " + dataFetcher.getNormalizationStats());
+            System.out.println("Serving on http://localhost:" + server.getPort() + "/ with "
+                    + (server.isVirtualThreads() ? "virtual threads" : TransactionQueryServer.FALLBACK_THREADS + " platform threads")
+                    + ", POST /reload to load " + datasetPath + " again");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 }
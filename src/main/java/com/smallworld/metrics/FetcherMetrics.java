@@ -0,0 +1,160 @@
+package com.smallworld.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MetricsListener which aggregates what it receives: a latency histogram per query and the totals of the loads.
+ * It is thread-safe and can be shared by several fetchers, and it is exposed through JMX with registerMBean.
+ * <p>
+ * Usage:
+ * <pre>
+ * FetcherMetrics metrics = new FetcherMetrics();
+ * dataFetcher.setMetricsListener(metrics);
+ * metrics.registerMBean("transactions");
+ * ...
+ * long p99 = metrics.getQueryHistogram("getTopSenders").getPercentileNanos(99);
+ * </pre>
+ */
+public class FetcherMetrics implements MetricsListener, FetcherMetricsMXBean {
+
+    private final Map<String, LatencyHistogram> queryHistograms = new ConcurrentHashMap<>();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder loadedRowCount = new LongAdder();
+    private final LongAdder loadedByteCount = new LongAdder();
+    private final LongAdder byteLoadNanos = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder loadAllocatedBytes = new LongAdder();
+    private volatile boolean allocationUnknown;
+    private volatile LoadMetrics lastLoad;
+    private ObjectName objectName;
+
+    @Override
+    public void queryCompleted(String query, long durationNanos) {
+        LatencyHistogram histogram = queryHistograms.get(query);
+        if (histogram == null) {
+            histogram = queryHistograms.computeIfAbsent(query, name -> new LatencyHistogram());
+        }
+        histogram.record(durationNanos);
+    }
+
+    @Override
+    public void loadCompleted(LoadMetrics load) {
+        loadCount.increment();
+        loadedRowCount.add(load.getRowCount());
+        loadNanos.add(load.getDurationNanos());
+        if (load.getByteCount() > 0) {
+            loadedByteCount.add(load.getByteCount());
+            byteLoadNanos.add(load.getDurationNanos());
+        }
+        if (load.getAllocatedBytes() < 0) {
+            allocationUnknown = true;
+        } else {
+            loadAllocatedBytes.add(load.getAllocatedBytes());
+        }
+        lastLoad = load;
+    }
+
+    /**
+     * @param query name of a query method, e.g. "getTopSenders"
+     * @return latencies of its calls, null if it was not called
+     */
+    public LatencyHistogram getQueryHistogram(String query) {
+        return queryHistograms.get(query);
+    }
+
+    @Override
+    public List<QueryLatency> getQueryLatencies() {
+        List<QueryLatency> latencies = new ArrayList<>();
+        new TreeMap<>(queryHistograms).forEach((query, histogram) -> latencies.add(new QueryLatency(query, histogram)));
+        return latencies;
+    }
+
+    @Override
+    public long getLoadCount() {
+        return loadCount.sum();
+    }
+
+    @Override
+    public long getLoadedRowCount() {
+        return loadedRowCount.sum();
+    }
+
+    @Override
+    public long getLoadedByteCount() {
+        return loadedByteCount.sum();
+    }
+
+    @Override
+    public long getLoadNanos() {
+        return loadNanos.sum();
+    }
+
+    @Override
+    public double getLoadRowsPerSecond() {
+        long nanos = loadNanos.sum();
+        return nanos == 0 ? 0 : loadedRowCount.sum() * 1e9 / nanos;
+    }
+
+    @Override
+    public double getLoadBytesPerSecond() {
+        long nanos = byteLoadNanos.sum();
+        return nanos == 0 ? 0 : loadedByteCount.sum() * 1e9 / nanos;
+    }
+
+    @Override
+    public long getLoadAllocatedBytes() {
+        return allocationUnknown ? -1 : loadAllocatedBytes.sum();
+    }
+
+    @Override
+    public LoadMetrics getLastLoad() {
+        return lastLoad;
+    }
+
+    @Override
+    public void reset() {
+        queryHistograms.clear();
+        loadCount.reset();
+        loadedRowCount.reset();
+        loadedByteCount.reset();
+        byteLoadNanos.reset();
+        loadNanos.reset();
+        loadAllocatedBytes.reset();
+        allocationUnknown = false;
+        lastLoad = null;
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server as com.smallworld:type=FetcherMetrics,name=&lt;name&gt;.
+     *
+     * @param name name telling the metrics of several fetchers apart
+     * @return the name of the MBean
+     * @throws JMException if the name is invalid or already registered
+     */
+    public synchronized ObjectName registerMBean(String name) throws JMException {
+        ObjectName registered = new ObjectName("com.smallworld:type=FetcherMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, registered);
+        objectName = registered;
+        return registered;
+    }
+
+    /**
+     * Unregisters the MBean registered last, if any.
+     *
+     * @throws JMException if it can not be unregistered
+     */
+    public synchronized void unregisterMBean() throws JMException {
+        if (objectName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            objectName = null;
+        }
+    }
+}
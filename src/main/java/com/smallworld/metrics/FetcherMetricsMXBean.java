@@ -0,0 +1,47 @@
+package com.smallworld.metrics;
+
+import java.util.List;
+
+/**
+ * JMX view of FetcherMetrics, registered with FetcherMetrics.registerMBean.
+ */
+public interface FetcherMetricsMXBean {
+
+    /**
+     * @return call count and latency percentiles of every query called at least once, by query name
+     */
+    List<QueryLatency> getQueryLatencies();
+
+    long getLoadCount();
+
+    long getLoadedRowCount();
+
+    long getLoadedByteCount();
+
+    long getLoadNanos();
+
+    /**
+     * @return rows loaded per second over all the loads
+     */
+    double getLoadRowsPerSecond();
+
+    /**
+     * @return bytes read per second over all the loads with a known input size
+     */
+    double getLoadBytesPerSecond();
+
+    /**
+     * @return heap allocated by the loading threads over all the loads, -1 if the JVM does not measure it
+     */
+    long getLoadAllocatedBytes();
+
+    /**
+     * @return figures of the last load, null if nothing was loaded
+     */
+    LoadMetrics getLastLoad();
+
+    /**
+     * Clears all the figures.
+     */
+    void reset();
+}
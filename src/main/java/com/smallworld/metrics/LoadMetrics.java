@@ -0,0 +1,75 @@
+package com.smallworld.metrics;
+
+/**
+ * Figures of one load of transactions (or of one conversion of maps into transactions).
+ */
+public class LoadMetrics {
+
+    private final String operation;
+    private final long rowCount;
+    private final long byteCount;
+    private final long durationNanos;
+    private final long allocatedBytes;
+
+    /**
+     * @param operation name of the loading method, e.g. "setTransactionsFromJSON"
+     * @param rowCount number of rows loaded
+     * @param byteCount size of the input in bytes, 0 if it is not read from bytes or its size is unknown
+     * @param durationNanos time taken by the load
+     * @param allocatedBytes heap allocated by the loading thread, -1 if the JVM does not measure it
+     */
+    public LoadMetrics(String operation, long rowCount, long byteCount, long durationNanos, long allocatedBytes) {
+        this.operation = operation;
+        this.rowCount = rowCount;
+        this.byteCount = byteCount;
+        this.durationNanos = durationNanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return heap allocated by the thread which called the load, -1 if unknown. The threads of a parallel load
+     * are not included.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public double getRowsPerSecond() {
+        return perSecond(rowCount);
+    }
+
+    public double getBytesPerSecond() {
+        return perSecond(byteCount);
+    }
+
+    private double perSecond(long amount) {
+        return durationNanos == 0 ? 0 : amount * 1e9 / durationNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadMetrics{" +
+                "operation=" + operation +
+                "| rowCount=" + rowCount +
+                "| byteCount=" + byteCount +
+                "| durationNanos=" + durationNanos +
+                "| allocatedBytes=" + allocatedBytes +
+                '}';
+    }
+}
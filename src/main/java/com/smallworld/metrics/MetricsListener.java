@@ -0,0 +1,22 @@
+package com.smallworld.metrics;
+
+/**
+ * Receives the timings of TransactionDataFetcher (queries and loads) and of ConversionUtils. It is called on the
+ * thread which ran the operation, right after it completed, so an implementation must be fast and thread-safe.
+ * FetcherMetrics aggregates them into histograms and exposes them through JMX.
+ */
+public interface MetricsListener {
+
+    /**
+     * @param query name of the query method, e.g. "getTopSenders"
+     * @param durationNanos time taken by the call
+     */
+    default void queryCompleted(String query, long durationNanos) {
+    }
+
+    /**
+     * @param load what was loaded and what it took
+     */
+    default void loadCompleted(LoadMetrics load) {
+    }
+}
@@ -0,0 +1,77 @@
+package com.smallworld.metrics;
+
+/**
+ * Call count and latency percentiles of one query method, read from its LatencyHistogram.
+ */
+public class QueryLatency {
+
+    private final String query;
+    private final long count;
+    private final double meanNanos;
+    private final long p50Nanos;
+    private final long p90Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+    private final long maxNanos;
+
+    /**
+     * @param query name of the query method
+     * @param histogram latencies of its calls
+     */
+    public QueryLatency(String query, LatencyHistogram histogram) {
+        this.query = query;
+        this.count = histogram.getCount();
+        this.meanNanos = histogram.getMeanNanos();
+        this.p50Nanos = histogram.getPercentileNanos(50);
+        this.p90Nanos = histogram.getPercentileNanos(90);
+        this.p99Nanos = histogram.getPercentileNanos(99);
+        this.p999Nanos = histogram.getPercentileNanos(99.9);
+        this.maxNanos = histogram.getMaxNanos();
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanNanos() {
+        return meanNanos;
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP90Nanos() {
+        return p90Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    public long getP999Nanos() {
+        return p999Nanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryLatency{" +
+                "query=" + query +
+                "| count=" + count +
+                "| meanNanos=" + meanNanos +
+                "| p50Nanos=" + p50Nanos +
+                "| p90Nanos=" + p90Nanos +
+                "| p99Nanos=" + p99Nanos +
+                "| p999Nanos=" + p999Nanos +
+                "| maxNanos=" + maxNanos +
+                '}';
+    }
+}
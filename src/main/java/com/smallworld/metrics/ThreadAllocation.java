@@ -0,0 +1,39 @@
+package com.smallworld.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Heap allocated by the current thread, as counted by the JVM (HotSpot's com.sun.management.ThreadMXBean).
+ */
+public final class ThreadAllocation {
+
+    private static final com.sun.management.ThreadMXBean THREADS = hotSpotThreads();
+
+    private ThreadAllocation() {
+    }
+
+    private static com.sun.management.ThreadMXBean hotSpotThreads() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean hotSpot && hotSpot.isThreadAllocatedMemorySupported()) {
+            hotSpot.setThreadAllocatedMemoryEnabled(true);
+            return hotSpot;
+        }
+        return null;
+    }
+
+    /**
+     * @return bytes allocated by the current thread since it started, -1 if the JVM does not count them
+     */
+    public static long currentThreadAllocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * @param start value of currentThreadAllocatedBytes at the start of an operation
+     * @return bytes allocated by the current thread since then, -1 if unknown
+     */
+    public static long allocatedSince(long start) {
+        return start < 0 ? -1 : THREADS.getCurrentThreadAllocatedBytes() - start;
+    }
+}
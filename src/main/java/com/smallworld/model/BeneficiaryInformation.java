@@ -1,5 +1,7 @@
 package com.smallworld.model;
 
+import java.util.Objects;
+
 public class BeneficiaryInformation {
 
     private String beneficiaryFullName;
@@ -20,4 +22,21 @@ public class BeneficiaryInformation {
     public void setBeneficiaryAge(int beneficiaryAge) {
         this.beneficiaryAge = beneficiaryAge;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BeneficiaryInformation that)) {
+            return false;
+        }
+        return beneficiaryAge == that.beneficiaryAge
+                && Objects.equals(beneficiaryFullName, that.beneficiaryFullName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(beneficiaryAge, beneficiaryFullName);
+    }
 }
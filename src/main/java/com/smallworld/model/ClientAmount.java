@@ -0,0 +1,49 @@
+package com.smallworld.model;
+
+import java.util.Objects;
+
+/**
+ * Total amount sent or received by a client.
+ */
+public class ClientAmount {
+
+    private final String clientFullName;
+    private final double amount;
+
+    public ClientAmount(String clientFullName, double amount) {
+        this.clientFullName = clientFullName;
+        this.amount = amount;
+    }
+
+    public String getClientFullName() {
+        return clientFullName;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ClientAmount that)) {
+            return false;
+        }
+        return Double.compare(that.amount, amount) == 0 && Objects.equals(clientFullName, that.clientFullName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(clientFullName, amount);
+    }
+
+    @Override
+    public String toString() {
+        return "ClientAmount{" +
+                "clientFullName=" + clientFullName +
+                "| amount=" + amount +
+                '}';
+    }
+}
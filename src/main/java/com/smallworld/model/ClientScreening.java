@@ -0,0 +1,71 @@
+package com.smallworld.model;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Compliance screening of a client: the unsolved issues of the transactions it sent or received.
+ */
+public class ClientScreening {
+
+    private final String clientFullName;
+    private final List<String> openIssueIds;
+
+    /**
+     * @param clientFullName screened client
+     * @param openIssueIds ids of the unsolved issues of its transactions, in the order they were loaded, kept as it is
+     */
+    public ClientScreening(String clientFullName, List<String> openIssueIds) {
+        this.clientFullName = clientFullName;
+        this.openIssueIds = openIssueIds;
+    }
+
+    public String getClientFullName() {
+        return clientFullName;
+    }
+
+    /**
+     * @return true if the client has any unsolved compliance issue, like TransactionDataFetcher.hasOpenComplianceIssues
+     */
+    public boolean hasOpenComplianceIssues() {
+        return !openIssueIds.isEmpty();
+    }
+
+    /**
+     * @return number of unsolved issues of the transactions of the client
+     */
+    public int getOpenIssueCount() {
+        return openIssueIds.size();
+    }
+
+    /**
+     * @return unmodifiable list of the ids of the unsolved issues, an issue without an id is a null element
+     */
+    public List<String> getOpenIssueIds() {
+        return openIssueIds;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ClientScreening that)) {
+            return false;
+        }
+        return Objects.equals(clientFullName, that.clientFullName) && openIssueIds.equals(that.openIssueIds);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(clientFullName, openIssueIds);
+    }
+
+    @Override
+    public String toString() {
+        return "ClientScreening{" +
+                "clientFullName=" + clientFullName +
+                "| openIssueIds=" + openIssueIds +
+                '}';
+    }
+}
@@ -1,5 +1,7 @@
 package com.smallworld.model;
 
+import java.util.Objects;
+
 public class IssueInformation {
 
     private String issueId;
@@ -29,4 +31,22 @@ public class IssueInformation {
     public void setIssueSolved(boolean issueSolved) {
         this.issueSolved = issueSolved;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IssueInformation that)) {
+            return false;
+        }
+        return issueSolved == that.issueSolved
+                && Objects.equals(issueId, that.issueId)
+                && Objects.equals(issueMessage, that.issueMessage);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(issueSolved, issueId, issueMessage);
+    }
 }
@@ -1,5 +1,7 @@
 package com.smallworld.model;
 
+import java.util.Objects;
+
 public class SenderInformation {
 
     private String senderFullName;
@@ -20,4 +22,21 @@ public class SenderInformation {
     public void setSenderAge(int senderAge) {
         this.senderAge = senderAge;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SenderInformation that)) {
+            return false;
+        }
+        return senderAge == that.senderAge
+                && Objects.equals(senderFullName, that.senderFullName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(senderAge, senderFullName);
+    }
 }
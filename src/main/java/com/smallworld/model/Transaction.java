@@ -1,12 +1,24 @@
 package com.smallworld.model;
 
+import com.smallworld.util.Money;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A transaction, stored once per mtn together with all of its issues.
+ */
 public class Transaction {
 
+    private static final IssueInformation[] NO_ISSUES = new IssueInformation[0];
+
     private long mtn;
-    private double amount;
+    private long amountInMinorUnits; //exact amount in cents, see Money
     private SenderInformation senderInformation; //This will be database mapping in real environment
     private BeneficiaryInformation beneficiaryInformation; //This will be database mapping in real environment
-    private IssueInformation issueInformation; //This will be database mapping in real environment
+    private IssueInformation[] issues = NO_ISSUES; //This will be database mapping in real environment, kept as an exact sized array
 
     public long getMtn() {
         return mtn;
@@ -17,11 +29,23 @@ public class Transaction {
     }
 
     public double getAmount() {
-        return amount;
+        return Money.toDouble(amountInMinorUnits);
     }
 
+    /**
+     * Sets the amount, rounded to the closest cent.
+     * @param amount amount in units
+     */
     public void setAmount(double amount) {
-        this.amount = amount;
+        this.amountInMinorUnits = Money.fromDouble(amount);
+    }
+
+    public long getAmountInMinorUnits() {
+        return amountInMinorUnits;
+    }
+
+    public void setAmountInMinorUnits(long amountInMinorUnits) {
+        this.amountInMinorUnits = amountInMinorUnits;
     }
 
     public SenderInformation getSenderInformation() {
@@ -40,22 +64,65 @@ public class Transaction {
         this.beneficiaryInformation = beneficiaryInformation;
     }
 
-    public IssueInformation getIssueInformation() {
-        return issueInformation;
+    /**
+     * Returns the issues of this transaction, empty if it has none.
+     * @return unmodifiable list of issues in the order they were added
+     */
+    public List<IssueInformation> getIssues() {
+        return Collections.unmodifiableList(Arrays.asList(issues));
+    }
+
+    public void setIssues(List<IssueInformation> issues) {
+        this.issues = issues.isEmpty() ? NO_ISSUES : issues.toArray(new IssueInformation[0]);
     }
 
-    public void setIssueInformation(IssueInformation issueInformation) {
-        this.issueInformation = issueInformation;
+    /**
+     * Adds an issue to this transaction, the array grows by exactly one element as most
+     * transactions have none or a single issue.
+     * @param issueInformation issue to add
+     */
+    public void addIssue(IssueInformation issueInformation) {
+        issues = Arrays.copyOf(issues, issues.length + 1);
+        issues[issues.length - 1] = issueInformation;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Transaction that)) {
+            return false;
+        }
+        return mtn == that.mtn
+                && amountInMinorUnits == that.amountInMinorUnits
+                && Objects.equals(senderInformation, that.senderInformation)
+                && Objects.equals(beneficiaryInformation, that.beneficiaryInformation)
+                && Arrays.equals(issues, that.issues);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Objects.hash(mtn, amountInMinorUnits, senderInformation, beneficiaryInformation) + Arrays.hashCode(issues);
     }
 
     @Override
     public String toString() {
         return "Transaction{" +
                 "mtn=" + mtn +
-                "| amount=" + amount +
+                "| amount=" + getAmount() +
                 "| senderInformation=" + senderInformation.getSenderFullName()+" , "+senderInformation.getSenderAge() +
                 "| beneficiaryInformation=" + beneficiaryInformation.getBeneficiaryFullName()+" , "+beneficiaryInformation.getBeneficiaryAge() +
-                "| issueInformation=" + issueInformation.getIssueId()+" , "+issueInformation.isIssueSolved()+" , "+issueInformation.getIssueMessage() +
+                "| issues=" + issuesToString() +
                 '}';
     }
+
+    private String issuesToString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < issues.length; i++) {
+            builder.append(i == 0 ? "" : "; ").append(issues[i].getIssueId()).append(" , ")
+                    .append(issues[i].isIssueSolved()).append(" , ").append(issues[i].getIssueMessage());
+        }
+        return builder.append(']').toString();
+    }
 }
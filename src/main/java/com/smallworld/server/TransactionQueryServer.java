@@ -0,0 +1,376 @@
+package com.smallworld.server;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.smallworld.service.ConcurrentTransactionDataFetcher;
+import com.smallworld.service.TransactionQueries;
+import com.smallworld.util.NormalizationStats;
+import com.smallworld.util.TransactionJsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Lightweight HTTP server answering the queries of a ConcurrentTransactionDataFetcher as JSON, on the JDK's
+ * com.sun.net.httpserver. Every request runs on its own virtual thread when the JDK has them (Java 21 and later,
+ * found by reflection so the code still runs on Java 17) and on a bounded pool of platform threads otherwise.
+ * <p>
+ * Every request reads one snapshot of the fetcher, so it sees the same transactions from start to end. Single
+ * values are answered as a JSON object, lists as NDJSON (application/x-ndjson, one value per line) written while
+ * they are produced with chunked encoding, so a response is never held in memory. POST /reload loads the dataset
+ * file again and publishes it once it is fully loaded: requests running meanwhile finish on the previous snapshot
+ * and none is refused, so the data is replaced without downtime. A failed reload keeps the previous transactions.
+ * <p>
+ * Endpoints, the parameters being query parameters:
+ * <ul>
+ *     <li>GET /stats, /total-amount, /total-amount-sent?senderFullName=, /max-amount, /unique-clients</li>
+ *     <li>GET /open-compliance-issues?clientFullName=, /issues?issueId=</li>
+ *     <li>GET /unsolved-issue-ids, /solved-issue-messages, /top-transactions?n=, /top-senders?n=,
+ *     /top-beneficiaries?n=, /transactions, /transactions-by-beneficiary (NDJSON)</li>
+ *     <li>POST /screen with one client name per line, answered with a screening per line (NDJSON)</li>
+ *     <li>POST /reload</li>
+ * </ul>
+ */
+public class TransactionQueryServer implements Closeable {
+
+    /**
+     * Platform threads serving the requests when virtual threads are not available.
+     */
+    public static final int FALLBACK_THREADS = 256;
+
+    /**
+     * Connections waiting to be accepted, so thousands of clients connecting at once are not refused. The kernel
+     * may cap it (net.core.somaxconn on Linux).
+     */
+    public static final int BACKLOG = 4096;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String JSON = "application/json";
+    private static final String NDJSON = "application/x-ndjson";
+
+    /**
+     * System property turning Nagle's algorithm off on the connections of the JDK server, it should be "true". The
+     * headers and the body of a response are written separately: with Nagle on, a keep-alive client waits for its
+     * own delayed ACK (40 ms) before the body. The JDK reads it once for the whole process, so it is a launch flag
+     * (-Dsun.net.httpserver.nodelay=true) or set before the first server is created, as SmallWorldApplication serve
+     * and ServerLoadHarness do when it is not given.
+     */
+    public static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private final ConcurrentTransactionDataFetcher dataFetcher;
+    private final String datasetPath;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    /**
+     * Creates the server, it is started by start(). The dataset is not loaded, see reload().
+     *
+     * @param dataFetcher fetcher answering the queries
+     * @param datasetPath file loaded by reload(): a binary snapshot (.snapshot), NDJSON (.ndjson, .jsonl, .gz) or a
+     * JSON array of rows (any other name)
+     * @param address address to listen on, port 0 for any free port
+     * @throws IOException if the address can not be bound
+     */
+    public TransactionQueryServer(ConcurrentTransactionDataFetcher dataFetcher, String datasetPath,
+                                  InetSocketAddress address) throws IOException {
+        this.dataFetcher = dataFetcher;
+        this.datasetPath = datasetPath;
+        server = HttpServer.create(address, BACKLOG);
+        ExecutorService virtualThreadExecutor = newVirtualThreadPerTaskExecutor();
+        virtualThreads = virtualThreadExecutor != null;
+        executor = virtualThreads ? virtualThreadExecutor : Executors.newFixedThreadPool(FALLBACK_THREADS);
+        server.setExecutor(executor);
+
+        get("/stats", (exchange, queries) -> respondJson(exchange, generator -> writeStats(generator, queries.getNormalizationStats())));
+        get("/total-amount", (exchange, queries) -> respondJson(exchange,
+                generator -> generator.writeNumberField("totalAmount", queries.getTotalTransactionAmount())));
+        get("/total-amount-sent", (exchange, queries) -> {
+            String senderFullName = parameter(exchange, "senderFullName");
+            respondJson(exchange, generator -> {
+                generator.writeStringField("senderFullName", senderFullName);
+                generator.writeNumberField("totalAmount", queries.getTotalTransactionAmountSentBy(senderFullName));
+            });
+        });
+        get("/max-amount", (exchange, queries) -> respondJson(exchange,
+                generator -> generator.writeNumberField("maxAmount", queries.getMaxTransactionAmount())));
+        get("/unique-clients", (exchange, queries) -> respondJson(exchange,
+                generator -> generator.writeNumberField("uniqueClients", queries.countUniqueClients())));
+        get("/open-compliance-issues", (exchange, queries) -> {
+            String clientFullName = parameter(exchange, "clientFullName");
+            respondJson(exchange, generator -> {
+                generator.writeStringField("clientFullName", clientFullName);
+                generator.writeBooleanField("hasOpenComplianceIssues", queries.hasOpenComplianceIssues(clientFullName));
+            });
+        });
+        get("/issues", (exchange, queries) -> {
+            int issueId = intParameter(exchange, "issueId");
+            respondJson(exchange, generator -> {
+                OptionalLong mtn = queries.getMtnOfIssue(issueId);
+                generator.writeNumberField("issueId", issueId);
+                generator.writeBooleanField("open", queries.isIssueOpen(issueId));
+                if (mtn.isPresent()) {
+                    generator.writeNumberField("mtn", mtn.getAsLong());
+                } else {
+                    generator.writeNullField("mtn");
+                }
+            });
+        });
+        get("/unsolved-issue-ids", (exchange, queries) -> respondLines(exchange, generator -> {
+            for (int issueId : queries.getUnsolvedIssueIds()) {
+                generator.writeNumber(issueId);
+                generator.writeRaw('\n');
+            }
+        }));
+        get("/solved-issue-messages", (exchange, queries) -> respondLines(exchange, generator -> {
+            for (String message : queries.getAllSolvedIssueMessages()) {
+                generator.writeString(message);
+                generator.writeRaw('\n');
+            }
+        }));
+        get("/top-transactions", (exchange, queries) -> {
+            int n = countParameter(exchange, "n");
+            respondStream(exchange, outputStream -> queries.exportTopTransactionsAsNDJSON(n, outputStream));
+        });
+        get("/top-senders", (exchange, queries) -> {
+            int n = countParameter(exchange, "n");
+            respondStream(exchange, outputStream -> queries.exportTopSendersAsNDJSON(n, outputStream));
+        });
+        get("/top-beneficiaries", (exchange, queries) -> {
+            int n = countParameter(exchange, "n");
+            respondStream(exchange, outputStream -> queries.exportTopBeneficiariesAsNDJSON(n, outputStream));
+        });
+        get("/transactions", (exchange, queries) -> respondStream(exchange, queries::exportTransactionsAsNDJSON));
+        get("/transactions-by-beneficiary", (exchange, queries) ->
+                respondStream(exchange, queries::exportTransactionsByBeneficiaryNameAsNDJSON));
+        route("/screen", "POST", (exchange, queries) -> screen(exchange, queries));
+        route("/reload", "POST", (exchange, queries) -> {
+            reload();
+            respondJson(exchange, generator -> writeStats(generator, dataFetcher.getNormalizationStats()));
+        });
+    }
+
+    /**
+     * @return Executors.newVirtualThreadPerTaskExecutor() or null if the JDK has no virtual threads
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            //the method does not exist before Java 19 and throws without --enable-preview on 19 and 20
+            return null;
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return true if the requests run on virtual threads, false if on the pool of platform threads
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Loads the dataset file and publishes it, the requests keep being answered from the current transactions
+     * until the new ones are fully loaded.
+     *
+     * @throws IOException if the file can not be read, the current transactions are kept
+     */
+    public void reload() throws IOException {
+        dataFetcher.setTransactionsFromFile(datasetPath);
+    }
+
+    /**
+     * Stops the server, the requests being answered are given one second to complete.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private interface QueryHandler {
+        void handle(HttpExchange exchange, TransactionQueries queries) throws IOException;
+    }
+
+    private interface JsonBody {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    private interface StreamBody {
+        void write(OutputStream outputStream) throws IOException;
+    }
+
+    private void get(String path, QueryHandler handler) {
+        route(path, "GET", handler);
+    }
+
+    private void route(String path, String method, QueryHandler handler) {
+        server.createContext(path, exchange -> {
+            try {
+                //a context also receives the paths it is a prefix of
+                if (!exchange.getRequestURI().getPath().equals(path)) {
+                    respondError(exchange, 404, "Not found");
+                } else if (!exchange.getRequestMethod().equals(method)) {
+                    exchange.getResponseHeaders().set("Allow", method);
+                    respondError(exchange, 405, "Method not allowed");
+                } else {
+                    handler.handle(exchange, dataFetcher.snapshot());
+                }
+            } catch (IllegalArgumentException e) {
+                respondError(exchange, 400, e.getMessage());
+            } catch (IOException | UncheckedIOException e) {
+                //the client went away, or a reload failed before anything was sent
+                respondError(exchange, 500, e.getMessage());
+            } catch (RuntimeException e) {
+                respondError(exchange, 500, e.toString());
+            } finally {
+                exchange.close();
+            }
+        });
+    }
+
+    private void screen(HttpExchange exchange, TransactionQueries queries) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+        //the names are read from the body while the screenings are written, a line at a time
+        Iterator<String> names = reader.lines().filter(line -> !line.isBlank()).iterator();
+        respondStream(exchange, outputStream -> {
+            try (TransactionJsonWriter writer = new TransactionJsonWriter(outputStream)) {
+                queries.screenClients(() -> names, screening -> {
+                    try {
+                        writer.writeClientScreening(screening);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        });
+    }
+
+    private static void writeStats(JsonGenerator generator, NormalizationStats stats) throws IOException {
+        generator.writeNumberField("rows", stats.getRowCount());
+        generator.writeNumberField("transactions", stats.getTransactionCount());
+        generator.writeNumberField("issues", stats.getIssueCount());
+    }
+
+    private static void respondJson(HttpExchange exchange, JsonBody body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(bytes, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            body.write(generator);
+            generator.writeEndObject();
+        }
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(200, bytes.size());
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            bytes.writeTo(outputStream);
+        }
+    }
+
+    private static void respondLines(HttpExchange exchange, JsonBody body) throws IOException {
+        respondStream(exchange, outputStream -> {
+            try (JsonGenerator generator = JSON_FACTORY.createGenerator(outputStream, JsonEncoding.UTF8)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                body.write(generator);
+            }
+        });
+    }
+
+    private static void respondStream(HttpExchange exchange, StreamBody body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", NDJSON);
+        //length 0 is chunked encoding, the lines are sent as the writers flush them
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            body.write(outputStream);
+        }
+    }
+
+    private static void respondError(HttpExchange exchange, int status, String message) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            //the headers are sent, the response is cut short by closing the exchange
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(bytes, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeStringField("error", message);
+            generator.writeEndObject();
+        }
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, bytes.size());
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            bytes.writeTo(outputStream);
+        }
+    }
+
+    private static String parameter(HttpExchange exchange, String name) {
+        String value = parameters(exchange).get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing parameter " + name);
+        }
+        return value;
+    }
+
+    private static int intParameter(HttpExchange exchange, String name) {
+        String value = parameter(exchange, name);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + name + " is not an int: " + value);
+        }
+    }
+
+    /**
+     * Checks a count before a streamed response is started, as its status can not be changed afterwards.
+     */
+    private static int countParameter(HttpExchange exchange, String name) {
+        int count = intParameter(exchange, name);
+        if (count < 0) {
+            throw new IllegalArgumentException("Parameter " + name + " must not be negative");
+        }
+        return count;
+    }
+
+    private static Map<String, String> parameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                int equals = parameter.indexOf('=');
+                if (equals > 0) {
+                    parameters.putIfAbsent(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+                            URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return parameters;
+    }
+}
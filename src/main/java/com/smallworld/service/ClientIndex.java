@@ -0,0 +1,121 @@
+package com.smallworld.service;
+
+import com.smallworld.store.TransactionAggregates;
+import com.smallworld.store.TransactionStore;
+import com.smallworld.util.MemoryFootprint;
+
+import java.util.Arrays;
+
+/**
+ * Secondary index over the transaction store: beneficiary id to transaction positions, read by
+ * getTransactionsByBeneficiaryName and its NDJSON export. The amounts sent by every client are maintained by the
+ * store's aggregates, so no sender index is kept. Client ids come from the store's NameDictionary, whether a client
+ * has an open issue is answered by the store's aggregates which are always up to date.
+ * <p>
+ * Every beneficiary has its own growable array of positions, so the transactions appended to the store are indexed
+ * by visiting only them (see update) and the positions of a client stay in ascending order.
+ */
+class ClientIndex {
+
+    private static final int[] NO_POSITIONS = new int[0];
+    private static final int INITIAL_CLIENT_CAPACITY = 4;
+
+    private final TransactionStore store;
+    private int[][] beneficiaryPositions = new int[0][];
+    private int[] beneficiaryCounts = new int[0];
+    private int indexedSize;
+    private long buildNanos;
+
+    /**
+     * Builds the index with a pass over the store.
+     * @param store transactions to index
+     */
+    ClientIndex(TransactionStore store) {
+        this.store = store;
+        update();
+    }
+
+    /**
+     * Indexes the transactions added to the store since the last update, the others are not visited.
+     */
+    void update() {
+        long start = System.nanoTime();
+        int clients = store.clientNames().size();
+        if (clients > beneficiaryCounts.length) {
+            beneficiaryPositions = Arrays.copyOf(beneficiaryPositions, clients);
+            beneficiaryCounts = Arrays.copyOf(beneficiaryCounts, clients);
+        }
+        for (int position = indexedSize, size = store.size(); position < size; position++) {
+            add(beneficiaryPositions, beneficiaryCounts, store.beneficiaryId(position), position);
+        }
+        indexedSize = store.size();
+        buildNanos += System.nanoTime() - start;
+    }
+
+    private static void add(int[][] positions, int[] counts, int clientId, int position) {
+        int[] clientPositions = positions[clientId];
+        if (clientPositions == null) {
+            clientPositions = positions[clientId] = new int[INITIAL_CLIENT_CAPACITY];
+        } else if (counts[clientId] == clientPositions.length) {
+            clientPositions = positions[clientId] = Arrays.copyOf(clientPositions, clientPositions.length * 2);
+        }
+        clientPositions[counts[clientId]++] = position;
+    }
+
+    /**
+     * @param beneficiaryId client id of the beneficiary
+     * @return positions of the transactions received by the client in ascending order, the array may be longer
+     * than beneficiaryCount(beneficiaryId)
+     */
+    int[] beneficiaryPositions(int beneficiaryId) {
+        return beneficiaryId < beneficiaryCounts.length && beneficiaryPositions[beneficiaryId] != null
+                ? beneficiaryPositions[beneficiaryId] : NO_POSITIONS;
+    }
+
+    /**
+     * @param beneficiaryId client id of the beneficiary
+     * @return number of transactions received by the client
+     */
+    int beneficiaryCount(int beneficiaryId) {
+        return beneficiaryId < beneficiaryCounts.length ? beneficiaryCounts[beneficiaryId] : 0;
+    }
+
+    IndexStats getStats() {
+        TransactionAggregates aggregates = store.aggregates();
+        int clientsWithOpenIssues = 0;
+        for (int clientId = 0, clients = store.clientNames().size(); clientId < clients; clientId++) {
+            if (aggregates.hasOpenIssues(clientId)) {
+                clientsWithOpenIssues++;
+            }
+        }
+        return new IndexStats(buildNanos, estimateBytes(), countNonEmpty(beneficiaryCounts), clientsWithOpenIssues);
+    }
+
+    private static int countNonEmpty(int[] counts) {
+        int count = 0;
+        for (int clientCount : counts) {
+            if (clientCount > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private long estimateBytes() {
+        return positionsBytes(beneficiaryPositions) + intArray(beneficiaryCounts.length);
+    }
+
+    private static long positionsBytes(int[][] positions) {
+        long bytes = MemoryFootprint.ofReferenceArray(positions.length);
+        for (int[] clientPositions : positions) {
+            if (clientPositions != null) {
+                bytes += intArray(clientPositions.length);
+            }
+        }
+        return bytes;
+    }
+
+    private static long intArray(int length) {
+        return MemoryFootprint.align(MemoryFootprint.ARRAY_HEADER + 4L * length);
+    }
+}
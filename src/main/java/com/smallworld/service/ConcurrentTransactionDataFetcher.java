@@ -0,0 +1,484 @@
+package com.smallworld.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import com.smallworld.metrics.MetricsListener;
+import com.smallworld.model.ClientAmount;
+import com.smallworld.model.ClientScreening;
+import com.smallworld.model.Transaction;
+import com.smallworld.store.ColumnStorage;
+import com.smallworld.store.TransactionStore;
+import com.smallworld.util.NormalizationStats;
+import com.smallworld.util.RejectedRows;
+import com.smallworld.util.ValidationPolicy;
+
+/**
+ * Thread-safe TransactionDataFetcher for many reading threads while other threads reload or append rows.
+ * <p>
+ * The transactions are published as immutable snapshots (copy-on-write): a writer builds the next snapshot on
+ * the side, from a fresh load or from a copy of the current store with the appended rows, and publishes it with
+ * a single volatile write. Readers never lock nor wait for a writer, each query answers from the last published
+ * snapshot and the lists it returns keep reading that snapshot. Several queries answered from the same state are
+ * made on {@link #snapshot()}. Writers are serialized with each other.
+ * <p>
+ * Every append copies the store, which is linear in its size, so rows should be appended in batches.
+ */
+public class ConcurrentTransactionDataFetcher implements TransactionQueries {
+
+    private final Object writeLock = new Object();
+
+    /**
+     * Last published snapshot, never modified once published
+     */
+    private volatile TransactionDataFetcher snapshot = new TransactionDataFetcher();
+
+    private boolean indexingEnabled;
+    private ColumnStorage columnStorage = ColumnStorage.HEAP;
+    //0 when the query cache is disabled
+    private int queryCacheSize;
+    private volatile MetricsListener metricsListener;
+    private ValidationPolicy validationPolicy = ValidationPolicy.FAIL_FAST;
+    //rows rejected by the last load or append which was published
+    private volatile RejectedRows rejectedRows = new RejectedRows(ValidationPolicy.FAIL_FAST);
+
+    /**
+     * Returns the current snapshot, which is never modified: all its queries see the same transactions
+     * whatever is loaded or appended afterwards.
+     *
+     * @return queries over the transactions published last
+     */
+    public TransactionQueries snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Reads JSON data from a file and publishes it as the new snapshot once it is fully loaded.
+     *
+     * @param filePath path of transactions.json file
+     * @throws IOException if the file can not be read, the current snapshot is kept
+     */
+    public void setTransactionsFromJSON(String filePath) throws IOException {
+        synchronized (writeLock) {
+            TransactionDataFetcher next = newFetcher();
+            next.setTransactionsFromJSON(filePath);
+            publish(next);
+        }
+    }
+
+    /**
+     * Reads JSON data from a file in parallel and publishes it as the new snapshot once it is fully loaded.
+     *
+     * @param filePath path of transactions.json file
+     * @param parallelism number of threads parsing the file
+     * @throws IOException if the file can not be read, the current snapshot is kept
+     */
+    public void setTransactionsFromJSON(String filePath, int parallelism) throws IOException {
+        synchronized (writeLock) {
+            TransactionDataFetcher next = newFetcher();
+            next.setTransactionsFromJSON(filePath, parallelism);
+            publish(next);
+        }
+    }
+
+    /**
+     * Publishes the given rows of the transaction/issue join as the new snapshot.
+     *
+     * @param rows transactions with their issues, an mtn may appear in more than one row
+     */
+    public void setTransactions(Iterable<Transaction> rows) {
+        synchronized (writeLock) {
+            TransactionDataFetcher next = newFetcher();
+            next.setTransactions(rows);
+            publish(next);
+        }
+    }
+
+    /**
+     * Reads newline-delimited JSON data from a file, which may be gzip compressed, and publishes it as the new
+     * snapshot once it is fully loaded.
+     *
+     * @param filePath path of the NDJSON file
+     * @throws IOException if the file can not be read, the current snapshot is kept
+     */
+    public void setTransactionsFromNDJSON(String filePath) throws IOException {
+        synchronized (writeLock) {
+            TransactionDataFetcher next = newFetcher();
+            next.setTransactionsFromNDJSON(filePath);
+            publish(next);
+        }
+    }
+
+    /**
+     * Loads a snapshot file written by saveSnapshot and publishes it as the new snapshot.
+     *
+     * @param filePath path of the snapshot file
+     * @throws IOException if the file can not be read or is corrupted, the current snapshot is kept
+     */
+    public void setTransactionsFromSnapshot(String filePath) throws IOException {
+        synchronized (writeLock) {
+            TransactionDataFetcher next = newFetcher();
+            next.setTransactionsFromSnapshot(filePath);
+            publish(next);
+        }
+    }
+
+    /**
+     * Loads a file in the format given by its name, see TransactionDataFetcher.setTransactionsFromFile, and
+     * publishes it as the new snapshot once it is fully loaded.
+     *
+     * @param filePath path of the file
+     * @throws IOException if the file can not be read, the current snapshot is kept
+     */
+    public void setTransactionsFromFile(String filePath) throws IOException {
+        synchronized (writeLock) {
+            TransactionDataFetcher next = newFetcher();
+            next.setTransactionsFromFile(filePath);
+            publish(next);
+        }
+    }
+
+    /**
+     * Saves the current snapshot to a binary snapshot file, readers and writers are not blocked.
+     *
+     * @param filePath path of the snapshot file
+     * @throws IOException if the file can not be written
+     */
+    public void saveSnapshot(String filePath) throws IOException {
+        snapshot.saveSnapshot(filePath);
+    }
+
+    /**
+     * Publishes a new snapshot made of the current one and the given rows, see
+     * {@link TransactionDataFetcher#append(Transaction...)}. Readers see either none or all of the rows.
+     *
+     * @param rows transactions with their issues, the given objects are copied and not kept
+     */
+    public void append(Transaction... rows) {
+        synchronized (writeLock) {
+            TransactionDataFetcher next = copyOfSnapshot();
+            next.append(rows);
+            publish(next);
+        }
+    }
+
+    /**
+     * Publishes a new snapshot made of the current one and the rows of a JSON array read from the stream.
+     * Readers see either none or all of the rows. The stream is not closed by this method.
+     *
+     * @param inputStream stream containing a JSON array of transaction rows
+     * @throws IOException if the stream can not be read or is not valid JSON, none of its rows are published
+     */
+    public void appendFromJSON(InputStream inputStream) throws IOException {
+        synchronized (writeLock) {
+            TransactionDataFetcher next = copyOfSnapshot();
+            next.appendFromJSON(inputStream);
+            publish(next);
+        }
+    }
+
+    /**
+     * Publishes a new snapshot made of the current one and the complete lines of an NDJSON file from the given
+     * offset, see {@link TransactionDataFetcher#appendFromNDJSON(String, long)}. A file which is still being
+     * written is followed by calling this method again with the returned offset, readers see either none or
+     * all of the rows of a call.
+     *
+     * @param filePath path of the NDJSON file
+     * @param fromOffset offset of the first line to append, 0 for the whole file
+     * @return offset to pass to the next call
+     * @throws IOException if the file can not be read or a line is not valid JSON, none of its rows are published
+     */
+    public long appendFromNDJSON(String filePath, long fromOffset) throws IOException {
+        synchronized (writeLock) {
+            //nothing was written since the last call, the store is not copied
+            if (new File(filePath).length() == fromOffset) {
+                return fromOffset;
+            }
+            TransactionDataFetcher next = copyOfSnapshot();
+            long endOffset = next.appendFromNDJSON(filePath, fromOffset);
+            if (endOffset != fromOffset) {
+                publish(next);
+            }
+            return endOffset;
+        }
+    }
+
+    /**
+     * Enables or disables the client indexes of the current and the next snapshots.
+     *
+     * @param indexingEnabled true to build and use the indexes
+     */
+    public void setIndexingEnabled(boolean indexingEnabled) {
+        synchronized (writeLock) {
+            this.indexingEnabled = indexingEnabled;
+            //the store of a snapshot is never modified so it can be shared
+            snapshot = fetcherOf(snapshot.getStore());
+        }
+    }
+
+    public boolean isIndexingEnabled() {
+        synchronized (writeLock) {
+            return indexingEnabled;
+        }
+    }
+
+    /**
+     * Sets where the columns of the current and the next snapshots are held, see
+     * {@link TransactionDataFetcher#setColumnStorage(ColumnStorage)}. The current snapshot is copied into the new
+     * storage and published.
+     *
+     * @param columnStorage storage of the columns
+     */
+    public void setColumnStorage(ColumnStorage columnStorage) {
+        synchronized (writeLock) {
+            this.columnStorage = Objects.requireNonNull(columnStorage);
+            if (snapshot.getColumnStorage() != columnStorage) {
+                snapshot = fetcherOf(snapshot.getStore().copy(columnStorage));
+            }
+        }
+    }
+
+    public ColumnStorage getColumnStorage() {
+        synchronized (writeLock) {
+            return columnStorage;
+        }
+    }
+
+    /**
+     * Enables or disables the query result cache of the current and the next snapshots, see
+     * {@link TransactionDataFetcher#setQueryCache(int)}. Every snapshot has its own cache which starts empty when
+     * it is published, so a reload or an append never answers from the results of the previous snapshot, and the
+     * cache of a snapshot is shared by all the threads reading it.
+     *
+     * @param maxEntries number of results kept per snapshot, 0 to disable the cache
+     */
+    public void setQueryCache(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("maxEntries must not be negative");
+        }
+        synchronized (writeLock) {
+            queryCacheSize = maxEntries;
+            snapshot = fetcherOf(snapshot.getStore());
+        }
+    }
+
+    public boolean isQueryCacheEnabled() {
+        synchronized (writeLock) {
+            return queryCacheSize > 0;
+        }
+    }
+
+    /**
+     * Sets the listener of the current and the next snapshots, see
+     * {@link TransactionDataFetcher#setMetricsListener(MetricsListener)}. The loads and appends are reported once
+     * they are built, before they are published.
+     *
+     * @param metricsListener listener called on the thread of the operation, null to disable the metrics
+     */
+    public void setMetricsListener(MetricsListener metricsListener) {
+        synchronized (writeLock) {
+            this.metricsListener = metricsListener;
+            snapshot.setMetricsListener(metricsListener);
+        }
+    }
+
+    public MetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Sets the validation policy of the next loads and appends, see
+     * {@link TransactionDataFetcher#setValidationPolicy(ValidationPolicy)}.
+     *
+     * @param validationPolicy policy of the next loads
+     */
+    public void setValidationPolicy(ValidationPolicy validationPolicy) {
+        Objects.requireNonNull(validationPolicy);
+        synchronized (writeLock) {
+            this.validationPolicy = validationPolicy;
+        }
+    }
+
+    public ValidationPolicy getValidationPolicy() {
+        synchronized (writeLock) {
+            return validationPolicy;
+        }
+    }
+
+    /**
+     * @return rows rejected by the last load or append which was published
+     */
+    public RejectedRows getRejectedRows() {
+        return rejectedRows;
+    }
+
+    private void publish(TransactionDataFetcher next) {
+        rejectedRows = next.getRejectedRows();
+        snapshot = next;
+    }
+
+    private TransactionDataFetcher newFetcher() {
+        TransactionDataFetcher fetcher = new TransactionDataFetcher();
+        fetcher.setIndexingEnabled(indexingEnabled);
+        fetcher.setColumnStorage(columnStorage);
+        setQueryCache(fetcher);
+        fetcher.setMetricsListener(metricsListener);
+        fetcher.setValidationPolicy(validationPolicy);
+        return fetcher;
+    }
+
+    private TransactionDataFetcher copyOfSnapshot() {
+        return fetcherOf(snapshot.getStore().copy());
+    }
+
+    /**
+     * @return fetcher with the current settings answering from the given store, which is not copied
+     */
+    private TransactionDataFetcher fetcherOf(TransactionStore store) {
+        TransactionDataFetcher fetcher = new TransactionDataFetcher(store, indexingEnabled);
+        setQueryCache(fetcher);
+        fetcher.setMetricsListener(metricsListener);
+        fetcher.setValidationPolicy(validationPolicy);
+        return fetcher;
+    }
+
+    private void setQueryCache(TransactionDataFetcher fetcher) {
+        if (queryCacheSize > 0) {
+            fetcher.setQueryCache(queryCacheSize);
+        }
+    }
+
+    @Override
+    public List<Transaction> getTransactions() {
+        return snapshot.getTransactions();
+    }
+
+    @Override
+    public NormalizationStats getNormalizationStats() {
+        return snapshot.getNormalizationStats();
+    }
+
+    @Override
+    public Optional<IndexStats> getIndexStats() {
+        return snapshot.getIndexStats();
+    }
+
+    @Override
+    public Optional<QueryCacheStats> getQueryCacheStats() {
+        return snapshot.getQueryCacheStats();
+    }
+
+    @Override
+    public double getTotalTransactionAmount() {
+        return snapshot.getTotalTransactionAmount();
+    }
+
+    @Override
+    public double getTotalTransactionAmountSentBy(String senderFullName) {
+        return snapshot.getTotalTransactionAmountSentBy(senderFullName);
+    }
+
+    @Override
+    public double getMaxTransactionAmount() {
+        return snapshot.getMaxTransactionAmount();
+    }
+
+    @Override
+    public long countUniqueClients() {
+        return snapshot.countUniqueClients();
+    }
+
+    @Override
+    public boolean hasOpenComplianceIssues(String clientFullName) {
+        return snapshot.hasOpenComplianceIssues(clientFullName);
+    }
+
+    @Override
+    public void screenClients(Iterable<String> clientFullNames, Consumer<ClientScreening> consumer) {
+        snapshot.screenClients(clientFullNames, consumer);
+    }
+
+    @Override
+    public Map<String, List<Transaction>> getTransactionsByBeneficiaryName() {
+        return snapshot.getTransactionsByBeneficiaryName();
+    }
+
+    @Override
+    public Set<Integer> getUnsolvedIssueIds() {
+        return snapshot.getUnsolvedIssueIds();
+    }
+
+    @Override
+    public boolean isIssueOpen(int issueId) {
+        return snapshot.isIssueOpen(issueId);
+    }
+
+    @Override
+    public OptionalLong getMtnOfIssue(int issueId) {
+        return snapshot.getMtnOfIssue(issueId);
+    }
+
+    @Override
+    public List<String> getAllSolvedIssueMessages() {
+        return snapshot.getAllSolvedIssueMessages();
+    }
+
+    @Override
+    public List<Transaction> getTop3TransactionsByAmount() {
+        return snapshot.getTop3TransactionsByAmount();
+    }
+
+    @Override
+    public List<Transaction> getTopTransactions(int n) {
+        return snapshot.getTopTransactions(n);
+    }
+
+    @Override
+    public Optional<Map<String, Double>> getTopSender() {
+        return snapshot.getTopSender();
+    }
+
+    @Override
+    public List<ClientAmount> getTopSenders(int n) {
+        return snapshot.getTopSenders(n);
+    }
+
+    @Override
+    public List<ClientAmount> getTopBeneficiaries(int n) {
+        return snapshot.getTopBeneficiaries(n);
+    }
+
+    @Override
+    public void exportTransactionsAsNDJSON(OutputStream outputStream) throws IOException {
+        snapshot.exportTransactionsAsNDJSON(outputStream);
+    }
+
+    @Override
+    public void exportTransactionsByBeneficiaryNameAsNDJSON(OutputStream outputStream) throws IOException {
+        snapshot.exportTransactionsByBeneficiaryNameAsNDJSON(outputStream);
+    }
+
+    @Override
+    public void exportTopTransactionsAsNDJSON(int n, OutputStream outputStream) throws IOException {
+        snapshot.exportTopTransactionsAsNDJSON(n, outputStream);
+    }
+
+    @Override
+    public void exportTopSendersAsNDJSON(int n, OutputStream outputStream) throws IOException {
+        snapshot.exportTopSendersAsNDJSON(n, outputStream);
+    }
+
+    @Override
+    public void exportTopBeneficiariesAsNDJSON(int n, OutputStream outputStream) throws IOException {
+        snapshot.exportTopBeneficiariesAsNDJSON(n, outputStream);
+    }
+}
@@ -0,0 +1,57 @@
+package com.smallworld.service;
+
+/**
+ * Cost of the client index of TransactionDataFetcher.
+ */
+public class IndexStats {
+
+    private final long buildNanos;
+    private final long estimatedBytes;
+    private final int beneficiaryCount;
+    private final int clientsWithOpenIssuesCount;
+
+    public IndexStats(long buildNanos, long estimatedBytes, int beneficiaryCount, int clientsWithOpenIssuesCount) {
+        this.buildNanos = buildNanos;
+        this.estimatedBytes = estimatedBytes;
+        this.beneficiaryCount = beneficiaryCount;
+        this.clientsWithOpenIssuesCount = clientsWithOpenIssuesCount;
+    }
+
+    /**
+     * @return time taken to build the index in nanoseconds
+     */
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+
+    /**
+     * @return estimated heap used by the index in bytes, the client names themselves are not included
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * @return number of distinct beneficiaries in the beneficiary index
+     */
+    public int getBeneficiaryCount() {
+        return beneficiaryCount;
+    }
+
+    /**
+     * @return number of clients flagged with an open issue
+     */
+    public int getClientsWithOpenIssuesCount() {
+        return clientsWithOpenIssuesCount;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexStats{" +
+                "buildNanos=" + buildNanos +
+                "| estimatedBytes=" + estimatedBytes +
+                "| beneficiaryCount=" + beneficiaryCount +
+                "| clientsWithOpenIssuesCount=" + clientsWithOpenIssuesCount +
+                '}';
+    }
+}
@@ -0,0 +1,97 @@
+package com.smallworld.service;
+
+import com.smallworld.model.ClientScreening;
+import com.smallworld.store.NameDictionary;
+import com.smallworld.store.TransactionAggregates;
+import com.smallworld.store.TransactionStore;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * The unsolved issues of every client, built for a batch of screenings with two passes over the open issues of the
+ * store (counting, then filling), which are tracked by its aggregates, so no transaction is scanned. The issues of a
+ * client are a range of one array, in the order they were added. It is not changed afterwards and can be shared.
+ */
+class OpenIssuesByClient {
+
+    private static final List<String> NO_ISSUE_IDS = Collections.emptyList();
+
+    private final TransactionStore store;
+    //issues of client id c are issues[offsets[c]] to issues[offsets[c + 1] - 1]
+    private final int[] offsets;
+    private final int[] issues;
+
+    /**
+     * @param store store whose open issues are indexed, the issues solved or added afterwards are not seen
+     */
+    OpenIssuesByClient(TransactionStore store) {
+        this.store = store;
+        TransactionAggregates aggregates = store.aggregates();
+        int openIssueCount = aggregates.openIssueCount();
+        int clients = store.clientNames().size();
+        offsets = new int[clients + 1];
+        for (int index = 0; index < openIssueCount; index++) {
+            int position = store.issueTransaction(aggregates.openIssue(index));
+            offsets[store.senderId(position) + 1]++;
+            if (store.beneficiaryId(position) != store.senderId(position)) {
+                offsets[store.beneficiaryId(position) + 1]++;
+            }
+        }
+        for (int clientId = 0; clientId < clients; clientId++) {
+            offsets[clientId + 1] += offsets[clientId];
+        }
+        issues = new int[offsets[clients]];
+        int[] next = Arrays.copyOf(offsets, clients);
+        for (int index = 0; index < openIssueCount; index++) {
+            int issue = aggregates.openIssue(index);
+            int position = store.issueTransaction(issue);
+            issues[next[store.senderId(position)]++] = issue;
+            if (store.beneficiaryId(position) != store.senderId(position)) {
+                issues[next[store.beneficiaryId(position)]++] = issue;
+            }
+        }
+        //the open issues are tracked in no particular order
+        for (int clientId = 0; clientId < clients; clientId++) {
+            Arrays.sort(issues, offsets[clientId], offsets[clientId + 1]);
+        }
+    }
+
+    /**
+     * @param clientFullName client to screen, may be unknown or null
+     * @return its unsolved issues, the ids are read from the store when they are read from the result
+     */
+    ClientScreening screen(String clientFullName) {
+        int clientId = store.clientNames().idOf(clientFullName);
+        //a client added after the index was built has no open issue in it
+        if (clientId == NameDictionary.MISSING || clientId >= offsets.length - 1 || offsets[clientId] == offsets[clientId + 1]) {
+            return new ClientScreening(clientFullName, NO_ISSUE_IDS);
+        }
+        return new ClientScreening(clientFullName, new IssueIds(offsets[clientId], offsets[clientId + 1]));
+    }
+
+    private class IssueIds extends AbstractList<String> implements RandomAccess {
+
+        private final int from;
+        private final int to;
+
+        private IssueIds(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public String get(int index) {
+            return store.issueId(issues[from + Objects.checkIndex(index, to - from)]);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
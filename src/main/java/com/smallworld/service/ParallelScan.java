@@ -0,0 +1,129 @@
+package com.smallworld.service;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs a scan over a range of indexes (transaction positions, client ids, issues) on a ForkJoinPool. The range
+ * is split in halves until a piece is not longer than the threshold, every piece is aggregated sequentially and
+ * the partial results are combined left to right, so the result is the one of a single pass over the range,
+ * including the order of ties. A range not longer than the threshold is scanned on the calling thread.
+ */
+class ParallelScan {
+
+    /**
+     * Aggregation of a range which can be split and recombined.
+     * @param <A> type of the partial and final result
+     */
+    interface RangeAggregation<A> {
+
+        /**
+         * @param from first index of the piece
+         * @param to index after the last one of the piece
+         * @return result of a sequential pass over the piece
+         */
+        A aggregate(int from, int to);
+
+        /**
+         * @param left result of a piece
+         * @param right result of the piece just after it
+         * @return result of both pieces, as if they were a single piece
+         */
+        A combine(A left, A right);
+    }
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    /**
+     * @param pool pool running the pieces
+     * @param threshold longest piece scanned sequentially, at least 1
+     */
+    ParallelScan(ForkJoinPool pool, int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold must be positive");
+        }
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    /**
+     * @param length length of the range, which starts at 0
+     * @param aggregation aggregation of the pieces
+     * @return result of the aggregation of the whole range
+     */
+    <A> A aggregate(int length, RangeAggregation<A> aggregation) {
+        if (length <= threshold) {
+            return aggregation.aggregate(0, length);
+        }
+        return pool.invoke(new RangeTask<>(aggregation, 0, length, threshold));
+    }
+
+    /**
+     * @param length length of the range, which starts at 0
+     * @return number of pieces of about the same length a range can be cut into to keep every worker busy,
+     * 1 if the range is not longer than the threshold
+     */
+    int pieces(int length) {
+        if (length <= threshold) {
+            return 1;
+        }
+        return (int) Math.min(pool.getParallelism(), (length + (long) threshold - 1) / threshold);
+    }
+
+    /**
+     * Runs the action for every piece index, the pieces run in parallel and in no particular order.
+     * @param pieces number of pieces, see pieces(int)
+     * @param action receives the index of a piece
+     */
+    void forEachPiece(int pieces, IntConsumer action) {
+        if (pieces == 1) {
+            action.accept(0);
+            return;
+        }
+        pool.invoke(new RangeTask<>(new RangeAggregation<Void>() {
+            @Override
+            public Void aggregate(int from, int to) {
+                for (int piece = from; piece < to; piece++) {
+                    action.accept(piece);
+                }
+                return null;
+            }
+
+            @Override
+            public Void combine(Void left, Void right) {
+                return null;
+            }
+        }, 0, pieces, 1));
+    }
+
+    private static class RangeTask<A> extends RecursiveTask<A> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RangeAggregation<A> aggregation;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        private RangeTask(RangeAggregation<A> aggregation, int from, int to, int threshold) {
+            this.aggregation = aggregation;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected A compute() {
+            if (to - from <= threshold) {
+                return aggregation.aggregate(from, to);
+            }
+            int middle = (from + to) >>> 1;
+            RangeTask<A> left = new RangeTask<>(aggregation, from, middle, threshold);
+            left.fork();
+            A right = new RangeTask<>(aggregation, middle, to, threshold).compute();
+            return aggregation.combine(left.join(), right);
+        }
+    }
+}
@@ -0,0 +1,786 @@
+package com.smallworld.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import com.smallworld.model.ClientAmount;
+import com.smallworld.model.ClientScreening;
+import com.smallworld.model.Transaction;
+import com.smallworld.store.ColumnStorage;
+import com.smallworld.store.IntBitmap;
+import com.smallworld.store.NameDictionary;
+import com.smallworld.store.TransactionAggregates;
+import com.smallworld.store.TransactionStore;
+import com.smallworld.util.Money;
+import com.smallworld.util.NormalizationStats;
+import com.smallworld.util.RejectedRows;
+import com.smallworld.util.TopN;
+import com.smallworld.util.TransactionJsonWriter;
+import com.smallworld.util.ValidationPolicy;
+
+/**
+ * Queries over transactions kept in several files, e.g. one file per day: every file is loaded as an independent
+ * shard, a TransactionDataFetcher of its own, and every query is answered by merging the partial results of the
+ * shards: totals are summed in minor units, maxima compared, lists concatenated in shard order, open issue ids
+ * united and the top n of every shard merged into one top n. The totals of every client are merged by name once
+ * per set of shards, for the top clients and the unique clients.
+ * <p>
+ * Shards are added (several in parallel), replaced or dropped without reloading the others. A shard is named by
+ * the name of its file, unique among the shards: a file of the name of a shard is only loaded by replaceShard, so
+ * a file of another directory never takes the place of a shard by mistake. The set of shards is published as an
+ * immutable snapshot like in ConcurrentTransactionDataFetcher: readers never wait for a shard being loaded,
+ * writers are serialized with each other. The shards are kept in the order they were added, which is the loading
+ * order of the merged results, so daily files should be added by date.
+ * <p>
+ * The shards are expected to hold different transactions: an mtn in two files is counted as two transactions,
+ * and a row solving an issue only solves it in its own file.
+ */
+public class PartitionedTransactionDataFetcher implements TransactionQueries {
+
+    /**
+     * Number of names screened in every shard at once by screenClients
+     */
+    static final int SCREENING_CHUNK = 1024;
+
+    private static final Comparator<Transaction> AMOUNT_ORDER = Comparator.comparingLong(Transaction::getAmountInMinorUnits);
+
+    private final Object writeLock = new Object();
+
+    /**
+     * Last published set of shards, never modified once published
+     */
+    private volatile Shards shards = new Shards(List.of(), List.of());
+
+    private boolean indexingEnabled;
+    private ColumnStorage columnStorage = ColumnStorage.HEAP;
+    private ValidationPolicy validationPolicy = ValidationPolicy.FAIL_FAST;
+
+    /**
+     * Loads a file as a shard named by the file name and publishes it once it is fully loaded. The format is given
+     * by the name of the file, see TransactionDataFetcher.setTransactionsFromFile.
+     *
+     * @param filePath path of the file
+     * @throws IOException if the file can not be read, the current shards are kept
+     * @throws IllegalArgumentException if there is already a shard of this name, see replaceShard
+     */
+    public void addShard(String filePath) throws IOException {
+        addShards(List.of(filePath), 1);
+    }
+
+    /**
+     * Loads files as shards on a pool of the given size and publishes them all at once when every one is loaded,
+     * see addShard. The shards are added in the order of the files whatever order they are loaded in.
+     *
+     * @param filePaths paths of the files
+     * @param parallelism number of files loaded at the same time
+     * @throws IOException if a file can not be read, none of the files is added
+     * @throws IllegalArgumentException if two files have the same name or a shard of one of the names exists,
+     * nothing is loaded
+     */
+    public void addShards(List<String> filePaths, int parallelism) throws IOException {
+        synchronized (writeLock) {
+            List<String> names = new ArrayList<>(filePaths.size());
+            for (String filePath : filePaths) {
+                String name = shardName(filePath);
+                if (names.contains(name) || shards.names.contains(name)) {
+                    throw new IllegalArgumentException("Shard " + name + " already exists or is added twice: " + filePath);
+                }
+                names.add(name);
+            }
+            List<Future<TransactionDataFetcher>> loads = new ArrayList<>(filePaths.size());
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, filePaths.size())));
+            try {
+                for (String filePath : filePaths) {
+                    loads.add(executor.submit(() -> load(filePath)));
+                }
+                List<TransactionDataFetcher> loaded = new ArrayList<>(loads.size());
+                for (Future<TransactionDataFetcher> load : loads) {
+                    loaded.add(loadedShard(load));
+                }
+                shards = shards.with(names, loaded);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Loads a file and publishes it in place of the shard of the same name once it is fully loaded, e.g. a day
+     * whose file was corrected. The shard keeps its position among the shards.
+     *
+     * @param filePath path of the file, its name is the name of the shard replaced
+     * @throws IOException if the file can not be read, the current shards are kept
+     * @throws IllegalArgumentException if there is no shard of this name, see addShard
+     */
+    public void replaceShard(String filePath) throws IOException {
+        synchronized (writeLock) {
+            String name = shardName(filePath);
+            if (!shards.names.contains(name)) {
+                throw new IllegalArgumentException("There is no shard " + name + " to replace: " + filePath);
+            }
+            TransactionDataFetcher shard = load(filePath);
+            shards = shards.replaced(name, shard);
+        }
+    }
+
+    private static TransactionDataFetcher loadedShard(Future<TransactionDataFetcher> load) throws IOException {
+        try {
+            return load.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading the shards");
+        }
+    }
+
+    /**
+     * Drops a shard, the queries no longer see its transactions. The other shards are not reloaded.
+     *
+     * @param shardName name of the shard, the name of its file
+     * @return true if there was a shard of this name
+     */
+    public boolean dropShard(String shardName) {
+        synchronized (writeLock) {
+            Shards current = shards;
+            int index = current.names.indexOf(shardName);
+            if (index < 0) {
+                return false;
+            }
+            List<String> names = new ArrayList<>(current.names);
+            List<TransactionDataFetcher> fetchers = new ArrayList<>(current.fetchers);
+            names.remove(index);
+            fetchers.remove(index);
+            shards = new Shards(names, fetchers);
+            return true;
+        }
+    }
+
+    /**
+     * @return unmodifiable list of the names of the shards, in the order their transactions are merged
+     */
+    public List<String> getShardNames() {
+        return shards.names;
+    }
+
+    /**
+     * @param shardName name of the shard, the name of its file
+     * @return Optional of the queries over the transactions of that shard only, empty if there is no such shard
+     */
+    public Optional<TransactionQueries> getShard(String shardName) {
+        return shards.fetcher(shardName).map(TransactionQueries.class::cast);
+    }
+
+    /**
+     * @param shardName name of the shard, the name of its file
+     * @return Optional of the rows rejected by the load of that shard, empty if there is no such shard
+     */
+    public Optional<RejectedRows> getRejectedRows(String shardName) {
+        return shards.fetcher(shardName).map(TransactionDataFetcher::getRejectedRows);
+    }
+
+    private TransactionDataFetcher load(String filePath) throws IOException {
+        TransactionDataFetcher fetcher = new TransactionDataFetcher();
+        fetcher.setIndexingEnabled(indexingEnabled);
+        fetcher.setColumnStorage(columnStorage);
+        fetcher.setValidationPolicy(validationPolicy);
+        fetcher.setTransactionsFromFile(filePath);
+        return fetcher;
+    }
+
+    private static String shardName(String filePath) {
+        return new File(filePath).getName();
+    }
+
+    /**
+     * Enables or disables the client indexes of the shards loaded from now on.
+     *
+     * @param indexingEnabled true to index the shards loaded next
+     */
+    public void setIndexingEnabled(boolean indexingEnabled) {
+        synchronized (writeLock) {
+            this.indexingEnabled = indexingEnabled;
+        }
+    }
+
+    public boolean isIndexingEnabled() {
+        synchronized (writeLock) {
+            return indexingEnabled;
+        }
+    }
+
+    /**
+     * Sets where the columns of the shards loaded from now on are kept.
+     *
+     * @param columnStorage HEAP or OFF_HEAP
+     */
+    public void setColumnStorage(ColumnStorage columnStorage) {
+        synchronized (writeLock) {
+            this.columnStorage = columnStorage;
+        }
+    }
+
+    public ColumnStorage getColumnStorage() {
+        synchronized (writeLock) {
+            return columnStorage;
+        }
+    }
+
+    /**
+     * Sets how the invalid rows of the shards loaded from now on are handled.
+     *
+     * @param validationPolicy FAIL_FAST (the default), SKIP_AND_COUNT or COLLECT_ERRORS
+     */
+    public void setValidationPolicy(ValidationPolicy validationPolicy) {
+        synchronized (writeLock) {
+            this.validationPolicy = validationPolicy;
+        }
+    }
+
+    public ValidationPolicy getValidationPolicy() {
+        synchronized (writeLock) {
+            return validationPolicy;
+        }
+    }
+
+    /**
+     * Returns the transactions of all the shards in shard order, every element is read from its shard when it is read.
+     *
+     * @return unmodifiable list of the transactions
+     */
+    @Override
+    public List<Transaction> getTransactions() {
+        Shards current = shards;
+        List<List<Transaction>> lists = new ArrayList<>(current.fetchers.size());
+        int[] ends = new int[current.fetchers.size()];
+        int size = 0;
+        for (TransactionDataFetcher fetcher : current.fetchers) {
+            List<Transaction> transactions = fetcher.getTransactions();
+            size += transactions.size();
+            ends[lists.size()] = size;
+            lists.add(transactions);
+        }
+        int totalSize = size;
+        return new AbstractList<>() {
+            @Override
+            public Transaction get(int index) {
+                if (index < 0 || index >= totalSize) {
+                    throw new IndexOutOfBoundsException(index);
+                }
+                //the first shard ending after the index holds it, an empty shard ends where the previous one does
+                int shard = 0;
+                for (int last = ends.length - 1; shard < last; ) {
+                    int middle = (shard + last) >>> 1;
+                    if (ends[middle] > index) {
+                        last = middle;
+                    } else {
+                        shard = middle + 1;
+                    }
+                }
+                return lists.get(shard).get(index - (shard == 0 ? 0 : ends[shard - 1]));
+            }
+
+            @Override
+            public int size() {
+                return totalSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the normalization figures summed over the shards, a client or issue message of several shards is
+     * counted in each of them.
+     *
+     * @return normalization figures of the rows of all the shards
+     */
+    @Override
+    public NormalizationStats getNormalizationStats() {
+        long rowCount = 0, transactionCount = 0, issueCount = 0, bytesSaved = 0;
+        long clientNameCount = 0, issueMessageCount = 0, dictionaryBytesSaved = 0;
+        for (TransactionDataFetcher fetcher : shards.fetchers) {
+            NormalizationStats stats = fetcher.getNormalizationStats();
+            rowCount += stats.getRowCount();
+            transactionCount += stats.getTransactionCount();
+            issueCount += stats.getIssueCount();
+            bytesSaved += stats.getEstimatedBytesSaved();
+            clientNameCount += stats.getClientNameCount();
+            issueMessageCount += stats.getIssueMessageCount();
+            dictionaryBytesSaved += stats.getEstimatedDictionaryBytesSaved();
+        }
+        return new NormalizationStats(rowCount, transactionCount, issueCount, bytesSaved, clientNameCount,
+                issueMessageCount, dictionaryBytesSaved);
+    }
+
+    /**
+     * Returns the index figures summed over the indexed shards.
+     *
+     * @return Optional of index figures, empty if no shard is indexed
+     */
+    @Override
+    public Optional<IndexStats> getIndexStats() {
+        long buildNanos = 0, estimatedBytes = 0;
+        int beneficiaryCount = 0, clientsWithOpenIssuesCount = 0;
+        boolean indexed = false;
+        for (TransactionDataFetcher fetcher : shards.fetchers) {
+            Optional<IndexStats> shardStats = fetcher.getIndexStats();
+            if (shardStats.isPresent()) {
+                IndexStats stats = shardStats.get();
+                indexed = true;
+                buildNanos += stats.getBuildNanos();
+                estimatedBytes += stats.getEstimatedBytes();
+                beneficiaryCount += stats.getBeneficiaryCount();
+                clientsWithOpenIssuesCount += stats.getClientsWithOpenIssuesCount();
+            }
+        }
+        return indexed ? Optional.of(new IndexStats(buildNanos, estimatedBytes, beneficiaryCount,
+                clientsWithOpenIssuesCount)) : Optional.empty();
+    }
+
+    /**
+     * The shards have no query cache, the merged results are not cached either except the client totals.
+     *
+     * @return empty Optional
+     */
+    @Override
+    public Optional<QueryCacheStats> getQueryCacheStats() {
+        return Optional.empty();
+    }
+
+    /**
+     * @return sum of the amounts of all transactions of all the shards
+     * @throws ArithmeticException if the total overflows a long of minor units
+     */
+    @Override
+    public double getTotalTransactionAmount() {
+        long totalAmount = 0;
+        for (TransactionDataFetcher fetcher : shards.fetchers) {
+            totalAmount = Math.addExact(totalAmount, fetcher.getStore().aggregates().getTotalAmount());
+        }
+        return Money.toDouble(totalAmount);
+    }
+
+    /**
+     * @param senderFullName transaction sender's full name
+     * @return sum of the amounts of all transactions sent by the client in all the shards
+     * @throws ArithmeticException if the total overflows a long of minor units
+     */
+    @Override
+    public double getTotalTransactionAmountSentBy(String senderFullName) {
+        long sentAmount = 0;
+        for (TransactionDataFetcher fetcher : shards.fetchers) {
+            TransactionStore store = fetcher.getStore();
+            int senderId = store.clientNames().idOf(senderFullName);
+            if (senderId != NameDictionary.MISSING) {
+                sentAmount = Math.addExact(sentAmount, store.aggregates().sentAmount(senderId));
+            }
+        }
+        return Money.toDouble(sentAmount);
+    }
+
+    @Override
+    public double getMaxTransactionAmount() {
+        long maxAmount = 0;
+        for (TransactionDataFetcher fetcher : shards.fetchers) {
+            maxAmount = Math.max(maxAmount, fetcher.getStore().aggregates().getMaxAmount());
+        }
+        return Money.toDouble(maxAmount);
+    }
+
+    /**
+     * Counts the clients whose name appears only once among all the senders and beneficiaries of all the shards,
+     * from the client totals merged by name.
+     *
+     * @return count of unique clients
+     */
+    @Override
+    public long countUniqueClients() {
+        long uniqueClientCount = 0;
+        for (ClientTotals totals : shards.clientTotals().values()) {
+            if (totals.sentCount + totals.receivedCount == 1) {
+                uniqueClientCount++;
+            }
+        }
+        return uniqueClientCount;
+    }
+
+    @Override
+    public boolean hasOpenComplianceIssues(String clientFullName) {
+        for (TransactionDataFetcher fetcher : shards.fetchers) {
+            if (fetcher.hasOpenComplianceIssues(clientFullName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Screens the clients in chunks of names, every chunk being screened in every shard and the open issue ids of
+     * a name concatenated in shard order. Only a chunk of names and of results is held in memory.
+     *
+     * @param clientFullNames clients to screen, unknown names (null included) have no issue
+     * @param consumer receives the screening of every name, in the order of the names
+     */
+    @Override
+    public void screenClients(Iterable<String> clientFullNames, Consumer<ClientScreening> consumer) {
+        Shards current = shards;
+        List<String> chunk = new ArrayList<>(SCREENING_CHUNK);
+        for (String clientFullName : clientFullNames) {
+            chunk.add(clientFullName);
+            if (chunk.size() == SCREENING_CHUNK) {
+                screenChunk(current, chunk, consumer);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            screenChunk(current, chunk, consumer);
+        }
+    }
+
+    private static void screenChunk(Shards current, List<String> chunk, Consumer<ClientScreening> consumer) {
+        List<List<String>> openIssueIds = new ArrayList<>(Collections.nCopies(chunk.size(), List.of()));
+        for (TransactionDataFetcher fetcher : current.fetchers) {
+            int[] index = {0};
+            fetcher.screenClients(chunk, screening -> {
+                int name = index[0]++;
+                List<String> ids = screening.getOpenIssueIds();
+                List<String> previous = openIssueIds.get(name);
+                if (previous.isEmpty()) {
+                    openIssueIds.set(name, ids);
+                } else if (!ids.isEmpty()) {
+                    //a client with open issues in several shards
+                    List<String> merged = new ArrayList<>(previous);
+                    merged.addAll(ids);
+                    openIssueIds.set(name, Collections.unmodifiableList(merged));
+                }
+            });
+        }
+        for (int name = 0; name < chunk.size(); name++) {
+            consumer.accept(new ClientScreening(chunk.get(name), openIssueIds.get(name)));
+        }
+    }
+
+    /**
+     * Returns all transactions indexed by beneficiary name, the transactions of a beneficiary of several shards
+     * are concatenated in shard order.
+     *
+     * @return Map of transactions by beneficiary name with its relevant transactions
+     */
+    @Override
+    public Map<String, List<Transaction>> getTransactionsByBeneficiaryName() {
+        Map<String, List<Transaction>> transactionsByBeneficiaryName = new HashMap<>();
+        for (TransactionDataFetcher fetcher : shards.fetchers) {
+            for (Map.Entry<String, List<Transaction>> entry : fetcher.getTransactionsByBeneficiaryName().entrySet()) {
+                transactionsByBeneficiaryName.merge(entry.getKey(), entry.getValue(), (previous, next) -> {
+                    List<Transaction> merged = new ArrayList<>(previous.size() + next.size());
+                    merged.addAll(previous);
+                    merged.addAll(next);
+                    return merged;
+                });
+            }
+        }
+        return transactionsByBeneficiaryName;
+    }
+
+    /**
+     * @return unmodifiable set of the ids of the open issues of all the shards
+     */
+    @Override
+    public Set<Integer> getUnsolvedIssueIds() {
+        IntBitmap unsolvedIssueIds = new IntBitmap();
+        for (TransactionDataFetcher fetcher : shards.fetchers) {
+            fetcher.getStore().openIssueIds().forEach(unsolvedIssueIds::add);
+        }
+        return unsolvedIssueIds.asSet();
+    }
+
+    @Override
+    public boolean isIssueOpen(int issueId) {
+        for (TransactionDataFetcher fetcher : shards.fetchers) {
+            if (fetcher.isIssueOpen(issueId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param issueId issue id
+     * @return mtn of the transaction of the first issue with this id in the first shard having one, empty if
+     * there is none
+     */
+    @Override
+    public OptionalLong getMtnOfIssue(int issueId) {
+        for (TransactionDataFetcher fetcher : shards.fetchers) {
+            OptionalLong mtn = fetcher.getMtnOfIssue(issueId);
+            if (mtn.isPresent()) {
+                return mtn;
+            }
+        }
+        return OptionalLong.empty();
+    }
+
+    /**
+     * @return messages of all solved issues, in shard order then in the order the issues were loaded
+     */
+    @Override
+    public List<String> getAllSolvedIssueMessages() {
+        List<String> solvedIssueMessages = new ArrayList<>();
+        for (TransactionDataFetcher fetcher : shards.fetchers) {
+            solvedIssueMessages.addAll(fetcher.getAllSolvedIssueMessages());
+        }
+        return solvedIssueMessages;
+    }
+
+    @Override
+    public List<Transaction> getTop3TransactionsByAmount() {
+        return getTopTransactions(3);
+    }
+
+    /**
+     * Returns the n transactions with highest amount sorted by amount descending, from the top n of every shard.
+     * Transactions with the same amount are sorted in shard order, then in their loading order.
+     *
+     * @param n number of transactions to return
+     * @return list of the top n transactions, fewer if there are not n transactions
+     */
+    @Override
+    public List<Transaction> getTopTransactions(int n) {
+        TopN<Transaction> topTransactions = new TopN<>(n, AMOUNT_ORDER);
+        for (TransactionDataFetcher fetcher : shards.fetchers) {
+            fetcher.getTopTransactions(n).forEach(topTransactions::offer);
+        }
+        return topTransactions.toList();
+    }
+
+    @Override
+    public Optional<Map<String, Double>> getTopSender() {
+        List<ClientAmount> topSenders = getTopSenders(1);
+        if (topSenders.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(Map.of(topSenders.get(0).getClientFullName(), topSenders.get(0).getAmount()));
+    }
+
+    /**
+     * Returns the n senders with the most total sent amount over all the shards sorted by amount descending,
+     * senders with the same amount are sorted by name.
+     *
+     * @param n number of senders to return
+     * @return list of the top n senders with their exact total
+     */
+    @Override
+    public List<ClientAmount> getTopSenders(int n) {
+        TopN<ClientAmount> topSenders = new TopN<>(n, TransactionDataFetcher.CLIENT_AMOUNT_ORDER);
+        for (Map.Entry<String, ClientTotals> client : shards.clientTotals().entrySet()) {
+            if (client.getValue().sentCount > 0) {
+                topSenders.offer(new ClientAmount(client.getKey(), Money.toDouble(client.getValue().sentAmount)));
+            }
+        }
+        return topSenders.toList();
+    }
+
+    /**
+     * Returns the n beneficiaries with the most total received amount over all the shards sorted by amount
+     * descending, beneficiaries with the same amount are sorted by name.
+     *
+     * @param n number of beneficiaries to return
+     * @return list of the top n beneficiaries with their exact total
+     */
+    @Override
+    public List<ClientAmount> getTopBeneficiaries(int n) {
+        TopN<ClientAmount> topBeneficiaries = new TopN<>(n, TransactionDataFetcher.CLIENT_AMOUNT_ORDER);
+        for (Map.Entry<String, ClientTotals> client : shards.clientTotals().entrySet()) {
+            if (client.getValue().receivedCount > 0) {
+                topBeneficiaries.offer(new ClientAmount(client.getKey(), Money.toDouble(client.getValue().receivedAmount)));
+            }
+        }
+        return topBeneficiaries.toList();
+    }
+
+    /**
+     * Writes the transactions of every shard in shard order, see TransactionDataFetcher.exportTransactionsAsNDJSON.
+     *
+     * @param outputStream stream receiving the lines, it is not closed
+     * @throws IOException if the stream can not be written
+     */
+    @Override
+    public void exportTransactionsAsNDJSON(OutputStream outputStream) throws IOException {
+        for (TransactionDataFetcher fetcher : shards.fetchers) {
+            fetcher.exportTransactionsAsNDJSON(outputStream);
+        }
+    }
+
+    /**
+     * Writes the transactions grouped by beneficiary name as NDJSON, the beneficiaries come in the order their
+     * name first appears in the shards and the transactions of a beneficiary in shard order. As for one shard only
+     * the positions of the groups are held in memory, the transactions are created and written one at a time.
+     *
+     * @param outputStream stream receiving the lines, it is not closed
+     * @throws IOException if the stream can not be written
+     */
+    @Override
+    public void exportTransactionsByBeneficiaryNameAsNDJSON(OutputStream outputStream) throws IOException {
+        Shards current = shards;
+        int shardCount = current.fetchers.size();
+        TransactionStore[] stores = new TransactionStore[shardCount];
+        int[][] counts = new int[shardCount][];
+        int[][][] positionsByBeneficiaryId = new int[shardCount][][];
+        for (int shard = 0; shard < shardCount; shard++) {
+            TransactionDataFetcher fetcher = current.fetchers.get(shard);
+            stores[shard] = fetcher.getStore();
+            counts[shard] = new int[stores[shard].clientNames().size()];
+            positionsByBeneficiaryId[shard] = fetcher.positionsByBeneficiaryId(stores[shard], counts[shard]);
+        }
+        try (TransactionJsonWriter writer = new TransactionJsonWriter(outputStream)) {
+            for (Map.Entry<String, ClientTotals> client : current.clientTotals().entrySet()) {
+                if (client.getValue().receivedCount == 0) {
+                    continue;
+                }
+                for (int shard = 0; shard < shardCount; shard++) {
+                    int beneficiaryId = stores[shard].clientNames().idOf(client.getKey());
+                    if (beneficiaryId == NameDictionary.MISSING) {
+                        continue;
+                    }
+                    for (int index = 0; index < counts[shard][beneficiaryId]; index++) {
+                        writer.writeTransaction(stores[shard].transaction(positionsByBeneficiaryId[shard][beneficiaryId][index]));
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void exportTopTransactionsAsNDJSON(int n, OutputStream outputStream) throws IOException {
+        try (TransactionJsonWriter writer = new TransactionJsonWriter(outputStream)) {
+            for (Transaction transaction : getTopTransactions(n)) {
+                writer.writeTransaction(transaction);
+            }
+        }
+    }
+
+    @Override
+    public void exportTopSendersAsNDJSON(int n, OutputStream outputStream) throws IOException {
+        writeClientAmounts(getTopSenders(n), outputStream);
+    }
+
+    @Override
+    public void exportTopBeneficiariesAsNDJSON(int n, OutputStream outputStream) throws IOException {
+        writeClientAmounts(getTopBeneficiaries(n), outputStream);
+    }
+
+    private static void writeClientAmounts(List<ClientAmount> clientAmounts, OutputStream outputStream) throws IOException {
+        try (TransactionJsonWriter writer = new TransactionJsonWriter(outputStream)) {
+            for (ClientAmount clientAmount : clientAmounts) {
+                writer.writeClientAmount(clientAmount);
+            }
+        }
+    }
+
+    /**
+     * Sent and received counts and amounts of a client over all the shards, amounts in minor units
+     */
+    private static final class ClientTotals {
+        private int sentCount;
+        private int receivedCount;
+        private long sentAmount;
+        private long receivedAmount;
+    }
+
+    /**
+     * Published set of shards with the client totals merged from them, computed by the first query needing them
+     */
+    private static final class Shards {
+
+        private final List<String> names;
+        private final List<TransactionDataFetcher> fetchers;
+        private volatile Map<String, ClientTotals> clientTotals;
+
+        private Shards(List<String> names, List<TransactionDataFetcher> fetchers) {
+            this.names = Collections.unmodifiableList(names);
+            this.fetchers = Collections.unmodifiableList(fetchers);
+        }
+
+        /**
+         * @return these shards followed by the given ones, of new names
+         */
+        private Shards with(List<String> addedNames, List<TransactionDataFetcher> addedFetchers) {
+            List<String> nextNames = new ArrayList<>(names);
+            List<TransactionDataFetcher> nextFetchers = new ArrayList<>(fetchers);
+            nextNames.addAll(addedNames);
+            nextFetchers.addAll(addedFetchers);
+            return new Shards(nextNames, nextFetchers);
+        }
+
+        /**
+         * @return these shards where the shard of the given name is replaced
+         */
+        private Shards replaced(String name, TransactionDataFetcher fetcher) {
+            List<TransactionDataFetcher> nextFetchers = new ArrayList<>(fetchers);
+            nextFetchers.set(names.indexOf(name), fetcher);
+            return new Shards(names, nextFetchers);
+        }
+
+        private Optional<TransactionDataFetcher> fetcher(String name) {
+            int index = names.indexOf(name);
+            return index < 0 ? Optional.empty() : Optional.of(fetchers.get(index));
+        }
+
+        /**
+         * @return totals of every client by name, in the order the names first appear in the shards
+         * @throws ArithmeticException if a total overflows a long of minor units
+         */
+        private Map<String, ClientTotals> clientTotals() {
+            Map<String, ClientTotals> totals = clientTotals;
+            if (totals == null) {
+                //two readers may both merge the totals, the results are the same
+                totals = new LinkedHashMap<>();
+                for (TransactionDataFetcher fetcher : fetchers) {
+                    TransactionStore store = fetcher.getStore();
+                    NameDictionary clientNames = store.clientNames();
+                    TransactionAggregates aggregates = store.aggregates();
+                    for (int clientId = 0; clientId < clientNames.size(); clientId++) {
+                        ClientTotals client = totals.computeIfAbsent(clientNames.name(clientId), name -> new ClientTotals());
+                        client.sentCount += aggregates.sentCount(clientId);
+                        client.receivedCount += aggregates.receivedCount(clientId);
+                        if (aggregates.sentCount(clientId) > 0) {
+                            client.sentAmount = Math.addExact(client.sentAmount, aggregates.sentAmount(clientId));
+                        }
+                        if (aggregates.receivedCount(clientId) > 0) {
+                            client.receivedAmount = Math.addExact(client.receivedAmount, aggregates.receivedAmount(clientId));
+                        }
+                    }
+                }
+                clientTotals = totals;
+            }
+            return totals;
+        }
+    }
+}
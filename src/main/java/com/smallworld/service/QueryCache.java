@@ -0,0 +1,83 @@
+package com.smallworld.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of the results of the queries of a TransactionDataFetcher, by query and argument, evicting the
+ * least recently used result. It is thread-safe: the snapshots of ConcurrentTransactionDataFetcher are read by many
+ * threads at once. A result is computed outside of the lock, so two threads missing the same key at the same time
+ * both compute it and the first one is kept. Results computed before an invalidation are never cached after it.
+ */
+class QueryCache {
+
+    private final int maxEntries;
+    private final Map<String, Object> results;
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxEntries number of results kept, at least 1
+     */
+    QueryCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                boolean evict = size() > QueryCache.this.maxEntries;
+                if (evict) {
+                    evictions++;
+                }
+                return evict;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached result of the key, or computes it with the query and caches it.
+     * @param key query and argument, e.g. "topSenders/3"
+     * @param query computes the result, which must not be null nor be changed afterwards
+     * @return the result of the query
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(String key, Supplier<T> query) {
+        long computedGeneration;
+        synchronized (this) {
+            Object result = results.get(key);
+            if (result != null) {
+                hits++;
+                return (T) result;
+            }
+            misses++;
+            computedGeneration = generation;
+        }
+        T result = query.get();
+        synchronized (this) {
+            if (computedGeneration == generation) {
+                Object cached = results.putIfAbsent(key, result);
+                if (cached != null) {
+                    return (T) cached;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drops every result, called whenever the transactions change.
+     */
+    synchronized void invalidate() {
+        results.clear();
+        generation++;
+    }
+
+    synchronized QueryCacheStats getStats() {
+        return new QueryCacheStats(hits, misses, evictions, results.size(), maxEntries);
+    }
+}
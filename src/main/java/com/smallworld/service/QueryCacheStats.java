@@ -0,0 +1,67 @@
+package com.smallworld.service;
+
+/**
+ * Counters of the query result cache of TransactionDataFetcher.
+ */
+public class QueryCacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final int size;
+    private final int maxEntries;
+
+    public QueryCacheStats(long hitCount, long missCount, long evictionCount, int size, int maxEntries) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return number of queries answered from the cache
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return number of queries computed because their result was not cached
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return number of results dropped to make room for newer ones, invalidations are not counted
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return number of results cached now
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return number of results the cache keeps at most
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryCacheStats{" +
+                "hitCount=" + hitCount +
+                "| missCount=" + missCount +
+                "| evictionCount=" + evictionCount +
+                "| size=" + size +
+                "| maxEntries=" + maxEntries +
+                '}';
+    }
+}
@@ -2,47 +2,798 @@ package com.smallworld.service;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Supplier;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smallworld.metrics.LoadMetrics;
+import com.smallworld.metrics.MetricsListener;
+import com.smallworld.metrics.ThreadAllocation;
+import com.smallworld.model.ClientAmount;
+import com.smallworld.model.ClientScreening;
 import com.smallworld.model.Transaction;
-import com.smallworld.util.ConversionUtils;
+import com.smallworld.sketch.TransactionSketches;
+import com.smallworld.store.ColumnStorage;
+import com.smallworld.store.IntBitmap;
+import com.smallworld.store.NameDictionary;
+import com.smallworld.store.TransactionAggregates;
+import com.smallworld.store.TransactionStore;
+import com.smallworld.util.Money;
+import com.smallworld.util.NormalizationStats;
+import com.smallworld.util.ParallelTransactionLoader;
+import com.smallworld.util.RejectedRows;
+import com.smallworld.util.TopN;
+import com.smallworld.util.TransactionJsonReader;
+import com.smallworld.util.TransactionJsonWriter;
+import com.smallworld.util.ValidationPolicy;
+
+public class TransactionDataFetcher implements TransactionQueries {
+
+    /**
+     * Ranking of client totals: highest amount first, then alphabetical name
+     */
+    static final Comparator<ClientAmount> CLIENT_AMOUNT_ORDER = Comparator.comparingDouble(ClientAmount::getAmount)
+            .thenComparing(ClientAmount::getClientFullName, Comparator.reverseOrder());
+
+    /**
+     * This store will hold the parsed JSON data in columns, one transaction per mtn with all of its issues.
+     * 'Transaction' objects are only created when a method returns them.
+     */
+    private TransactionStore store = new TransactionStore();
+
+    /**
+     * Client indexes of the store, null unless indexing is enabled
+     */
+    private ClientIndex clientIndex;
+    private boolean indexingEnabled;
+
+    /**
+     * Storage of the columns of the stores loaded from now on
+     */
+    private ColumnStorage columnStorage = ColumnStorage.HEAP;
+
+    /**
+     * Longest range scanned sequentially when parallel execution is enabled without an explicit threshold
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 15;
+
+    /**
+     * Runs the scans on a ForkJoinPool, null unless parallel execution is enabled
+     */
+    private ParallelScan parallelScan;
+
+    /**
+     * Number of query results cached when the cache is enabled without an explicit size
+     */
+    public static final int DEFAULT_QUERY_CACHE_SIZE = 64;
 
-public class TransactionDataFetcher {
     /**
-     * This list will hold the parsed JSON data in form of classes
+     * Results of the scanning queries, null unless the cache is enabled
      */
-    public List<Transaction> transactions;
+    private QueryCache queryCache;
 
     /**
-     * Method to read JSON data from a file and set the 'transactions' list.
+     * Empty sketches of the configured settings and the sketches of the store, null unless the sketches are enabled
+     */
+    private TransactionSketches emptySketches;
+    private TransactionSketches sketches;
+    private int sketchedSize;
+
+    /**
+     * Receives the timings of the queries and of the loads, null unless metrics are enabled
+     */
+    private volatile MetricsListener metricsListener;
+
+    /**
+     * What the JSON loads do with an invalid row, and the rows rejected by the last of them
+     */
+    private ValidationPolicy validationPolicy = ValidationPolicy.FAIL_FAST;
+    private RejectedRows rejectedRows = new RejectedRows(ValidationPolicy.FAIL_FAST);
+
+    public TransactionDataFetcher() {
+    }
+
+    /**
+     * Creates a fetcher answering from the given store, the store is not copied.
+     *
+     * @param store loaded transactions
+     * @param indexingEnabled true to build and use the client indexes
+     */
+    TransactionDataFetcher(TransactionStore store, boolean indexingEnabled) {
+        this.indexingEnabled = indexingEnabled;
+        this.columnStorage = store.storage();
+        setStore(store);
+    }
+
+    /**
+     * Method to read JSON data from a file and set the transactions.
+     * The file is streamed token by token and every row goes straight into the columnar store,
+     * so no intermediate list of maps or of transactions is held in memory while loading. Client names
+     * and issue messages are resolved against the store's dictionaries while parsing, so a repeated value
+     * does not allocate a new String. The rows are validated while they are read, according to the validation policy.
      *
      * @param filePath path of transactions.json file
      * @throws IOException
+     * @throws com.smallworld.util.InvalidTransactionException for the first invalid row with ValidationPolicy.FAIL_FAST
      */
     public void setTransactionsFromJSON(String filePath) throws IOException {
-        ObjectMapper objectMapper = new ObjectMapper();
-        transactions = ConversionUtils.convertMapToObject(objectMapper.readValue(new File(filePath), new TypeReference<>(){}));
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        long allocationStart = allocationStart(listener);
+        File file = new File(filePath);
+        TransactionStore transactionStore = new TransactionStore(columnStorage);
+        RejectedRows loadRejectedRows = new RejectedRows(validationPolicy);
+        TransactionJsonReader.read(file, transactionStore::addRow, transactionStore.clientNames(),
+                transactionStore.issueMessages(), loadRejectedRows);
+        setStore(transactionStore);
+        rejectedRows = loadRejectedRows;
+        loadCompleted(listener, "setTransactionsFromJSON", 0, file.length(), start, allocationStart);
+    }
+
+    /**
+     * Method to read JSON data from a file in parallel and set the transactions.
+     * The file is memory mapped and its chunks are parsed on a pool of the given size,
+     * the result is the same as {@link #setTransactionsFromJSON(String)} including the order.
+     *
+     * @param filePath path of transactions.json file
+     * @param parallelism number of threads parsing the file
+     * @throws IOException
+     */
+    public void setTransactionsFromJSON(String filePath, int parallelism) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            setTransactionsFromJSON(filePath, executor, parallelism);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Method to read JSON data from a file in parallel on the given executor and set the transactions.
+     *
+     * @param filePath path of transactions.json file
+     * @param executor executor parsing the chunks of the file, it is not shut down by this method
+     * @param parallelism number of threads of the executor
+     * @throws IOException
+     */
+    public void setTransactionsFromJSON(String filePath, ExecutorService executor, int parallelism) throws IOException {
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        long allocationStart = allocationStart(listener);
+        File file = new File(filePath);
+        TransactionStore transactionStore = new TransactionStore(columnStorage);
+        RejectedRows loadRejectedRows = new RejectedRows(validationPolicy);
+        transactionStore.addRows(new ParallelTransactionLoader(executor, parallelism).load(file, loadRejectedRows));
+        setStore(transactionStore);
+        rejectedRows = loadRejectedRows;
+        loadCompleted(listener, "setTransactionsFromJSON", 0, file.length(), start, allocationStart);
+    }
+
+    /**
+     * Sets the transactions from rows of the transaction/issue join. Rows sharing an mtn are
+     * grouped into a single transaction, the given objects are copied and not kept. The rows are iterated
+     * once, so they can be streamed (e.g. from a TransactionGenerator) without holding them all in memory.
+     *
+     * @param rows transactions with their issues, an mtn may appear in more than one row
+     */
+    public void setTransactions(Iterable<Transaction> rows) {
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        long allocationStart = allocationStart(listener);
+        TransactionStore transactionStore = new TransactionStore(columnStorage);
+        transactionStore.addRows(rows);
+        setStore(transactionStore);
+        rejectedRows = new RejectedRows(validationPolicy);
+        loadCompleted(listener, "setTransactions", 0, 0, start, allocationStart);
+    }
+
+    /**
+     * Method to read newline-delimited JSON (NDJSON) data from a file and set the transactions: one row of the
+     * transaction/issue join per line, without an enclosing array. A gzip compressed file is recognized by its
+     * header and decompressed while it is read. The rows are streamed and validated as with
+     * {@link #setTransactionsFromJSON(String)}.
+     *
+     * @param filePath path of the NDJSON file, compressed or not
+     * @throws IOException if the file can not be read or a line is not valid JSON
+     */
+    public void setTransactionsFromNDJSON(String filePath) throws IOException {
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        long allocationStart = allocationStart(listener);
+        File file = new File(filePath);
+        TransactionStore transactionStore = new TransactionStore(columnStorage);
+        RejectedRows loadRejectedRows = new RejectedRows(validationPolicy);
+        TransactionJsonReader.readLines(file, transactionStore::addRow, transactionStore.clientNames(),
+                transactionStore.issueMessages(), loadRejectedRows);
+        setStore(transactionStore);
+        rejectedRows = loadRejectedRows;
+        loadCompleted(listener, "setTransactionsFromNDJSON", 0, file.length(), start, allocationStart);
+    }
+
+    /**
+     * Method to read an NDJSON file in parallel and set the transactions. The file is split at newlines and its
+     * chunks are parsed on a pool of the given size, the result is the same as
+     * {@link #setTransactionsFromNDJSON(String)} including the order. A gzip compressed file is read sequentially.
+     *
+     * @param filePath path of the NDJSON file
+     * @param parallelism number of threads parsing the file
+     * @throws IOException if the file can not be read or a line is not valid JSON
+     */
+    public void setTransactionsFromNDJSON(String filePath, int parallelism) throws IOException {
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        long allocationStart = allocationStart(listener);
+        File file = new File(filePath);
+        TransactionStore transactionStore = new TransactionStore(columnStorage);
+        RejectedRows loadRejectedRows = new RejectedRows(validationPolicy);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            transactionStore.addRows(new ParallelTransactionLoader(executor, parallelism).loadLines(file, loadRejectedRows));
+        } finally {
+            executor.shutdown();
+        }
+        setStore(transactionStore);
+        rejectedRows = loadRejectedRows;
+        loadCompleted(listener, "setTransactionsFromNDJSON", 0, file.length(), start, allocationStart);
+    }
+
+    /**
+     * Saves the loaded transactions to a binary snapshot file, which setTransactionsFromSnapshot loads much
+     * faster than the JSON file. The file has a format version and a checksum, and replaces an existing file
+     * only once it is complete.
+     *
+     * @param filePath path of the snapshot file
+     * @throws IOException if the file can not be written
+     */
+    public void saveSnapshot(String filePath) throws IOException {
+        store.writeSnapshot(new File(filePath));
+    }
+
+    /**
+     * Sets the transactions from a snapshot file written by saveSnapshot. The file is memory mapped and the
+     * columns are copied from it as they are, nothing is parsed nor grouped again, and all the queries give the
+     * same results as before the snapshot was saved.
+     *
+     * @param filePath path of the snapshot file
+     * @throws IOException if the file can not be read, has another format version or is corrupted
+     */
+    public void setTransactionsFromSnapshot(String filePath) throws IOException {
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        long allocationStart = allocationStart(listener);
+        File file = new File(filePath);
+        setStore(TransactionStore.readSnapshot(file, columnStorage));
+        rejectedRows = new RejectedRows(validationPolicy);
+        loadCompleted(listener, "setTransactionsFromSnapshot", 0, file.length(), start, allocationStart);
+    }
+
+    /**
+     * Sets the transactions from a file in the format given by its name: a binary snapshot (.snapshot), NDJSON
+     * (.ndjson, .jsonl, .gz) or a JSON array of rows (any other name).
+     *
+     * @param filePath path of the file
+     * @throws IOException if the file can not be read
+     */
+    public void setTransactionsFromFile(String filePath) throws IOException {
+        String name = filePath.toLowerCase();
+        if (name.endsWith(".snapshot")) {
+            setTransactionsFromSnapshot(filePath);
+        } else if (name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".gz")) {
+            setTransactionsFromNDJSON(filePath);
+        } else {
+            setTransactionsFromJSON(filePath);
+        }
+    }
+
+    /**
+     * Appends rows of the transaction/issue join to the loaded transactions. A row with a new mtn adds a
+     * transaction, a row with a known mtn adds its issue to that transaction, and a row with a known issue id
+     * updates the solved status of that issue (e.g. from unsolved to solved). The totals, client sums, unique
+     * clients, open issues and indexes are updated from the appended rows only, nothing is reloaded.
+     *
+     * @param rows transactions with their issues, the given objects are copied and not kept
+     */
+    public void append(Transaction... rows) {
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        long allocationStart = allocationStart(listener);
+        long rowCount = store.getNormalizationStats().getRowCount();
+        try {
+            for(Transaction row : rows){
+                store.addRow(row);
+            }
+        } finally {
+            updateIndex();
+        }
+        rejectedRows = new RejectedRows(validationPolicy);
+        loadCompleted(listener, "append", rowCount, 0, start, allocationStart);
+    }
+
+    /**
+     * Appends the rows of a JSON array read from the stream, see {@link #append(Transaction...)}.
+     * The stream is not closed by this method.
+     *
+     * @param inputStream stream containing a JSON array of transaction rows
+     * @throws IOException if the stream can not be read or is not valid JSON, the rows read before the
+     * error are kept
+     * @throws com.smallworld.util.InvalidTransactionException for the first invalid row with
+     * ValidationPolicy.FAIL_FAST, the rows read before it are kept
+     */
+    public void appendFromJSON(InputStream inputStream) throws IOException {
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        long allocationStart = allocationStart(listener);
+        long rowCount = store.getNormalizationStats().getRowCount();
+        RejectedRows appendRejectedRows = new RejectedRows(validationPolicy);
+        try {
+            TransactionJsonReader.read(inputStream, store::addRow, store.clientNames(), store.issueMessages(), appendRejectedRows);
+        } finally {
+            updateIndex();
+        }
+        rejectedRows = appendRejectedRows;
+        loadCompleted(listener, "appendFromJSON", rowCount, 0, start, allocationStart);
+    }
+
+    /**
+     * Appends the NDJSON rows read from the stream, see {@link #append(Transaction...)}.
+     * The stream is not closed by this method.
+     *
+     * @param inputStream stream with one transaction row per line
+     * @throws IOException if the stream can not be read or a line is not valid JSON, the rows read before the
+     * error are kept
+     */
+    public void appendFromNDJSON(InputStream inputStream) throws IOException {
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        long allocationStart = allocationStart(listener);
+        long rowCount = store.getNormalizationStats().getRowCount();
+        RejectedRows appendRejectedRows = new RejectedRows(validationPolicy);
+        try {
+            TransactionJsonReader.readLines(inputStream, store::addRow, store.clientNames(), store.issueMessages(), appendRejectedRows);
+        } finally {
+            updateIndex();
+        }
+        rejectedRows = appendRejectedRows;
+        loadCompleted(listener, "appendFromNDJSON", rowCount, 0, start, allocationStart);
+    }
+
+    /**
+     * Appends the complete lines of an uncompressed NDJSON file from the given byte offset and returns the offset
+     * following the last line read. A last line without its newline yet is left for the next call, so a file
+     * which is still being written can be followed by calling this method again with the returned offset, and
+     * a load can be resumed from the last offset returned.
+     *
+     * @param filePath path of the NDJSON file
+     * @param fromOffset offset of the first line to append, 0 for the whole file
+     * @return offset to pass to the next call
+     * @throws IOException if the file can not be read, is gzip compressed or a line is not valid JSON, the rows
+     * read before the error are kept
+     */
+    public long appendFromNDJSON(String filePath, long fromOffset) throws IOException {
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        long allocationStart = allocationStart(listener);
+        long rowCount = store.getNormalizationStats().getRowCount();
+        RejectedRows appendRejectedRows = new RejectedRows(validationPolicy);
+        long endOffset;
+        try {
+            endOffset = TransactionJsonReader.readLines(new File(filePath), fromOffset, store::addRow, store.clientNames(),
+                    store.issueMessages(), appendRejectedRows);
+        } finally {
+            updateIndex();
+        }
+        rejectedRows = appendRejectedRows;
+        loadCompleted(listener, "appendFromNDJSON", rowCount, endOffset - fromOffset, start, allocationStart);
+        return endOffset;
+    }
+
+    /**
+     * Writes every loaded transaction as NDJSON, one row per issue in the format of the input and in loading
+     * order. The transactions are created and written one at a time. The stream is not closed by this method.
+     *
+     * @param outputStream stream receiving the lines
+     * @throws IOException if the stream can not be written
+     */
+    public void exportTransactionsAsNDJSON(OutputStream outputStream) throws IOException {
+        TransactionStore transactionStore = store;
+        try (TransactionJsonWriter writer = new TransactionJsonWriter(outputStream)) {
+            for(int position = 0, size = transactionStore.size(); position < size; position++){
+                writer.writeTransaction(transactionStore.transaction(position));
+            }
+        }
+    }
+
+    /**
+     * Writes the transactions grouped by beneficiary name as NDJSON: the rows of a beneficiary's transactions
+     * follow each other in loading order, and the beneficiaries come in the order of their first transaction.
+     * Only the positions of the groups are held in memory, the transactions are created and written one at a time.
+     * The stream is not closed by this method.
+     *
+     * @param outputStream stream receiving the lines
+     * @throws IOException if the stream can not be written
+     */
+    public void exportTransactionsByBeneficiaryNameAsNDJSON(OutputStream outputStream) throws IOException {
+        TransactionStore transactionStore = store;
+        int[] counts = new int[transactionStore.clientNames().size()];
+        int[][] positionsByBeneficiaryId = positionsByBeneficiaryId(transactionStore, counts);
+        try (TransactionJsonWriter writer = new TransactionJsonWriter(outputStream)) {
+            for(int beneficiaryId = 0; beneficiaryId < positionsByBeneficiaryId.length; beneficiaryId++){
+                for(int index = 0; index < counts[beneficiaryId]; index++){
+                    writer.writeTransaction(transactionStore.transaction(positionsByBeneficiaryId[beneficiaryId][index]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the n transactions with highest amount as NDJSON, in the order of {@link #getTopTransactions(int)}.
+     * The stream is not closed by this method.
+     *
+     * @param n number of transactions to write
+     * @param outputStream stream receiving the lines
+     * @throws IOException if the stream can not be written
+     */
+    public void exportTopTransactionsAsNDJSON(int n, OutputStream outputStream) throws IOException {
+        TransactionStore transactionStore = store;
+        List<Integer> topPositions = cached("topTransactions/" + n, () -> findTopPositions(transactionStore, n));
+        try (TransactionJsonWriter writer = new TransactionJsonWriter(outputStream)) {
+            for(int position : topPositions){
+                writer.writeTransaction(transactionStore.transaction(position));
+            }
+        }
+    }
+
+    /**
+     * Writes the n senders with the most total sent amount as NDJSON lines {"clientFullName": ..., "amount": ...},
+     * in the order of {@link #getTopSenders(int)}. The stream is not closed by this method.
+     *
+     * @param n number of senders to write
+     * @param outputStream stream receiving the lines
+     * @throws IOException if the stream can not be written
+     */
+    public void exportTopSendersAsNDJSON(int n, OutputStream outputStream) throws IOException {
+        writeClientAmounts(getTopSenders(n), outputStream);
+    }
+
+    /**
+     * Writes the n beneficiaries with the most total received amount as NDJSON lines, in the order of
+     * {@link #getTopBeneficiaries(int)}. The stream is not closed by this method.
+     *
+     * @param n number of beneficiaries to write
+     * @param outputStream stream receiving the lines
+     * @throws IOException if the stream can not be written
+     */
+    public void exportTopBeneficiariesAsNDJSON(int n, OutputStream outputStream) throws IOException {
+        writeClientAmounts(getTopBeneficiaries(n), outputStream);
+    }
+
+    private static void writeClientAmounts(List<ClientAmount> clientAmounts, OutputStream outputStream) throws IOException {
+        try (TransactionJsonWriter writer = new TransactionJsonWriter(outputStream)) {
+            for(ClientAmount clientAmount : clientAmounts){
+                writer.writeClientAmount(clientAmount);
+            }
+        }
+    }
+
+    /**
+     * @return the store the queries are answered from
+     */
+    TransactionStore getStore() {
+        return store;
+    }
+
+    /**
+     * Brings the indexes and the query cache up to date with the rows added to the store
+     */
+    private void updateIndex() {
+        if(clientIndex != null){
+            clientIndex.update();
+        }
+        updateSketches();
+        invalidateQueryCache();
+    }
+
+    private void setStore(TransactionStore transactionStore) {
+        store = transactionStore;
+        clientIndex = indexingEnabled ? new ClientIndex(store) : null;
+        resetSketches();
+        invalidateQueryCache();
+    }
+
+    private void resetSketches() {
+        sketches = emptySketches == null ? null : emptySketches.copy();
+        sketchedSize = 0;
+        updateSketches();
+    }
+
+    /**
+     * Adds the transactions added to the store since the last update to the sketches, the others are not visited
+     */
+    private void updateSketches() {
+        if(sketches != null){
+            NameDictionary clientNames = store.clientNames();
+            for(int position = sketchedSize, size = store.size(); position < size; position++){
+                sketches.addTransaction(clientNames.name(store.senderId(position)),
+                        clientNames.name(store.beneficiaryId(position)), store.amountInMinorUnits(position));
+            }
+            sketchedSize = store.size();
+        }
+    }
+
+    private void invalidateQueryCache() {
+        if(queryCache != null){
+            queryCache.invalidate();
+        }
+    }
+
+    /**
+     * Enables or disables the client index (beneficiary name to transactions). When enabled it is built every
+     * time transactions are set and extended when rows are appended, and getTransactionsByBeneficiaryName and its
+     * export no longer scan all the transactions. The amounts sent by a client come from the aggregates either way.
+     *
+     * @param indexingEnabled true to build and use the indexes
+     */
+    public void setIndexingEnabled(boolean indexingEnabled) {
+        this.indexingEnabled = indexingEnabled;
+        clientIndex = indexingEnabled ? new ClientIndex(store) : null;
+    }
+
+    public boolean isIndexingEnabled() {
+        return indexingEnabled;
+    }
+
+    /**
+     * Sets where the columns of the transactions are held, the loaded transactions are copied into the new
+     * storage and the next loads use it. With ColumnStorage.OFF_HEAP the transactions and the mtn lookup are held
+     * in direct memory and the heap only holds the dictionaries, the aggregates and the indexes if they are
+     * enabled, so its size and the GC pauses no longer grow with the number of transactions. The queries run on
+     * the columns in either storage and give the same results.
+     *
+     * @param columnStorage storage of the columns
+     */
+    public void setColumnStorage(ColumnStorage columnStorage) {
+        this.columnStorage = Objects.requireNonNull(columnStorage);
+        if(store.storage() != columnStorage){
+            setStore(store.copy(columnStorage));
+        }
+    }
+
+    public ColumnStorage getColumnStorage() {
+        return columnStorage;
+    }
+
+    /**
+     * Sets what the loads and appends from JSON do with a row which is empty, lacks a required field or holds a
+     * value of the wrong type: throw an InvalidTransactionException with its row number and load nothing
+     * (ValidationPolicy.FAIL_FAST, the default), or skip it and count it (SKIP_AND_COUNT) and keep its row number
+     * and reason (COLLECT_ERRORS). The rows are validated while they are parsed, no pass is added.
+     *
+     * @param validationPolicy policy of the next loads
+     */
+    public void setValidationPolicy(ValidationPolicy validationPolicy) {
+        this.validationPolicy = Objects.requireNonNull(validationPolicy);
+    }
+
+    public ValidationPolicy getValidationPolicy() {
+        return validationPolicy;
+    }
+
+    /**
+     * Returns how many rows the last load or append rejected and why. Rows set from objects or a snapshot are
+     * not validated, so their report is empty.
+     *
+     * @return rejected rows of the last load or append
+     */
+    public RejectedRows getRejectedRows() {
+        return rejectedRows;
+    }
+
+    /**
+     * Enables or disables the parallel execution of the queries which scan the transactions, the clients or
+     * the issues, on the common ForkJoinPool with the default threshold.
+     *
+     * @param parallelExecutionEnabled true to run the scans in parallel
+     */
+    public void setParallelExecutionEnabled(boolean parallelExecutionEnabled) {
+        parallelScan = parallelExecutionEnabled ? new ParallelScan(ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD) : null;
+    }
+
+    /**
+     * Enables the parallel execution of the queries which scan the transactions (getTopTransactions and, without
+     * the indexes, getTransactionsByBeneficiaryName) or the clients (getTopSenders, getTopBeneficiaries). A scan is
+     * split into ranges which are processed on the pool and combined in order, so the results are the same as the
+     * sequential ones including the order of ties. The total, maximum, sums by sender, unique clients, open issues
+     * of a client and the bitmaps of the unsolved issue ids and solved issues are kept up to date while loading and
+     * never scan anything.
+     *
+     * @param pool pool running the ranges of the scans
+     * @param threshold longest range scanned sequentially, a smaller scan does not use the pool at all
+     */
+    public void setParallelExecution(ForkJoinPool pool, int threshold) {
+        parallelScan = new ParallelScan(Objects.requireNonNull(pool), threshold);
+    }
+
+    public boolean isParallelExecutionEnabled() {
+        return parallelScan != null;
+    }
+
+    /**
+     * Enables or disables the query result cache with the default size.
+     *
+     * @param queryCacheEnabled true to cache the results of the scanning queries
+     */
+    public void setQueryCacheEnabled(boolean queryCacheEnabled) {
+        queryCache = queryCacheEnabled ? new QueryCache(DEFAULT_QUERY_CACHE_SIZE) : null;
+    }
+
+    /**
+     * Enables the cache of the results of the queries which scan the transactions, the clients or the issues:
+     * getTransactionsByBeneficiaryName, getUnsolvedIssueIds, getAllSolvedIssueMessages and, by n, getTopTransactions,
+     * getTopSenders (so getTopSender) and getTopBeneficiaries. The least recently used result is evicted once
+     * maxEntries are cached, and every result is dropped as soon as transactions are set or appended. The cached
+     * collections are unmodifiable and shared between callers, getTopTransactions caches the positions and still
+     * returns new 'Transaction' objects. The total, maximum, sums by sender, unique clients and open issues of a
+     * client are kept up to date while loading and answered without a scan, so they are not cached.
+     *
+     * @param maxEntries number of results kept, at least 1
+     */
+    public void setQueryCache(int maxEntries) {
+        queryCache = new QueryCache(maxEntries);
+    }
+
+    public boolean isQueryCacheEnabled() {
+        return queryCache != null;
+    }
+
+    /**
+     * Returns the hit, miss and eviction counts of the query cache since it was enabled.
+     *
+     * @return Optional of cache figures, empty if the cache is disabled
+     */
+    public Optional<QueryCacheStats> getQueryCacheStats() {
+        return queryCache == null ? Optional.empty() : Optional.of(queryCache.getStats());
+    }
+
+    /**
+     * Enables or disables the sketches with the default settings, see setSketches.
+     *
+     * @param sketchesEnabled true to maintain the sketches
+     */
+    public void setSketchesEnabled(boolean sketchesEnabled) {
+        emptySketches = sketchesEnabled ? new TransactionSketches() : null;
+        resetSketches();
+    }
+
+    /**
+     * Enables the approximate analytics of the transactions: a HyperLogLog of the distinct clients and Count-Min
+     * sketches of the amounts sent and received by client with their top clients, in memory fixed by the settings.
+     * They are built from the transactions set and extended with the appended ones, and getSketches returns a copy
+     * which merges with the sketches of other fetchers or of feeds never loaded (TransactionSketches.addFromNDJSON).
+     * The exact queries are unchanged, see TransactionSketches for the error bounds.
+     *
+     * @param precision precision of the HyperLogLog, see HyperLogLog
+     * @param width counters per row of the Count-Min sketches
+     * @param depth rows of the Count-Min sketches
+     * @param topClients number of senders and of beneficiaries tracked
+     */
+    public void setSketches(int precision, int width, int depth, int topClients) {
+        emptySketches = new TransactionSketches(precision, width, depth, topClients);
+        resetSketches();
+    }
+
+    public boolean isSketchesEnabled() {
+        return sketches != null;
+    }
+
+    /**
+     * Returns the sketches of the loaded transactions, a copy which is not updated by the next loads.
+     *
+     * @return Optional of sketches, empty if the sketches are disabled
+     */
+    public Optional<TransactionSketches> getSketches() {
+        return sketches == null ? Optional.empty() : Optional.of(sketches.copy());
+    }
+
+    /**
+     * Returns the cached result of the key or computes it, only computes it if the cache is disabled
+     */
+    private <T> T cached(String key, Supplier<T> query) {
+        QueryCache cache = queryCache;
+        return cache == null ? query.get() : cache.get(key, query);
     }
 
     /**
-     * Returns the sum of the amounts of all transactions.
+     * Sets the listener receiving the duration of every query and the figures of every load: rows and bytes
+     * per second and the heap allocated by the loading thread. FetcherMetrics aggregates them into latency
+     * percentiles per query and exposes them through JMX. A query is reported under the name of its method,
+     * getTop3TransactionsByAmount as getTopTransactions and getTopSender as getTopSenders. Without a listener
+     * the queries and the loads only check for one, they neither read the clock nor allocate.
+     *
+     * @param metricsListener listener called on the thread of the operation, null to disable the metrics
+     */
+    public void setMetricsListener(MetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    public MetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    private static long startTime(MetricsListener listener) {
+        return listener == null ? 0 : System.nanoTime();
+    }
+
+    private static long allocationStart(MetricsListener listener) {
+        return listener == null ? 0 : ThreadAllocation.currentThreadAllocatedBytes();
+    }
+
+    private static void queryCompleted(MetricsListener listener, String query, long start) {
+        if(listener != null){
+            listener.queryCompleted(query, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Reports a load which added the rows of the store above rowCountBefore
+     */
+    private void loadCompleted(MetricsListener listener, String operation, long rowCountBefore, long byteCount,
+                               long start, long allocationStart) {
+        if(listener != null){
+            long durationNanos = System.nanoTime() - start;
+            long rowCount = store.getNormalizationStats().getRowCount() - rowCountBefore;
+            listener.loadCompleted(new LoadMetrics(operation, rowCount, byteCount, durationNanos,
+                    ThreadAllocation.allocatedSince(allocationStart)));
+        }
+    }
+
+    /**
+     * Returns the build time and memory footprint of the client indexes.
+     *
+     * @return Optional of index figures, empty if indexing is disabled
+     */
+    public Optional<IndexStats> getIndexStats() {
+        return clientIndex == null ? Optional.empty() : Optional.of(clientIndex.getStats());
+    }
+
+    /**
+     * Returns the loaded transactions, one per mtn.
+     *
+     * @return unmodifiable list of transactions in the order of their first row, every element is created when it is read
+     */
+    public List<Transaction> getTransactions() {
+        return store.transactions();
+    }
+
+    /**
+     * Returns how the loaded rows were grouped into transactions and how much memory that saved
+     * compared to keeping one transaction object per row.
+     *
+     * @return normalization figures of the last load
+     */
+    public NormalizationStats getNormalizationStats() {
+        return store.getNormalizationStats();
+    }
+
+    /**
+     * Returns the sum of the amounts of all transactions, every mtn is counted once.
+     * The sum is exact, it is computed in minor units and only converted to a double at the end.
      *
      * @return total transaction amount of successful transactions.
+     * @throws ArithmeticException if the total overflows a long of minor units
      */
     public double getTotalTransactionAmount() {
-        //All required exceptions will be thrown from conversionUtils,
-        // if any field is unavailable or if transactions are empty.
-        double totalAmount = 0.0;
-        for(Transaction transaction : transactions) {
-            //this check will add only transactions which have not any issue that is not resolved yet
-            //in order to get total amount of all the transaction inclusive of the failed ones then remove this check
-//            if(transaction.getIssueInformation().isIssueSolved()){
-                        totalAmount += transaction.getAmount();
-//            }
-        }
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        //The total is maintained as the rows are added
+        double totalAmount = Money.toDouble(store.aggregates().getTotalAmount());
+        queryCompleted(listener, "getTotalTransactionAmount", start);
         return totalAmount;
     }
 
@@ -51,16 +802,16 @@ public class TransactionDataFetcher {
      *
      * @param senderFullName transaction sender's full name.
      * @return total transaction amount for successful transactions.
+     * @throws ArithmeticException if the total overflows a long of minor units
      */
     public double getTotalTransactionAmountSentBy(String senderFullName) {
-        double totalAmount = 0.0;
-        for(Transaction transaction : transactions){
-                if(transaction.getSenderInformation().getSenderFullName().equals(senderFullName)){
-                            totalAmount += transaction.getAmount();
-                    }
-        }
-        //Rounding off the result to two decimal places before returning
-        return Math.round(totalAmount * 100.0) / 100.0;
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        int senderId = store.clientNames().idOf(senderFullName);
+        //The sum of minor units of every sender is maintained as the rows are added, no rounding needed
+        double sentAmount = senderId == NameDictionary.MISSING ? 0.0 : Money.toDouble(store.aggregates().sentAmount(senderId));
+        queryCompleted(listener, "getTotalTransactionAmountSentBy", start);
+        return sentAmount;
     }
 
     /**
@@ -69,51 +820,26 @@ public class TransactionDataFetcher {
      * @return max transaction amount.
      */
     public double getMaxTransactionAmount() {
-        double totalAmount = 0.0;
-
-        for(Transaction transaction : transactions){
-            if( transaction.getAmount() > totalAmount){
-                totalAmount = transaction.getAmount();
-            }
-        }
-        return totalAmount;
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        double maxAmount = Money.toDouble(store.aggregates().getMaxAmount());
+        queryCompleted(listener, "getMaxTransactionAmount", start);
+        return maxAmount;
     }
 
     /**
-     * Counts the number of unique clients that sent or received a transaction.
+     * Counts the number of unique clients that sent or received a transaction, i.e. the clients
+     * whose name appears only once among all the senders and beneficiaries.
      *
      * @return count of unique clients.
      */
     public long countUniqueClients() {
-        List<String> clientsList = new ArrayList<>();
-        Set<String> uniqueClients = new HashSet<>();
-
-        //Extracting all the senders and receivers full name
-        for(Transaction transaction : transactions){
-            clientsList.add(transaction.getSenderInformation().getSenderFullName());
-            clientsList.add(transaction.getBeneficiaryInformation().getBeneficiaryFullName());
-        }
-        boolean isUnique = false;
-        //Making a Set of all the unique clients that are involved in only one transaction
-        for(int i = 0; i < clientsList.size(); i++){
-            String client = clientsList.get(i);
-            for(int j = 0; j < clientsList.size(); j++){
-                if(i != j){
-                    // If client is present on another index of client list then don't add it in a set
-                    if(!client.equals(clientsList.get(j))){
-                        isUnique = true;
-                    }else{
-                        isUnique = false;
-                        break;
-                    }
-                }
-            }
-            //If client is unique then it will be added in unique client set
-            if(isUnique){
-                uniqueClients.add(client);
-            }
-        }
-        return uniqueClients.size();
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        //The clients involved only once are counted as the rows are added
+        long uniqueClientCount = store.aggregates().getUniqueClientCount();
+        queryCompleted(listener, "countUniqueClients", start);
+        return uniqueClientCount;
     }
 
     /**
@@ -124,19 +850,34 @@ public class TransactionDataFetcher {
      * @return true if user has any unsolved compliance issue otherwise false.
      */
     public boolean hasOpenComplianceIssues(String clientFullName) {
-        String senderFullName;
-        String beneficiaryFullName;
-        for(Transaction transaction : transactions){
-            senderFullName = transaction.getSenderInformation().getSenderFullName();//setting values
-            beneficiaryFullName = transaction.getBeneficiaryInformation().getBeneficiaryFullName();//setting values
-            if(senderFullName.equals(clientFullName) || beneficiaryFullName.equals(clientFullName)){
-                //If issue id is not null and issue is not resolved then return true
-                if((transaction.getIssueInformation().getIssueId() != null) && !transaction.getIssueInformation().isIssueSolved()){
-                       return true;
-                   }
-                }
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        int clientId = store.clientNames().idOf(clientFullName);
+        //The unsolved issues of every client are counted as issues are added and solved
+        boolean hasOpenIssues = clientId != NameDictionary.MISSING && store.aggregates().hasOpenIssues(clientId);
+        queryCompleted(listener, "hasOpenComplianceIssues", start);
+        return hasOpenIssues;
+    }
+
+    /**
+     * Screens a batch of clients (senders or beneficiaries): whether each one has unsolved compliance issues, with
+     * their ids and count. The unsolved issues are grouped by client once for the whole batch, by visiting only the
+     * open issues, then every name is a dictionary lookup. The names are read one at a time and every result is
+     * given to the consumer before the next name is read, so neither has to fit in memory, e.g. with
+     * {@code reader.lines()::iterator}.
+     *
+     * @param clientFullNames clients to screen, unknown names (null included) have no issue
+     * @param consumer receives the screening of every name, in the order of the names
+     */
+    public void screenClients(Iterable<String> clientFullNames, Consumer<ClientScreening> consumer) {
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        TransactionStore transactionStore = store;
+        OpenIssuesByClient openIssues = cached("openIssuesByClient", () -> new OpenIssuesByClient(transactionStore));
+        for (String clientFullName : clientFullNames) {
+            consumer.accept(openIssues.screen(clientFullName));
         }
-        return false;
+        queryCompleted(listener, "screenClients", start);
     }
 
     /**
@@ -145,124 +886,311 @@ public class TransactionDataFetcher {
      * @return Map of transactions by beneficiary name with its relevant transactions.
      */
     public Map<String, List<Transaction>> getTransactionsByBeneficiaryName() {
-        Map<String, List<Transaction>> transactionByBeneficiaryName = new HashMap<>();
-        String benificiaryName;
-        List<Transaction> transactionsByName = new ArrayList<>();
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        Map<String, List<Transaction>> transactionsByBeneficiaryName = queryCache == null ? groupByBeneficiaryName()
+                : cached("transactionsByBeneficiaryName", () -> Collections.unmodifiableMap(groupByBeneficiaryName()));
+        queryCompleted(listener, "getTransactionsByBeneficiaryName", start);
+        return transactionsByBeneficiaryName;
+    }
 
-        //Extracting beneficiary names to filter
-        for(Transaction transaction : transactions){
-            benificiaryName = transaction.getBeneficiaryInformation().getBeneficiaryFullName();
+    private Map<String, List<Transaction>> groupByBeneficiaryName() {
+        Map<String, List<Transaction>> transactionByBeneficiaryName = new HashMap<>();
+        TransactionStore transactionStore = store;
+        NameDictionary clientNames = transactionStore.clientNames();
+        int[] counts = new int[clientNames.size()];
+        int[][] positionsByBeneficiaryId = positionsByBeneficiaryId(transactionStore, counts);
 
-            //Filtering all transactions by beneficiary name
-            for(Transaction trans : transactions){
-                if(trans.getBeneficiaryInformation().getBeneficiaryFullName().equals(benificiaryName)){
-                    transactionsByName.add(trans);
-                }
+        //The transactions are only created when the lists are read
+        for(int beneficiaryId = 0; beneficiaryId < positionsByBeneficiaryId.length; beneficiaryId++){
+            if(counts[beneficiaryId] > 0){
+                transactionByBeneficiaryName.put(clientNames.name(beneficiaryId),
+                        transactionStore.transactions(positionsByBeneficiaryId[beneficiaryId], counts[beneficiaryId]));
             }
-            transactionByBeneficiaryName.put(benificiaryName,transactionsByName);
-            transactionsByName = new ArrayList<>();
         }
         //Returning map of beneficiary name along with all of its relevant transactions
         return transactionByBeneficiaryName;
     }
 
     /**
-     * Returns the identifiers of all open compliance issues
+     * Groups the positions of the store of this fetcher by beneficiary id, keeping their order
+     *
+     * @param counts receives the number of positions of every beneficiary id, the arrays may be longer
+     * @return positions of the transactions of every beneficiary id
      */
-    public Set<Integer> getUnsolvedIssueIds() {
-        Set<Integer> unsolvedIssueIds = new HashSet<>();
-        for(Transaction transaction : transactions){
+    int[][] positionsByBeneficiaryId(TransactionStore transactionStore, int[] counts) {
+        int[][] positionsByBeneficiaryId = new int[counts.length][];
+        if(clientIndex != null){
+            //the beneficiary index already holds the positions of every beneficiary's transactions
+            for(int beneficiaryId = 0; beneficiaryId < positionsByBeneficiaryId.length; beneficiaryId++){
+                positionsByBeneficiaryId[beneficiaryId] = clientIndex.beneficiaryPositions(beneficiaryId);
+                counts[beneficiaryId] = clientIndex.beneficiaryCount(beneficiaryId);
+            }
+        } else if(parallelScan != null){
+            groupByBeneficiaryInParallel(transactionStore, positionsByBeneficiaryId, counts);
+        } else {
+            //Grouping the positions by beneficiary id in two passes, counting then filling, keeping their order
+            for(int position = 0, size = transactionStore.size(); position < size; position++){
+                counts[transactionStore.beneficiaryId(position)]++;
+            }
+            for(int beneficiaryId = 0; beneficiaryId < counts.length; beneficiaryId++){
+                positionsByBeneficiaryId[beneficiaryId] = new int[counts[beneficiaryId]];
+            }
+            int[] filled = new int[counts.length];
+            for(int position = 0, size = transactionStore.size(); position < size; position++){
+                int beneficiaryId = transactionStore.beneficiaryId(position);
+                positionsByBeneficiaryId[beneficiaryId][filled[beneficiaryId]++] = position;
+            }
+        }
+        return positionsByBeneficiaryId;
+    }
 
-                //check if the issue is unresolved or not
-                if(!transaction.getIssueInformation().isIssueSolved()){
-                    unsolvedIssueIds.add(Integer.parseInt(transaction.getIssueInformation().getIssueId()));
-                }
+    private void groupByBeneficiaryInParallel(TransactionStore transactionStore, int[][] positionsByBeneficiaryId, int[] counts) {
+        int size = transactionStore.size();
+        int pieces = parallelScan.pieces(size);
+
+        //every piece of the positions counts its own beneficiaries
+        int[][] pieceOffsets = new int[pieces][];
+        parallelScan.forEachPiece(pieces, piece -> {
+            int[] pieceCounts = new int[counts.length];
+            for(int position = pieceStart(piece, pieces, size), end = pieceStart(piece + 1, pieces, size); position < end; position++){
+                pieceCounts[transactionStore.beneficiaryId(position)]++;
+            }
+            pieceOffsets[piece] = pieceCounts;
+        });
+        //turning the counts into the index of the first position of every piece in every beneficiary's array
+        for(int beneficiaryId = 0; beneficiaryId < counts.length; beneficiaryId++){
+            int offset = 0;
+            for(int[] offsets : pieceOffsets){
+                int count = offsets[beneficiaryId];
+                offsets[beneficiaryId] = offset;
+                offset += count;
+            }
+            counts[beneficiaryId] = offset;
+            positionsByBeneficiaryId[beneficiaryId] = new int[offset];
         }
+        //every piece fills its own slots, so the positions keep their order
+        parallelScan.forEachPiece(pieces, piece -> {
+            int[] next = pieceOffsets[piece];
+            for(int position = pieceStart(piece, pieces, size), end = pieceStart(piece + 1, pieces, size); position < end; position++){
+                int beneficiaryId = transactionStore.beneficiaryId(position);
+                positionsByBeneficiaryId[beneficiaryId][next[beneficiaryId]++] = position;
+            }
+        });
+    }
+
+    private static int pieceStart(int piece, int pieces, int size) {
+        return (int) ((long) size * piece / pieces);
+    }
+
+    /**
+     * Returns the identifiers of all open compliance issues. Issues whose id is not a number, e.g. a null one,
+     * have no identifier to return and are left out.
+     *
+     * @return unmodifiable set of the ids, boxed as they are read
+     */
+    public Set<Integer> getUnsolvedIssueIds() {
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        Set<Integer> unsolvedIssueIds = queryCache == null ? findUnsolvedIssueIds()
+                : cached("unsolvedIssueIds", this::findUnsolvedIssueIds);
+        queryCompleted(listener, "getUnsolvedIssueIds", start);
         return unsolvedIssueIds;
     }
 
+    private Set<Integer> findUnsolvedIssueIds() {
+        //the bitmap of the ids is kept as issues are added and solved, the copy is not changed by later appends
+        return store.openIssueIds().copy().asSet();
+    }
+
     /**
-     * Returns a list of all solved issue messages
+     * Returns whether an issue with the given id is unsolved, without scanning the issues
+     *
+     * @param issueId issue id
+     * @return true if at least one issue with this id is open
+     */
+    public boolean isIssueOpen(int issueId) {
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        boolean open = store.openIssueIds().contains(issueId);
+        queryCompleted(listener, "isIssueOpen", start);
+        return open;
+    }
+
+    /**
+     * Returns the mtn of the transaction having the issue with the given id, without scanning the issues
+     *
+     * @param issueId issue id
+     * @return mtn of the transaction of the first issue loaded with this id, empty if there is none
+     */
+    public OptionalLong getMtnOfIssue(int issueId) {
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        TransactionStore transactionStore = store;
+        int issue = transactionStore.issueOf(issueId);
+        OptionalLong mtn = issue == TransactionStore.NO_ISSUE ? OptionalLong.empty()
+                : OptionalLong.of(transactionStore.mtn(transactionStore.issueTransaction(issue)));
+        queryCompleted(listener, "getMtnOfIssue", start);
+        return mtn;
+    }
+
+    /**
+     * Returns a list of all solved issue messages, in the order the issues were loaded
      *
      * @return Returns list of all solved issue messages.
      */
     public List<String> getAllSolvedIssueMessages() {
-        List<String> solvedIssueIds = new ArrayList<>();
-        for(Transaction transaction : transactions){
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        List<String> solvedIssueMessages = queryCache == null ? findSolvedIssueMessages()
+                : cached("allSolvedIssueMessages", () -> Collections.unmodifiableList(findSolvedIssueMessages()));
+        queryCompleted(listener, "getAllSolvedIssueMessages", start);
+        return solvedIssueMessages;
+    }
 
-            //check if the issue is resolved and check if the issue message is not null
-            if(transaction.getIssueInformation().isIssueSolved() && transaction.getIssueInformation().getIssueMessage() != null){
-                solvedIssueIds.add(transaction.getIssueInformation().getIssueMessage());
+    private List<String> findSolvedIssueMessages() {
+        //only the solved issues are visited, their bitmap is iterated in the order the issues were added
+        TransactionStore transactionStore = store;
+        IntBitmap solvedIssues = transactionStore.solvedIssues();
+        List<String> solvedIssueMessages = new ArrayList<>(solvedIssues.size());
+        solvedIssues.forEach(issue -> {
+            //check if the issue has a message
+            int messageId = transactionStore.issueMessageId(issue);
+            if(messageId != NameDictionary.MISSING){
+                solvedIssueMessages.add(transactionStore.issueMessages().name(messageId));
             }
-        }
-        return solvedIssueIds;
+        });
+        return solvedIssueMessages;
     }
 
     /**
-     * Returns the 3 transactions with highest amount sorted by amount descending
+     * Returns the 3 transactions with highest amount sorted by amount descending, transactions with
+     * the same amount are sorted in their loading order
      *
      * @return Returns list of top 3 transactions having highest total transaction amount.
      */
     public List<Transaction> getTop3TransactionsByAmount() {
-        List<Transaction> tempListOftransactions = new ArrayList<>(transactions);
-        List<Transaction> top3Transactions = new ArrayList<>();
-        Transaction tempObj;
-        double firstMatch;
-        double secondMatch;
-
-       //Using custom logic to sort the list in descending order
-       for (int i = 0; i < tempListOftransactions.size(); i++){
-            for(int j = 0; j < tempListOftransactions.size(); j++){
-                //avoid checking element with itself
-                if(i != j) {
-                    firstMatch = tempListOftransactions.get(i).getAmount();
-                    secondMatch = tempListOftransactions.get(j).getAmount();
-
-                    //sorting the list in descending order
-                    if(firstMatch > secondMatch){
-                        tempObj = tempListOftransactions.get(i);
-                        tempListOftransactions.set(i,tempListOftransactions.get(j));
-                        tempListOftransactions.set(j,tempObj);
-                    }
-                }
-            }
-        }
+        return getTopTransactions(3);
+    }
 
-        //getting only the top 3 transactions including the failed ones
-        for (int i = 0; i < 3; i++) {
+    /**
+     * Returns the n transactions with highest amount sorted by amount descending, transactions with
+     * the same amount are sorted in their loading order
+     *
+     * @param n number of transactions to return
+     * @return Returns list of the top n transactions, fewer if there are not n transactions.
+     */
+    public List<Transaction> getTopTransactions(int n) {
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        TransactionStore transactionStore = store;
+        List<Integer> topPositions = cached("topTransactions/" + n, () -> findTopPositions(transactionStore, n));
+        //creating only the transactions that are returned
+        List<Transaction> topTransactions = new ArrayList<>();
+        for(int position : topPositions){
+            topTransactions.add(transactionStore.transaction(position));
+        }
+        queryCompleted(listener, "getTopTransactions", start);
+        return topTransactions;
+    }
 
-            //if the transaction to be added is exactly the same as already available in the list then it'll not be added
-            if(!top3Transactions.contains(tempListOftransactions.get(i))) {
-                top3Transactions.add(tempListOftransactions.get(i));
+    private List<Integer> findTopPositions(TransactionStore transactionStore, int n) {
+        //Keeping only the positions of the n highest amounts in a bounded heap, ties keep the transaction that comes first
+        Comparator<Integer> amountOrder = Comparator.comparingLong(transactionStore::amountInMinorUnits);
+        return Collections.unmodifiableList(scan(transactionStore.size(), new TopNAggregation<Integer>() {
+            @Override
+            public TopN<Integer> aggregate(int from, int to) {
+                TopN<Integer> topPositions = new TopN<>(n, amountOrder);
+                for(int position = from; position < to; position++){
+                    topPositions.offer(position);
+                }
+                return topPositions;
             }
-        }
-        return top3Transactions;
+        }).toList());
     }
 
     /**
      * Returns the sender with the most total sent amount
      *
-     * @return Returns Optional Object of Top highest sender among all the transactions.
+     * @return Returns Optional Object of Top highest sender among all the transactions, empty if there is no transaction.
      */
     public Optional<Map<String, Double>> getTopSender() {
-        Set<String> senderNames;
-        String senderName = "";
-        double highest = 0.0;
-
-        //getting unique sender names in set using lambda expression
-        senderNames = transactions.stream()
-                .map(t -> t.getSenderInformation().getSenderFullName())
-                .collect(Collectors.toSet());
-
-        //finding the highest total amount of sender by calling getTotalTransactionAmountSentBy(sender) method
-        for(String sender : senderNames) {
-                double amount = getTotalTransactionAmountSentBy(sender);
-                if(amount > highest){
-                    highest = amount;
-                    senderName = sender;
+        List<ClientAmount> topSenders = getTopSenders(1);
+        if(topSenders.isEmpty()){
+            return Optional.empty();
+        }
+        return Optional.of(Map.of(topSenders.get(0).getClientFullName(), topSenders.get(0).getAmount()));
+    }
+
+    /**
+     * Returns the n senders with the most total sent amount sorted by amount descending,
+     * senders with the same amount are sorted by name.
+     *
+     * @param n number of senders to return
+     * @return Returns list of the top n senders with their exact total.
+     */
+    public List<ClientAmount> getTopSenders(int n) {
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        TransactionAggregates aggregates = store.aggregates();
+        List<ClientAmount> topSenders = queryCache == null ? getTopClients(n, aggregates::sentCount, aggregates::sentAmount)
+                : cached("topSenders/" + n, () -> Collections.unmodifiableList(getTopClients(n, aggregates::sentCount, aggregates::sentAmount)));
+        queryCompleted(listener, "getTopSenders", start);
+        return topSenders;
+    }
+
+    /**
+     * Returns the n beneficiaries with the most total received amount sorted by amount descending,
+     * beneficiaries with the same amount are sorted by name.
+     *
+     * @param n number of beneficiaries to return
+     * @return Returns list of the top n beneficiaries with their exact total.
+     */
+    public List<ClientAmount> getTopBeneficiaries(int n) {
+        MetricsListener listener = metricsListener;
+        long start = startTime(listener);
+        TransactionAggregates aggregates = store.aggregates();
+        List<ClientAmount> topBeneficiaries = queryCache == null ? getTopClients(n, aggregates::receivedCount, aggregates::receivedAmount)
+                : cached("topBeneficiaries/" + n, () -> Collections.unmodifiableList(getTopClients(n, aggregates::receivedCount, aggregates::receivedAmount)));
+        queryCompleted(listener, "getTopBeneficiaries", start);
+        return topBeneficiaries;
+    }
+
+    private List<ClientAmount> getTopClients(int n, IntUnaryOperator transactionCount, IntToLongFunction totalAmount) {
+        //The minor units of every client id are summed as the rows are added, only the clients are visited
+        NameDictionary clientNames = store.clientNames();
+        return scan(clientNames.size(), new TopNAggregation<ClientAmount>() {
+            @Override
+            public TopN<ClientAmount> aggregate(int from, int to) {
+                TopN<ClientAmount> topClients = new TopN<>(n, CLIENT_AMOUNT_ORDER);
+                for(int clientId = from; clientId < to; clientId++){
+                    if(transactionCount.applyAsInt(clientId) > 0){
+                        //Selecting the n highest totals with a bounded heap, the smaller name wins a tie
+                        topClients.offer(new ClientAmount(clientNames.name(clientId), Money.toDouble(totalAmount.applyAsLong(clientId))));
+                    }
                 }
+                return topClients;
+            }
+        }).toList();
+    }
+
+    /**
+     * Runs the aggregation over the range sequentially, or on the pool if parallel execution is enabled
+     */
+    private <A> A scan(int length, ParallelScan.RangeAggregation<A> aggregation) {
+        return parallelScan == null ? aggregation.aggregate(0, length) : parallelScan.aggregate(length, aggregation);
+    }
+
+    /**
+     * Top n of a range, the top n of the right range is offered after the elements of the left one
+     */
+    private abstract static class TopNAggregation<T> implements ParallelScan.RangeAggregation<TopN<T>> {
+
+        @Override
+        public TopN<T> combine(TopN<T> left, TopN<T> right) {
+            left.merge(right);
+            return left;
         }
-        return Optional.of(Map.of(senderName, highest));
     }
 
 }
@@ -0,0 +1,164 @@
+package com.smallworld.service;
+
+import com.smallworld.model.ClientAmount;
+import com.smallworld.model.ClientScreening;
+import com.smallworld.model.Transaction;
+import com.smallworld.util.NormalizationStats;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Read only queries over a set of loaded transactions, answered by TransactionDataFetcher and by the
+ * snapshots of ConcurrentTransactionDataFetcher. See TransactionDataFetcher for the details of every query.
+ */
+public interface TransactionQueries {
+
+    /**
+     * @return unmodifiable list of the transactions, one per mtn in the order of their first row
+     */
+    List<Transaction> getTransactions();
+
+    /**
+     * @return normalization figures of the loaded rows
+     */
+    NormalizationStats getNormalizationStats();
+
+    /**
+     * @return Optional of index figures, empty if indexing is disabled
+     */
+    Optional<IndexStats> getIndexStats();
+
+    /**
+     * @return Optional of query cache figures, empty if the cache is disabled
+     */
+    Optional<QueryCacheStats> getQueryCacheStats();
+
+    /**
+     * @return sum of the amounts of all transactions
+     */
+    double getTotalTransactionAmount();
+
+    /**
+     * @param senderFullName transaction sender's full name
+     * @return sum of the amounts of all transactions sent by the client
+     */
+    double getTotalTransactionAmountSentBy(String senderFullName);
+
+    /**
+     * @return highest transaction amount
+     */
+    double getMaxTransactionAmount();
+
+    /**
+     * @return number of clients appearing only once among all the senders and beneficiaries
+     */
+    long countUniqueClients();
+
+    /**
+     * @param clientFullName client (sender's or receiver's) full name
+     * @return true if the client has any unsolved compliance issue
+     */
+    boolean hasOpenComplianceIssues(String clientFullName);
+
+    /**
+     * @param clientFullNames clients to screen
+     * @param consumer receives the screening of every name, in the order of the names
+     */
+    void screenClients(Iterable<String> clientFullNames, Consumer<ClientScreening> consumer);
+
+    /**
+     * @return transactions by beneficiary name
+     */
+    Map<String, List<Transaction>> getTransactionsByBeneficiaryName();
+
+    /**
+     * @return identifiers of all open compliance issues
+     */
+    Set<Integer> getUnsolvedIssueIds();
+
+    /**
+     * @param issueId issue id
+     * @return true if at least one issue with this id is open
+     */
+    boolean isIssueOpen(int issueId);
+
+    /**
+     * @param issueId issue id
+     * @return mtn of the transaction of the first issue with this id, empty if there is none
+     */
+    OptionalLong getMtnOfIssue(int issueId);
+
+    /**
+     * @return messages of all solved issues, in the order the issues were loaded
+     */
+    List<String> getAllSolvedIssueMessages();
+
+    /**
+     * @return the 3 transactions with highest amount
+     */
+    List<Transaction> getTop3TransactionsByAmount();
+
+    /**
+     * @param n number of transactions to return
+     * @return the n transactions with highest amount
+     */
+    List<Transaction> getTopTransactions(int n);
+
+    /**
+     * @return the sender with the most total sent amount, empty if there is no transaction
+     */
+    Optional<Map<String, Double>> getTopSender();
+
+    /**
+     * @param n number of senders to return
+     * @return the n senders with the most total sent amount
+     */
+    List<ClientAmount> getTopSenders(int n);
+
+    /**
+     * @param n number of beneficiaries to return
+     * @return the n beneficiaries with the most total received amount
+     */
+    List<ClientAmount> getTopBeneficiaries(int n);
+
+    /**
+     * @param outputStream stream receiving every transaction as NDJSON rows, it is not closed
+     * @throws IOException if the stream can not be written
+     */
+    void exportTransactionsAsNDJSON(OutputStream outputStream) throws IOException;
+
+    /**
+     * @param outputStream stream receiving the transactions grouped by beneficiary as NDJSON rows, it is not closed
+     * @throws IOException if the stream can not be written
+     */
+    void exportTransactionsByBeneficiaryNameAsNDJSON(OutputStream outputStream) throws IOException;
+
+    /**
+     * @param n number of transactions to write
+     * @param outputStream stream receiving the n transactions with highest amount as NDJSON rows, it is not closed
+     * @throws IOException if the stream can not be written
+     */
+    void exportTopTransactionsAsNDJSON(int n, OutputStream outputStream) throws IOException;
+
+    /**
+     * @param n number of senders to write
+     * @param outputStream stream receiving the n senders with the most total sent amount as NDJSON lines, it is not closed
+     * @throws IOException if the stream can not be written
+     */
+    void exportTopSendersAsNDJSON(int n, OutputStream outputStream) throws IOException;
+
+    /**
+     * @param n number of beneficiaries to write
+     * @param outputStream stream receiving the n beneficiaries with the most total received amount as NDJSON lines,
+     * it is not closed
+     * @throws IOException if the stream can not be written
+     */
+    void exportTopBeneficiariesAsNDJSON(int n, OutputStream outputStream) throws IOException;
+}
@@ -0,0 +1,160 @@
+package com.smallworld.sketch;
+
+/**
+ * Count-Min sketch of non-negative counts (e.g. amounts in minor units) summed by key, in depth rows of width
+ * counters whatever the number of keys. The estimate of a key is never below its exact sum and, with probability
+ * 1 - e^-depth, exceeds it by at most e / width of the total of all the keys: with the default 2048 x 5 counters
+ * (80 KiB) by at most 0.13% of the total, for 99.3% of the keys.
+ * <p>
+ * Two sketches of the same dimensions merge into the sketch of the sums of both, whichever partition a count was
+ * added to. Not thread safe.
+ */
+public class CountMinSketch {
+
+    public static final int DEFAULT_WIDTH = 2048;
+    public static final int DEFAULT_DEPTH = 5;
+
+    private static final long SECOND_HASH_SEED = 0x9e3779b97f4a7c15L;
+
+    private final int width;
+    private final int depth;
+    //row r is counters[r * width] to counters[(r + 1) * width - 1]
+    private final long[] counters;
+    private long total;
+
+    public CountMinSketch() {
+        this(DEFAULT_WIDTH, DEFAULT_DEPTH);
+    }
+
+    /**
+     * @param width counters per row, the error bound is e / width of the total
+     * @param depth number of rows, the bound holds with probability 1 - e^-depth
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width < 1 || depth < 1) {
+            throw new IllegalArgumentException("width and depth must be positive");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counters = new long[Math.multiplyExact(width, depth)];
+    }
+
+    private CountMinSketch(CountMinSketch other) {
+        this.width = other.width;
+        this.depth = other.depth;
+        this.counters = other.counters.clone();
+        this.total = other.total;
+    }
+
+    /**
+     * @param key key of the count
+     * @param count count to add to the key
+     * @return estimate of the key after the addition
+     */
+    public long add(String key, long count) {
+        return addHash(Hashing.hash(key), count);
+    }
+
+    /**
+     * @param hash well mixed 64-bit hash of the key
+     * @param count count to add to the key
+     * @return estimate of the key after the addition
+     * @throws IllegalArgumentException if the count is negative, the estimates would no longer be upper bounds
+     */
+    public long addHash(long hash, long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must not be negative: " + count);
+        }
+        total = Math.addExact(total, count);
+        long estimate = Long.MAX_VALUE;
+        //the rows are indexed by h1 + r * h2, two hashes are enough for independent rows (Kirsch and Mitzenmacher)
+        long h2 = Hashing.mix(hash ^ SECOND_HASH_SEED);
+        for (int row = 0, offset = 0; row < depth; row++, offset += width) {
+            int index = offset + Math.floorMod(hash + row * h2, width);
+            counters[index] += count;
+            estimate = Math.min(estimate, counters[index]);
+        }
+        return estimate;
+    }
+
+    /**
+     * @param key key to estimate
+     * @return estimated sum of the key, at least its exact sum
+     */
+    public long estimate(String key) {
+        return estimateHash(Hashing.hash(key));
+    }
+
+    /**
+     * @param hash well mixed 64-bit hash of the key
+     * @return estimated sum of the key, at least its exact sum
+     */
+    public long estimateHash(long hash) {
+        long estimate = Long.MAX_VALUE;
+        long h2 = Hashing.mix(hash ^ SECOND_HASH_SEED);
+        for (int row = 0, offset = 0; row < depth; row++, offset += width) {
+            estimate = Math.min(estimate, counters[offset + Math.floorMod(hash + row * h2, width)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Adds the counts of another sketch to this one, this one then estimates the sums of both.
+     *
+     * @param other sketch of the same dimensions, not changed
+     * @throws IllegalArgumentException if the dimensions differ
+     */
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Can not merge a " + other.width + "x" + other.depth
+                    + " Count-Min sketch into a " + width + "x" + depth + " one");
+        }
+        total = Math.addExact(total, other.total);
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] += other.counters[i];
+        }
+    }
+
+    /**
+     * @return independent copy of this sketch
+     */
+    public CountMinSketch copy() {
+        return new CountMinSketch(this);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return sum of all the counts added
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return e / width, the largest overestimate of a key as a fraction of the total
+     */
+    public double getRelativeError() {
+        return Math.E / width;
+    }
+
+    /**
+     * @return 1 - e^-depth, the probability an estimate is within the error bound
+     */
+    public double getConfidence() {
+        return 1 - Math.exp(-depth);
+    }
+
+    /**
+     * @return bytes of the counters, fixed by the dimensions
+     */
+    public long estimatedBytes() {
+        return (long) counters.length * Long.BYTES;
+    }
+}
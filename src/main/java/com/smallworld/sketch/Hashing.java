@@ -0,0 +1,41 @@
+package com.smallworld.sketch;
+
+/**
+ * 64-bit hash of the keys given to the sketches. String.hashCode has only 32 bits and its low bits are poorly
+ * mixed, which biases HyperLogLog above a few million keys, so the chars are hashed with FNV-1a on 64 bits and the
+ * result is finished with the MurmurHash3 mixer, so every output bit depends on every input bit.
+ */
+final class Hashing {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hashing() {
+    }
+
+    /**
+     * @param key key to hash, null hashes like the empty string
+     * @return well mixed 64-bit hash of the chars of the key
+     */
+    static long hash(String key) {
+        long hash = FNV_OFFSET_BASIS;
+        if (key != null) {
+            for (int i = 0; i < key.length(); i++) {
+                hash = (hash ^ key.charAt(i)) * FNV_PRIME;
+            }
+        }
+        return mix(hash);
+    }
+
+    /**
+     * MurmurHash3 fmix64 finalizer
+     */
+    static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,219 @@
+package com.smallworld.sketch;
+
+import com.smallworld.model.ClientAmount;
+import com.smallworld.util.MemoryFootprint;
+import com.smallworld.util.Money;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keys with the highest sums of a stream, e.g. the senders with the highest amounts, in fixed memory: a Count-Min
+ * sketch estimates the sum of every key and the capacity keys with the highest estimates are kept as candidates. A
+ * key is a candidate from the moment its estimate exceeds the smallest candidate's and until another key overtakes
+ * it: the keys holding a large share of the total stay candidates, while among keys of nearly equal sums the ones
+ * kept depend on the order of the stream. The sums of the candidates are their Count-Min estimates, never below the
+ * exact sums and above them by at most the error bound of the sketch.
+ * <p>
+ * Two trackers of the same dimensions merge: the sketches are added and the candidates of both are ranked by their
+ * estimates in the merged sketch. Not thread safe.
+ */
+public class HeavyHitters {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * Ranking of the candidates: highest estimate first, then alphabetical key
+     */
+    private static final Comparator<Map.Entry<String, Long>> ESTIMATE_ORDER = Map.Entry.<String, Long>comparingByValue()
+            .reversed().thenComparing(Map.Entry.comparingByKey());
+
+    /**
+     * Hash map node and boxed Long of a candidate
+     */
+    private static final long CANDIDATE_ENTRY = MemoryFootprint.align(MemoryFootprint.OBJECT_HEADER + 4 + 3 * MemoryFootprint.REFERENCE)
+            + MemoryFootprint.align(MemoryFootprint.OBJECT_HEADER + 8);
+
+    private final CountMinSketch sketch;
+    private final int capacity;
+    //estimate of every candidate when it was last added, it can only have grown since
+    private final Map<String, Long> candidates;
+    //candidate with the smallest estimate, recomputed when it is null
+    private String smallest;
+    private long smallestEstimate;
+
+    public HeavyHitters() {
+        this(DEFAULT_CAPACITY, CountMinSketch.DEFAULT_WIDTH, CountMinSketch.DEFAULT_DEPTH);
+    }
+
+    /**
+     * @param capacity number of candidate keys kept, the largest n of top(n)
+     * @param width counters per row of the Count-Min sketch
+     * @param depth rows of the Count-Min sketch
+     */
+    public HeavyHitters(int capacity, int width, int depth) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.sketch = new CountMinSketch(width, depth);
+        this.capacity = capacity;
+        this.candidates = new HashMap<>(capacity * 2);
+    }
+
+    private HeavyHitters(HeavyHitters other) {
+        this.sketch = other.sketch.copy();
+        this.capacity = other.capacity;
+        this.candidates = new HashMap<>(other.candidates);
+    }
+
+    /**
+     * @param key key of the count
+     * @param count count to add to the key, not negative
+     */
+    public void add(String key, long count) {
+        add(key, Hashing.hash(key), count);
+    }
+
+    /**
+     * @param key key of the count
+     * @param hash Hashing.hash(key)
+     * @param count count to add to the key, not negative
+     */
+    void add(String key, long hash, long count) {
+        long estimate = sketch.addHash(hash, count);
+        if (candidates.replace(key, estimate) != null) {
+            if (key.equals(smallest)) {
+                smallest = null;
+            }
+        } else if (candidates.size() < capacity) {
+            candidates.put(key, estimate);
+            smallest = null;
+        } else {
+            if (smallest == null) {
+                findSmallest();
+            }
+            if (estimate > smallestEstimate) {
+                candidates.remove(smallest);
+                candidates.put(key, estimate);
+                smallest = null;
+            }
+        }
+    }
+
+    private void findSmallest() {
+        smallestEstimate = Long.MAX_VALUE;
+        for (Map.Entry<String, Long> candidate : candidates.entrySet()) {
+            if (candidate.getValue() < smallestEstimate) {
+                smallest = candidate.getKey();
+                smallestEstimate = candidate.getValue();
+            }
+        }
+    }
+
+    /**
+     * @param key key to estimate, candidate or not
+     * @return estimated sum of the key, at least its exact sum
+     */
+    public long estimate(String key) {
+        return sketch.estimate(key);
+    }
+
+    /**
+     * Returns the n candidates with the highest estimates sorted by estimate descending, keys with the same
+     * estimate are sorted alphabetically.
+     *
+     * @param n number of keys to return, at most the capacity
+     * @return list of the keys with their estimated sums in major units (Money.toDouble of the minor units)
+     */
+    public List<ClientAmount> top(int n) {
+        if (n < 0 || n > capacity) {
+            throw new IllegalArgumentException("n must be between 0 and the capacity " + capacity + ": " + n);
+        }
+        List<Map.Entry<String, Long>> ranked = rankedCandidates();
+        List<ClientAmount> top = new ArrayList<>(Math.min(n, ranked.size()));
+        for (Map.Entry<String, Long> candidate : ranked.subList(0, Math.min(n, ranked.size()))) {
+            top.add(new ClientAmount(candidate.getKey(), Money.toDouble(candidate.getValue())));
+        }
+        return top;
+    }
+
+    /**
+     * @return the candidates with their current estimates, the collisions of other keys may have raised them
+     */
+    private List<Map.Entry<String, Long>> rankedCandidates() {
+        List<Map.Entry<String, Long>> ranked = new ArrayList<>(candidates.size());
+        for (String key : candidates.keySet()) {
+            ranked.add(Map.entry(key, sketch.estimate(key)));
+        }
+        ranked.sort(ESTIMATE_ORDER);
+        return ranked;
+    }
+
+    /**
+     * Adds the counts of another tracker to this one, the candidates of both are ranked by their merged estimates
+     * and the capacity highest are kept.
+     *
+     * @param other tracker of the same capacity and sketch dimensions, not changed
+     * @throws IllegalArgumentException if the dimensions differ
+     */
+    public void merge(HeavyHitters other) {
+        if (other.capacity != capacity) {
+            throw new IllegalArgumentException("Can not merge heavy hitters of capacity " + other.capacity
+                    + " into ones of capacity " + capacity);
+        }
+        sketch.merge(other.sketch);
+        candidates.putAll(other.candidates);
+        List<Map.Entry<String, Long>> ranked = rankedCandidates();
+        candidates.clear();
+        for (Map.Entry<String, Long> candidate : ranked.subList(0, Math.min(capacity, ranked.size()))) {
+            candidates.put(candidate.getKey(), candidate.getValue());
+        }
+        smallest = null;
+    }
+
+    /**
+     * @return independent copy of this tracker
+     */
+    public HeavyHitters copy() {
+        return new HeavyHitters(this);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return sum of all the counts added
+     */
+    public long getTotal() {
+        return sketch.getTotal();
+    }
+
+    /**
+     * @return largest overestimate of a sum within the confidence of the sketch, e / width of the total
+     */
+    public long getErrorBound() {
+        return (long) Math.ceil(sketch.getRelativeError() * sketch.getTotal());
+    }
+
+    /**
+     * @return 1 - e^-depth, the probability an estimate is within the error bound
+     */
+    public double getConfidence() {
+        return sketch.getConfidence();
+    }
+
+    /**
+     * @return bytes of the sketch and of the candidates: their keys, hash map entries and boxed estimates
+     */
+    public long estimatedBytes() {
+        long candidateBytes = MemoryFootprint.ofReferenceArray(capacity * 2);
+        for (String key : candidates.keySet()) {
+            candidateBytes += MemoryFootprint.ofString(key) + CANDIDATE_ENTRY;
+        }
+        return sketch.estimatedBytes() + candidateBytes;
+    }
+}
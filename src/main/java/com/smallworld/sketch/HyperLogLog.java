@@ -0,0 +1,131 @@
+package com.smallworld.sketch;
+
+/**
+ * HyperLogLog estimate of the number of distinct keys added, in 2^precision one byte registers whatever the number
+ * of keys. The relative standard error is 1.04 / sqrt(2^precision): 0.81% with the default precision of 14 (16 KiB),
+ * so 99.7% of the estimates are within 3 standard errors of the exact count. Small cardinalities are estimated by
+ * linear counting over the empty registers, which is almost exact while most registers are empty.
+ * <p>
+ * Two sketches of the same precision merge into the sketch of the union of their keys, whichever partition a key was
+ * added to. Not thread safe.
+ */
+public class HyperLogLog {
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+    public static final int DEFAULT_PRECISION = 14;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param precision number of bits of the hash choosing a register, between MIN_PRECISION and MAX_PRECISION
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    private HyperLogLog(HyperLogLog other) {
+        this.precision = other.precision;
+        this.registers = other.registers.clone();
+    }
+
+    /**
+     * @param key key to count, null counts as one key
+     */
+    public void add(String key) {
+        addHash(Hashing.hash(key));
+    }
+
+    /**
+     * @param hash well mixed 64-bit hash of the key to count
+     */
+    public void addHash(long hash) {
+        int register = (int) (hash >>> (64 - precision));
+        //rank of the first 1 bit of the remaining bits, the guard bit bounds it when they are all 0
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+        }
+    }
+
+    /**
+     * @return estimated number of distinct keys added
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int emptyRegisters = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                emptyRegisters++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && emptyRegisters > 0) {
+            estimate = m * Math.log((double) m / emptyRegisters);
+        }
+        return Math.round(estimate);
+    }
+
+    private static double alpha(int m) {
+        return switch (m) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+    }
+
+    /**
+     * Adds the keys of another sketch to this one, this one then estimates the distinct keys of both.
+     *
+     * @param other sketch of the same precision, not changed
+     * @throws IllegalArgumentException if the precisions differ
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Can not merge a HyperLogLog of precision " + other.precision
+                    + " into one of precision " + precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * @return independent copy of this sketch
+     */
+    public HyperLogLog copy() {
+        return new HyperLogLog(this);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * @return relative standard error of the estimates, 1.04 / sqrt(2^precision)
+     */
+    public double getStandardError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    /**
+     * @return bytes of the registers, fixed by the precision
+     */
+    public long estimatedBytes() {
+        return registers.length;
+    }
+}
@@ -0,0 +1,234 @@
+package com.smallworld.sketch;
+
+import com.smallworld.model.ClientAmount;
+import com.smallworld.model.Transaction;
+import com.smallworld.util.RejectedRows;
+import com.smallworld.util.TransactionJsonReader;
+import com.smallworld.util.ValidationPolicy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Approximate analytics of transactions in memory fixed by the settings, whatever the number of transactions and
+ * clients: a HyperLogLog of the distinct clients (senders and beneficiaries), and heavy hitters of the amounts sent
+ * by sender and received by beneficiary, each a Count-Min sketch with its top candidates. With the defaults
+ * estimatedBytes is about 191 KiB: 177 KiB of sketches and tables, and the names of the 128 tracked clients. The
+ * error bounds are those of HyperLogLog (relative standard error 1.04 / sqrt(2^precision)) and of CountMinSketch
+ * (overestimate of at most e / width of the total amount, with probability 1 - e^-depth).
+ * <p>
+ * The sketches of partitions of the transactions (e.g. of daily files) merge into the sketches of all of them. The
+ * exact queries of TransactionDataFetcher are not answered: countUniqueClients counts the clients seen exactly once,
+ * which a HyperLogLog can not estimate, estimateDistinctClients counts every client. Not thread safe.
+ */
+public class TransactionSketches {
+
+    private final HyperLogLog distinctClients;
+    private final HeavyHitters senders;
+    private final HeavyHitters beneficiaries;
+    private long transactionCount;
+    private boolean hasLastMtn;
+    private long lastMtn;
+
+    /**
+     * Sketches with the default settings: precision 14, 2048 x 5 counters and 64 top clients.
+     */
+    public TransactionSketches() {
+        this(HyperLogLog.DEFAULT_PRECISION, CountMinSketch.DEFAULT_WIDTH, CountMinSketch.DEFAULT_DEPTH,
+                HeavyHitters.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param precision precision of the HyperLogLog of the distinct clients, see HyperLogLog
+     * @param width counters per row of the Count-Min sketches of the amounts
+     * @param depth rows of the Count-Min sketches of the amounts
+     * @param topClients number of senders and of beneficiaries tracked, the largest n of getTopSenders(n)
+     */
+    public TransactionSketches(int precision, int width, int depth, int topClients) {
+        distinctClients = new HyperLogLog(precision);
+        senders = new HeavyHitters(topClients, width, depth);
+        beneficiaries = new HeavyHitters(topClients, width, depth);
+    }
+
+    private TransactionSketches(TransactionSketches other) {
+        distinctClients = other.distinctClients.copy();
+        senders = other.senders.copy();
+        beneficiaries = other.beneficiaries.copy();
+        transactionCount = other.transactionCount;
+        hasLastMtn = other.hasLastMtn;
+        lastMtn = other.lastMtn;
+    }
+
+    /**
+     * Adds a row of the transaction/issue join. A transaction is counted once for its consecutive rows (one per issue,
+     * as the feeds write them), a row of a transaction already added before other transactions is counted again,
+     * since telling it apart would take memory growing with the transactions.
+     *
+     * @param row transaction row
+     */
+    public void add(Transaction row) {
+        if (hasLastMtn && row.getMtn() == lastMtn) {
+            return;
+        }
+        addTransaction(row.getSenderInformation().getSenderFullName(),
+                row.getBeneficiaryInformation().getBeneficiaryFullName(), row.getAmountInMinorUnits());
+        hasLastMtn = true;
+        lastMtn = row.getMtn();
+    }
+
+    /**
+     * Adds a transaction. A negative amount (a reversal) is not subtracted from the client totals, the Count-Min
+     * estimates would no longer be upper bounds, its clients are counted.
+     *
+     * @param senderFullName sender of the transaction
+     * @param beneficiaryFullName beneficiary of the transaction
+     * @param amountInMinorUnits exact amount of the transaction in minor units, see Money
+     */
+    public void addTransaction(String senderFullName, String beneficiaryFullName, long amountInMinorUnits) {
+        long senderHash = Hashing.hash(senderFullName);
+        long beneficiaryHash = Hashing.hash(beneficiaryFullName);
+        if (amountInMinorUnits >= 0) {
+            senders.add(senderFullName, senderHash, amountInMinorUnits);
+            beneficiaries.add(beneficiaryFullName, beneficiaryHash, amountInMinorUnits);
+        }
+        distinctClients.addHash(senderHash);
+        distinctClients.addHash(beneficiaryHash);
+        transactionCount++;
+    }
+
+    /**
+     * Adds the NDJSON rows of the stream as they are read, see add(Transaction). No row and no name is kept, so an
+     * unbounded feed is sketched in the memory of the settings. The stream is not closed by this method.
+     *
+     * @param inputStream stream with one transaction row per line
+     * @param rejectedRows policy applied to the invalid rows and report of the rows it rejected
+     * @throws IOException if the stream can not be read or a line is not valid JSON
+     * @throws com.smallworld.util.InvalidTransactionException for the first invalid row with ValidationPolicy.FAIL_FAST
+     */
+    public void addFromNDJSON(InputStream inputStream, RejectedRows rejectedRows) throws IOException {
+        TransactionJsonReader.readLines(inputStream, this::add, null, null, rejectedRows);
+    }
+
+    /**
+     * Adds the NDJSON rows of the stream, the first invalid row fails, see addFromNDJSON(InputStream, RejectedRows).
+     *
+     * @param inputStream stream with one transaction row per line
+     * @throws IOException if the stream can not be read or a line is not valid JSON
+     */
+    public void addFromNDJSON(InputStream inputStream) throws IOException {
+        addFromNDJSON(inputStream, new RejectedRows(ValidationPolicy.FAIL_FAST));
+    }
+
+    /**
+     * @return estimated number of distinct clients that sent or received a transaction
+     */
+    public long estimateDistinctClients() {
+        return distinctClients.estimate();
+    }
+
+    /**
+     * Returns the n tracked senders with the highest estimated sent amounts, sorted by amount descending,
+     * senders with the same amount are sorted by name.
+     *
+     * @param n number of senders to return, at most the number of tracked clients
+     * @return list of senders with their estimated totals, never below the exact totals
+     */
+    public List<ClientAmount> getTopSenders(int n) {
+        return senders.top(n);
+    }
+
+    /**
+     * Returns the n tracked beneficiaries with the highest estimated received amounts, see getTopSenders.
+     *
+     * @param n number of beneficiaries to return, at most the number of tracked clients
+     * @return list of beneficiaries with their estimated totals, never below the exact totals
+     */
+    public List<ClientAmount> getTopBeneficiaries(int n) {
+        return beneficiaries.top(n);
+    }
+
+    /**
+     * @param senderFullName sender, tracked or not
+     * @return estimated total sent by the sender in minor units, at least the exact total
+     */
+    public long estimateAmountSentBy(String senderFullName) {
+        return senders.estimate(senderFullName);
+    }
+
+    /**
+     * @param beneficiaryFullName beneficiary, tracked or not
+     * @return estimated total received by the beneficiary in minor units, at least the exact total
+     */
+    public long estimateAmountReceivedBy(String beneficiaryFullName) {
+        return beneficiaries.estimate(beneficiaryFullName);
+    }
+
+    /**
+     * @return largest overestimate of a client total in minor units, within the confidence of the sketches
+     */
+    public long getAmountErrorBound() {
+        return senders.getErrorBound();
+    }
+
+    /**
+     * @return probability that a client total is within the error bound
+     */
+    public double getAmountConfidence() {
+        return senders.getConfidence();
+    }
+
+    /**
+     * @return relative standard error of estimateDistinctClients
+     */
+    public double getDistinctClientsStandardError() {
+        return distinctClients.getStandardError();
+    }
+
+    /**
+     * @return number of transactions added
+     */
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * @return sum of the non-negative amounts of the transactions added, in minor units
+     */
+    public long getTotalAmount() {
+        return senders.getTotal();
+    }
+
+    /**
+     * Adds the transactions of other sketches to these, e.g. of another partition.
+     *
+     * @param other sketches of the same settings, not changed
+     * @throws IllegalArgumentException if the settings differ
+     */
+    public void merge(TransactionSketches other) {
+        if (other.distinctClients.getPrecision() != distinctClients.getPrecision()
+                || other.senders.getCapacity() != senders.getCapacity()) {
+            throw new IllegalArgumentException("Can not merge sketches of different settings");
+        }
+        senders.merge(other.senders);
+        beneficiaries.merge(other.beneficiaries);
+        distinctClients.merge(other.distinctClients);
+        transactionCount += other.transactionCount;
+        //the next row is not a continuation of a transaction of the other sketches
+        hasLastMtn = false;
+    }
+
+    /**
+     * @return independent copy of these sketches
+     */
+    public TransactionSketches copy() {
+        return new TransactionSketches(this);
+    }
+
+    /**
+     * @return bytes of the sketches and of the names of the tracked clients, bounded by the settings
+     */
+    public long estimatedBytes() {
+        return distinctClients.estimatedBytes() + senders.estimatedBytes() + beneficiaries.estimatedBytes();
+    }
+}
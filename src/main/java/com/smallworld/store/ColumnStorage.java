@@ -0,0 +1,79 @@
+package com.smallworld.store;
+
+import com.smallworld.util.MemoryFootprint;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Where the columns of a TransactionStore are held.
+ */
+public enum ColumnStorage {
+
+    /**
+     * One Java array per column, grown by copying it.
+     */
+    HEAP,
+
+    /**
+     * Direct ByteBuffers outside of the Java heap, in fixed size chunks which are added as the column grows and
+     * never copied. The heap only holds the chunk references, so its size and the GC pauses do not depend on the
+     * number of transactions. The memory of a chunk is released when its buffer is garbage collected, the JVM
+     * triggers a GC if -XX:MaxDirectMemorySize is reached.
+     */
+    OFF_HEAP;
+
+    /**
+     * Values per off-heap chunk
+     */
+    static final int CHUNK_SHIFT = 14;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * Estimated heap used by a direct ByteBuffer and its cleaner
+     */
+    static final long CHUNK_HEAP_BYTES = 128;
+
+    /**
+     * @param valueBytes size of a value of the column
+     * @return zeroed off-heap chunk in the native byte order
+     */
+    static ByteBuffer allocateChunk(int valueBytes) {
+        return ByteBuffer.allocateDirect(CHUNK_SIZE * valueBytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @param source chunk to copy
+     * @return off-heap chunk with the same content
+     */
+    static ByteBuffer copyChunk(ByteBuffer source) {
+        ByteBuffer copy = ByteBuffer.allocateDirect(source.capacity()).order(ByteOrder.nativeOrder());
+        copy.put(0, source, 0, source.capacity());
+        return copy;
+    }
+
+    /**
+     * @param chunks number of chunks of a column
+     * @return estimated heap used by the chunk references
+     */
+    static long chunkHeapBytes(int chunks) {
+        return MemoryFootprint.ofReferenceArray(chunks) + chunks * CHUNK_HEAP_BYTES;
+    }
+
+    /**
+     * @param chunks number of chunks of a column
+     * @return number of values they hold, at most Integer.MAX_VALUE
+     */
+    static int capacity(int chunks) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) chunks << CHUNK_SHIFT);
+    }
+
+    /**
+     * @param capacity number of values
+     * @return number of chunks holding them
+     */
+    static int chunks(int capacity) {
+        return (int) (((long) capacity + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+    }
+}
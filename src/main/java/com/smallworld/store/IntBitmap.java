@@ -0,0 +1,345 @@
+package com.smallworld.store;
+
+import com.smallworld.util.MemoryFootprint;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of ints in the manner of Roaring bitmaps: the values are split by their 16 high bits into
+ * containers, and a container is either the sorted array of the 16 low bits of its values, while it holds at most
+ * 4096 of them, or a bitset of 65536 bits. Sparse values take 2 bytes each and dense ones (e.g. sequential ids) 1 bit
+ * each, and add, remove and contains only touch one container. Values are iterated in unsigned order, so the
+ * negative ones come last.
+ * <p>
+ * It is not thread-safe, but a bitmap which is no longer changed can be read by any number of threads.
+ */
+public class IntBitmap {
+
+    //an array container is turned into a bitset above this size, where the bitset becomes the smaller of the two
+    private static final int ARRAY_MAX_SIZE = 4096;
+    private static final int BITSET_WORDS = 1 << 10;
+
+    private char[] keys = new char[4];
+    //a char[] of sorted low bits or a long[] bitset per key
+    private Object[] containers = new Object[4];
+    private int[] containerSizes = new int[4];
+    private int containerCount;
+    private int size;
+
+    /**
+     * @param value value to add
+     * @return true if the value was not in the bitmap
+     */
+    public boolean add(int value) {
+        int index = containerIndex(value);
+        if (index < 0) {
+            index = insertContainer(-index - 1, (char) (value >>> 16));
+        }
+        char low = (char) value;
+        Object container = containers[index];
+        int containerSize = containerSizes[index];
+        if (container instanceof long[]) {
+            long[] bits = (long[]) container;
+            long bit = 1L << low;
+            if ((bits[low >>> 6] & bit) != 0) {
+                return false;
+            }
+            bits[low >>> 6] |= bit;
+        } else {
+            char[] values = (char[]) container;
+            int slot = Arrays.binarySearch(values, 0, containerSize, low);
+            if (slot >= 0) {
+                return false;
+            }
+            if (containerSize == ARRAY_MAX_SIZE) {
+                long[] bits = toBitset(values, containerSize);
+                bits[low >>> 6] |= 1L << low;
+                containers[index] = bits;
+            } else {
+                slot = -slot - 1;
+                if (containerSize == values.length) {
+                    values = Arrays.copyOf(values, Math.min(ARRAY_MAX_SIZE, values.length * 2));
+                    containers[index] = values;
+                }
+                System.arraycopy(values, slot, values, slot + 1, containerSize - slot);
+                values[slot] = low;
+            }
+        }
+        containerSizes[index]++;
+        size++;
+        return true;
+    }
+
+    /**
+     * @param value value to remove
+     * @return true if the value was in the bitmap
+     */
+    public boolean remove(int value) {
+        int index = containerIndex(value);
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) value;
+        Object container = containers[index];
+        int containerSize = containerSizes[index];
+        if (container instanceof long[]) {
+            long[] bits = (long[]) container;
+            long bit = 1L << low;
+            if ((bits[low >>> 6] & bit) == 0) {
+                return false;
+            }
+            bits[low >>> 6] &= ~bit;
+            //turned back into an array well below the limit, so values added and removed around it do not convert every time
+            if (containerSize - 1 == ARRAY_MAX_SIZE / 2) {
+                containers[index] = toArray(bits, containerSize - 1);
+            }
+        } else {
+            char[] values = (char[]) container;
+            int slot = Arrays.binarySearch(values, 0, containerSize, low);
+            if (slot < 0) {
+                return false;
+            }
+            System.arraycopy(values, slot + 1, values, slot, containerSize - slot - 1);
+        }
+        size--;
+        if (--containerSizes[index] == 0) {
+            removeContainer(index);
+        }
+        return true;
+    }
+
+    /**
+     * @param value value to look up
+     * @return true if the value is in the bitmap
+     */
+    public boolean contains(int value) {
+        int index = containerIndex(value);
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) value;
+        Object container = containers[index];
+        if (container instanceof long[]) {
+            return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, 0, containerSizes[index], low) >= 0;
+    }
+
+    /**
+     * @return number of values in the bitmap
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Calls the action with every value, in unsigned order.
+     * @param action called with every value, it must not change the bitmap
+     */
+    public void forEach(IntConsumer action) {
+        for (int index = 0; index < containerCount; index++) {
+            int high = keys[index] << 16;
+            Object container = containers[index];
+            if (container instanceof long[]) {
+                long[] bits = (long[]) container;
+                for (int word = 0; word < BITSET_WORDS; word++) {
+                    for (long remaining = bits[word]; remaining != 0; remaining &= remaining - 1) {
+                        action.accept(high | word << 6 | Long.numberOfTrailingZeros(remaining));
+                    }
+                }
+            } else {
+                char[] values = (char[]) container;
+                for (int slot = 0, end = containerSizes[index]; slot < end; slot++) {
+                    action.accept(high | values[slot]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return iterator over the values in unsigned order, the bitmap must not be changed while it is used
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new ValueIterator();
+    }
+
+    /**
+     * @return the values in unsigned order
+     */
+    public int[] toArray() {
+        int[] values = new int[size];
+        int[] next = new int[1];
+        forEach(value -> values[next[0]++] = value);
+        return values;
+    }
+
+    /**
+     * @return copy of the bitmap, changing either of them does not change the other
+     */
+    public IntBitmap copy() {
+        IntBitmap copy = new IntBitmap();
+        copy.keys = keys.clone();
+        copy.containers = new Object[containers.length];
+        for (int index = 0; index < containerCount; index++) {
+            Object container = containers[index];
+            copy.containers[index] = container instanceof long[] ? ((long[]) container).clone() : ((char[]) container).clone();
+        }
+        copy.containerSizes = containerSizes.clone();
+        copy.containerCount = containerCount;
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * @return unmodifiable view of the bitmap as a set, the values are boxed when they are iterated. It follows
+     * the changes of the bitmap, so it is usually taken from a copy.
+     */
+    public Set<Integer> asSet() {
+        return new AbstractSet<>() {
+            @Override
+            public boolean contains(Object value) {
+                return value instanceof Integer && IntBitmap.this.contains((Integer) value);
+            }
+
+            @Override
+            public Iterator<Integer> iterator() {
+                return IntBitmap.this.iterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * @return estimated heap used by the bitmap
+     */
+    public long estimatedBytes() {
+        long bytes = MemoryFootprint.align(MemoryFootprint.ARRAY_HEADER + 2L * keys.length)
+                + MemoryFootprint.align(MemoryFootprint.ARRAY_HEADER + (long) MemoryFootprint.REFERENCE * containers.length)
+                + MemoryFootprint.align(MemoryFootprint.ARRAY_HEADER + 4L * containerSizes.length);
+        for (int index = 0; index < containerCount; index++) {
+            Object container = containers[index];
+            bytes += MemoryFootprint.align(MemoryFootprint.ARRAY_HEADER + (container instanceof long[]
+                    ? 8L * BITSET_WORDS : 2L * ((char[]) container).length));
+        }
+        return bytes;
+    }
+
+    private int containerIndex(int value) {
+        return Arrays.binarySearch(keys, 0, containerCount, (char) (value >>> 16));
+    }
+
+    private int insertContainer(int index, char key) {
+        if (containerCount == keys.length) {
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+            containerSizes = Arrays.copyOf(containerSizes, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, containerCount - index);
+        System.arraycopy(containers, index, containers, index + 1, containerCount - index);
+        System.arraycopy(containerSizes, index, containerSizes, index + 1, containerCount - index);
+        keys[index] = key;
+        containers[index] = new char[4];
+        containerSizes[index] = 0;
+        containerCount++;
+        return index;
+    }
+
+    private void removeContainer(int index) {
+        containerCount--;
+        System.arraycopy(keys, index + 1, keys, index, containerCount - index);
+        System.arraycopy(containers, index + 1, containers, index, containerCount - index);
+        System.arraycopy(containerSizes, index + 1, containerSizes, index, containerCount - index);
+        containers[containerCount] = null;
+    }
+
+    private static long[] toBitset(char[] values, int count) {
+        long[] bits = new long[BITSET_WORDS];
+        for (int slot = 0; slot < count; slot++) {
+            bits[values[slot] >>> 6] |= 1L << values[slot];
+        }
+        return bits;
+    }
+
+    private static char[] toArray(long[] bits, int count) {
+        char[] values = new char[count];
+        int slot = 0;
+        for (int word = 0; word < BITSET_WORDS; word++) {
+            for (long remaining = bits[word]; remaining != 0; remaining &= remaining - 1) {
+                values[slot++] = (char) (word << 6 | Long.numberOfTrailingZeros(remaining));
+            }
+        }
+        return values;
+    }
+
+    private class ValueIterator implements PrimitiveIterator.OfInt {
+
+        private int index;
+        //slot in an array container, bit in a bitset
+        private int slot = -1;
+        private int next;
+        private boolean hasNext;
+
+        private ValueIterator() {
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext) {
+                throw new NoSuchElementException();
+            }
+            int value = next;
+            advance();
+            return value;
+        }
+
+        private void advance() {
+            for (; index < containerCount; index++, slot = -1) {
+                Object container = containers[index];
+                if (container instanceof long[]) {
+                    long[] bits = (long[]) container;
+                    int bit = slot + 1;
+                    int word = bit >>> 6;
+                    if (word < BITSET_WORDS) {
+                        long remaining = bits[word] & (-1L << bit);
+                        while (remaining == 0 && ++word < BITSET_WORDS) {
+                            remaining = bits[word];
+                        }
+                        if (remaining != 0) {
+                            slot = word << 6 | Long.numberOfTrailingZeros(remaining);
+                            next = keys[index] << 16 | slot;
+                            hasNext = true;
+                            return;
+                        }
+                    }
+                } else if (slot + 1 < containerSizes[index]) {
+                    slot++;
+                    next = keys[index] << 16 | ((char[]) container)[slot];
+                    hasNext = true;
+                    return;
+                }
+            }
+            hasNext = false;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.smallworld.store;
+
+import com.smallworld.util.MemoryFootprint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Growable column of ints of a TransactionStore, see ColumnStorage. Values not set yet are 0.
+ */
+abstract class IntColumn {
+
+    private static final int BLOCK_SIZE = 8192;
+
+    /**
+     * @param storage where the values are held
+     * @return empty column
+     */
+    static IntColumn create(ColumnStorage storage) {
+        return storage == ColumnStorage.OFF_HEAP ? new OffHeap() : new Heap();
+    }
+
+    abstract int get(int index);
+
+    abstract void set(int index, int value);
+
+    /**
+     * @return number of values the column holds without growing
+     */
+    abstract int capacity();
+
+    /**
+     * Grows the column, keeping its values, if it does not hold the given number of values.
+     * @param capacity number of values the column must hold
+     */
+    abstract void ensureCapacity(int capacity);
+
+    /**
+     * @return copy of the column in the same storage
+     */
+    abstract IntColumn copy();
+
+    /**
+     * @return estimated heap used by the column
+     */
+    abstract long heapBytes();
+
+    /**
+     * @return memory used by the column outside of the heap
+     */
+    abstract long offHeapBytes();
+
+    /**
+     * Writes the first count values.
+     */
+    void write(SnapshotOutput output, int count) throws IOException {
+        int[] block = new int[Math.min(count, BLOCK_SIZE)];
+        for (int start = 0; start < count; start += block.length) {
+            int length = Math.min(block.length, count - start);
+            for (int i = 0; i < length; i++) {
+                block[i] = get(start + i);
+            }
+            output.writeInts(block, length);
+        }
+    }
+
+    /**
+     * Reads count values into the start of the column, growing it if needed.
+     */
+    void read(SnapshotInput input, int count) throws IOException {
+        ensureCapacity(count);
+        int[] block = new int[Math.min(count, BLOCK_SIZE)];
+        for (int start = 0; start < count; start += block.length) {
+            int length = Math.min(block.length, count - start);
+            input.readInts(block, length);
+            for (int i = 0; i < length; i++) {
+                set(start + i, block[i]);
+            }
+        }
+    }
+
+    private static class Heap extends IntColumn {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        private int[] values = new int[INITIAL_CAPACITY];
+
+        @Override
+        int get(int index) {
+            return values[index];
+        }
+
+        @Override
+        void set(int index, int value) {
+            values[index] = value;
+        }
+
+        @Override
+        int capacity() {
+            return values.length;
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, Math.max(capacity, values.length * 2));
+            }
+        }
+
+        @Override
+        IntColumn copy() {
+            Heap copy = new Heap();
+            copy.values = values.clone();
+            return copy;
+        }
+
+        @Override
+        long heapBytes() {
+            return MemoryFootprint.align(MemoryFootprint.ARRAY_HEADER + 4L * values.length);
+        }
+
+        @Override
+        long offHeapBytes() {
+            return 0;
+        }
+
+        @Override
+        void write(SnapshotOutput output, int count) throws IOException {
+            output.writeInts(values, count);
+        }
+
+        @Override
+        void read(SnapshotInput input, int count) throws IOException {
+            ensureCapacity(count);
+            input.readInts(values, count);
+        }
+    }
+
+    private static class OffHeap extends IntColumn {
+
+        private ByteBuffer[] chunks = new ByteBuffer[0];
+
+        @Override
+        int get(int index) {
+            return chunks[index >>> ColumnStorage.CHUNK_SHIFT].getInt((index & ColumnStorage.CHUNK_MASK) << 2);
+        }
+
+        @Override
+        void set(int index, int value) {
+            chunks[index >>> ColumnStorage.CHUNK_SHIFT].putInt((index & ColumnStorage.CHUNK_MASK) << 2, value);
+        }
+
+        @Override
+        int capacity() {
+            return ColumnStorage.capacity(chunks.length);
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            int count = ColumnStorage.chunks(capacity);
+            if (count > chunks.length) {
+                //only the chunk references are copied, the values stay where they are
+                int from = chunks.length;
+                chunks = Arrays.copyOf(chunks, count);
+                for (int chunk = from; chunk < count; chunk++) {
+                    chunks[chunk] = ColumnStorage.allocateChunk(Integer.BYTES);
+                }
+            }
+        }
+
+        @Override
+        IntColumn copy() {
+            OffHeap copy = new OffHeap();
+            copy.chunks = new ByteBuffer[chunks.length];
+            for (int chunk = 0; chunk < chunks.length; chunk++) {
+                copy.chunks[chunk] = ColumnStorage.copyChunk(chunks[chunk]);
+            }
+            return copy;
+        }
+
+        @Override
+        long heapBytes() {
+            return ColumnStorage.chunkHeapBytes(chunks.length);
+        }
+
+        @Override
+        long offHeapBytes() {
+            return (long) chunks.length * ColumnStorage.CHUNK_SIZE * Integer.BYTES;
+        }
+    }
+}
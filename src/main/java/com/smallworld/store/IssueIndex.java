@@ -0,0 +1,186 @@
+package com.smallworld.store;
+
+/**
+ * Index of the issues of a TransactionStore by issue id, kept up to date as issues are added and solved. An open
+ * addressing hash table goes from an int issue id to the first issue with that id and the number of its issues which
+ * are open, its slots are held in the same storage as the columns. Two compressed bitmaps hold the ids having an open
+ * issue and the indexes of the solved issues, so neither has to be found by a scan.
+ * <p>
+ * Ids which are not ints (null included) are not indexed, see TransactionStore.
+ */
+class IssueIndex {
+
+    /**
+     * Id passed for an issue whose id is not an int.
+     */
+    static final long NOT_INDEXED = Long.MIN_VALUE;
+
+    private final ColumnStorage storage;
+    //issue id, first issue + 1 (0 for an empty slot) and open issue count of every slot
+    private IntColumn slotIds;
+    private IntColumn slotIssues;
+    private IntColumn slotOpenCounts;
+    private int mask;
+    private int size;
+    private IntBitmap openIssueIds = new IntBitmap();
+    private IntBitmap solvedIssues = new IntBitmap();
+
+    /**
+     * @param storage where the slots are held
+     * @param expectedSize number of ids that fit without resizing
+     */
+    IssueIndex(ColumnStorage storage, int expectedSize) {
+        this.storage = storage;
+        allocate(Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1);
+    }
+
+    IssueIndex copy() {
+        IssueIndex copy = new IssueIndex(storage, 0);
+        copy.slotIds = slotIds.copy();
+        copy.slotIssues = slotIssues.copy();
+        copy.slotOpenCounts = slotOpenCounts.copy();
+        copy.mask = mask;
+        copy.size = size;
+        copy.openIssueIds = openIssueIds.copy();
+        copy.solvedIssues = solvedIssues.copy();
+        return copy;
+    }
+
+    /**
+     * @param issue index of the new issue
+     * @param issueId its id or NOT_INDEXED
+     * @param solved true if the issue is solved
+     */
+    void issueAdded(int issue, long issueId, boolean solved) {
+        if (solved) {
+            solvedIssues.add(issue);
+        }
+        if (issueId == NOT_INDEXED) {
+            return;
+        }
+        int slot = slotOf((int) issueId);
+        if (slotIssues.get(slot) == 0) {
+            //keeping the load factor at or below one half
+            if ((size + 1) * 2L > mask + 1L) {
+                resize();
+                slot = slotOf((int) issueId);
+            }
+            slotIds.set(slot, (int) issueId);
+            slotIssues.set(slot, issue + 1);
+            size++;
+        }
+        if (!solved) {
+            slotOpenCounts.set(slot, slotOpenCounts.get(slot) + 1);
+            openIssueIds.add((int) issueId);
+        }
+    }
+
+    /**
+     * @param issue index of an open issue which is solved
+     * @param issueId its id or NOT_INDEXED
+     */
+    void issueSolved(int issue, long issueId) {
+        solvedIssues.add(issue);
+        if (issueId != NOT_INDEXED) {
+            int slot = slotOf((int) issueId);
+            int openCount = slotOpenCounts.get(slot) - 1;
+            slotOpenCounts.set(slot, openCount);
+            if (openCount == 0) {
+                openIssueIds.remove((int) issueId);
+            }
+        }
+    }
+
+    /**
+     * @param issue index of a solved issue which is open again
+     * @param issueId its id or NOT_INDEXED
+     */
+    void issueOpened(int issue, long issueId) {
+        solvedIssues.remove(issue);
+        if (issueId != NOT_INDEXED) {
+            int slot = slotOf((int) issueId);
+            slotOpenCounts.set(slot, slotOpenCounts.get(slot) + 1);
+            openIssueIds.add((int) issueId);
+        }
+    }
+
+    /**
+     * @param issueId issue id
+     * @return index of the first issue added with this id or TransactionStore.NO_ISSUE
+     */
+    int firstIssue(int issueId) {
+        return slotIssues.get(slotOf(issueId)) - 1;
+    }
+
+    /**
+     * @return ids having at least one open issue
+     */
+    IntBitmap openIssueIds() {
+        return openIssueIds;
+    }
+
+    /**
+     * @return indexes of the solved issues
+     */
+    IntBitmap solvedIssues() {
+        return solvedIssues;
+    }
+
+    /**
+     * @return estimated heap used by the index
+     */
+    long heapBytes() {
+        return slotIds.heapBytes() + slotIssues.heapBytes() + slotOpenCounts.heapBytes()
+                + openIssueIds.estimatedBytes() + solvedIssues.estimatedBytes();
+    }
+
+    /**
+     * @return memory used by the index outside of the heap
+     */
+    long offHeapBytes() {
+        return slotIds.offHeapBytes() + slotIssues.offHeapBytes() + slotOpenCounts.offHeapBytes();
+    }
+
+    /**
+     * @return the slot of the id, or the empty slot where it would be added
+     */
+    private int slotOf(int issueId) {
+        int slot = hash(issueId) & mask;
+        while (slotIssues.get(slot) != 0 && slotIds.get(slot) != issueId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void allocate(int slotCount) {
+        slotIds = IntColumn.create(storage);
+        slotIds.ensureCapacity(slotCount);
+        slotIssues = IntColumn.create(storage);
+        slotIssues.ensureCapacity(slotCount);
+        slotOpenCounts = IntColumn.create(storage);
+        slotOpenCounts.ensureCapacity(slotCount);
+        mask = slotCount - 1;
+    }
+
+    private void resize() {
+        IntColumn oldIds = slotIds;
+        IntColumn oldIssues = slotIssues;
+        IntColumn oldOpenCounts = slotOpenCounts;
+        int oldSlotCount = mask + 1;
+        allocate(oldSlotCount * 2);
+        for (int oldSlot = 0; oldSlot < oldSlotCount; oldSlot++) {
+            if (oldIssues.get(oldSlot) != 0) {
+                int slot = slotOf(oldIds.get(oldSlot));
+                slotIds.set(slot, oldIds.get(oldSlot));
+                slotIssues.set(slot, oldIssues.get(oldSlot));
+                slotOpenCounts.set(slot, oldOpenCounts.get(oldSlot));
+            }
+        }
+    }
+
+    private static int hash(int issueId) {
+        //mixing the bits as issue ids are often sequential
+        int h = issueId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,192 @@
+package com.smallworld.store;
+
+import com.smallworld.util.MemoryFootprint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Growable column of longs of a TransactionStore, see ColumnStorage. Values not set yet are 0.
+ */
+abstract class LongColumn {
+
+    private static final int BLOCK_SIZE = 8192;
+
+    /**
+     * @param storage where the values are held
+     * @return empty column
+     */
+    static LongColumn create(ColumnStorage storage) {
+        return storage == ColumnStorage.OFF_HEAP ? new OffHeap() : new Heap();
+    }
+
+    abstract long get(int index);
+
+    abstract void set(int index, long value);
+
+    /**
+     * @return number of values the column holds without growing
+     */
+    abstract int capacity();
+
+    /**
+     * Grows the column, keeping its values, if it does not hold the given number of values.
+     * @param capacity number of values the column must hold
+     */
+    abstract void ensureCapacity(int capacity);
+
+    /**
+     * @return copy of the column in the same storage
+     */
+    abstract LongColumn copy();
+
+    /**
+     * @return estimated heap used by the column
+     */
+    abstract long heapBytes();
+
+    /**
+     * @return memory used by the column outside of the heap
+     */
+    abstract long offHeapBytes();
+
+    /**
+     * Writes the first count values.
+     */
+    void write(SnapshotOutput output, int count) throws IOException {
+        long[] block = new long[Math.min(count, BLOCK_SIZE)];
+        for (int start = 0; start < count; start += block.length) {
+            int length = Math.min(block.length, count - start);
+            for (int i = 0; i < length; i++) {
+                block[i] = get(start + i);
+            }
+            output.writeLongs(block, length);
+        }
+    }
+
+    /**
+     * Reads count values into the start of the column, growing it if needed.
+     */
+    void read(SnapshotInput input, int count) throws IOException {
+        ensureCapacity(count);
+        long[] block = new long[Math.min(count, BLOCK_SIZE)];
+        for (int start = 0; start < count; start += block.length) {
+            int length = Math.min(block.length, count - start);
+            input.readLongs(block, length);
+            for (int i = 0; i < length; i++) {
+                set(start + i, block[i]);
+            }
+        }
+    }
+
+    private static class Heap extends LongColumn {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        private long[] values = new long[INITIAL_CAPACITY];
+
+        @Override
+        long get(int index) {
+            return values[index];
+        }
+
+        @Override
+        void set(int index, long value) {
+            values[index] = value;
+        }
+
+        @Override
+        int capacity() {
+            return values.length;
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, Math.max(capacity, values.length * 2));
+            }
+        }
+
+        @Override
+        LongColumn copy() {
+            Heap copy = new Heap();
+            copy.values = values.clone();
+            return copy;
+        }
+
+        @Override
+        long heapBytes() {
+            return MemoryFootprint.align(MemoryFootprint.ARRAY_HEADER + 8L * values.length);
+        }
+
+        @Override
+        long offHeapBytes() {
+            return 0;
+        }
+
+        @Override
+        void write(SnapshotOutput output, int count) throws IOException {
+            output.writeLongs(values, count);
+        }
+
+        @Override
+        void read(SnapshotInput input, int count) throws IOException {
+            ensureCapacity(count);
+            input.readLongs(values, count);
+        }
+    }
+
+    private static class OffHeap extends LongColumn {
+
+        private ByteBuffer[] chunks = new ByteBuffer[0];
+
+        @Override
+        long get(int index) {
+            return chunks[index >>> ColumnStorage.CHUNK_SHIFT].getLong((index & ColumnStorage.CHUNK_MASK) << 3);
+        }
+
+        @Override
+        void set(int index, long value) {
+            chunks[index >>> ColumnStorage.CHUNK_SHIFT].putLong((index & ColumnStorage.CHUNK_MASK) << 3, value);
+        }
+
+        @Override
+        int capacity() {
+            return ColumnStorage.capacity(chunks.length);
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            int count = ColumnStorage.chunks(capacity);
+            if (count > chunks.length) {
+                //only the chunk references are copied, the values stay where they are
+                int from = chunks.length;
+                chunks = Arrays.copyOf(chunks, count);
+                for (int chunk = from; chunk < count; chunk++) {
+                    chunks[chunk] = ColumnStorage.allocateChunk(Long.BYTES);
+                }
+            }
+        }
+
+        @Override
+        LongColumn copy() {
+            OffHeap copy = new OffHeap();
+            copy.chunks = new ByteBuffer[chunks.length];
+            for (int chunk = 0; chunk < chunks.length; chunk++) {
+                copy.chunks[chunk] = ColumnStorage.copyChunk(chunks[chunk]);
+            }
+            return copy;
+        }
+
+        @Override
+        long heapBytes() {
+            return ColumnStorage.chunkHeapBytes(chunks.length);
+        }
+
+        @Override
+        long offHeapBytes() {
+            return (long) chunks.length * ColumnStorage.CHUNK_SIZE * Long.BYTES;
+        }
+    }
+}
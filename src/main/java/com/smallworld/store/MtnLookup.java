@@ -0,0 +1,126 @@
+package com.smallworld.store;
+
+/**
+ * Open addressing hash table from mtn to the position of its transaction. The slots only hold positions, the
+ * keys are read from the mtn column of the store, and the slots are kept in the same storage as the columns.
+ */
+class MtnLookup {
+
+    /**
+     * Position returned for a missing mtn.
+     */
+    static final int MISSING = -1;
+
+    private final ColumnStorage storage;
+    private final LongColumn mtns;
+    //position + 1 of the transaction of every slot, 0 for an empty slot
+    private IntColumn slots;
+    private int mask;
+    private int size;
+
+    /**
+     * @param storage where the slots are held
+     * @param mtns mtn column of the store, read to compare the keys
+     * @param expectedSize number of mtns that fit without resizing
+     */
+    MtnLookup(ColumnStorage storage, LongColumn mtns, int expectedSize) {
+        this.storage = storage;
+        this.mtns = mtns;
+        allocate(Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1);
+    }
+
+    /**
+     * @param mtns mtn column of the copy of the store
+     * @return copy of the lookup reading the keys from the given column
+     */
+    MtnLookup copy(LongColumn mtns) {
+        MtnLookup copy = new MtnLookup(storage, mtns, 0);
+        copy.slots = slots.copy();
+        copy.mask = mask;
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * @param mtn mtn to look up
+     * @return position of its transaction or MISSING
+     */
+    int get(long mtn) {
+        for (int slot = hash(mtn) & mask; ; slot = (slot + 1) & mask) {
+            int position = slots.get(slot) - 1;
+            if (position == MISSING || mtns.get(position) == mtn) {
+                return position;
+            }
+        }
+    }
+
+    /**
+     * Sets the position of the mtn if it is not present yet. The mtn column is not read at the new position, so
+     * the transaction can be written to the columns afterwards.
+     * @param mtn mtn to add
+     * @param position position of its transaction
+     * @return the existing position or MISSING if the position was set
+     */
+    int putIfAbsent(long mtn, int position) {
+        //keeping the load factor at or below one half, before the new position is in the table
+        if ((size + 1) * 2L > mask + 1L) {
+            resize();
+        }
+        int slot = hash(mtn) & mask;
+        for (int existing = slots.get(slot) - 1; existing != MISSING; existing = slots.get(slot) - 1) {
+            if (mtns.get(existing) == mtn) {
+                return existing;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slots.set(slot, position + 1);
+        size++;
+        return MISSING;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return estimated heap used by the lookup
+     */
+    long heapBytes() {
+        return slots.heapBytes();
+    }
+
+    /**
+     * @return memory used by the lookup outside of the heap
+     */
+    long offHeapBytes() {
+        return slots.offHeapBytes();
+    }
+
+    private void allocate(int slotCount) {
+        slots = IntColumn.create(storage);
+        slots.ensureCapacity(slotCount);
+        mask = slotCount - 1;
+    }
+
+    private void resize() {
+        IntColumn oldSlots = slots;
+        int oldSlotCount = mask + 1;
+        allocate(oldSlotCount * 2);
+        for (int oldSlot = 0; oldSlot < oldSlotCount; oldSlot++) {
+            int value = oldSlots.get(oldSlot);
+            if (value != 0) {
+                int slot = hash(mtns.get(value - 1)) & mask;
+                while (slots.get(slot) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots.set(slot, value);
+            }
+        }
+    }
+
+    private static int hash(long mtn) {
+        //mixing the bits as mtn values are often sequential
+        long h = mtn * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,222 @@
+package com.smallworld.store;
+
+import com.smallworld.util.MemoryFootprint;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Gives every distinct string (client name, issue message) a dense int id, ids start at 0 in the order the
+ * strings were first added. Every id maps back to a single canonical String instance, so a repeated value is
+ * stored once whatever the number of rows it appears in.
+ * <p>
+ * The lookup is an open addressing table of ids keyed by String.hashCode, which can also be probed with a
+ * range of chars (a parser buffer) so a value which is already known is resolved without creating a String.
+ */
+public class NameDictionary {
+
+    /**
+     * Id returned by idOf for an unknown name.
+     */
+    public static final int MISSING = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    //slots hold id + 1, 0 is an empty slot
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int[] occurrences = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Returns the id of the name, adding it if it is new, and counts one more occurrence of it.
+     * @param name name to encode
+     * @return id of the name
+     */
+    public int add(String name) {
+        int id = intern(name);
+        occurrences[id]++;
+        return id;
+    }
+
+    /**
+     * Returns the id of the name, adding it if it is new, without counting an occurrence.
+     * @param name name to encode
+     * @return id of the name
+     */
+    public int intern(String name) {
+        int hash = name.hashCode();
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        for (; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == hash && names[id].equals(name)) {
+                return id;
+            }
+        }
+        return insert(slot, name, hash);
+    }
+
+    /**
+     * Returns the id of the chars as a string, adding it if it is new, without counting an occurrence.
+     * A String is only created the first time a value is seen.
+     * @param chars buffer holding the value
+     * @param offset index of the first char of the value
+     * @param length number of chars of the value
+     * @return id of the value
+     */
+    public int intern(char[] chars, int offset, int length) {
+        //same hash as String.hashCode
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        for (; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == hash && contentEquals(names[id], chars, offset, length)) {
+                return id;
+            }
+        }
+        return insert(slot, new String(chars, offset, length), hash);
+    }
+
+    private int insert(int slot, String name, int hash) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+            occurrences = Arrays.copyOf(occurrences, size * 2);
+        }
+        int id = size++;
+        names[id] = name;
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+        //keeping the load factor at or below 0.5
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    private static boolean contentEquals(String name, char[] chars, int offset, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return a copy of the dictionary with the same ids and the same String instances, names added to either
+     * one are not seen by the other
+     */
+    public NameDictionary copy() {
+        NameDictionary copy = new NameDictionary();
+        copy.slots = slots.clone();
+        copy.names = names.clone();
+        copy.hashes = hashes.clone();
+        copy.occurrences = occurrences.clone();
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * @param name name to look up
+     * @return id of the name or MISSING if the name was never added
+     */
+    public int idOf(String name) {
+        if (name == null) {
+            return MISSING;
+        }
+        int hash = name.hashCode();
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == hash && names[id].equals(name)) {
+                return id;
+            }
+        }
+        return MISSING;
+    }
+
+    /**
+     * @param id id of a name
+     * @return the canonical instance of the name of the id
+     */
+    public String name(int id) {
+        return names[Objects.checkIndex(id, size)];
+    }
+
+    /**
+     * @param id id of a name
+     * @return number of occurrences counted by add
+     */
+    int occurrences(int id) {
+        return occurrences[Objects.checkIndex(id, size)];
+    }
+
+    /**
+     * Counts more occurrences of a name, e.g. when restoring a dictionary.
+     * @param id id of a name
+     * @param count number of occurrences to add
+     */
+    void addOccurrences(int id, int count) {
+        occurrences[Objects.checkIndex(id, size)] += count;
+    }
+
+    /**
+     * @return number of distinct names, which is also the first unused id
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return estimated heap used by the table and the distinct strings
+     */
+    public long estimatedBytes() {
+        long bytes = tableBytes();
+        for (int id = 0; id < size; id++) {
+            bytes += MemoryFootprint.ofString(names[id]);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return estimated heap saved compared to one String per added occurrence, net of the table itself
+     */
+    public long estimatedBytesSaved() {
+        long bytes = -tableBytes();
+        for (int id = 0; id < size; id++) {
+            bytes += (occurrences[id] - 1L) * MemoryFootprint.ofString(names[id]);
+        }
+        return bytes;
+    }
+
+    private long tableBytes() {
+        return intArray(slots.length) + MemoryFootprint.ofReferenceArray(names.length) + intArray(hashes.length)
+                + intArray(occurrences.length);
+    }
+
+    private static long intArray(int length) {
+        return MemoryFootprint.align(MemoryFootprint.ARRAY_HEADER + 4L * length);
+    }
+}
@@ -0,0 +1,160 @@
+package com.smallworld.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Reads a snapshot file written by SnapshotOutput. The file is memory mapped, in windows of at most 1 GiB so
+ * snapshots of any size can be read, and arrays are bulk copied out of the mapping. The header and the checksum
+ * of the whole file are verified when it is opened, before any value is read.
+ */
+class SnapshotInput implements Closeable {
+
+    private static final int WINDOW_SIZE = 1 << 30;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int TRAILER_SIZE = Integer.BYTES;
+
+    private final File file;
+    private final FileChannel channel;
+    private final long contentEnd;
+    private ByteBuffer window;
+    private long windowStart;
+    private byte[] stringBytes = new byte[64];
+
+    /**
+     * @param file snapshot file
+     * @throws IOException if the file can not be read, is not a snapshot, has another format version or does
+     * not match its checksum
+     */
+    SnapshotInput(File file) throws IOException {
+        this.file = file;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE) {
+                throw new IOException("Not a transaction snapshot: " + file);
+            }
+            contentEnd = size - TRAILER_SIZE;
+            verifyChecksum();
+            map(0);
+            if (readInt() != SnapshotOutput.MAGIC) {
+                throw new IOException("Not a transaction snapshot: " + file);
+            }
+            int version = readInt();
+            if (version != SnapshotOutput.VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + " in " + file);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void verifyChecksum() throws IOException {
+        CRC32 checksum = new CRC32();
+        for (long start = 0; start < contentEnd; start += WINDOW_SIZE) {
+            checksum.update(channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, contentEnd - start)));
+        }
+        ByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY, contentEnd, TRAILER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (trailer.getInt() != (int) checksum.getValue()) {
+            throw new IOException("Snapshot checksum mismatch, the file is corrupted: " + file);
+        }
+    }
+
+    private void map(long start) throws IOException {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, contentEnd - start));
+        window = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        windowStart = start;
+    }
+
+    /**
+     * Moves the window so that at least the given number of bytes can be read from it.
+     */
+    private void ensure(int bytes) throws IOException {
+        if (window.remaining() < bytes) {
+            long position = windowStart + window.position();
+            if (contentEnd - position < bytes) {
+                throw new IOException("Truncated snapshot: " + file);
+            }
+            map(position);
+        }
+    }
+
+    int readInt() throws IOException {
+        ensure(Integer.BYTES);
+        return window.getInt();
+    }
+
+    long readLong() throws IOException {
+        ensure(Long.BYTES);
+        return window.getLong();
+    }
+
+    /**
+     * Reads count values into the start of the array.
+     */
+    void readInts(int[] values, int count) throws IOException {
+        for (int offset = 0; offset < count; ) {
+            ensure(Integer.BYTES);
+            int read = Math.min(window.remaining() / Integer.BYTES, count - offset);
+            window.asIntBuffer().get(values, offset, read);
+            window.position(window.position() + read * Integer.BYTES);
+            offset += read;
+        }
+    }
+
+    /**
+     * Reads count values into the start of the array.
+     */
+    void readLongs(long[] values, int count) throws IOException {
+        for (int offset = 0; offset < count; ) {
+            ensure(Long.BYTES);
+            int read = Math.min(window.remaining() / Long.BYTES, count - offset);
+            window.asLongBuffer().get(values, offset, read);
+            window.position(window.position() + read * Long.BYTES);
+            offset += read;
+        }
+    }
+
+    /**
+     * @return string written by writeString, may be null
+     */
+    String readString() throws IOException {
+        int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > stringBytes.length) {
+            stringBytes = new byte[Math.max(length, stringBytes.length * 2)];
+        }
+        for (int offset = 0; offset < length; ) {
+            ensure(1);
+            int read = Math.min(window.remaining(), length - offset);
+            window.get(stringBytes, offset, read);
+            offset += read;
+        }
+        return new String(stringBytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @throws IOException if the content has not been read up to the trailer
+     */
+    void checkFullyRead() throws IOException {
+        if (windowStart + window.position() != contentEnd) {
+            throw new IOException("Unexpected data at the end of snapshot: " + file);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,150 @@
+package com.smallworld.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Writes a binary snapshot file: a header (magic number and format version), the values written by the caller
+ * in little endian order and a trailer holding the CRC32 of everything before it. The content goes to a
+ * temporary file next to the target which only replaces the target on commit, so an interrupted write never
+ * leaves a partial snapshot behind.
+ */
+class SnapshotOutput implements Closeable {
+
+    /**
+     * "SWTS" in ASCII
+     */
+    static final int MAGIC = 0x53575453;
+
+    static final int VERSION = 2;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Path target;
+    private final Path partial;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32 checksum = new CRC32();
+    private boolean committed;
+
+    /**
+     * @param file snapshot file to write, replaced on commit if it exists
+     * @throws IOException if the temporary file can not be created
+     */
+    SnapshotOutput(File file) throws IOException {
+        target = file.toPath();
+        partial = target.resolveSibling(target.getFileName() + ".partial");
+        channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        writeInt(MAGIC);
+        writeInt(VERSION);
+    }
+
+    void writeInt(int value) throws IOException {
+        ensure(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    void writeLong(long value) throws IOException {
+        ensure(Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    /**
+     * Writes the first length values of the array, without their count.
+     */
+    void writeInts(int[] values, int length) throws IOException {
+        for (int offset = 0; offset < length; ) {
+            ensure(Integer.BYTES);
+            int count = Math.min(buffer.remaining() / Integer.BYTES, length - offset);
+            buffer.asIntBuffer().put(values, offset, count);
+            buffer.position(buffer.position() + count * Integer.BYTES);
+            offset += count;
+        }
+    }
+
+    /**
+     * Writes the first length values of the array, without their count.
+     */
+    void writeLongs(long[] values, int length) throws IOException {
+        for (int offset = 0; offset < length; ) {
+            ensure(Long.BYTES);
+            int count = Math.min(buffer.remaining() / Long.BYTES, length - offset);
+            buffer.asLongBuffer().put(values, offset, count);
+            buffer.position(buffer.position() + count * Long.BYTES);
+            offset += count;
+        }
+    }
+
+    /**
+     * Writes the UTF-8 length and bytes of the string, -1 for null.
+     */
+    void writeString(String value) throws IOException {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        for (int offset = 0; offset < bytes.length; ) {
+            ensure(1);
+            int count = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, count);
+            offset += count;
+        }
+    }
+
+    /**
+     * Writes the checksum trailer and moves the snapshot to its target.
+     * @throws IOException if the file can not be written or moved
+     */
+    void commit() throws IOException {
+        flush();
+        buffer.putInt((int) checksum.getValue());
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        channel.force(false);
+        channel.close();
+        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        committed = true;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        checksum.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Closes the file, the temporary file is deleted if the snapshot was not committed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            channel.close();
+            Files.deleteIfExists(partial);
+        }
+    }
+}
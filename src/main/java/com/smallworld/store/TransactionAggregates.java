@@ -0,0 +1,291 @@
+package com.smallworld.store;
+
+import com.smallworld.util.MemoryFootprint;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Aggregates of a TransactionStore which are kept up to date as rows are added, so the queries they answer
+ * never rescan the transactions: the total and maximum amount, the amount sent and received by every client,
+ * the number of clients appearing exactly once, the number of open issues of every client and the list of
+ * open issues. All amounts are in minor units and client ids are the ids of the store's client names.
+ * <p>
+ * A sum which overflows a long is not wrapped around, reading it throws an ArithmeticException instead.
+ */
+public class TransactionAggregates {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NOT_OPEN = -1;
+
+    private long totalAmount;
+    private boolean totalAmountOverflowed;
+    private long maxAmount;
+    private int uniqueClientCount;
+
+    //per client id
+    private long[] sentAmounts = new long[INITIAL_CAPACITY];
+    private long[] receivedAmounts = new long[INITIAL_CAPACITY];
+    private int[] sentCounts = new int[INITIAL_CAPACITY];
+    private int[] receivedCounts = new int[INITIAL_CAPACITY];
+    private int[] openIssueCounts = new int[INITIAL_CAPACITY];
+    private long[] overflowedClientBits = new long[1];
+
+    //indexes of the open issues in no particular order, and the slot of every issue in that list
+    private int[] openIssues = new int[INITIAL_CAPACITY];
+    private int openIssueCount;
+    private int[] openIssueSlots = new int[INITIAL_CAPACITY];
+
+    TransactionAggregates() {
+    }
+
+    TransactionAggregates copy() {
+        TransactionAggregates copy = new TransactionAggregates();
+        copy.totalAmount = totalAmount;
+        copy.totalAmountOverflowed = totalAmountOverflowed;
+        copy.maxAmount = maxAmount;
+        copy.uniqueClientCount = uniqueClientCount;
+        copy.sentAmounts = sentAmounts.clone();
+        copy.receivedAmounts = receivedAmounts.clone();
+        copy.sentCounts = sentCounts.clone();
+        copy.receivedCounts = receivedCounts.clone();
+        copy.openIssueCounts = openIssueCounts.clone();
+        copy.overflowedClientBits = overflowedClientBits.clone();
+        copy.openIssues = openIssues.clone();
+        copy.openIssueCount = openIssueCount;
+        copy.openIssueSlots = openIssueSlots.clone();
+        return copy;
+    }
+
+    void transactionAdded(int senderId, int beneficiaryId, long amount) {
+        try {
+            totalAmount = Math.addExact(totalAmount, amount);
+        } catch (ArithmeticException e) {
+            totalAmountOverflowed = true;
+        }
+        maxAmount = Math.max(maxAmount, amount);
+
+        ensureClientCapacity(Math.max(senderId, beneficiaryId) + 1);
+        countOccurrence(senderId);
+        sentCounts[senderId]++;
+        sentAmounts[senderId] = addToClient(senderId, sentAmounts[senderId], amount);
+        countOccurrence(beneficiaryId);
+        receivedCounts[beneficiaryId]++;
+        receivedAmounts[beneficiaryId] = addToClient(beneficiaryId, receivedAmounts[beneficiaryId], amount);
+    }
+
+    /**
+     * Keeps the count of clients appearing exactly once, the occurrences are not updated yet.
+     */
+    private void countOccurrence(int clientId) {
+        int occurrences = sentCounts[clientId] + receivedCounts[clientId];
+        if (occurrences == 0) {
+            uniqueClientCount++;
+        } else if (occurrences == 1) {
+            uniqueClientCount--;
+        }
+    }
+
+    private long addToClient(int clientId, long sum, long amount) {
+        try {
+            return Math.addExact(sum, amount);
+        } catch (ArithmeticException e) {
+            overflowedClientBits[clientId >>> 6] |= 1L << clientId;
+            return sum;
+        }
+    }
+
+    void issueAdded(int issue) {
+        if (issue >= openIssueSlots.length) {
+            openIssueSlots = Arrays.copyOf(openIssueSlots, Math.max(issue + 1, openIssueSlots.length * 2));
+        }
+        openIssueSlots[issue] = NOT_OPEN;
+    }
+
+    void issueOpened(int issue, int senderId, int beneficiaryId) {
+        if (openIssueCount == openIssues.length) {
+            openIssues = Arrays.copyOf(openIssues, openIssueCount * 2);
+        }
+        openIssueSlots[issue] = openIssueCount;
+        openIssues[openIssueCount++] = issue;
+        openIssueCounts[senderId]++;
+        openIssueCounts[beneficiaryId]++;
+    }
+
+    void issueSolved(int issue, int senderId, int beneficiaryId) {
+        //the last open issue takes the slot of the solved one
+        int slot = openIssueSlots[issue];
+        int last = openIssues[--openIssueCount];
+        openIssues[slot] = last;
+        openIssueSlots[last] = slot;
+        openIssueSlots[issue] = NOT_OPEN;
+        openIssueCounts[senderId]--;
+        openIssueCounts[beneficiaryId]--;
+    }
+
+    void write(SnapshotOutput output) throws IOException {
+        output.writeLong(totalAmount);
+        output.writeInt(totalAmountOverflowed ? 1 : 0);
+        output.writeLong(maxAmount);
+        output.writeInt(uniqueClientCount);
+        output.writeInt(sentAmounts.length);
+        output.writeLongs(sentAmounts, sentAmounts.length);
+        output.writeLongs(receivedAmounts, sentAmounts.length);
+        output.writeInts(sentCounts, sentAmounts.length);
+        output.writeInts(receivedCounts, sentAmounts.length);
+        output.writeInts(openIssueCounts, sentAmounts.length);
+        output.writeLongs(overflowedClientBits, overflowedClientBits.length);
+        output.writeInt(openIssueCount);
+        output.writeInts(openIssues, openIssueCount);
+        output.writeInt(openIssueSlots.length);
+        output.writeInts(openIssueSlots, openIssueSlots.length);
+    }
+
+    static TransactionAggregates read(SnapshotInput input) throws IOException {
+        TransactionAggregates aggregates = new TransactionAggregates();
+        aggregates.totalAmount = input.readLong();
+        aggregates.totalAmountOverflowed = input.readInt() != 0;
+        aggregates.maxAmount = input.readLong();
+        aggregates.uniqueClientCount = input.readInt();
+        int clientCapacity = input.readInt();
+        aggregates.sentAmounts = readLongs(input, clientCapacity);
+        aggregates.receivedAmounts = readLongs(input, clientCapacity);
+        aggregates.sentCounts = readInts(input, clientCapacity, clientCapacity);
+        aggregates.receivedCounts = readInts(input, clientCapacity, clientCapacity);
+        aggregates.openIssueCounts = readInts(input, clientCapacity, clientCapacity);
+        aggregates.overflowedClientBits = readLongs(input, (clientCapacity + 63) >>> 6);
+        aggregates.openIssueCount = input.readInt();
+        aggregates.openIssues = readInts(input, Math.max(aggregates.openIssueCount, INITIAL_CAPACITY), aggregates.openIssueCount);
+        int issueCapacity = input.readInt();
+        aggregates.openIssueSlots = readInts(input, issueCapacity, issueCapacity);
+        return aggregates;
+    }
+
+    private static long[] readLongs(SnapshotInput input, int count) throws IOException {
+        long[] values = new long[count];
+        input.readLongs(values, count);
+        return values;
+    }
+
+    private static int[] readInts(SnapshotInput input, int capacity, int count) throws IOException {
+        int[] values = new int[capacity];
+        input.readInts(values, count);
+        return values;
+    }
+
+    private void ensureClientCapacity(int clients) {
+        if (clients > sentAmounts.length) {
+            int capacity = Math.max(clients, sentAmounts.length * 2);
+            sentAmounts = Arrays.copyOf(sentAmounts, capacity);
+            receivedAmounts = Arrays.copyOf(receivedAmounts, capacity);
+            sentCounts = Arrays.copyOf(sentCounts, capacity);
+            receivedCounts = Arrays.copyOf(receivedCounts, capacity);
+            openIssueCounts = Arrays.copyOf(openIssueCounts, capacity);
+            overflowedClientBits = Arrays.copyOf(overflowedClientBits, (capacity + 63) >>> 6);
+        }
+    }
+
+    /**
+     * @return sum of the amounts of all the transactions
+     * @throws ArithmeticException if the sum overflows a long
+     */
+    public long getTotalAmount() {
+        if (totalAmountOverflowed) {
+            throw new ArithmeticException("long overflow");
+        }
+        return totalAmount;
+    }
+
+    /**
+     * @return highest amount of all the transactions, 0 if there is none or all of them are negative
+     */
+    public long getMaxAmount() {
+        return maxAmount;
+    }
+
+    /**
+     * @return number of clients appearing once among all the senders and beneficiaries
+     */
+    public int getUniqueClientCount() {
+        return uniqueClientCount;
+    }
+
+    /**
+     * @param clientId client id
+     * @return sum of the amounts of the transactions sent by the client
+     * @throws ArithmeticException if the sum overflows a long
+     */
+    public long sentAmount(int clientId) {
+        checkOverflow(clientId);
+        return clientId < sentAmounts.length ? sentAmounts[clientId] : 0;
+    }
+
+    /**
+     * @param clientId client id
+     * @return sum of the amounts of the transactions received by the client
+     * @throws ArithmeticException if the sum overflows a long
+     */
+    public long receivedAmount(int clientId) {
+        checkOverflow(clientId);
+        return clientId < receivedAmounts.length ? receivedAmounts[clientId] : 0;
+    }
+
+    private void checkOverflow(int clientId) {
+        if (clientId < sentAmounts.length && (overflowedClientBits[clientId >>> 6] & (1L << clientId)) != 0) {
+            throw new ArithmeticException("long overflow");
+        }
+    }
+
+    /**
+     * @param clientId client id
+     * @return number of transactions sent by the client
+     */
+    public int sentCount(int clientId) {
+        return clientId < sentCounts.length ? sentCounts[clientId] : 0;
+    }
+
+    /**
+     * @param clientId client id
+     * @return number of transactions received by the client
+     */
+    public int receivedCount(int clientId) {
+        return clientId < receivedCounts.length ? receivedCounts[clientId] : 0;
+    }
+
+    /**
+     * @param clientId client id
+     * @return true if the client is the sender or the beneficiary of a transaction with an unsolved issue
+     */
+    public boolean hasOpenIssues(int clientId) {
+        return clientId < openIssueCounts.length && openIssueCounts[clientId] > 0;
+    }
+
+    /**
+     * @return number of unsolved issues
+     */
+    public int openIssueCount() {
+        return openIssueCount;
+    }
+
+    /**
+     * @param index index in the list of unsolved issues, from 0 to openIssueCount() - 1
+     * @return index of the issue in the store
+     */
+    public int openIssue(int index) {
+        return openIssues[Objects.checkIndex(index, openIssueCount)];
+    }
+
+    /**
+     * @return estimated heap used by the aggregates
+     */
+    public long estimatedBytes() {
+        return primitiveArray(sentAmounts.length, 8) * 2 + primitiveArray(sentCounts.length, 4) * 3
+                + primitiveArray(overflowedClientBits.length, 8) + primitiveArray(openIssues.length, 4)
+                + primitiveArray(openIssueSlots.length, 4);
+    }
+
+    private static long primitiveArray(int length, int elementBytes) {
+        return MemoryFootprint.align(MemoryFootprint.ARRAY_HEADER + (long) length * elementBytes);
+    }
+}
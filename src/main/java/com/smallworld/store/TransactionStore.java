@@ -0,0 +1,900 @@
+package com.smallworld.store;
+
+import com.smallworld.model.BeneficiaryInformation;
+import com.smallworld.model.IssueInformation;
+import com.smallworld.model.SenderInformation;
+import com.smallworld.model.Transaction;
+import com.smallworld.util.MemoryFootprint;
+import com.smallworld.util.NormalizationStats;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Columnar store of the transactions. Every transaction (one per mtn) is a position in a set of primitive
+ * columns: mtn, amount (in minor units), sender and beneficiary ids (see NameDictionary) and ages, plus one bit telling whether
+ * it has an unsolved issue. Issues live in their own columns in the order they were added, with their message
+ * encoded as an id of a second dictionary. Each transaction links its issues through firstIssue/nextIssue so
+ * an issue can be added to any transaction at any time.
+ * <p>
+ * Rows of the transaction/issue join are grouped by mtn while they are added: the first row of an mtn creates
+ * the transaction and the following rows add the issues it does not have yet, or update the solved state of
+ * the ones it has. Rows can be added at any time, the TransactionAggregates are updated with every row.
+ * 'Transaction' objects are only created as detached views when a caller asks for them.
+ * <p>
+ * The columns are held on the heap or off-heap, see ColumnStorage. Issue ids which are the decimal form of an int
+ * are kept in an int column, the other ones (null included) in a map which only holds those. The issues are also
+ * indexed by id (see IssueIndex): ids are parsed once when their issue is added, the ids with an open issue and the
+ * solved issues are kept in compressed bitmaps and the transaction of an issue id is found without a scan. Ids which
+ * Integer.parseInt does not accept, null included, are not indexed.
+ */
+public class TransactionStore {
+
+    /**
+     * End of the issue chain of a transaction.
+     */
+    public static final int NO_ISSUE = -1;
+
+    /**
+     * Format version of the snapshot files written by writeSnapshot, only files of this version can be read.
+     */
+    public static final int SNAPSHOT_VERSION = SnapshotOutput.VERSION;
+
+    /**
+     * Returned by parseIntIssueId for an id which is not the decimal form of an int
+     */
+    private static final long NOT_AN_INT = Long.MIN_VALUE;
+
+    /**
+     * HashMap node and boxed key of an issue id which is not an int, the table is not counted
+     */
+    private static final long OTHER_ISSUE_ID_ENTRY = MemoryFootprint.align(MemoryFootprint.OBJECT_HEADER + 4 + 3 * MemoryFootprint.REFERENCE)
+            + MemoryFootprint.align(MemoryFootprint.OBJECT_HEADER + 4);
+
+    private final ColumnStorage storage;
+    private NameDictionary clientNames = new NameDictionary();
+    private NameDictionary issueMessages = new NameDictionary();
+    //null until first used in a store read from a snapshot, see positionsByMtn()
+    private volatile MtnLookup positionsByMtn;
+    //null until first used in a store read from a snapshot or copied into another storage, see issuesById()
+    private volatile IssueIndex issuesById;
+    private TransactionAggregates aggregates = new TransactionAggregates();
+
+    //transaction columns
+    private int size;
+    private LongColumn mtns;
+    private LongColumn amounts;
+    private IntColumn senderIds;
+    private IntColumn senderAges;
+    private IntColumn beneficiaryIds;
+    private IntColumn beneficiaryAges;
+    private IntColumn firstIssues;
+    private IntColumn lastIssues;
+    private LongColumn openIssueBits;
+
+    //issue columns
+    private int issueCount;
+    private IntColumn issueTransactions;
+    private IntColumn nextIssues;
+    private IntColumn intIssueIds;
+    //set for the issues whose id is in otherIssueIds instead of intIssueIds
+    private LongColumn otherIssueIdBits;
+    private Map<Integer, String> otherIssueIds = new HashMap<>();
+    private IntColumn issueMessageIds;
+    private LongColumn solvedIssueBits;
+
+    private long rowCount;
+    private long estimatedBytesSaved;
+
+    /**
+     * Creates an empty store holding its columns on the heap.
+     */
+    public TransactionStore() {
+        this(ColumnStorage.HEAP);
+    }
+
+    /**
+     * Creates an empty store.
+     * @param storage where the columns and the mtn lookup are held
+     */
+    public TransactionStore(ColumnStorage storage) {
+        this.storage = storage;
+        mtns = LongColumn.create(storage);
+        amounts = LongColumn.create(storage);
+        senderIds = IntColumn.create(storage);
+        senderAges = IntColumn.create(storage);
+        beneficiaryIds = IntColumn.create(storage);
+        beneficiaryAges = IntColumn.create(storage);
+        firstIssues = IntColumn.create(storage);
+        lastIssues = IntColumn.create(storage);
+        openIssueBits = LongColumn.create(storage);
+        issueTransactions = IntColumn.create(storage);
+        nextIssues = IntColumn.create(storage);
+        intIssueIds = IntColumn.create(storage);
+        otherIssueIdBits = LongColumn.create(storage);
+        issueMessageIds = IntColumn.create(storage);
+        solvedIssueBits = LongColumn.create(storage);
+        positionsByMtn = new MtnLookup(storage, mtns, 0);
+        issuesById = new IssueIndex(storage, 0);
+    }
+
+    /**
+     * @return where the columns of the store are held
+     */
+    public ColumnStorage storage() {
+        return storage;
+    }
+
+    /**
+     * Copies the store, the columns, dictionaries, mtn lookup and aggregates are copied so rows added to
+     * either store are not seen by the other. The cost is linear in the size of the store.
+     * @return a copy of the store, held in the same storage
+     */
+    public TransactionStore copy() {
+        TransactionStore copy = new TransactionStore(storage);
+        copy.clientNames = clientNames.copy();
+        copy.issueMessages = issueMessages.copy();
+        copy.aggregates = aggregates.copy();
+        copy.size = size;
+        copy.mtns = mtns.copy();
+        copy.positionsByMtn = positionsByMtn().copy(copy.mtns);
+        copy.issuesById = issuesById().copy();
+        copy.amounts = amounts.copy();
+        copy.senderIds = senderIds.copy();
+        copy.senderAges = senderAges.copy();
+        copy.beneficiaryIds = beneficiaryIds.copy();
+        copy.beneficiaryAges = beneficiaryAges.copy();
+        copy.firstIssues = firstIssues.copy();
+        copy.lastIssues = lastIssues.copy();
+        copy.openIssueBits = openIssueBits.copy();
+        copy.issueCount = issueCount;
+        copy.issueTransactions = issueTransactions.copy();
+        copy.nextIssues = nextIssues.copy();
+        copy.intIssueIds = intIssueIds.copy();
+        copy.otherIssueIdBits = otherIssueIdBits.copy();
+        copy.otherIssueIds = new HashMap<>(otherIssueIds);
+        copy.issueMessageIds = issueMessageIds.copy();
+        copy.solvedIssueBits = solvedIssueBits.copy();
+        copy.rowCount = rowCount;
+        copy.estimatedBytesSaved = estimatedBytesSaved;
+        return copy;
+    }
+
+    /**
+     * Copies the store into another storage, e.g. to move the columns of a loaded store off the heap.
+     * @param storage where the columns of the copy are held
+     * @return a copy of the store, the dictionaries and aggregates are copied as they are
+     */
+    public TransactionStore copy(ColumnStorage storage) {
+        if (storage == this.storage) {
+            return copy();
+        }
+        TransactionStore copy = new TransactionStore(storage);
+        copy.clientNames = clientNames.copy();
+        copy.issueMessages = issueMessages.copy();
+        copy.aggregates = aggregates.copy();
+        copy.rowCount = rowCount;
+        copy.estimatedBytesSaved = estimatedBytesSaved;
+        copy.size = size;
+        copy.ensureTransactionCapacity(size);
+        for (int position = 0; position < size; position++) {
+            copy.mtns.set(position, mtns.get(position));
+            copy.amounts.set(position, amounts.get(position));
+            copy.senderIds.set(position, senderIds.get(position));
+            copy.senderAges.set(position, senderAges.get(position));
+            copy.beneficiaryIds.set(position, beneficiaryIds.get(position));
+            copy.beneficiaryAges.set(position, beneficiaryAges.get(position));
+            copy.firstIssues.set(position, firstIssues.get(position));
+            copy.lastIssues.set(position, lastIssues.get(position));
+        }
+        copyWords(openIssueBits, copy.openIssueBits, bitWords(size));
+        copy.issueCount = issueCount;
+        copy.ensureIssueCapacity(issueCount);
+        for (int issue = 0; issue < issueCount; issue++) {
+            copy.issueTransactions.set(issue, issueTransactions.get(issue));
+            copy.nextIssues.set(issue, nextIssues.get(issue));
+            copy.intIssueIds.set(issue, intIssueIds.get(issue));
+            copy.issueMessageIds.set(issue, issueMessageIds.get(issue));
+        }
+        copyWords(otherIssueIdBits, copy.otherIssueIdBits, bitWords(issueCount));
+        copy.otherIssueIds = new HashMap<>(otherIssueIds);
+        copyWords(solvedIssueBits, copy.solvedIssueBits, bitWords(issueCount));
+        //the lookup and the issue index of the copy are built from its columns when first used
+        copy.positionsByMtn = null;
+        copy.issuesById = null;
+        return copy;
+    }
+
+    private static void copyWords(LongColumn source, LongColumn target, int words) {
+        for (int word = 0; word < words; word++) {
+            target.set(word, source.get(word));
+        }
+    }
+
+    /**
+     * Writes the store to a binary snapshot file: the columns, the dictionaries,
+     * the aggregates and the normalization figures, with a format version and a checksum. The mtn lookup is
+     * rebuilt when it is first used after reading.
+     * @param file snapshot file, replaced if it exists once the new snapshot is complete
+     * @throws IOException if the file can not be written
+     */
+    public void writeSnapshot(File file) throws IOException {
+        try (SnapshotOutput output = new SnapshotOutput(file)) {
+            output.writeLong(rowCount);
+            output.writeLong(estimatedBytesSaved);
+            writeDictionary(output, clientNames);
+            writeDictionary(output, issueMessages);
+
+            output.writeInt(size);
+            mtns.write(output, size);
+            amounts.write(output, size);
+            senderIds.write(output, size);
+            senderAges.write(output, size);
+            beneficiaryIds.write(output, size);
+            beneficiaryAges.write(output, size);
+            firstIssues.write(output, size);
+            lastIssues.write(output, size);
+            openIssueBits.write(output, bitWords(size));
+
+            output.writeInt(issueCount);
+            issueTransactions.write(output, issueCount);
+            nextIssues.write(output, issueCount);
+            issueMessageIds.write(output, issueCount);
+            intIssueIds.write(output, issueCount);
+            otherIssueIdBits.write(output, bitWords(issueCount));
+            output.writeInt(otherIssueIds.size());
+            for (Map.Entry<Integer, String> otherIssueId : otherIssueIds.entrySet()) {
+                output.writeInt(otherIssueId.getKey());
+                output.writeString(otherIssueId.getValue());
+            }
+            solvedIssueBits.write(output, bitWords(issueCount));
+            aggregates.write(output);
+            output.commit();
+        }
+    }
+
+    private static void writeDictionary(SnapshotOutput output, NameDictionary dictionary) throws IOException {
+        output.writeInt(dictionary.size());
+        for (int id = 0; id < dictionary.size(); id++) {
+            output.writeString(dictionary.name(id));
+            output.writeInt(dictionary.occurrences(id));
+        }
+    }
+
+    /**
+     * Reads a store from a snapshot file written by writeSnapshot into heap columns, see
+     * readSnapshot(File, ColumnStorage).
+     * @param file snapshot file
+     * @return the store as it was written, rows can be added to it
+     * @throws IOException if the file can not be read, is not a snapshot of this format version or is corrupted
+     */
+    public static TransactionStore readSnapshot(File file) throws IOException {
+        return readSnapshot(file, ColumnStorage.HEAP);
+    }
+
+    /**
+     * Reads a store from a snapshot file written by writeSnapshot. The file is memory mapped and the columns and
+     * aggregates are bulk copied from it, nothing is parsed nor recomputed. The mtn lookup, which only adding rows
+     * and positionOf need, is built the first time it is used.
+     * @param file snapshot file
+     * @param storage where the columns of the store are held, whatever the storage of the store that was written
+     * @return the store as it was written, rows can be added to it
+     * @throws IOException if the file can not be read, is not a snapshot of this format version or is corrupted
+     */
+    public static TransactionStore readSnapshot(File file, ColumnStorage storage) throws IOException {
+        TransactionStore store = new TransactionStore(storage);
+        try (SnapshotInput input = new SnapshotInput(file)) {
+            store.rowCount = input.readLong();
+            store.estimatedBytesSaved = input.readLong();
+            readDictionary(input, store.clientNames);
+            readDictionary(input, store.issueMessages);
+
+            int size = input.readInt();
+            store.size = size;
+            store.mtns.read(input, size);
+            store.amounts.read(input, size);
+            store.senderIds.read(input, size);
+            store.senderAges.read(input, size);
+            store.beneficiaryIds.read(input, size);
+            store.beneficiaryAges.read(input, size);
+            store.firstIssues.read(input, size);
+            store.lastIssues.read(input, size);
+            store.openIssueBits.read(input, bitWords(size));
+
+            int issueCount = input.readInt();
+            store.issueCount = issueCount;
+            store.issueTransactions.read(input, issueCount);
+            store.nextIssues.read(input, issueCount);
+            store.issueMessageIds.read(input, issueCount);
+            store.intIssueIds.read(input, issueCount);
+            store.otherIssueIdBits.read(input, bitWords(issueCount));
+            int otherIssueIdCount = input.readInt();
+            for (int i = 0; i < otherIssueIdCount; i++) {
+                int issue = input.readInt();
+                if (issue < 0 || issue >= issueCount || !isSet(store.otherIssueIdBits, issue)) {
+                    throw new IOException("Corrupted issue ids in snapshot");
+                }
+                store.otherIssueIds.put(issue, input.readString());
+            }
+            store.solvedIssueBits.read(input, bitWords(issueCount));
+            store.aggregates = TransactionAggregates.read(input);
+            input.checkFullyRead();
+        }
+        store.positionsByMtn = null;
+        store.issuesById = null;
+        return store;
+    }
+
+    private static void readDictionary(SnapshotInput input, NameDictionary dictionary) throws IOException {
+        int size = input.readInt();
+        for (int id = 0; id < size; id++) {
+            String name = input.readString();
+            int occurrences = input.readInt();
+            //the names of a dictionary are distinct, so every name gets the next id
+            if (name == null || occurrences < 0 || dictionary.intern(name) != id) {
+                throw new IOException("Corrupted dictionary in snapshot");
+            }
+            dictionary.addOccurrences(id, occurrences);
+        }
+    }
+
+    /**
+     * Returns the mtn lookup, building it from the mtn column if the store was read from a snapshot. Concurrent
+     * readers of a store that is no longer modified may call it, so it is built once under the store's lock.
+     */
+    private MtnLookup positionsByMtn() {
+        MtnLookup lookup = positionsByMtn;
+        if (lookup == null) {
+            synchronized (this) {
+                lookup = positionsByMtn;
+                if (lookup == null) {
+                    lookup = new MtnLookup(storage, mtns, size);
+                    for (int position = 0; position < size; position++) {
+                        lookup.putIfAbsent(mtns.get(position), position);
+                    }
+                    positionsByMtn = lookup;
+                }
+            }
+        }
+        return lookup;
+    }
+
+    /**
+     * Returns the issue index, building it from the issue columns if the store was read from a snapshot or copied
+     * into another storage. It is built once under the store's lock, like the mtn lookup.
+     */
+    private IssueIndex issuesById() {
+        IssueIndex index = issuesById;
+        if (index == null) {
+            synchronized (this) {
+                index = issuesById;
+                if (index == null) {
+                    index = new IssueIndex(storage, issueCount);
+                    for (int issue = 0; issue < issueCount; issue++) {
+                        index.issueAdded(issue, indexedIssueId(issue), isIssueSolved(issue));
+                    }
+                    issuesById = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Adds a row of the transaction/issue join. If the mtn is already stored only the issues of the row
+     * that the transaction does not have yet (by issue id) are added and the issues it already has take the
+     * solved state of the row (e.g. an issue being solved), the rest of the row is dropped.
+     * @param row transaction read from a row, with its issues
+     */
+    public void addRow(Transaction row) {
+        rowCount++;
+        IssueIndex index = issuesById();
+        int position = positionsByMtn().putIfAbsent(row.getMtn(), size);
+        if (position == MtnLookup.MISSING) {
+            position = addTransaction(row);
+        } else {
+            //everything but the issues is a copy of the stored transaction
+            estimatedBytesSaved += MemoryFootprint.TRANSACTION + 2 * MemoryFootprint.CLIENT_INFORMATION
+                    + MemoryFootprint.ofString(row.getSenderInformation().getSenderFullName())
+                    + MemoryFootprint.ofString(row.getBeneficiaryInformation().getBeneficiaryFullName())
+                    + MemoryFootprint.ofReferenceArray(row.getIssues().size());
+        }
+        for (IssueInformation issue : row.getIssues()) {
+            int existing = findIssue(position, issue.getIssueId());
+            if (existing == NO_ISSUE) {
+                addIssue(position, issue, index);
+            } else {
+                estimatedBytesSaved += MemoryFootprint.ISSUE_INFORMATION + MemoryFootprint.ofString(issue.getIssueId())
+                        + MemoryFootprint.ofString(issue.getIssueMessage());
+                if (issue.isIssueSolved() != isIssueSolved(existing)) {
+                    setIssueSolved(existing, issue.isIssueSolved(), index);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds all the rows in order.
+     * @param rows transactions read from rows, they are only iterated once
+     */
+    public void addRows(Iterable<Transaction> rows) {
+        for (Transaction row : rows) {
+            addRow(row);
+        }
+    }
+
+    private int addTransaction(Transaction row) {
+        if (size == mtns.capacity()) {
+            ensureTransactionCapacity(size + 1);
+        }
+        int position = size++;
+        int senderId = clientNames.add(row.getSenderInformation().getSenderFullName());
+        int beneficiaryId = clientNames.add(row.getBeneficiaryInformation().getBeneficiaryFullName());
+        mtns.set(position, row.getMtn());
+        amounts.set(position, row.getAmountInMinorUnits());
+        senderIds.set(position, senderId);
+        senderAges.set(position, row.getSenderInformation().getSenderAge());
+        beneficiaryIds.set(position, beneficiaryId);
+        beneficiaryAges.set(position, row.getBeneficiaryInformation().getBeneficiaryAge());
+        firstIssues.set(position, NO_ISSUE);
+        lastIssues.set(position, NO_ISSUE);
+        aggregates.transactionAdded(senderId, beneficiaryId, row.getAmountInMinorUnits());
+        return position;
+    }
+
+    private void addIssue(int position, IssueInformation issue, IssueIndex index) {
+        if (issueCount == issueTransactions.capacity()) {
+            ensureIssueCapacity(issueCount + 1);
+        }
+        int issueIndex = issueCount++;
+        issueTransactions.set(issueIndex, position);
+        nextIssues.set(issueIndex, NO_ISSUE);
+        long intIssueId = parseIntIssueId(issue.getIssueId());
+        if (intIssueId == NOT_AN_INT) {
+            setBit(otherIssueIdBits, issueIndex);
+            otherIssueIds.put(issueIndex, issue.getIssueId());
+        } else {
+            intIssueIds.set(issueIndex, (int) intIssueId);
+        }
+        issueMessageIds.set(issueIndex, issue.getIssueMessage() == null ? NameDictionary.MISSING : issueMessages.add(issue.getIssueMessage()));
+        aggregates.issueAdded(issueIndex);
+        index.issueAdded(issueIndex, intIssueId == NOT_AN_INT ? parseOtherIssueId(issue.getIssueId()) : intIssueId,
+                issue.isIssueSolved());
+        if (issue.isIssueSolved()) {
+            setBit(solvedIssueBits, issueIndex);
+        } else {
+            setBit(openIssueBits, position);
+            aggregates.issueOpened(issueIndex, senderIds.get(position), beneficiaryIds.get(position));
+        }
+        //appending to the issue chain of the transaction
+        if (firstIssues.get(position) == NO_ISSUE) {
+            firstIssues.set(position, issueIndex);
+        } else {
+            nextIssues.set(lastIssues.get(position), issueIndex);
+        }
+        lastIssues.set(position, issueIndex);
+    }
+
+    private int findIssue(int position, String issueId) {
+        //the id is compared in the form it is stored in
+        long intIssueId = parseIntIssueId(issueId);
+        for (int issue = firstIssues.get(position); issue != NO_ISSUE; issue = nextIssues.get(issue)) {
+            if (intIssueId == NOT_AN_INT ? !hasIntIssueId(issue) && Objects.equals(otherIssueIds.get(issue), issueId)
+                    : hasIntIssueId(issue) && intIssueIds.get(issue) == intIssueId) {
+                return issue;
+            }
+        }
+        return NO_ISSUE;
+    }
+
+    private void setIssueSolved(int issue, boolean solved, IssueIndex index) {
+        int position = issueTransactions.get(issue);
+        if (solved) {
+            setBit(solvedIssueBits, issue);
+            index.issueSolved(issue, indexedIssueId(issue));
+            aggregates.issueSolved(issue, senderIds.get(position), beneficiaryIds.get(position));
+            //the transaction stays open only if another of its issues is
+            boolean open = false;
+            for (int other = firstIssues.get(position); other != NO_ISSUE && !open; other = nextIssues.get(other)) {
+                open = !isIssueSolved(other);
+            }
+            if (!open) {
+                clearBit(openIssueBits, position);
+            }
+        } else {
+            clearBit(solvedIssueBits, issue);
+            index.issueOpened(issue, indexedIssueId(issue));
+            setBit(openIssueBits, position);
+            aggregates.issueOpened(issue, senderIds.get(position), beneficiaryIds.get(position));
+        }
+    }
+
+    private void ensureTransactionCapacity(int capacity) {
+        mtns.ensureCapacity(capacity);
+        amounts.ensureCapacity(capacity);
+        senderIds.ensureCapacity(capacity);
+        senderAges.ensureCapacity(capacity);
+        beneficiaryIds.ensureCapacity(capacity);
+        beneficiaryAges.ensureCapacity(capacity);
+        firstIssues.ensureCapacity(capacity);
+        lastIssues.ensureCapacity(capacity);
+        openIssueBits.ensureCapacity(bitWords(capacity));
+    }
+
+    private void ensureIssueCapacity(int capacity) {
+        issueTransactions.ensureCapacity(capacity);
+        nextIssues.ensureCapacity(capacity);
+        intIssueIds.ensureCapacity(capacity);
+        otherIssueIdBits.ensureCapacity(bitWords(capacity));
+        issueMessageIds.ensureCapacity(capacity);
+        solvedIssueBits.ensureCapacity(bitWords(capacity));
+    }
+
+    /**
+     * @param issueId issue id, may be null
+     * @return the int of which the id is the decimal form as written by Integer.toString, or NOT_AN_INT. An
+     * id such as "007" or "+7" is not, so every stored id is given back as it was added.
+     */
+    private static long parseIntIssueId(String issueId) {
+        if (issueId == null || issueId.isEmpty() || issueId.length() > 11) {
+            return NOT_AN_INT;
+        }
+        boolean negative = issueId.charAt(0) == '-';
+        int start = negative ? 1 : 0;
+        if (start == issueId.length() || (issueId.charAt(start) == '0' && issueId.length() > start + 1)
+                || (negative && issueId.charAt(start) == '0')) {
+            return NOT_AN_INT;
+        }
+        long value = 0;
+        for (int i = start; i < issueId.length(); i++) {
+            char digit = issueId.charAt(i);
+            if (digit < '0' || digit > '9') {
+                return NOT_AN_INT;
+            }
+            value = value * 10 + (digit - '0');
+        }
+        value = negative ? -value : value;
+        return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? NOT_AN_INT : value;
+    }
+
+    /**
+     * @param issue index of an issue
+     * @return the int its id is indexed by or IssueIndex.NOT_INDEXED
+     */
+    private long indexedIssueId(int issue) {
+        return hasIntIssueId(issue) ? intIssueIds.get(issue) : parseOtherIssueId(otherIssueIds.get(issue));
+    }
+
+    /**
+     * @param issueId issue id which is not the decimal form of an int, may be null
+     * @return the int Integer.parseInt gives for it, e.g. 7 for "007", or IssueIndex.NOT_INDEXED
+     */
+    private static long parseOtherIssueId(String issueId) {
+        if (issueId == null) {
+            return IssueIndex.NOT_INDEXED;
+        }
+        try {
+            return Integer.parseInt(issueId);
+        } catch (NumberFormatException e) {
+            return IssueIndex.NOT_INDEXED;
+        }
+    }
+
+    /**
+     * @return number of transactions (distinct mtn)
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of distinct issues of all the transactions
+     */
+    public int issueCount() {
+        return issueCount;
+    }
+
+    /**
+     * @return dictionary of the sender and beneficiary names, a client has the same id as sender and as beneficiary
+     */
+    public NameDictionary clientNames() {
+        return clientNames;
+    }
+
+    /**
+     * @return aggregates of all the rows added so far
+     */
+    public TransactionAggregates aggregates() {
+        return aggregates;
+    }
+
+    /**
+     * @return dictionary of the issue messages
+     */
+    public NameDictionary issueMessages() {
+        return issueMessages;
+    }
+
+    /**
+     * @param mtn mtn to look up
+     * @return position of the transaction or -1 if there is none with this mtn
+     */
+    public int positionOf(long mtn) {
+        return positionsByMtn().get(mtn);
+    }
+
+    public long mtn(int position) {
+        return mtns.get(position);
+    }
+
+    /**
+     * @param position position of a transaction
+     * @return exact amount of the transaction in minor units, see Money
+     */
+    public long amountInMinorUnits(int position) {
+        return amounts.get(position);
+    }
+
+    public int senderId(int position) {
+        return senderIds.get(position);
+    }
+
+    public int senderAge(int position) {
+        return senderAges.get(position);
+    }
+
+    public int beneficiaryId(int position) {
+        return beneficiaryIds.get(position);
+    }
+
+    public int beneficiaryAge(int position) {
+        return beneficiaryAges.get(position);
+    }
+
+    /**
+     * @param position position of a transaction
+     * @return true if the transaction has at least one unsolved issue
+     */
+    public boolean hasOpenIssue(int position) {
+        return isSet(openIssueBits, position);
+    }
+
+    /**
+     * @param position position of a transaction
+     * @return index of its first issue or NO_ISSUE
+     */
+    public int firstIssue(int position) {
+        return firstIssues.get(position);
+    }
+
+    /**
+     * @param issue index of an issue
+     * @return index of the next issue of the same transaction or NO_ISSUE
+     */
+    public int nextIssue(int issue) {
+        return nextIssues.get(issue);
+    }
+
+    /**
+     * @param issue index of an issue
+     * @return position of the transaction the issue belongs to
+     */
+    public int issueTransaction(int issue) {
+        return issueTransactions.get(issue);
+    }
+
+    public String issueId(int issue) {
+        return hasIntIssueId(issue) ? Integer.toString(intIssueIds.get(issue)) : otherIssueIds.get(issue);
+    }
+
+    /**
+     * @param issue index of an issue
+     * @return true if the issue id is the decimal form of an int, given by intIssueId
+     */
+    public boolean hasIntIssueId(int issue) {
+        return !isSet(otherIssueIdBits, issue);
+    }
+
+    /**
+     * @param issue index of an issue which hasIntIssueId
+     * @return the issue id as an int, parsed once when the issue was added
+     */
+    public int intIssueId(int issue) {
+        return intIssueIds.get(issue);
+    }
+
+    /**
+     * @param issue index of an issue
+     * @return id of the message in issueMessages() or NameDictionary.MISSING if the issue has no message
+     */
+    public int issueMessageId(int issue) {
+        return issueMessageIds.get(issue);
+    }
+
+    public String issueMessage(int issue) {
+        int messageId = issueMessageIds.get(issue);
+        return messageId == NameDictionary.MISSING ? null : issueMessages.name(messageId);
+    }
+
+    public boolean isIssueSolved(int issue) {
+        return isSet(solvedIssueBits, issue);
+    }
+
+    /**
+     * @param issueId issue id as an int
+     * @return index of the first issue added with this id or NO_ISSUE, see issueTransaction for its transaction
+     */
+    public int issueOf(int issueId) {
+        return issuesById().firstIssue(issueId);
+    }
+
+    /**
+     * @return ids which at least one open issue has. The bitmap is changed as rows are added, take a copy to keep
+     * it as it is now.
+     */
+    public IntBitmap openIssueIds() {
+        return issuesById().openIssueIds();
+    }
+
+    /**
+     * @return indexes of the solved issues, i.e. in the order they were added. The bitmap is changed as rows are
+     * added, take a copy to keep it as it is now.
+     */
+    public IntBitmap solvedIssues() {
+        return issuesById().solvedIssues();
+    }
+
+    /**
+     * Creates a 'Transaction' with the values of the given position. It is a detached copy, changing it does
+     * not change the store.
+     * @param position position of a transaction
+     * @return the transaction with its sender, beneficiary and issues
+     */
+    public Transaction transaction(int position) {
+        SenderInformation senderInformation = new SenderInformation();
+        senderInformation.setSenderFullName(clientNames.name(senderIds.get(position)));
+        senderInformation.setSenderAge(senderAges.get(position));
+
+        BeneficiaryInformation beneficiaryInformation = new BeneficiaryInformation();
+        beneficiaryInformation.setBeneficiaryFullName(clientNames.name(beneficiaryIds.get(position)));
+        beneficiaryInformation.setBeneficiaryAge(beneficiaryAges.get(position));
+
+        List<IssueInformation> issues = new ArrayList<>(1);
+        for (int issue = firstIssues.get(position); issue != NO_ISSUE; issue = nextIssues.get(issue)) {
+            IssueInformation issueInformation = new IssueInformation();
+            issueInformation.setIssueId(issueId(issue));
+            issueInformation.setIssueSolved(isIssueSolved(issue));
+            issueInformation.setIssueMessage(issueMessage(issue));
+            issues.add(issueInformation);
+        }
+
+        Transaction transaction = new Transaction();
+        transaction.setMtn(mtns.get(position));
+        transaction.setAmountInMinorUnits(amounts.get(position));
+        transaction.setSenderInformation(senderInformation);
+        transaction.setBeneficiaryInformation(beneficiaryInformation);
+        transaction.setIssues(issues);
+        return transaction;
+    }
+
+    /**
+     * @return read only list of all the transactions, each element is created when it is read
+     */
+    public List<Transaction> transactions() {
+        return new TransactionList(null, 0);
+    }
+
+    /**
+     * @param positions positions of transactions, the array is kept and must not be changed afterwards
+     * @return read only list of the transactions at the given positions, each element is created when it is read
+     */
+    public List<Transaction> transactions(int[] positions) {
+        return new TransactionList(positions, positions.length);
+    }
+
+    /**
+     * @param positions positions of transactions, the first length of them must not be changed afterwards
+     * @param length number of positions to use
+     * @return read only list of the transactions at the first length positions, each element is created when it is read
+     */
+    public List<Transaction> transactions(int[] positions, int length) {
+        return new TransactionList(positions, length);
+    }
+
+    /**
+     * @return rows, transactions and issues added so far and the memory saved by grouping them by mtn
+     * and by keeping each distinct client name and issue message once
+     */
+    public NormalizationStats getNormalizationStats() {
+        return new NormalizationStats(rowCount, size, issueCount, estimatedBytesSaved, clientNames.size(),
+                issueMessages.size(), clientNames.estimatedBytesSaved() + issueMessages.estimatedBytesSaved());
+    }
+
+    /**
+     * @return estimated heap used by the columns, the mtn lookup, the issue index and the aggregates, the dictionaries
+     * are not included
+     */
+    public long estimatedBytes() {
+        long bytes = positionsByMtn().heapBytes() + issuesById().heapBytes() + aggregates.estimatedBytes();
+        for (IntColumn column : intColumns()) {
+            bytes += column.heapBytes();
+        }
+        for (LongColumn column : longColumns()) {
+            bytes += column.heapBytes();
+        }
+        //the ids which are not ints are kept as strings in a map entry each
+        for (String otherIssueId : otherIssueIds.values()) {
+            bytes += OTHER_ISSUE_ID_ENTRY + MemoryFootprint.ofString(otherIssueId);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return memory used outside of the heap by the columns, the mtn lookup and the issue index, 0 for a store on the heap
+     */
+    public long offHeapBytes() {
+        long bytes = positionsByMtn().offHeapBytes() + issuesById().offHeapBytes();
+        for (IntColumn column : intColumns()) {
+            bytes += column.offHeapBytes();
+        }
+        for (LongColumn column : longColumns()) {
+            bytes += column.offHeapBytes();
+        }
+        return bytes;
+    }
+
+    private IntColumn[] intColumns() {
+        return new IntColumn[]{senderIds, senderAges, beneficiaryIds, beneficiaryAges, firstIssues, lastIssues,
+                issueTransactions, nextIssues, intIssueIds, issueMessageIds};
+    }
+
+    private LongColumn[] longColumns() {
+        return new LongColumn[]{mtns, amounts, openIssueBits, otherIssueIdBits, solvedIssueBits};
+    }
+
+    private static int bitWords(int bits) {
+        return (int) (((long) bits + 63) >>> 6);
+    }
+
+    private static boolean isSet(LongColumn bits, int index) {
+        return (bits.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    private static void setBit(LongColumn bits, int index) {
+        bits.set(index >>> 6, bits.get(index >>> 6) | 1L << index);
+    }
+
+    private static void clearBit(LongColumn bits, int index) {
+        bits.set(index >>> 6, bits.get(index >>> 6) & ~(1L << index));
+    }
+
+    private class TransactionList extends AbstractList<Transaction> implements RandomAccess {
+
+        //null for all the transactions
+        private final int[] positions;
+        private final int length;
+
+        private TransactionList(int[] positions, int length) {
+            this.positions = positions;
+            this.length = length;
+        }
+
+        @Override
+        public Transaction get(int index) {
+            Objects.checkIndex(index, size());
+            return transaction(positions == null ? index : positions[index]);
+        }
+
+        @Override
+        public int size() {
+            return positions == null ? size : length;
+        }
+    }
+}
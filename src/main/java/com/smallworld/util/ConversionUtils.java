@@ -1,5 +1,8 @@
 package com.smallworld.util;
 
+import com.smallworld.metrics.LoadMetrics;
+import com.smallworld.metrics.MetricsListener;
+import com.smallworld.metrics.ThreadAllocation;
 import com.smallworld.model.BeneficiaryInformation;
 import com.smallworld.model.IssueInformation;
 import com.smallworld.model.SenderInformation;
@@ -11,70 +14,237 @@ import java.util.Map;
 
 /**
  * This class has methods which converts map into object and check the validity of the data.
+ * The maps are validated while they are converted, see ValidationPolicy for what happens to an invalid one.
  * @author Muhammad Ahsan Khan
  */
 public class ConversionUtils {
 
     /**
-     * This method converts every map of transaction to its relevant object i.e., 'Transaction'
+     * Receives the figures of every conversion, null unless metrics are enabled
+     */
+    private static volatile MetricsListener metricsListener;
+
+    /**
+     * Sets the listener receiving the figures of every call of convertMapToObject, reported as a load named
+     * "convertMapToObject" with the number of maps converted and the heap allocated by the calling thread.
+     *
+     * @param listener listener called on the thread of the conversion, null to disable the metrics
+     */
+    public static void setMetricsListener(MetricsListener listener){
+        metricsListener = listener;
+    }
+
+    /**
+     * This method converts every map of transaction to its relevant object i.e., 'Transaction'.
+     * Every map becomes a transaction with at most one issue, rows are not grouped by mtn here.
+     * The first empty, incomplete or invalid map throws an InvalidTransactionException.
      * @param listOfMap list of map of transactions
      * @return returns list of type 'Transactions'
      */
     public static List<Transaction> convertMapToObject(List<Map<String, Object>> listOfMap){
-        List<Transaction> convertedList = new ArrayList<>();
-        if(isNotEmptyTransactionsList(listOfMap)){
-            for (Map<String, Object> transactionElement : listOfMap) {
+        return convertMapToObject(listOfMap, new RejectedRows(ValidationPolicy.FAIL_FAST));
+    }
+
+    /**
+     * This method converts every valid map of transaction to its relevant object i.e., 'Transaction'.
+     * Every map is validated while it is converted, in the same pass: it must not be empty, the required fields
+     * (mtn, amount, senderFullName, senderAge, beneficiaryFullName, beneficiaryAge, issueSolved) must not be
+     * missing or null, and every value must have the type of its field: an integer (or a string holding one) for
+     * the mtn and the ages, a number or a numeric string for the amount, a string for the names and the message,
+     * a boolean or "true"/"false" for issueSolved. An invalid map is handled according to the policy of the
+     * given report, which counts the rejected rows.
+     * @param listOfMap list of map of transactions
+     * @param rejectedRows policy applied to the invalid maps and report of the rows it rejected, the rows are
+     * numbered from 1 in the order of the list
+     * @return returns list of type 'Transactions' of the valid maps, in the order of the list
+     * @throws InvalidTransactionException for the first invalid map if the policy is ValidationPolicy.FAIL_FAST
+     */
+    public static List<Transaction> convertMapToObject(List<Map<String, Object>> listOfMap, RejectedRows rejectedRows){
+        MetricsListener listener = metricsListener;
+        long start = listener == null ? 0 : System.nanoTime();
+        long allocationStart = listener == null ? 0 : ThreadAllocation.currentThreadAllocatedBytes();
+        List<Transaction> convertedList = new ArrayList<>(listOfMap.size());
+        FieldReader fields = new FieldReader();
+        for (Map<String, Object> transactionElement : listOfMap) {
+            long rowNumber = rejectedRows.nextRow();
+            Transaction transaction = convertRow(transactionElement, fields);
+            if(transaction == null){
+                rejectedRows.reject(rowNumber, fields.reason, fields.field, fields.detail);
+            }else{
+                convertedList.add(transaction);
+            }
+        }
+        if(listener != null){
+            listener.loadCompleted(new LoadMetrics("convertMapToObject", convertedList.size(), 0,
+                    System.nanoTime() - start, ThreadAllocation.allocatedSince(allocationStart)));
+        }
+        return convertedList;
+    }
 
-                SenderInformation senderInformation = new SenderInformation();
-                BeneficiaryInformation beneficiaryInformation = new BeneficiaryInformation();
-                IssueInformation issueInformation = new IssueInformation();
-                Transaction transaction = new Transaction();
+    /**
+     * Converts a single map, every value is read once and checked as it is converted.
+     * @param transactionElement map of the row
+     * @param fields reader keeping the first error of the row
+     * @return the transaction, or null if the map is invalid with the error in the reader
+     */
+    private static Transaction convertRow(Map<String, Object> transactionElement, FieldReader fields){
+        fields.startRow();
+        if(transactionElement.isEmpty()){
+            fields.error(RowError.Reason.EMPTY, null, null);
+            return null;
+        }
+        //a missing field is reported before an invalid one, as an incomplete transaction
+        Object mtn = fields.required(transactionElement, "mtn");
+        Object amount = fields.required(transactionElement, "amount");
+        Object senderFullName = fields.required(transactionElement, "senderFullName");
+        Object senderAge = fields.required(transactionElement, "senderAge");
+        Object beneficiaryFullName = fields.required(transactionElement, "beneficiaryFullName");
+        Object beneficiaryAge = fields.required(transactionElement, "beneficiaryAge");
+        Object issueSolved = fields.required(transactionElement, "issueSolved");
+        if(fields.hasError()){
+            return null;
+        }
 
-                transaction.setMtn(Long.parseLong(transactionElement.get("mtn").toString()));
-                transaction.setAmount(Double.parseDouble(transactionElement.get("amount").toString()));
+        SenderInformation senderInformation = new SenderInformation();
+        BeneficiaryInformation beneficiaryInformation = new BeneficiaryInformation();
+        Transaction transaction = new Transaction();
 
-                senderInformation.setSenderFullName(transactionElement.get("senderFullName").toString());
-                senderInformation.setSenderAge(Integer.parseInt(transactionElement.get("senderAge").toString()));
+        transaction.setMtn(fields.toLong(mtn, "mtn"));
+        transaction.setAmountInMinorUnits(fields.toMinorUnits(amount, "amount"));
 
-                beneficiaryInformation.setBeneficiaryFullName(transactionElement.get("beneficiaryFullName").toString());
-                beneficiaryInformation.setBeneficiaryAge(Integer.parseInt(transactionElement.get("beneficiaryAge").toString()));
+        senderInformation.setSenderFullName(fields.toText(senderFullName, "senderFullName"));
+        senderInformation.setSenderAge(fields.toInt(senderAge, "senderAge"));
 
-                if(transactionElement.get("issueId") != null){
-                    issueInformation.setIssueId(transactionElement.get("issueId").toString());
-                }
-                issueInformation.setIssueSolved(Boolean.parseBoolean(transactionElement.get("issueSolved").toString()));
-                if(transactionElement.get("issueMessage") != null){
-                    issueInformation.setIssueMessage(transactionElement.get("issueMessage").toString());
-                }
+        beneficiaryInformation.setBeneficiaryFullName(fields.toText(beneficiaryFullName, "beneficiaryFullName"));
+        beneficiaryInformation.setBeneficiaryAge(fields.toInt(beneficiaryAge, "beneficiaryAge"));
 
-                transaction.setSenderInformation(senderInformation);
-                transaction.setBeneficiaryInformation(beneficiaryInformation);
-                transaction.setIssueInformation(issueInformation);
+        transaction.setSenderInformation(senderInformation);
+        transaction.setBeneficiaryInformation(beneficiaryInformation);
 
-                convertedList.add(transaction);
+        //a row without issue id is a transaction without issues
+        Object issueId = transactionElement.get("issueId");
+        if(issueId != null){
+            IssueInformation issueInformation = new IssueInformation();
+            issueInformation.setIssueId(fields.toIssueId(issueId, "issueId"));
+            issueInformation.setIssueSolved(fields.toBoolean(issueSolved, "issueSolved"));
+            Object issueMessage = transactionElement.get("issueMessage");
+            if(issueMessage != null){
+                issueInformation.setIssueMessage(fields.toText(issueMessage, "issueMessage"));
             }
+            transaction.addIssue(issueInformation);
+        }else{
+            fields.toBoolean(issueSolved, "issueSolved");
         }
-        return convertedList;
+        return fields.hasError() ? null : transaction;
     }
 
     /**
-     * Returns true if transactions list is not empty and if it is empty or any transaction in the list
-     * is incomplete then the exception with relevant message is will be thrown.
-     * @param transactions list of map of transactions.
-     * @return true if list has valid transactions.
+     * Reads and type checks the values of one map at a time. The values of the common types are converted
+     * without going through a String, and only the first error of a row is kept.
      */
-    private static boolean isNotEmptyTransactionsList(List<Map<String, Object>> transactions) {
-        for(Map<String, Object> transaction : transactions){
-            if(transaction.isEmpty()) {
-                throw new UnsupportedOperationException("Transaction is Empty!");
-            }else if(transaction.containsKey("mtn") && transaction.containsKey("amount") && transaction.containsKey("senderFullName")
-                    && transaction.containsKey("senderAge") && transaction.containsKey("beneficiaryFullName") && transaction.containsKey("beneficiaryAge")
-                    && transaction.containsKey("issueSolved")) {
-                return true;
-            }else{
-                throw new UnsupportedOperationException("Incomplete Transaction!");
+    private static final class FieldReader {
+
+        private RowError.Reason reason;
+        private String field;
+        private String detail;
+
+        void startRow(){
+            reason = null;
+            field = null;
+            detail = null;
+        }
+
+        boolean hasError(){
+            return reason != null;
+        }
+
+        void error(RowError.Reason reason, String field, String detail){
+            if(this.reason == null){
+                this.reason = reason;
+                this.field = field;
+                this.detail = detail;
+            }
+        }
+
+        Object required(Map<String, Object> transactionElement, String name){
+            Object value = transactionElement.get(name);
+            if(value == null){
+                error(RowError.Reason.MISSING_FIELD, name, null);
+            }
+            return value;
+        }
+
+        long toLong(Object value, String name){
+            if(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte){
+                return ((Number) value).longValue();
             }
+            if(value instanceof String text){
+                try {
+                    return Long.parseLong(text.trim());
+                } catch (NumberFormatException e) {
+                    //reported below
+                }
+            }
+            invalid(name, value, "an integer");
+            return 0;
+        }
+
+        int toInt(Object value, String name){
+            long longValue = toLong(value, name);
+            if(longValue != (int) longValue){
+                invalid(name, value, "an int");
+            }
+            return (int) longValue;
+        }
+
+        long toMinorUnits(Object value, String name){
+            try {
+                if(value instanceof Number number){
+                    return Money.fromDouble(number.doubleValue());
+                }
+                if(value instanceof String text){
+                    return Money.parse(text.trim());
+                }
+            } catch (NumberFormatException | ArithmeticException e) {
+                //reported below
+            }
+            invalid(name, value, "an amount");
+            return 0;
+        }
+
+        String toText(Object value, String name){
+            if(value instanceof String text){
+                return text;
+            }
+            invalid(name, value, "a string");
+            return null;
+        }
+
+        String toIssueId(Object value, String name){
+            if(value instanceof String || value instanceof Number){
+                return value.toString();
+            }
+            invalid(name, value, "a string or a number");
+            return null;
+        }
+
+        boolean toBoolean(Object value, String name){
+            if(value instanceof Boolean bool){
+                return bool;
+            }
+            if(value instanceof String text){
+                String trimmed = text.trim();
+                if(trimmed.equalsIgnoreCase("true") || trimmed.equalsIgnoreCase("false")){
+                    return Boolean.parseBoolean(trimmed);
+                }
+            }
+            invalid(name, value, "a boolean");
+            return false;
+        }
+
+        private void invalid(String name, Object value, String expected){
+            error(RowError.Reason.INVALID_FIELD, name, "expected " + expected + " but got "
+                    + value.getClass().getSimpleName() + " " + value);
         }
-        return false;
     }
 }
@@ -0,0 +1,24 @@
+package com.smallworld.util;
+
+/**
+ * Thrown for the first invalid row with ValidationPolicy.FAIL_FAST. It is an UnsupportedOperationException with
+ * the message of its reason, e.g. "Incomplete Transaction!", like the exceptions thrown before rows were numbered.
+ */
+public class InvalidTransactionException extends UnsupportedOperationException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient RowError rowError;
+
+    public InvalidTransactionException(RowError rowError) {
+        super(rowError.getReason().getMessage());
+        this.rowError = rowError;
+    }
+
+    /**
+     * @return the row number, reason and field of the invalid row
+     */
+    public RowError getRowError() {
+        return rowError;
+    }
+}
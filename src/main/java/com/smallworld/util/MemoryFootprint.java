@@ -0,0 +1,62 @@
+package com.smallworld.util;
+
+/**
+ * Estimates of heap sizes for a 64 bit JVM with compressed oops (12 byte object headers,
+ * 4 byte references and 8 byte alignment). They are used to report memory savings, not for accounting.
+ */
+public class MemoryFootprint {
+
+    public static final int OBJECT_HEADER = 12;
+    public static final int ARRAY_HEADER = 16;
+    public static final int REFERENCE = 4;
+
+    /**
+     * Transaction: mtn, amount, sender, beneficiary and issues fields.
+     */
+    public static final long TRANSACTION = align(OBJECT_HEADER + 8 + 8 + 3 * REFERENCE);
+
+    /**
+     * SenderInformation and BeneficiaryInformation: full name and age fields.
+     */
+    public static final long CLIENT_INFORMATION = align(OBJECT_HEADER + REFERENCE + 4);
+
+    /**
+     * IssueInformation: issue id, solved flag and message fields.
+     */
+    public static final long ISSUE_INFORMATION = align(OBJECT_HEADER + 2 * REFERENCE + 1);
+
+    private MemoryFootprint() {
+    }
+
+    /**
+     * Rounds a size up to the object alignment.
+     * @param bytes unaligned size
+     * @return aligned size
+     */
+    public static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Returns the size of a string including its backing array, 0 for null.
+     * @param value string
+     * @return estimated size in bytes
+     */
+    public static long ofString(String value) {
+        if (value == null) {
+            return 0;
+        }
+        //String holds value, hash, coder and hashIsZero fields, the array is latin1 (1 byte per char) if possible
+        boolean latin1 = value.chars().allMatch(c -> c < 256);
+        return align(OBJECT_HEADER + REFERENCE + 4 + 1 + 1) + align(ARRAY_HEADER + (long) value.length() * (latin1 ? 1 : 2));
+    }
+
+    /**
+     * Returns the size of an array of references.
+     * @param length array length
+     * @return estimated size in bytes
+     */
+    public static long ofReferenceArray(int length) {
+        return length == 0 ? 0 : align(ARRAY_HEADER + (long) length * REFERENCE);
+    }
+}
@@ -0,0 +1,128 @@
+package com.smallworld.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point money: amounts are kept as a long count of minor units (cents), so sums are exact and
+ * comparisons are plain long comparisons. Amounts are parsed straight from their decimal digits, BigDecimal
+ * is only used for the rare values with an exponent, more than two decimals or more than 16 integer digits.
+ */
+public class Money {
+
+    /**
+     * Number of decimals of an amount.
+     */
+    public static final int SCALE = 2;
+
+    private static final double MINOR_UNITS_PER_UNIT = 100.0;
+
+    /**
+     * Integer digits which can be scaled without any overflow check, 10^16 * 100 is below Long.MAX_VALUE.
+     */
+    private static final int MAX_FAST_INTEGER_DIGITS = 16;
+
+    private Money() {
+    }
+
+    /**
+     * Parses a decimal amount into minor units, a third decimal and beyond are rounded half up.
+     * @param chars buffer holding the amount, leading and trailing whitespace is ignored
+     * @param offset index of the first char of the amount
+     * @param length number of chars of the amount
+     * @return the amount in minor units
+     * @throws NumberFormatException if the chars are not a decimal number
+     * @throws ArithmeticException if the amount does not fit in a long of minor units
+     */
+    public static long parse(char[] chars, int offset, int length) {
+        int start = offset;
+        int end = offset + length;
+        while (start < end && Character.isWhitespace(chars[start])) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(chars[end - 1])) {
+            end--;
+        }
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            negative = chars[i] == '-';
+            i++;
+        }
+        long units = 0;
+        int integerDigits = 0;
+        for (; i < end && chars[i] >= '0' && chars[i] <= '9'; i++, integerDigits++) {
+            units = units * 10 + (chars[i] - '0');
+        }
+        long cents = 0;
+        int decimals = 0;
+        if (i < end && chars[i] == '.') {
+            for (i++; i < end && chars[i] >= '0' && chars[i] <= '9'; i++, decimals++) {
+                if (decimals < SCALE) {
+                    cents = cents * 10 + (chars[i] - '0');
+                }
+            }
+        }
+
+        //anything else (exponent, long integer part, extra decimals or an invalid number) takes the exact slow path
+        if (i != end || integerDigits > MAX_FAST_INTEGER_DIGITS || decimals > SCALE || integerDigits + decimals == 0) {
+            return parseSlow(new String(chars, start, end - start));
+        }
+        for (; decimals < SCALE; decimals++) {
+            cents *= 10;
+        }
+        long minorUnits = units * 100 + cents;
+        return negative ? -minorUnits : minorUnits;
+    }
+
+    /**
+     * @param amount decimal amount
+     * @return the amount in minor units, a third decimal and beyond are rounded half up
+     * @throws NumberFormatException if the text is not a decimal number
+     * @throws ArithmeticException if the amount does not fit in a long of minor units
+     */
+    public static long parse(String amount) {
+        return parse(amount.toCharArray(), 0, amount.length());
+    }
+
+    private static long parseSlow(String amount) {
+        return new BigDecimal(amount).setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Converts a double amount, which is the closest double to a decimal with at most two decimals,
+     * back to that decimal's minor units.
+     * @param amount amount in units
+     * @return the amount in minor units
+     * @throws ArithmeticException if the amount is not finite or does not fit in a long of minor units
+     */
+    public static long fromDouble(double amount) {
+        double scaled = amount * MINOR_UNITS_PER_UNIT;
+        //half up like parse, away from zero for negative amounts
+        double minorUnits = scaled < 0 ? -Math.floor(-scaled + 0.5) : Math.floor(scaled + 0.5);
+        if (!Double.isFinite(minorUnits) || Math.abs(minorUnits) >= 0x1p63) {
+            throw new ArithmeticException("Amount out of range: " + amount);
+        }
+        return (long) minorUnits;
+    }
+
+    /**
+     * Formats an amount as a plain decimal number with two decimals, e.g. 43020 as "430.20".
+     * @param minorUnits amount in minor units
+     * @return the amount in units
+     */
+    public static String format(long minorUnits) {
+        long units = Math.abs(minorUnits / 100);
+        int cents = (int) Math.abs(minorUnits % 100);
+        return (minorUnits < 0 ? "-" : "") + units + (cents < 10 ? ".0" : ".") + cents;
+    }
+
+    /**
+     * @param minorUnits amount in minor units
+     * @return the closest double to the amount in units
+     */
+    public static double toDouble(long minorUnits) {
+        return minorUnits / MINOR_UNITS_PER_UNIT;
+    }
+}
@@ -0,0 +1,90 @@
+package com.smallworld.util;
+
+/**
+ * Result of grouping the transaction/issue rows into one transaction per mtn and of encoding the
+ * client names and issue messages with dictionaries.
+ */
+public class NormalizationStats {
+
+    private final long rowCount;
+    private final long transactionCount;
+    private final long issueCount;
+    private final long estimatedBytesSaved;
+    private final long clientNameCount;
+    private final long issueMessageCount;
+    private final long estimatedDictionaryBytesSaved;
+
+    public NormalizationStats(long rowCount, long transactionCount, long issueCount, long estimatedBytesSaved,
+                              long clientNameCount, long issueMessageCount, long estimatedDictionaryBytesSaved) {
+        this.rowCount = rowCount;
+        this.transactionCount = transactionCount;
+        this.issueCount = issueCount;
+        this.estimatedBytesSaved = estimatedBytesSaved;
+        this.clientNameCount = clientNameCount;
+        this.issueMessageCount = issueMessageCount;
+        this.estimatedDictionaryBytesSaved = estimatedDictionaryBytesSaved;
+    }
+
+    /**
+     * @return number of rows read from the source
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return number of distinct transactions (mtn) kept
+     */
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * @return number of distinct issues kept
+     */
+    public long getIssueCount() {
+        return issueCount;
+    }
+
+    /**
+     * @return estimated heap bytes saved compared to keeping one transaction per row
+     */
+    public long getEstimatedBytesSaved() {
+        return estimatedBytesSaved;
+    }
+
+    /**
+     * @return number of distinct client names (senders and beneficiaries)
+     */
+    public long getClientNameCount() {
+        return clientNameCount;
+    }
+
+    /**
+     * @return number of distinct issue messages
+     */
+    public long getIssueMessageCount() {
+        return issueMessageCount;
+    }
+
+    /**
+     * @return estimated heap bytes saved by keeping every distinct name and message once instead of one
+     * string per transaction and issue, net of the dictionaries
+     */
+    public long getEstimatedDictionaryBytesSaved() {
+        return estimatedDictionaryBytesSaved;
+    }
+
+    @Override
+    public String toString() {
+        return "NormalizationStats{" +
+                "rowCount=" + rowCount +
+                "| transactionCount=" + transactionCount +
+                "| issueCount=" + issueCount +
+                "| estimatedBytesSaved=" + estimatedBytesSaved +
+                "| clientNameCount=" + clientNameCount +
+                "| issueMessageCount=" + issueMessageCount +
+                "| estimatedDictionaryBytesSaved=" + estimatedDictionaryBytesSaved +
+                '}';
+    }
+}
@@ -0,0 +1,333 @@
+package com.smallworld.util;
+
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.smallworld.model.Transaction;
+import com.smallworld.store.NameDictionary;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Loads a transactions JSON file by memory mapping it and parsing chunks of it in parallel.
+ * <p>
+ * The file is split near equally sized offsets at a top level object boundary, i.e. the '{' of a
+ * transaction that directly follows a '},' sequence. Each chunk is then wrapped in '[' and ']' and
+ * parsed by TransactionJsonReader on the executor, and the chunk results are concatenated in file
+ * order so the result is identical to the sequential loader. Every chunk interns its client names and issue
+ * messages in dictionaries of its own, the store interns them again across the chunks when the rows are added.
+ * <p>
+ * Finding the boundaries only looks at a few bytes around every split offset, so nothing is scanned
+ * sequentially. A '},{' sequence inside a string value or a nested value can be mistaken for a
+ * boundary, but then the chunk before it is left with an unterminated string or object and fails to
+ * parse. Because of that every successful parse proves its end boundary was a real one, and if any
+ * chunk fails the file is simply loaded again by the sequential reader, which also reports the
+ * actual error of a malformed file.
+ * <p>
+ * The rows are validated while they are parsed. With a policy skipping the invalid rows every chunk counts its
+ * own rejected rows, and the reports are combined in file order so the row numbers are those of the whole file.
+ * <p>
+ * A newline-delimited JSON (NDJSON) file is split the same way at the newline following every split offset,
+ * which is always a row boundary since a JSON string can not hold a raw newline. A gzip compressed file can not
+ * be split, it is read sequentially.
+ */
+public class ParallelTransactionLoader {
+
+    /**
+     * Chunks smaller than this are not worth the task overhead.
+     */
+    static final long DEFAULT_MIN_CHUNK_BYTES = 1 << 20;
+
+    /**
+     * A single mapping can not exceed 2GB, chunks are kept well below that.
+     */
+    private static final long MAX_CHUNK_BYTES = 1 << 30;
+
+    private static final byte[] ARRAY_START = {'['};
+    private static final byte[] ARRAY_END = {']'};
+
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final long minChunkBytes;
+
+    /**
+     * @param executor executor which parses the chunks
+     * @param parallelism number of threads of the executor, the file is split in a few chunks per thread
+     */
+    public ParallelTransactionLoader(ExecutorService executor, int parallelism) {
+        this(executor, parallelism, DEFAULT_MIN_CHUNK_BYTES);
+    }
+
+    ParallelTransactionLoader(ExecutorService executor, int parallelism, long minChunkBytes) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.minChunkBytes = minChunkBytes;
+    }
+
+    /**
+     * Loads all the transactions of the file.
+     * @param file transactions.json file
+     * @return list of type 'Transaction' in the same order as the file
+     * @throws IOException if the file can not be read or is not valid JSON
+     */
+    public List<Transaction> load(File file) throws IOException {
+        return load(file, new RejectedRows(ValidationPolicy.FAIL_FAST));
+    }
+
+    /**
+     * Loads all the valid transactions of the file, the invalid rows are handled according to the policy of
+     * the report.
+     * @param file transactions.json file
+     * @param rejectedRows policy applied to the invalid rows and report of the rows it rejected
+     * @return list of type 'Transaction' in the same order as the file
+     * @throws IOException if the file can not be read or is not valid JSON
+     * @throws InvalidTransactionException for the first invalid row if the policy is ValidationPolicy.FAIL_FAST
+     */
+    public List<Transaction> load(File file, RejectedRows rejectedRows) throws IOException {
+        List<Transaction> transactions = loadInChunks(file, rejectedRows);
+        if (transactions == null) {
+            transactions = new ArrayList<>();
+            TransactionJsonReader.read(file, transactions::add, new NameDictionary(), new NameDictionary(), rejectedRows);
+        }
+        return transactions;
+    }
+
+    /**
+     * Loads all the valid transactions of a newline-delimited JSON file, the invalid rows are handled according
+     * to the policy of the report.
+     * @param file file with one transaction row per line, which may be gzip compressed
+     * @param rejectedRows policy applied to the invalid rows and report of the rows it rejected
+     * @return list of type 'Transaction' in the same order as the file
+     * @throws IOException if the file can not be read or a line is not valid JSON
+     * @throws InvalidTransactionException for the first invalid row if the policy is ValidationPolicy.FAIL_FAST
+     */
+    public List<Transaction> loadLines(File file, RejectedRows rejectedRows) throws IOException {
+        List<Transaction> transactions = loadInChunks(file, rejectedRows, true);
+        if (transactions == null) {
+            transactions = new ArrayList<>();
+            TransactionJsonReader.readLines(file, transactions::add, new NameDictionary(), new NameDictionary(),
+                    rejectedRows);
+        }
+        return transactions;
+    }
+
+    List<Transaction> loadInChunks(File file) throws IOException {
+        return loadInChunks(file, new RejectedRows(ValidationPolicy.FAIL_FAST));
+    }
+
+    List<Transaction> loadInChunks(File file, RejectedRows rejectedRows) throws IOException {
+        return loadInChunks(file, rejectedRows, false);
+    }
+
+    /**
+     * Parses the chunks of the file in parallel.
+     * @param rejectedRows report receiving the rejected rows of the chunks, left untouched if null is returned
+     * @param lines true for a file with one row per line, false for a JSON array
+     * @return the transactions, or null if the file could not be split or one of its chunks failed to parse
+     */
+    List<Transaction> loadInChunks(File file, RejectedRows rejectedRows, boolean lines) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (lines && TransactionJsonReader.isGzip(channel)) {
+                return null;
+            }
+            long[] boundaries = findChunkBoundaries(channel, lines);
+            if (boundaries.length <= 2) {
+                return null;
+            }
+
+            List<Future<Chunk>> chunks = new ArrayList<>(boundaries.length - 1);
+            for (int i = 0; i < boundaries.length - 1; i++) {
+                boolean first = i == 0;
+                boolean last = i == boundaries.length - 2;
+                long start = boundaries[i];
+                //the ',' between two chunks belongs to neither of them, a line chunk ends with its newline
+                long end = last || lines ? boundaries[i + 1] : endOfObjectBefore(channel, boundaries[i + 1]);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                chunks.add(executor.submit(() -> {
+                    Chunk chunk = new Chunk(rejectedRows.getPolicy());
+                    if (lines) {
+                        TransactionJsonReader.readLines(new ByteBufferBackedInputStream(buffer), chunk.transactions::add,
+                                chunk.clientNames, chunk.issueMessages, chunk.rejectedRows);
+                    } else {
+                        TransactionJsonReader.read(chunkStream(buffer, first, last), chunk.transactions::add,
+                                chunk.clientNames, chunk.issueMessages, chunk.rejectedRows);
+                    }
+                    return chunk;
+                }));
+            }
+            return merge(chunks, file, rejectedRows);
+        }
+    }
+
+    /**
+     * Transactions and rejected rows of one chunk. The names and messages of the chunk are interned in its own
+     * dictionaries, so a repeated value is decoded once per chunk instead of once per row, without sharing a
+     * dictionary between the threads.
+     */
+    private static final class Chunk {
+
+        private final List<Transaction> transactions = new ArrayList<>();
+        private final NameDictionary clientNames = new NameDictionary();
+        private final NameDictionary issueMessages = new NameDictionary();
+        private final RejectedRows rejectedRows;
+
+        private Chunk(ValidationPolicy policy) {
+            rejectedRows = new RejectedRows(policy);
+        }
+    }
+
+    /**
+     * Waits for all the chunks and concatenates them in file order.
+     * @return the transactions, or null if any chunk failed
+     */
+    private List<Transaction> merge(List<Future<Chunk>> chunks, File file, RejectedRows rejectedRows) throws IOException {
+        List<Chunk> results = new ArrayList<>(chunks.size());
+        boolean failed = false;
+        int size = 0;
+        for (Future<Chunk> chunk : chunks) {
+            try {
+                Chunk result = chunk.get();
+                results.add(result);
+                size += result.transactions.size();
+            } catch (ExecutionException e) {
+                failed = true;
+            } catch (InterruptedException e) {
+                chunks.forEach(c -> c.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while loading " + file);
+            }
+        }
+        if (failed) {
+            return null;
+        }
+        List<Transaction> transactions = new ArrayList<>(size);
+        for (Chunk result : results) {
+            transactions.addAll(result.transactions);
+            rejectedRows.addChunk(result.rejectedRows);
+        }
+        return transactions;
+    }
+
+    /**
+     * Returns the start offsets of the chunks followed by the file size. Offsets where no boundary is
+     * found before the next split offset are dropped, so a file with huge rows just gets fewer chunks.
+     */
+    private long[] findChunkBoundaries(FileChannel channel, boolean lines) throws IOException {
+        long size = channel.size();
+        long chunkBytes = Math.min(MAX_CHUNK_BYTES, Math.max(minChunkBytes, size / (parallelism * 4L)));
+        int chunkCount = (int) Math.max(1, (size + chunkBytes - 1) / chunkBytes);
+
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        long previous = 0;
+        for (int i = 1; i < chunkCount; i++) {
+            long target = Math.max(previous + 1, size * i / chunkCount);
+            long limit = Math.min(size, size * (i + 1) / chunkCount);
+            long boundary = lines ? findLineStart(channel, target, limit) : findObjectStart(channel, target, limit);
+            if (boundary >= 0) {
+                boundaries.add(boundary);
+                previous = boundary;
+            }
+        }
+        boundaries.add(size);
+        long[] offsets = boundaries.stream().mapToLong(Long::longValue).toArray();
+        for (int i = 0; offsets.length > 2 && i < offsets.length - 1; i++) {
+            if (offsets[i + 1] - offsets[i] > MAX_CHUNK_BYTES) {
+                throw new IOException("Could not split the file into chunks smaller than " + MAX_CHUNK_BYTES + " bytes");
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Returns the offset of the first '{' in [from, limit) which follows a '}' and a ',' separated only
+     * by whitespace, or -1 if there is none.
+     */
+    private static long findObjectStart(FileChannel channel, long from, long limit) throws IOException {
+        if (from >= limit) {
+            return -1;
+        }
+        //the whitespace before the '{' can be scanned backwards from the window start
+        MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, from, limit - from);
+        for (int i = 0; i < window.limit(); i++) {
+            if (window.get(i) == '{') {
+                long comma = previousNonWhitespace(channel, from + i);
+                if (comma >= 0 && byteAt(channel, comma) == ',') {
+                    long brace = previousNonWhitespace(channel, comma);
+                    if (brace >= 0 && byteAt(channel, brace) == '}') {
+                        return from + i;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the offset following the first newline in [from, limit), or -1 if there is none.
+     */
+    private static long findLineStart(FileChannel channel, long from, long limit) throws IOException {
+        if (from >= limit) {
+            return -1;
+        }
+        MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, from, limit - from);
+        for (int i = 0; i < window.limit(); i++) {
+            if (window.get(i) == '\n') {
+                return from + i + 1 < limit ? from + i + 1 : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the offset just after the '}' which precedes the ',' before the given object start.
+     */
+    private static long endOfObjectBefore(FileChannel channel, long objectStart) throws IOException {
+        return previousNonWhitespace(channel, previousNonWhitespace(channel, objectStart)) + 1;
+    }
+
+    private static long previousNonWhitespace(FileChannel channel, long offset) throws IOException {
+        for (long i = offset - 1; i >= 0; i--) {
+            byte b = byteAt(channel, i);
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte byteAt(FileChannel channel, long offset) throws IOException {
+        ByteBuffer single = ByteBuffer.allocate(1);
+        channel.read(single, offset);
+        return single.get(0);
+    }
+
+    /**
+     * Wraps a chunk so it becomes a JSON array on its own.
+     */
+    private static InputStream chunkStream(MappedByteBuffer buffer, boolean first, boolean last) {
+        InputStream chunk = new ByteBufferBackedInputStream(buffer);
+        if (!first) {
+            chunk = new SequenceInputStream(new ByteArrayInputStream(ARRAY_START), chunk);
+        }
+        if (!last) {
+            chunk = new SequenceInputStream(chunk, new ByteArrayInputStream(ARRAY_END));
+        }
+        return chunk;
+    }
+}
@@ -0,0 +1,151 @@
+package com.smallworld.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Applies a ValidationPolicy to the rows of one conversion or load and reports the rows it rejected: how many,
+ * how many per reason and per field, and with ValidationPolicy.COLLECT_ERRORS every one of them with its row
+ * number. It is filled by a single thread while the rows are converted and read afterwards.
+ * <p>
+ * Usage:
+ * <pre>
+ * RejectedRows rejectedRows = new RejectedRows(ValidationPolicy.SKIP_AND_COUNT);
+ * List&lt;Transaction&gt; transactions = ConversionUtils.convertMapToObject(maps, rejectedRows);
+ * long rejected = rejectedRows.getRejectedCount();
+ * </pre>
+ */
+public class RejectedRows {
+
+    private final ValidationPolicy policy;
+    private long rowCount;
+    private long rejectedCount;
+    private final Map<RowError.Reason, Long> rejectedCountByReason = new EnumMap<>(RowError.Reason.class);
+    private final Map<String, Long> rejectedCountByField = new TreeMap<>();
+    private final List<RowError> errors = new ArrayList<>();
+
+    /**
+     * @param policy what to do with an invalid row
+     */
+    public RejectedRows(ValidationPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("policy must not be null");
+        }
+        this.policy = policy;
+    }
+
+    /**
+     * Counts a row read from the input.
+     *
+     * @return its row number, starting at 1
+     */
+    long nextRow() {
+        return ++rowCount;
+    }
+
+    /**
+     * Rejects a row according to the policy.
+     *
+     * @param rowNumber number returned by nextRow for the row
+     * @param reason why the row is rejected
+     * @param field the missing or invalid field, null for an empty row
+     * @param detail what was wrong with the value, may be null
+     * @throws InvalidTransactionException with ValidationPolicy.FAIL_FAST
+     */
+    void reject(long rowNumber, RowError.Reason reason, String field, String detail) {
+        RowError rowError = new RowError(rowNumber, reason, field, detail);
+        if (policy == ValidationPolicy.FAIL_FAST) {
+            throw new InvalidTransactionException(rowError);
+        }
+        count(rowError);
+    }
+
+    private void count(RowError rowError) {
+        rejectedCount++;
+        rejectedCountByReason.merge(rowError.getReason(), 1L, Long::sum);
+        if (rowError.getField() != null) {
+            rejectedCountByField.merge(rowError.getField(), 1L, Long::sum);
+        }
+        if (policy == ValidationPolicy.COLLECT_ERRORS) {
+            errors.add(rowError);
+        }
+    }
+
+    /**
+     * Adds the rows of a chunk which follows all the rows counted so far, its row numbers are shifted accordingly.
+     *
+     * @param chunk rows of the next chunk of the same input, validated with the same policy
+     */
+    void addChunk(RejectedRows chunk) {
+        long rowOffset = rowCount;
+        rowCount += chunk.rowCount;
+        rejectedCount += chunk.rejectedCount;
+        chunk.rejectedCountByReason.forEach((reason, count) -> rejectedCountByReason.merge(reason, count, Long::sum));
+        chunk.rejectedCountByField.forEach((field, count) -> rejectedCountByField.merge(field, count, Long::sum));
+        for (RowError rowError : chunk.errors) {
+            errors.add(rowError.shifted(rowOffset));
+        }
+    }
+
+    public ValidationPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return number of rows read, valid or not
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return number of rows converted
+     */
+    public long getAcceptedCount() {
+        return rowCount - rejectedCount;
+    }
+
+    /**
+     * @return number of rows skipped, always 0 with ValidationPolicy.FAIL_FAST
+     */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * @return unmodifiable number of rows skipped per reason, the reasons without rows are left out
+     */
+    public Map<RowError.Reason, Long> getRejectedCountByReason() {
+        return Collections.unmodifiableMap(rejectedCountByReason);
+    }
+
+    /**
+     * @return unmodifiable number of rows skipped per missing or invalid field, sorted by field
+     */
+    public Map<String, Long> getRejectedCountByField() {
+        return Collections.unmodifiableMap(rejectedCountByField);
+    }
+
+    /**
+     * @return unmodifiable list of the rows skipped in input order, empty unless the policy is
+     * ValidationPolicy.COLLECT_ERRORS
+     */
+    public List<RowError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    @Override
+    public String toString() {
+        return "RejectedRows{" +
+                "policy=" + policy +
+                "| rowCount=" + rowCount +
+                "| rejectedCount=" + rejectedCount +
+                "| rejectedCountByReason=" + rejectedCountByReason +
+                "| rejectedCountByField=" + rejectedCountByField +
+                '}';
+    }
+}
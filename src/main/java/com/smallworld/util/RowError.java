@@ -0,0 +1,77 @@
+package com.smallworld.util;
+
+/**
+ * A row rejected by the validation of ConversionUtils or TransactionJsonReader.
+ */
+public class RowError {
+
+    /**
+     * Why a row is rejected, the message is the one of the exception thrown with ValidationPolicy.FAIL_FAST
+     */
+    public enum Reason {
+        EMPTY("Transaction is Empty!"),
+        MISSING_FIELD("Incomplete Transaction!"),
+        INVALID_FIELD("Invalid Transaction!");
+
+        private final String message;
+
+        Reason(String message) {
+            this.message = message;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    private final long rowNumber;
+    private final Reason reason;
+    private final String field;
+    private final String detail;
+
+    /**
+     * @param rowNumber position of the row in its input, starting at 1
+     * @param reason why the row is rejected
+     * @param field the missing or invalid field, null for an empty row
+     * @param detail what was wrong with the value, null if the field is missing or the row empty
+     */
+    public RowError(long rowNumber, Reason reason, String field, String detail) {
+        this.rowNumber = rowNumber;
+        this.reason = reason;
+        this.field = field;
+        this.detail = detail;
+    }
+
+    public long getRowNumber() {
+        return rowNumber;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * @return the same error for a row further in the input, used to number the rows of a chunk in the whole file
+     */
+    RowError shifted(long rowOffset) {
+        return new RowError(rowNumber + rowOffset, reason, field, detail);
+    }
+
+    @Override
+    public String toString() {
+        return "RowError{" +
+                "rowNumber=" + rowNumber +
+                "| reason=" + reason +
+                "| field=" + field +
+                "| detail=" + detail +
+                '}';
+    }
+}
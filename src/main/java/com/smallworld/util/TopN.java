@@ -0,0 +1,80 @@
+package com.smallworld.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the n best elements offered to it in a bounded min-heap, so selecting the top n of m elements
+ * takes O(m log n) time and O(n) memory instead of sorting all of them.
+ * Elements comparing equal are ranked by the order they were offered in, the first one wins.
+ *
+ * @param <T> type of the elements
+ */
+public class TopN<T> {
+
+    private final int n;
+    private final Comparator<? super T> order;
+    private final Comparator<Entry<T>> heapOrder;
+    private final PriorityQueue<Entry<T>> heap;
+    private long offered;
+
+    /**
+     * @param n number of elements to keep
+     * @param order ranking of the elements, the greatest element is the best
+     */
+    public TopN(int n, Comparator<? super T> order) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must not be negative");
+        }
+        this.n = n;
+        this.order = order;
+        //the head of the heap is the worst element kept, i.e. the smallest and among equals the latest
+        this.heapOrder = Comparator.<Entry<T>, T>comparing(entry -> entry.element, order)
+                .thenComparing(entry -> entry.sequence, Comparator.reverseOrder());
+        this.heap = new PriorityQueue<>(Math.max(1, Math.min(n, 1024)), heapOrder);
+    }
+
+    /**
+     * Offers an element, it is kept if it ranks among the n best offered so far.
+     * @param element element to offer
+     */
+    public void offer(T element) {
+        long sequence = offered++;
+        if (heap.size() < n) {
+            heap.add(new Entry<>(element, sequence));
+        } else if (n > 0 && order.compare(element, heap.peek().element) > 0) {
+            //an equal element offered later never replaces the kept one
+            heap.poll();
+            heap.add(new Entry<>(element, sequence));
+        }
+    }
+
+    /**
+     * Offers the kept elements of another TopN whose elements were all offered after the elements of this one,
+     * e.g. the top n of the next range of a scan. The result is the same as if they had been offered here.
+     * @param later top n of the elements offered after the ones of this TopN
+     */
+    public void merge(TopN<? extends T> later) {
+        for (T element : later.toList()) {
+            offer(element);
+        }
+    }
+
+    /**
+     * @return the kept elements, best first
+     */
+    public List<T> toList() {
+        List<Entry<T>> entries = new ArrayList<>(heap);
+        entries.sort(heapOrder.reversed());
+        List<T> elements = new ArrayList<>(entries.size());
+        for (Entry<T> entry : entries) {
+            elements.add(entry.element);
+        }
+        return elements;
+    }
+
+    private record Entry<T>(T element, long sequence) {
+    }
+}
@@ -0,0 +1,400 @@
+package com.smallworld.util;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.smallworld.model.BeneficiaryInformation;
+import com.smallworld.model.IssueInformation;
+import com.smallworld.model.SenderInformation;
+import com.smallworld.model.Transaction;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic generator of synthetic transaction/issue rows, for load and scale testing.
+ * <p>
+ * The rows are produced one at a time from the seed, so a generator can be iterated any number of times
+ * (always giving the same rows), streamed into TransactionDataFetcher.setTransactions or written as a
+ * transactions.json compatible file, in constant memory whatever the row count.
+ * <p>
+ * Every transaction (mtn) draws its sender from a Zipf distribution over the senders, so a few senders make
+ * most of the transactions, and its beneficiary uniformly. Senders and beneficiaries are distinct clients.
+ * Its number of issues is drawn from the issues per mtn weights, a transaction with n issues is n rows and a
+ * transaction without issue is a single row with a null issue id. Every issue is solved with the solved ratio.
+ */
+public class TransactionGenerator implements Iterable<Transaction> {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final String[] FIRST_NAMES = {"Tom", "Arthur", "John", "Polly", "Ada", "Michael", "Grace",
+            "Alfie", "Aberama", "Esme", "Lizzie", "Linda", "Finn", "Isaiah", "Jeremiah", "Ruben", "Billy", "Aunt",
+            "May", "Luca", "Oswald", "Winston", "Johnny", "Charlie", "Curly", "Frances", "Ruby", "Karl", "Erasmus", "Jessie"};
+    private static final String[] LAST_NAMES = {"Shelby", "Solomons", "Gold", "Gray", "Thorne", "Carleton", "Changretta",
+            "Mosley", "Lee", "Boswell", "Burgess", "Strong", "Kimber", "Campbell", "Sabini", "Johnson", "Jesus", "Boss",
+            "Eden", "Black", "Rivers", "Moss", "Cole", "Hale", "Ward", "Knight", "Stone", "Wells", "Fox", "Marsh"};
+    private static final String[] MESSAGES = {"Looks like money laundering", "Never gonna give you up",
+            "Something's fishy", "Don't let this transaction make you feel blue", "Sender flagged by sanctions screening",
+            "Beneficiary account under review", "Unusual amount for this corridor", "Document expired"};
+
+    private int rows = 1_000;
+    private int senders = 100;
+    private int beneficiaries = 100;
+    private double senderSkew = 1.0;
+    private double[] issuesPerMtnWeights = {0.4, 0.4, 0.15, 0.05};
+    private double solvedRatio = 0.5;
+    private int issueMessages = MESSAGES.length;
+    private final long seed;
+
+    /**
+     * @param seed seed of every random choice, the same settings and seed always give the same rows
+     */
+    public TransactionGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @param rows number of rows to generate, the last transaction is cut short if its rows do not fit
+     */
+    public void setRows(int rows) {
+        if (rows < 0) {
+            throw new IllegalArgumentException("Rows must not be negative");
+        }
+        this.rows = rows;
+    }
+
+    public int getSenders() {
+        return senders;
+    }
+
+    /**
+     * @param senders number of distinct senders
+     */
+    public void setSenders(int senders) {
+        if (senders < 1) {
+            throw new IllegalArgumentException("Senders must be at least 1");
+        }
+        this.senders = senders;
+    }
+
+    public int getBeneficiaries() {
+        return beneficiaries;
+    }
+
+    /**
+     * @param beneficiaries number of distinct beneficiaries
+     */
+    public void setBeneficiaries(int beneficiaries) {
+        if (beneficiaries < 1) {
+            throw new IllegalArgumentException("Beneficiaries must be at least 1");
+        }
+        this.beneficiaries = beneficiaries;
+    }
+
+    public double getSenderSkew() {
+        return senderSkew;
+    }
+
+    /**
+     * @param senderSkew exponent of the Zipf distribution of the senders, 0 is uniform and 1 is the classic
+     *                   Zipf law where the k-th most active sender makes 1/k as many transactions as the first
+     */
+    public void setSenderSkew(double senderSkew) {
+        if (!(senderSkew >= 0)) {
+            throw new IllegalArgumentException("Sender skew must not be negative");
+        }
+        this.senderSkew = senderSkew;
+    }
+
+    public double[] getIssuesPerMtnWeights() {
+        return issuesPerMtnWeights.clone();
+    }
+
+    /**
+     * @param issuesPerMtnWeights relative weight of a transaction having 0, 1, 2... issues
+     */
+    public void setIssuesPerMtnWeights(double... issuesPerMtnWeights) {
+        if (issuesPerMtnWeights.length == 0 || Arrays.stream(issuesPerMtnWeights).anyMatch(w -> !(w >= 0))
+                || Arrays.stream(issuesPerMtnWeights).sum() <= 0) {
+            throw new IllegalArgumentException("Issues per mtn weights must be non negative with a positive sum");
+        }
+        this.issuesPerMtnWeights = issuesPerMtnWeights.clone();
+    }
+
+    public double getSolvedRatio() {
+        return solvedRatio;
+    }
+
+    /**
+     * @param solvedRatio probability of an issue being solved, between 0 and 1
+     */
+    public void setSolvedRatio(double solvedRatio) {
+        if (!(solvedRatio >= 0 && solvedRatio <= 1)) {
+            throw new IllegalArgumentException("Solved ratio must be between 0 and 1");
+        }
+        this.solvedRatio = solvedRatio;
+    }
+
+    public int getIssueMessages() {
+        return issueMessages;
+    }
+
+    /**
+     * @param issueMessages number of distinct issue messages
+     */
+    public void setIssueMessages(int issueMessages) {
+        if (issueMessages < 1) {
+            throw new IllegalArgumentException("Issue messages must be at least 1");
+        }
+        this.issueMessages = issueMessages;
+    }
+
+    /**
+     * @return the rows in order, every call starts again from the seed
+     */
+    @Override
+    public Iterator<Transaction> iterator() {
+        return new RowIterator();
+    }
+
+    /**
+     * Writes the rows as a transactions.json compatible file.
+     * @param file file to write
+     * @throws IOException if the file can not be written
+     */
+    public void write(File file) throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(file, JsonEncoding.UTF8)) {
+            write(generator);
+        }
+    }
+
+    /**
+     * Writes the rows as a transactions.json compatible JSON array. The stream is not closed by this method.
+     * @param outputStream stream to write to
+     * @throws IOException if the stream can not be written
+     */
+    public void write(OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(outputStream, JsonEncoding.UTF8)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            write(generator);
+        }
+    }
+
+    private void write(JsonGenerator generator) throws IOException {
+        generator.useDefaultPrettyPrinter();
+        generator.writeStartArray();
+        for (Transaction row : this) {
+            generator.writeStartObject();
+            generator.writeNumberField("mtn", row.getMtn());
+            generator.writeFieldName("amount");
+            generator.writeNumber(Money.format(row.getAmountInMinorUnits()));
+            generator.writeStringField("senderFullName", row.getSenderInformation().getSenderFullName());
+            generator.writeNumberField("senderAge", row.getSenderInformation().getSenderAge());
+            generator.writeStringField("beneficiaryFullName", row.getBeneficiaryInformation().getBeneficiaryFullName());
+            generator.writeNumberField("beneficiaryAge", row.getBeneficiaryInformation().getBeneficiaryAge());
+            if (row.getIssues().isEmpty()) {
+                generator.writeNullField("issueId");
+                generator.writeBooleanField("issueSolved", true);
+                generator.writeNullField("issueMessage");
+            } else {
+                IssueInformation issue = row.getIssues().get(0);
+                generator.writeNumberField("issueId", Integer.parseInt(issue.getIssueId()));
+                generator.writeBooleanField("issueSolved", issue.isIssueSolved());
+                generator.writeStringField("issueMessage", issue.getIssueMessage());
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * Writes a synthetic transactions file from the command line, e.g. for 100M rows:
+     * java -cp ... com.smallworld.util.TransactionGenerator big.json 100000000 50000 200000 42
+     * @param args file, rows and optionally senders, beneficiaries and seed
+     * @throws IOException if the file can not be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TransactionGenerator <file> <rows> [senders] [beneficiaries] [seed]");
+            return;
+        }
+        TransactionGenerator generator = new TransactionGenerator(args.length > 4 ? Long.parseLong(args[4]) : 42);
+        generator.setRows(Integer.parseInt(args[1]));
+        if (args.length > 2) {
+            generator.setSenders(Integer.parseInt(args[2]));
+        }
+        if (args.length > 3) {
+            generator.setBeneficiaries(Integer.parseInt(args[3]));
+        }
+        generator.write(new File(args[0]));
+    }
+
+    /**
+     * @param client index of a client, senders come first and beneficiaries after them
+     * @return a distinct full name for every index
+     */
+    static String clientName(int client) {
+        String name = FIRST_NAMES[client % FIRST_NAMES.length] + " "
+                + LAST_NAMES[(client / FIRST_NAMES.length) % LAST_NAMES.length];
+        int round = client / (FIRST_NAMES.length * LAST_NAMES.length);
+        return round == 0 ? name : name + " " + (round + 1);
+    }
+
+    private static int clientAge(int client) {
+        return 18 + Math.floorMod(client * 0x9E3779B9, 70);
+    }
+
+    private static String message(int index) {
+        return index < MESSAGES.length ? MESSAGES[index] : MESSAGES[index % MESSAGES.length] + " #" + index;
+    }
+
+    private class RowIterator implements Iterator<Transaction> {
+
+        private final SplittableRandom random = new SplittableRandom(seed);
+        private final ZipfSampler senderSampler = new ZipfSampler(senders, senderSkew);
+        private final double[] cumulativeIssueWeights = cumulative(issuesPerMtnWeights);
+
+        private int rowIndex;
+        private long mtn = 100_000;
+        private int issueId;
+        //current transaction, repeated on every row of its issues
+        private int rowsLeftOfMtn;
+        private boolean withIssues;
+        private long amount;
+        private int sender;
+        private int beneficiary;
+
+        @Override
+        public boolean hasNext() {
+            return rowIndex < rows;
+        }
+
+        @Override
+        public Transaction next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            rowIndex++;
+            if (rowsLeftOfMtn == 0) {
+                nextMtn();
+            }
+            rowsLeftOfMtn--;
+
+            SenderInformation senderInformation = new SenderInformation();
+            senderInformation.setSenderFullName(clientName(sender));
+            senderInformation.setSenderAge(clientAge(sender));
+            BeneficiaryInformation beneficiaryInformation = new BeneficiaryInformation();
+            beneficiaryInformation.setBeneficiaryFullName(clientName(senders + beneficiary));
+            beneficiaryInformation.setBeneficiaryAge(clientAge(senders + beneficiary));
+
+            Transaction transaction = new Transaction();
+            transaction.setMtn(mtn);
+            transaction.setAmountInMinorUnits(amount);
+            transaction.setSenderInformation(senderInformation);
+            transaction.setBeneficiaryInformation(beneficiaryInformation);
+            if (withIssues) {
+                IssueInformation issueInformation = new IssueInformation();
+                issueInformation.setIssueId(String.valueOf(++issueId));
+                issueInformation.setIssueSolved(random.nextDouble() < solvedRatio);
+                issueInformation.setIssueMessage(message(random.nextInt(issueMessages)));
+                transaction.addIssue(issueInformation);
+            }
+            return transaction;
+        }
+
+        private void nextMtn() {
+            //mtns are increasing with random gaps so they look like real references
+            mtn += 1 + random.nextInt(1_000);
+            sender = senderSampler.sample(random) - 1;
+            beneficiary = random.nextInt(beneficiaries);
+            //amounts between 1.00 and 10000.00, most of them small
+            amount = 100 + (long) (999_900 * Math.pow(random.nextDouble(), 3));
+            int issues = pick(cumulativeIssueWeights, random.nextDouble());
+            withIssues = issues > 0;
+            rowsLeftOfMtn = Math.max(1, issues);
+        }
+
+        private double[] cumulative(double[] weights) {
+            double[] cumulative = new double[weights.length];
+            double sum = Arrays.stream(weights).sum();
+            double running = 0;
+            for (int i = 0; i < weights.length; i++) {
+                running += weights[i];
+                cumulative[i] = running / sum;
+            }
+            return cumulative;
+        }
+
+        private int pick(double[] cumulative, double value) {
+            for (int i = 0; i < cumulative.length - 1; i++) {
+                if (value < cumulative[i]) {
+                    return i;
+                }
+            }
+            return cumulative.length - 1;
+        }
+    }
+
+    /**
+     * Samples ranks 1..n from a Zipf distribution in constant time and memory with the rejection-inversion
+     * method of Hormann and Derflinger, so millions of senders need no probability table.
+     */
+    static final class ZipfSampler {
+
+        private final int n;
+        private final double exponent;
+        private final double hIntegralX1;
+        private final double hIntegralN;
+        private final double s;
+
+        ZipfSampler(int n, double exponent) {
+            this.n = n;
+            this.exponent = exponent;
+            hIntegralX1 = hIntegral(1.5) - 1;
+            hIntegralN = hIntegral(n + 0.5);
+            s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+        }
+
+        int sample(SplittableRandom random) {
+            while (true) {
+                double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+                double x = hIntegralInverse(u);
+                int k = (int) Math.min(n, Math.max(1, Math.round(x)));
+                if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+                    return k;
+                }
+            }
+        }
+
+        private double h(double x) {
+            return Math.exp(-exponent * Math.log(x));
+        }
+
+        private double hIntegral(double x) {
+            double logX = Math.log(x);
+            return expm1OverX((1 - exponent) * logX) * logX;
+        }
+
+        private double hIntegralInverse(double x) {
+            double t = Math.max(-1, x * (1 - exponent));
+            return Math.exp(log1pOverX(t) * x);
+        }
+
+        private static double log1pOverX(double x) {
+            return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1 / 3.0 - 0.25 * x));
+        }
+
+        private static double expm1OverX(double x) {
+            return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x / 3.0 * (1 + 0.25 * x));
+        }
+    }
+}
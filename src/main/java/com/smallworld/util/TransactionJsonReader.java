@@ -0,0 +1,523 @@
+package com.smallworld.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.exc.InputCoercionException;
+import com.smallworld.model.BeneficiaryInformation;
+import com.smallworld.model.IssueInformation;
+import com.smallworld.model.SenderInformation;
+import com.smallworld.model.Transaction;
+import com.smallworld.store.NameDictionary;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming reader which converts the transactions JSON array directly into 'Transaction' objects.
+ * Unlike the map based path (ObjectMapper + ConversionUtils) no intermediate map or string is created
+ * for a row, every value is read from the parser token and set on the model straight away.
+ * Every row becomes a transaction with at most one issue, see TransactionStore for merging them by mtn.
+ * <p>
+ * When dictionaries are given, client names and issue messages are looked up straight from the parser's
+ * char buffer and the canonical String of the dictionary is set on the model, so a repeated value does not
+ * create a new String for every row.
+ * <p>
+ * Every row is validated while it is read, like ConversionUtils does for maps, and an invalid row is handled
+ * according to the ValidationPolicy of the given RejectedRows (fail fast by default). A JSON syntax error is
+ * not a row error, it always fails the read with an IOException.
+ * <p>
+ * The readLines methods read newline-delimited JSON (NDJSON, JSON lines) instead: one transaction row object per
+ * line and no enclosing array, plain or gzip compressed. Such a file can be appended to and split at any newline,
+ * and a file which is still being written can be followed from the offset where the previous read stopped.
+ */
+public class TransactionJsonReader {
+
+    /**
+     * JsonFactory is thread safe and caches its symbol tables, so a single instance is shared.
+     */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    //Bit flags of the fields that must be present in every row
+    private static final int MTN = 1;
+    private static final int AMOUNT = 1 << 1;
+    private static final int SENDER_FULL_NAME = 1 << 2;
+    private static final int SENDER_AGE = 1 << 3;
+    private static final int BENEFICIARY_FULL_NAME = 1 << 4;
+    private static final int BENEFICIARY_AGE = 1 << 5;
+    private static final int ISSUE_SOLVED = 1 << 6;
+    private static final int REQUIRED_FIELDS = MTN | AMOUNT | SENDER_FULL_NAME | SENDER_AGE
+            | BENEFICIARY_FULL_NAME | BENEFICIARY_AGE | ISSUE_SOLVED;
+    //Names of the required fields, in the order of their bits
+    private static final String[] REQUIRED_FIELD_NAMES = {"mtn", "amount", "senderFullName", "senderAge",
+            "beneficiaryFullName", "beneficiaryAge", "issueSolved"};
+
+    private TransactionJsonReader() {
+    }
+
+    /**
+     * Reads all the transactions of the given JSON file.
+     * @param file transactions.json file
+     * @return list of type 'Transaction' in the same order as the file
+     * @throws IOException if the file can not be read or is not valid JSON
+     */
+    public static List<Transaction> read(File file) throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        read(file, transactions::add);
+        return transactions;
+    }
+
+    /**
+     * Reads the given JSON file passing every row to the consumer as soon as it is read.
+     * @param file transactions.json file
+     * @param consumer receives the rows in file order
+     * @throws IOException if the file can not be read or is not valid JSON
+     */
+    public static void read(File file, Consumer<Transaction> consumer) throws IOException {
+        read(file, consumer, null, null);
+    }
+
+    /**
+     * Reads the given JSON file passing every row to the consumer as soon as it is read, the names and
+     * messages of the rows are the canonical instances of the given dictionaries.
+     * @param file transactions.json file
+     * @param consumer receives the rows in file order
+     * @param clientNames dictionary of the sender and beneficiary names, null to create a String per value
+     * @param issueMessages dictionary of the issue messages, null to create a String per value
+     * @throws IOException if the file can not be read or is not valid JSON
+     */
+    public static void read(File file, Consumer<Transaction> consumer, NameDictionary clientNames,
+                            NameDictionary issueMessages) throws IOException {
+        read(file, consumer, clientNames, issueMessages, new RejectedRows(ValidationPolicy.FAIL_FAST));
+    }
+
+    /**
+     * Reads the given JSON file passing every valid row to the consumer as soon as it is read, the invalid rows
+     * are handled according to the policy of the report.
+     * @param file transactions.json file
+     * @param consumer receives the valid rows in file order
+     * @param clientNames dictionary of the sender and beneficiary names, null to create a String per value
+     * @param issueMessages dictionary of the issue messages, null to create a String per value
+     * @param rejectedRows policy applied to the invalid rows and report of the rows it rejected
+     * @throws IOException if the file can not be read or is not valid JSON
+     * @throws InvalidTransactionException for the first invalid row if the policy is ValidationPolicy.FAIL_FAST
+     */
+    public static void read(File file, Consumer<Transaction> consumer, NameDictionary clientNames,
+                            NameDictionary issueMessages, RejectedRows rejectedRows) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(file)) {
+            read(parser, consumer, clientNames, issueMessages, rejectedRows);
+        }
+    }
+
+    /**
+     * Reads all the transactions of the given JSON stream. The stream is not closed by this method.
+     * @param inputStream stream containing the transactions JSON array
+     * @return list of type 'Transaction' in the same order as the stream
+     * @throws IOException if the stream can not be read or is not valid JSON
+     */
+    public static List<Transaction> read(InputStream inputStream) throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        read(inputStream, transactions::add, null, null);
+        return transactions;
+    }
+
+    /**
+     * Reads the given JSON stream passing every row to the consumer as soon as it is read, the names and
+     * messages of the rows are the canonical instances of the given dictionaries. The stream is not closed
+     * by this method.
+     * @param inputStream stream containing the transactions JSON array
+     * @param consumer receives the rows in stream order
+     * @param clientNames dictionary of the sender and beneficiary names, null to create a String per value
+     * @param issueMessages dictionary of the issue messages, null to create a String per value
+     * @throws IOException if the stream can not be read or is not valid JSON
+     */
+    public static void read(InputStream inputStream, Consumer<Transaction> consumer, NameDictionary clientNames,
+                            NameDictionary issueMessages) throws IOException {
+        read(inputStream, consumer, clientNames, issueMessages, new RejectedRows(ValidationPolicy.FAIL_FAST));
+    }
+
+    /**
+     * Reads the given JSON stream passing every valid row to the consumer as soon as it is read, the invalid rows
+     * are handled according to the policy of the report. The stream is not closed by this method.
+     * @param inputStream stream containing the transactions JSON array
+     * @param consumer receives the valid rows in stream order
+     * @param clientNames dictionary of the sender and beneficiary names, null to create a String per value
+     * @param issueMessages dictionary of the issue messages, null to create a String per value
+     * @param rejectedRows policy applied to the invalid rows and report of the rows it rejected
+     * @throws IOException if the stream can not be read or is not valid JSON
+     * @throws InvalidTransactionException for the first invalid row if the policy is ValidationPolicy.FAIL_FAST
+     */
+    public static void read(InputStream inputStream, Consumer<Transaction> consumer, NameDictionary clientNames,
+                            NameDictionary issueMessages, RejectedRows rejectedRows) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(inputStream)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            read(parser, consumer, clientNames, issueMessages, rejectedRows);
+        }
+    }
+
+    /**
+     * Reads the top level array of transactions from the parser.
+     * @param parser parser positioned before the top level array
+     * @param consumer receives the rows in order
+     * @param clientNames dictionary canonicalizing the names, may be null
+     * @param issueMessages dictionary canonicalizing the messages, may be null
+     * @param rejectedRows policy applied to the invalid rows and report of the rows it rejected
+     * @throws IOException if the content is not a JSON array of transaction objects
+     */
+    static void read(JsonParser parser, Consumer<Transaction> consumer, NameDictionary clientNames,
+                     NameDictionary issueMessages, RejectedRows rejectedRows) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new IOException("Expected a JSON array of transactions at " + parser.getCurrentLocation());
+        }
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+            Transaction transaction = readTransaction(parser, clientNames, issueMessages, rejectedRows);
+            if (transaction != null) {
+                consumer.accept(transaction);
+            }
+        }
+        if (token != JsonToken.END_ARRAY) {
+            throw new IOException("Expected a transaction object at " + parser.getCurrentLocation());
+        }
+    }
+
+    /**
+     * Reads all the transactions of the given NDJSON file, which may be gzip compressed.
+     * @param file file with one transaction row per line
+     * @return list of type 'Transaction' in the same order as the file
+     * @throws IOException if the file can not be read or a line is not valid JSON
+     */
+    public static List<Transaction> readLines(File file) throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        readLines(file, transactions::add, null, null, new RejectedRows(ValidationPolicy.FAIL_FAST));
+        return transactions;
+    }
+
+    /**
+     * Reads the given NDJSON file passing every valid row to the consumer as soon as it is read. A gzip compressed
+     * file is recognized by its header and decompressed while it is read.
+     * @param file file with one transaction row per line
+     * @param consumer receives the valid rows in file order
+     * @param clientNames dictionary of the sender and beneficiary names, null to create a String per value
+     * @param issueMessages dictionary of the issue messages, null to create a String per value
+     * @param rejectedRows policy applied to the invalid rows and report of the rows it rejected
+     * @throws IOException if the file can not be read or a line is not valid JSON
+     * @throws InvalidTransactionException for the first invalid row if the policy is ValidationPolicy.FAIL_FAST
+     */
+    public static void readLines(File file, Consumer<Transaction> consumer, NameDictionary clientNames,
+                                 NameDictionary issueMessages, RejectedRows rejectedRows) throws IOException {
+        try (InputStream inputStream = openLines(file)) {
+            readLines(inputStream, consumer, clientNames, issueMessages, rejectedRows);
+        }
+    }
+
+    /**
+     * Reads the NDJSON rows of the given stream passing every valid row to the consumer as soon as it is read.
+     * Blank lines are ignored. The stream is not closed by this method.
+     * @param inputStream stream with one transaction row per line
+     * @param consumer receives the valid rows in stream order
+     * @param clientNames dictionary of the sender and beneficiary names, null to create a String per value
+     * @param issueMessages dictionary of the issue messages, null to create a String per value
+     * @param rejectedRows policy applied to the invalid rows and report of the rows it rejected
+     * @throws IOException if the stream can not be read or a line is not valid JSON
+     * @throws InvalidTransactionException for the first invalid row if the policy is ValidationPolicy.FAIL_FAST
+     */
+    public static void readLines(InputStream inputStream, Consumer<Transaction> consumer, NameDictionary clientNames,
+                                 NameDictionary issueMessages, RejectedRows rejectedRows) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(inputStream)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            readLines(parser, consumer, clientNames, issueMessages, rejectedRows, Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Reads the complete lines of an uncompressed NDJSON file from the given byte offset, e.g. the offset returned
+     * by the previous call. A last line which does not end with a newline yet is left for the next call, so a file
+     * which is still being appended to can be followed, and a load interrupted at a returned offset can be resumed.
+     * @param file file with one transaction row per line
+     * @param fromOffset offset of the first line to read, 0 for the whole file
+     * @param consumer receives the valid rows in file order
+     * @param clientNames dictionary of the sender and beneficiary names, null to create a String per value
+     * @param issueMessages dictionary of the issue messages, null to create a String per value
+     * @param rejectedRows policy applied to the invalid rows and report of the rows it rejected
+     * @return offset following the last line read, fromOffset if there was no complete line
+     * @throws IOException if the file can not be read, is gzip compressed, or a line is not valid JSON
+     * @throws InvalidTransactionException for the first invalid row if the policy is ValidationPolicy.FAIL_FAST
+     */
+    public static long readLines(File file, long fromOffset, Consumer<Transaction> consumer, NameDictionary clientNames,
+                                 NameDictionary issueMessages, RejectedRows rejectedRows) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (fromOffset < 0 || fromOffset > channel.size()) {
+                throw new IOException("Offset " + fromOffset + " is outside of " + file);
+            }
+            if (isGzip(channel)) {
+                throw new IOException("A gzip compressed file can not be read from an offset: " + file);
+            }
+            long end = endOfLastLine(channel, fromOffset);
+            if (end == fromOffset) {
+                return fromOffset;
+            }
+            channel.position(fromOffset);
+            try (JsonParser parser = JSON_FACTORY.createParser(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE))) {
+                readLines(parser, consumer, clientNames, issueMessages, rejectedRows, end - fromOffset);
+            }
+            return end;
+        }
+    }
+
+    /**
+     * Reads the top level objects of the parser, one per line, until the end of the input or until an object
+     * starts at or after the limit.
+     * @param limit byte offset, from the start of the parser's input, where reading stops
+     * @throws IOException if a value is not a JSON object
+     */
+    static void readLines(JsonParser parser, Consumer<Transaction> consumer, NameDictionary clientNames,
+                          NameDictionary issueMessages, RejectedRows rejectedRows, long limit) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null) {
+            //the object following the last complete line may be incomplete, it is not read
+            if (parser.getTokenLocation().getByteOffset() >= limit) {
+                return;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a transaction object at " + parser.getTokenLocation());
+            }
+            Transaction transaction = readTransaction(parser, clientNames, issueMessages, rejectedRows);
+            if (transaction != null) {
+                consumer.accept(transaction);
+            }
+        }
+    }
+
+    /**
+     * Opens a file for reading, decompressing it if it starts with the gzip header.
+     */
+    static InputStream openLines(File file) throws IOException {
+        BufferedInputStream inputStream = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+        try {
+            inputStream.mark(2);
+            boolean gzip = inputStream.read() == 0x1f && inputStream.read() == 0x8b;
+            inputStream.reset();
+            return gzip ? new GZIPInputStream(inputStream, BUFFER_SIZE) : inputStream;
+        } catch (IOException e) {
+            inputStream.close();
+            throw e;
+        }
+    }
+
+    static boolean isGzip(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(2);
+        channel.read(header, 0);
+        return header.position() == 2 && (header.get(0) & 0xff) == 0x1f && (header.get(1) & 0xff) == 0x8b;
+    }
+
+    /**
+     * Returns the offset following the last newline of the file at or after the given offset, or that offset
+     * if there is none.
+     */
+    private static long endOfLastLine(FileChannel channel, long fromOffset) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(8192);
+        for (long blockEnd = channel.size(); blockEnd > fromOffset; ) {
+            long blockStart = Math.max(fromOffset, blockEnd - block.capacity());
+            block.clear().limit((int) (blockEnd - blockStart));
+            while (block.hasRemaining() && channel.read(block, blockStart + block.position()) >= 0) {
+                //reading the whole block
+            }
+            for (int i = block.position() - 1; i >= 0; i--) {
+                if (block.get(i) == '\n') {
+                    return blockStart + i + 1;
+                }
+            }
+            blockEnd = blockStart;
+        }
+        return fromOffset;
+    }
+
+    /**
+     * Reads the fields of a single transaction object, the parser must be positioned on its START_OBJECT.
+     * The row is validated as ConversionUtils validates a map: it must not be empty, the required fields must
+     * not be missing or null and every value must have the type of its field.
+     * @param parser parser positioned on START_OBJECT
+     * @param clientNames dictionary canonicalizing the names, may be null
+     * @param issueMessages dictionary canonicalizing the messages, may be null
+     * @param rejectedRows policy applied to the row if it is invalid
+     * @return converted transaction, null if the row is invalid and the policy skips it
+     * @throws IOException if a value can not be read
+     */
+    static Transaction readTransaction(JsonParser parser, NameDictionary clientNames, NameDictionary issueMessages,
+                                       RejectedRows rejectedRows) throws IOException {
+        long rowNumber = rejectedRows.nextRow();
+        SenderInformation senderInformation = new SenderInformation();
+        BeneficiaryInformation beneficiaryInformation = new BeneficiaryInformation();
+        IssueInformation issueInformation = new IssueInformation();
+        Transaction transaction = new Transaction();
+        int presentFields = 0;
+        boolean empty = true;
+        //first field holding a value of the wrong type, the rest of the row is still read
+        String invalidField = null;
+        String invalidDetail = null;
+
+        String fieldName;
+        while ((fieldName = parser.nextFieldName()) != null) {
+            empty = false;
+            JsonToken value = parser.nextToken();
+            //null values are left unset, a required field holding null is reported as incomplete
+            if (value == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            //field names are canonicalized by the parser so switching on them does not allocate
+            //a required field is present once it holds a value, valid or not
+            try {
+                switch (fieldName) {
+                    case "mtn" -> {
+                        presentFields |= MTN;
+                        transaction.setMtn(readLong(parser, value));
+                    }
+                    case "amount" -> {
+                        presentFields |= AMOUNT;
+                        transaction.setAmountInMinorUnits(readMinorUnits(parser, value));
+                    }
+                    case "senderFullName" -> {
+                        presentFields |= SENDER_FULL_NAME;
+                        senderInformation.setSenderFullName(readString(parser, value, clientNames));
+                    }
+                    case "senderAge" -> {
+                        presentFields |= SENDER_AGE;
+                        senderInformation.setSenderAge(readInt(parser, value));
+                    }
+                    case "beneficiaryFullName" -> {
+                        presentFields |= BENEFICIARY_FULL_NAME;
+                        beneficiaryInformation.setBeneficiaryFullName(readString(parser, value, clientNames));
+                    }
+                    case "beneficiaryAge" -> {
+                        presentFields |= BENEFICIARY_AGE;
+                        beneficiaryInformation.setBeneficiaryAge(readInt(parser, value));
+                    }
+                    case "issueId" -> issueInformation.setIssueId(readIssueId(parser, value));
+                    case "issueSolved" -> {
+                        presentFields |= ISSUE_SOLVED;
+                        issueInformation.setIssueSolved(readBoolean(parser, value));
+                    }
+                    case "issueMessage" -> issueInformation.setIssueMessage(readString(parser, value, issueMessages));
+                    //unknown fields (and their nested values) are ignored
+                    default -> parser.skipChildren();
+                }
+            } catch (NumberFormatException | ArithmeticException | InputCoercionException e) {
+                if (invalidField == null) {
+                    invalidField = fieldName;
+                    invalidDetail = e.getMessage();
+                }
+                //an object or array value is skipped whole
+                parser.skipChildren();
+            }
+        }
+
+        if (empty) {
+            rejectedRows.reject(rowNumber, RowError.Reason.EMPTY, null, null);
+            return null;
+        }
+        if ((presentFields & REQUIRED_FIELDS) != REQUIRED_FIELDS) {
+            rejectedRows.reject(rowNumber, RowError.Reason.MISSING_FIELD, missingField(presentFields), null);
+            return null;
+        }
+        if (invalidField != null) {
+            rejectedRows.reject(rowNumber, RowError.Reason.INVALID_FIELD, invalidField, invalidDetail);
+            return null;
+        }
+
+        transaction.setSenderInformation(senderInformation);
+        transaction.setBeneficiaryInformation(beneficiaryInformation);
+        //a row without issue id is a transaction without issues
+        if (issueInformation.getIssueId() != null) {
+            transaction.addIssue(issueInformation);
+        }
+        return transaction;
+    }
+
+    /**
+     * Name of the first required field missing from the present ones, in the order of the fields
+     */
+    private static String missingField(int presentFields) {
+        return REQUIRED_FIELD_NAMES[Integer.numberOfTrailingZeros(~presentFields & REQUIRED_FIELDS)];
+    }
+
+    /**
+     * The type errors are reported as a NumberFormatException, like the values which do not parse
+     */
+    private static NumberFormatException unexpected(JsonParser parser, JsonToken value, String expected) {
+        return new NumberFormatException("Expected " + expected + " but got " + value + " at " + parser.getCurrentLocation());
+    }
+
+    private static String readString(JsonParser parser, JsonToken value, NameDictionary dictionary) throws IOException {
+        if (value != JsonToken.VALUE_STRING) {
+            throw unexpected(parser, value, "a string");
+        }
+        if (dictionary == null) {
+            return parser.getText();
+        }
+        return dictionary.name(dictionary.intern(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength()));
+    }
+
+    private static String readIssueId(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.VALUE_STRING && !value.isNumeric()) {
+            throw unexpected(parser, value, "a string or a number");
+        }
+        return parser.getText();
+    }
+
+    private static long readLong(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_STRING) {
+            return Long.parseLong(parser.getText().trim());
+        }
+        if (value != JsonToken.VALUE_NUMBER_INT) {
+            throw unexpected(parser, value, "an integer");
+        }
+        return parser.getLongValue();
+    }
+
+    private static int readInt(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_STRING) {
+            return Integer.parseInt(parser.getText().trim());
+        }
+        if (value != JsonToken.VALUE_NUMBER_INT) {
+            throw unexpected(parser, value, "an integer");
+        }
+        return parser.getIntValue();
+    }
+
+    /**
+     * Parses the digits of a number (or of a string holding one) straight into minor units, the number
+     * is never converted to a double.
+     */
+    private static long readMinorUnits(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.VALUE_STRING && !value.isNumeric()) {
+            throw unexpected(parser, value, "an amount");
+        }
+        return Money.parse(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+    }
+
+    private static boolean readBoolean(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_STRING) {
+            String text = parser.getText().trim();
+            if (text.equalsIgnoreCase("true") || text.equalsIgnoreCase("false")) {
+                return Boolean.parseBoolean(text);
+            }
+        } else if (value == JsonToken.VALUE_TRUE || value == JsonToken.VALUE_FALSE) {
+            return value == JsonToken.VALUE_TRUE;
+        }
+        throw unexpected(parser, value, "a boolean");
+    }
+}
@@ -0,0 +1,151 @@
+package com.smallworld.util;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.smallworld.model.ClientAmount;
+import com.smallworld.model.ClientScreening;
+import com.smallworld.model.IssueInformation;
+import com.smallworld.model.Transaction;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streaming writer of newline-delimited JSON (NDJSON): every object is written on its own line as soon as it is
+ * given, nothing is collected. A transaction is written as one row per issue (one row without issue if it has
+ * none) in the format TransactionJsonReader reads, so an export can be loaded again. Amounts are written with
+ * their exact two decimals.
+ */
+public class TransactionJsonWriter implements Closeable, Flushable {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final JsonGenerator generator;
+
+    /**
+     * @param outputStream stream receiving the lines in UTF-8, it is not closed by this writer
+     * @throws IOException if the generator can not be created
+     */
+    public TransactionJsonWriter(OutputStream outputStream) throws IOException {
+        generator = JSON_FACTORY.createGenerator(outputStream, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        //every object ends with its newline instead
+        generator.setRootValueSeparator(null);
+    }
+
+    /**
+     * Writes the rows of a transaction, one line per issue.
+     * @param transaction transaction with its issues
+     * @throws IOException if the stream can not be written
+     */
+    public void writeTransaction(Transaction transaction) throws IOException {
+        if (transaction.getIssues().isEmpty()) {
+            writeRow(transaction, null);
+        } else {
+            for (IssueInformation issue : transaction.getIssues()) {
+                writeRow(transaction, issue);
+            }
+        }
+    }
+
+    /**
+     * Writes a client total as a line {"clientFullName": ..., "amount": ...}.
+     * @param clientAmount client with its total
+     * @throws IOException if the stream can not be written
+     */
+    public void writeClientAmount(ClientAmount clientAmount) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("clientFullName", clientAmount.getClientFullName());
+        generator.writeFieldName("amount");
+        generator.writeNumber(Money.format(Money.fromDouble(clientAmount.getAmount())));
+        endLine();
+    }
+
+    /**
+     * Writes a client screening as a line {"clientFullName": ..., "hasOpenComplianceIssues": ..., "openIssueCount": ...,
+     * "openIssueIds": [...]}.
+     * @param clientScreening screened client with its open issues
+     * @throws IOException if the stream can not be written
+     */
+    public void writeClientScreening(ClientScreening clientScreening) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("clientFullName", clientScreening.getClientFullName());
+        generator.writeBooleanField("hasOpenComplianceIssues", clientScreening.hasOpenComplianceIssues());
+        generator.writeNumberField("openIssueCount", clientScreening.getOpenIssueCount());
+        generator.writeArrayFieldStart("openIssueIds");
+        for (String issueId : clientScreening.getOpenIssueIds()) {
+            writeIssueId(issueId);
+        }
+        generator.writeEndArray();
+        endLine();
+    }
+
+    private void writeRow(Transaction transaction, IssueInformation issue) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("mtn", transaction.getMtn());
+        generator.writeFieldName("amount");
+        generator.writeNumber(Money.format(transaction.getAmountInMinorUnits()));
+        generator.writeStringField("senderFullName", transaction.getSenderInformation().getSenderFullName());
+        generator.writeNumberField("senderAge", transaction.getSenderInformation().getSenderAge());
+        generator.writeStringField("beneficiaryFullName", transaction.getBeneficiaryInformation().getBeneficiaryFullName());
+        generator.writeNumberField("beneficiaryAge", transaction.getBeneficiaryInformation().getBeneficiaryAge());
+        if (issue == null) {
+            //the form of a row without issue in transactions.json
+            generator.writeNullField("issueId");
+            generator.writeBooleanField("issueSolved", true);
+            generator.writeNullField("issueMessage");
+        } else {
+            generator.writeFieldName("issueId");
+            writeIssueId(issue.getIssueId());
+            generator.writeBooleanField("issueSolved", issue.isIssueSolved());
+            generator.writeStringField("issueMessage", issue.getIssueMessage());
+        }
+        endLine();
+    }
+
+    private void writeIssueId(String issueId) throws IOException {
+        if (issueId != null && isPlainInt(issueId)) {
+            generator.writeNumber(issueId);
+        } else {
+            generator.writeString(issueId);
+        }
+    }
+
+    private void endLine() throws IOException {
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    /**
+     * @return true if the id is written as a JSON number and read back as the same String
+     */
+    private static boolean isPlainInt(String issueId) {
+        int length = issueId.length();
+        if (length == 0 || length > 9 || (issueId.charAt(0) == '0' && length > 1)) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = issueId.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        generator.flush();
+    }
+
+    /**
+     * Flushes the lines written, the stream is left open.
+     */
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+}
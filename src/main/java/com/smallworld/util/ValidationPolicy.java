@@ -0,0 +1,23 @@
+package com.smallworld.util;
+
+/**
+ * What ConversionUtils and TransactionJsonReader do with a row which is empty, lacks a required field or
+ * holds a value of the wrong type. The rows are validated while they are converted, never in a pass of their own.
+ */
+public enum ValidationPolicy {
+
+    /**
+     * The first invalid row throws an InvalidTransactionException with its row number
+     */
+    FAIL_FAST,
+
+    /**
+     * Invalid rows are skipped and counted by reason and by field
+     */
+    SKIP_AND_COUNT,
+
+    /**
+     * Invalid rows are skipped and counted, and every one of them is kept as a RowError with its row number
+     */
+    COLLECT_ERRORS
+}
@@ -0,0 +1,84 @@
+package com.smallworld.benchmark;
+
+import com.smallworld.service.TransactionDataFetcher;
+import com.smallworld.util.SyntheticTransactions;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the exact long (minor units) aggregations of TransactionDataFetcher with the same loops
+ * over a double column, which is how amounts were kept before. Scores are transactions per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(AmountAggregationBenchmark.TRANSACTIONS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AmountAggregationBenchmark {
+
+    static final int TRANSACTIONS = 1_000_000;
+
+    private TransactionDataFetcher dataFetcher;
+    private double[] doubleAmounts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File file = Files.createTempFile("transactions", ".json").toFile();
+        try {
+            //every 3 rows of the synthetic file make 2 transactions
+            SyntheticTransactions.write(file, TRANSACTIONS * 3 / 2, 5_000, 42);
+            dataFetcher = new TransactionDataFetcher();
+            dataFetcher.setTransactionsFromJSON(file.getPath());
+        } finally {
+            file.delete();
+        }
+        doubleAmounts = dataFetcher.getTransactions().stream().mapToDouble(t -> t.getAmount()).toArray();
+    }
+
+    @Benchmark
+    public double totalInMinorUnits() {
+        return dataFetcher.getTotalTransactionAmount();
+    }
+
+    @Benchmark
+    public double totalInDoubles() {
+        double total = 0.0;
+        for (double amount : doubleAmounts) {
+            total += amount;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double maxInMinorUnits() {
+        return dataFetcher.getMaxTransactionAmount();
+    }
+
+    @Benchmark
+    public double maxInDoubles() {
+        double max = 0.0;
+        for (double amount : doubleAmounts) {
+            if (amount > max) {
+                max = amount;
+            }
+        }
+        return max;
+    }
+
+    @Benchmark
+    public Object topTransactionsInMinorUnits() {
+        return dataFetcher.getTopTransactions(10);
+    }
+
+    @Benchmark
+    public Object topSendersInMinorUnits() {
+        return dataFetcher.getTopSenders(10);
+    }
+}
@@ -0,0 +1,70 @@
+package com.smallworld.benchmark;
+
+import com.smallworld.service.TransactionDataFetcher;
+import com.smallworld.store.TransactionStore;
+import com.smallworld.util.TransactionGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Synthetic transactions files shared by the benchmarks, written by TransactionGenerator with its default
+ * Zipf skew of the senders and issues per mtn. A file is written once per set of parameters and kept in
+ * target/benchmark-data, so the 10^7 row files are not written again for every trial or fork.
+ */
+final class BenchmarkData {
+
+    static final long SEED = 42;
+
+    private static final File DIRECTORY = new File("target", "benchmark-data");
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Returns the file of the given size and cardinality, writing it if it does not exist yet.
+     * @param rows number of rows
+     * @param clients number of distinct senders, and of distinct beneficiaries
+     * @param messages number of distinct issue messages
+     * @return the transactions file
+     * @throws IOException if the file can not be written
+     */
+    static File file(int rows, int clients, int messages) throws IOException {
+        File file = new File(DIRECTORY, "generated-" + rows + "-" + clients + "-" + messages + "-" + SEED + ".json");
+        if (!file.exists()) {
+            Files.createDirectories(DIRECTORY.toPath());
+            //written next to the target and renamed, so an interrupted run never leaves a partial file behind
+            File partial = new File(DIRECTORY, file.getName() + ".partial");
+            TransactionGenerator generator = new TransactionGenerator(SEED);
+            generator.setRows(rows);
+            generator.setSenders(clients);
+            generator.setBeneficiaries(clients);
+            generator.setIssueMessages(messages);
+            generator.write(partial);
+            Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return file;
+    }
+
+    /**
+     * Returns the binary snapshot of the file of the given size and cardinality, writing it if it does not exist yet.
+     * @param rows number of rows
+     * @param clients number of distinct senders, and of distinct beneficiaries
+     * @param messages number of distinct issue messages
+     * @return the snapshot file
+     * @throws IOException if the file can not be written
+     */
+    static File snapshot(int rows, int clients, int messages) throws IOException {
+        File json = file(rows, clients, messages);
+        //a snapshot of an older format version is not reused
+        File snapshot = new File(DIRECTORY, json.getName().replace(".json", "-v" + TransactionStore.SNAPSHOT_VERSION + ".snapshot"));
+        if (!snapshot.exists()) {
+            TransactionDataFetcher dataFetcher = new TransactionDataFetcher();
+            dataFetcher.setTransactionsFromJSON(json.getPath());
+            dataFetcher.saveSnapshot(snapshot.getPath());
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,81 @@
+package com.smallworld.benchmark;
+
+import com.smallworld.model.Transaction;
+import com.smallworld.service.ConcurrentTransactionDataFetcher;
+import com.smallworld.service.TransactionQueries;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads of ConcurrentTransactionDataFetcher from several threads, alone and while a writer thread keeps
+ * appending batches of rows. The score of read is the number of read operations (a few point queries on a
+ * snapshot) per microsecond summed over all the threads, its scaling is seen by running with e.g. -t 1 then -t 4.
+ * In the readWhileAppending group three threads read while one appends, the score of each method is reported.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ConcurrentFetcherBenchmark {
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"1000"})
+    public int clients;
+
+    @Param({"1000"})
+    public int batchSize;
+
+    private ConcurrentTransactionDataFetcher dataFetcher;
+    private Transaction[] batch;
+    private String sender;
+    private String beneficiary;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataFetcher = new ConcurrentTransactionDataFetcher();
+        dataFetcher.setIndexingEnabled(true);
+        dataFetcher.setTransactionsFromJSON(BenchmarkData.file(rows, clients, 16).getPath());
+        List<Transaction> transactions = dataFetcher.getTransactions();
+        //appending rows already loaded keeps the size of the store stable over the whole run
+        batch = transactions.subList(transactions.size() - batchSize, transactions.size()).toArray(new Transaction[0]);
+        Transaction transaction = transactions.get(transactions.size() / 2);
+        sender = transaction.getSenderInformation().getSenderFullName();
+        beneficiary = transaction.getBeneficiaryInformation().getBeneficiaryFullName();
+    }
+
+    @Benchmark
+    public void read(Blackhole blackhole) {
+        readSnapshot(blackhole);
+    }
+
+    @Benchmark
+    @Group("readWhileAppending")
+    @GroupThreads(3)
+    public void reader(Blackhole blackhole) {
+        readSnapshot(blackhole);
+    }
+
+    @Benchmark
+    @Group("readWhileAppending")
+    @GroupThreads(1)
+    public void appender() {
+        dataFetcher.append(batch);
+    }
+
+    private void readSnapshot(Blackhole blackhole) {
+        TransactionQueries snapshot = dataFetcher.snapshot();
+        blackhole.consume(snapshot.getTotalTransactionAmount());
+        blackhole.consume(snapshot.getTotalTransactionAmountSentBy(sender));
+        blackhole.consume(snapshot.hasOpenComplianceIssues(beneficiary));
+        blackhole.consume(snapshot.getMaxTransactionAmount());
+    }
+}
@@ -0,0 +1,111 @@
+package com.smallworld.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smallworld.model.Transaction;
+import com.smallworld.service.TransactionDataFetcher;
+import com.smallworld.util.ConversionUtils;
+import com.smallworld.util.TransactionJsonReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a synthetic dataset of the given size into TransactionDataFetcher, sequentially and in parallel,
+ * from a file, from its binary snapshot or from rows already in memory. The score of a benchmark is one full load, reported both as
+ * throughput and as average latency, and with '-prof gc' 'gc.alloc.rate.norm' is the allocation of a load.
+ * <p>
+ * The in memory inputs (parsed maps for ConversionUtils and Transaction rows for setTransactions) are only built
+ * for the benchmarks using them, they need a few hundred bytes of heap per row so 10^7 rows needs e.g. -jvmArgs -Xmx8g.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DataLoadingBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int rows;
+
+    @Param({"1000"})
+    public int clients;
+
+    @Param({"16"})
+    public int messages;
+
+    private File file;
+    private File snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = BenchmarkData.file(rows, clients, messages);
+        snapshot = BenchmarkData.snapshot(rows, clients, messages);
+    }
+
+    /**
+     * The rows of the file parsed into maps by ObjectMapper.
+     */
+    @State(Scope.Benchmark)
+    public static class Maps {
+
+        List<Map<String, Object>> maps;
+
+        @Setup(Level.Trial)
+        public void setUp(DataLoadingBenchmark benchmark) throws IOException {
+            maps = new ObjectMapper().readValue(benchmark.file, new TypeReference<>(){});
+        }
+    }
+
+    /**
+     * The rows of the file as 'Transaction' objects.
+     */
+    @State(Scope.Benchmark)
+    public static class Rows {
+
+        List<Transaction> transactions;
+
+        @Setup(Level.Trial)
+        public void setUp(DataLoadingBenchmark benchmark) throws IOException {
+            transactions = TransactionJsonReader.read(benchmark.file);
+        }
+    }
+
+    @Benchmark
+    public TransactionDataFetcher setTransactionsFromJSON() throws IOException {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher();
+        dataFetcher.setTransactionsFromJSON(file.getPath());
+        return dataFetcher;
+    }
+
+    @Benchmark
+    public TransactionDataFetcher setTransactionsFromJSONInParallel() throws IOException {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher();
+        dataFetcher.setTransactionsFromJSON(file.getPath(), Runtime.getRuntime().availableProcessors());
+        return dataFetcher;
+    }
+
+    @Benchmark
+    public TransactionDataFetcher setTransactionsFromSnapshot() throws IOException {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher();
+        dataFetcher.setTransactionsFromSnapshot(snapshot.getPath());
+        return dataFetcher;
+    }
+
+    @Benchmark
+    public TransactionDataFetcher setTransactions(Rows rows) {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher();
+        dataFetcher.setTransactions(rows.transactions);
+        return dataFetcher;
+    }
+
+    @Benchmark
+    public List<Transaction> convertMapToObject(Maps maps) {
+        return ConversionUtils.convertMapToObject(maps.maps);
+    }
+}
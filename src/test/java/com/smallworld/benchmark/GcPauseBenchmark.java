@@ -0,0 +1,112 @@
+package com.smallworld.benchmark;
+
+import com.smallworld.model.IssueInformation;
+import com.smallworld.model.Transaction;
+import com.smallworld.service.TransactionDataFetcher;
+import com.smallworld.store.ColumnStorage;
+import com.smallworld.util.TransactionJsonReader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GC pauses while a dataset of the given size is live: as the list of 'Transaction' objects the fetcher used to
+ * hold (-p storage=LIST), as heap columns (HEAP) and as off-heap columns (OFF_HEAP). fullGc times System.gc(),
+ * which marks and compacts everything live, so its score is the full GC pause the dataset costs.
+ * queryUnderAllocation checks a client for open issues while allocating short lived garbage like a request
+ * handler would, with '-prof gc' 'gc.time' is the time spent in the collections it triggers. The heap used after
+ * a full GC is printed at the end of every trial. The heap is fixed so the three storages are compared on the same JVM.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class GcPauseBenchmark {
+
+    public enum Storage {
+        LIST, HEAP, OFF_HEAP
+    }
+
+    private static final int GARBAGE_BYTES = 1024;
+
+    @Param({"1000000"})
+    public int rows;
+
+    @Param({"1000"})
+    public int clients;
+
+    @Param({"LIST", "HEAP", "OFF_HEAP"})
+    public Storage storage;
+
+    private List<Transaction> transactions;
+    private TransactionDataFetcher dataFetcher;
+    private String[] names;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (storage == Storage.LIST) {
+            transactions = TransactionJsonReader.read(BenchmarkData.file(rows, clients, 16));
+        } else {
+            dataFetcher = new TransactionDataFetcher();
+            dataFetcher.setColumnStorage(storage == Storage.OFF_HEAP ? ColumnStorage.OFF_HEAP : ColumnStorage.HEAP);
+            dataFetcher.setTransactionsFromSnapshot(BenchmarkData.snapshot(rows, clients, 16).getPath());
+        }
+        List<Transaction> loaded = storage == Storage.LIST ? transactions : dataFetcher.getTransactions();
+        //clients found early, in the middle and late in a scan, and one which is not found
+        names = new String[]{loaded.get(0).getSenderInformation().getSenderFullName(),
+                loaded.get(loaded.size() / 2).getBeneficiaryInformation().getBeneficiaryFullName(),
+                loaded.get(loaded.size() - 1).getSenderInformation().getSenderFullName(), "Unknown client"};
+    }
+
+    @TearDown(Level.Trial)
+    public void printHeapUse() {
+        System.gc();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.out.printf("%n%s: %d MB of heap used after a full GC, %d MB of direct memory%n", storage,
+                memory.getHeapMemoryUsage().getUsed() >> 20, directMemoryUsed() >> 20);
+    }
+
+    private static long directMemoryUsed() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct")).mapToLong(BufferPoolMXBean::getMemoryUsed).sum();
+    }
+
+    @Benchmark
+    public void fullGc() {
+        System.gc();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void queryUnderAllocation(Blackhole blackhole) {
+        blackhole.consume(new byte[GARBAGE_BYTES]);
+        String name = names[next++ & 3];
+        blackhole.consume(storage == Storage.LIST ? hasOpenComplianceIssues(name) : dataFetcher.hasOpenComplianceIssues(name));
+    }
+
+    /**
+     * The scan the fetcher used to run over its list.
+     */
+    private boolean hasOpenComplianceIssues(String clientFullName) {
+        for (Transaction transaction : transactions) {
+            if (clientFullName.equals(transaction.getSenderInformation().getSenderFullName())
+                    || clientFullName.equals(transaction.getBeneficiaryInformation().getBeneficiaryFullName())) {
+                for (IssueInformation issue : transaction.getIssues()) {
+                    if (!issue.isIssueSolved()) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,53 @@
+package com.smallworld.benchmark;
+
+import com.smallworld.model.Transaction;
+import com.smallworld.util.ParallelTransactionLoader;
+import com.smallworld.util.SyntheticTransactions;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the memory mapped loader scales with the number of threads, the score is rows per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(ParallelLoadBenchmark.ROWS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelLoadBenchmark {
+
+    static final int ROWS = 1_000_000;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private File file;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("transactions", ".json").toFile();
+        SyntheticTransactions.write(file, ROWS, 5_000, 42);
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+        file.delete();
+    }
+
+    @Benchmark
+    public List<Transaction> parallelLoader() throws IOException {
+        return new ParallelTransactionLoader(executor, threads).load(file);
+    }
+}
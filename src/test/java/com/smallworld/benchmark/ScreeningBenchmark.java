@@ -0,0 +1,90 @@
+package com.smallworld.benchmark;
+
+import com.smallworld.model.ClientScreening;
+import com.smallworld.service.TransactionDataFetcher;
+import com.smallworld.store.NameDictionary;
+import com.smallworld.store.TransactionStore;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Screening every client of a dataset for open compliance issues, as a nightly job does: screenClients in one batch,
+ * against a loop calling hasOpenComplianceIssues once per name, which only answers the flag, and against a loop
+ * finding the open issue ids of every name with its own pass over the transactions (perNameScan, only run on small
+ * datasets with -p rows=10000). The score of a benchmark is the whole batch of names.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScreeningBenchmark {
+
+    @Param({"1000000"})
+    public int rows;
+
+    @Param({"100000"})
+    public int clients;
+
+    private TransactionDataFetcher dataFetcher;
+    private List<String> names;
+    private TransactionStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataFetcher = new TransactionDataFetcher();
+        dataFetcher.setTransactionsFromSnapshot(BenchmarkData.snapshot(rows, clients, 16).getPath());
+        store = TransactionStore.readSnapshot(BenchmarkData.snapshot(rows, clients, 16));
+        NameDictionary clientNames = store.clientNames();
+        names = new ArrayList<>(clientNames.size());
+        for (int clientId = 0; clientId < clientNames.size(); clientId++) {
+            names.add(clientNames.name(clientId));
+        }
+    }
+
+    @Benchmark
+    public void screenClients(Blackhole blackhole) {
+        dataFetcher.screenClients(names, screening -> blackhole.consume(screening.getOpenIssueCount()));
+    }
+
+    @Benchmark
+    public void perNameLoop(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(dataFetcher.hasOpenComplianceIssues(name));
+        }
+    }
+
+    @Benchmark
+    public void perNameScan(Blackhole blackhole) {
+        if (rows > 10_000) {
+            return;
+        }
+        for (String name : names) {
+            blackhole.consume(openIssueIds(name));
+        }
+    }
+
+    /**
+     * The open issue ids of a client with a pass over the transactions, which is what one screening costs without a batch.
+     */
+    private ClientScreening openIssueIds(String clientFullName) {
+        int clientId = store.clientNames().idOf(clientFullName);
+        List<String> openIssueIds = new ArrayList<>();
+        for (int position = 0; position < store.size(); position++) {
+            if (store.senderId(position) == clientId || store.beneficiaryId(position) == clientId) {
+                for (int issue = store.firstIssue(position); issue != TransactionStore.NO_ISSUE; issue = store.nextIssue(issue)) {
+                    if (!store.isIssueSolved(issue)) {
+                        openIssueIds.add(store.issueId(issue));
+                    }
+                }
+            }
+        }
+        return new ClientScreening(clientFullName, openIssueIds);
+    }
+}
@@ -0,0 +1,145 @@
+package com.smallworld.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smallworld.metrics.LatencyHistogram;
+import com.smallworld.server.TransactionQueryServer;
+import com.smallworld.service.ConcurrentTransactionDataFetcher;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of TransactionQueryServer: the given number of clients each keep one request in flight on its own
+ * connection for the given duration, cycling through the single value queries (totals, a client's open issues, an
+ * issue lookup, the top senders). The latency of every request is recorded from sending to the complete response,
+ * the throughput and the latency percentiles are printed at the end.
+ * <p>
+ * Without a url a server is started in this JVM on the benchmark dataset of the given rows, with a url the server
+ * running there is loaded instead. Opening 10000 connections to a server in the same JVM needs about 20000 file
+ * descriptors (ulimit -n), a server of its own process halves it. Run from the command line:
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.smallworld.benchmark.ServerLoadHarness
+ * -Dbenchmark.args="10000 30"
+ */
+public final class ServerLoadHarness {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private ServerLoadHarness() {
+    }
+
+    /**
+     * @param args clients (10000), seconds (30), rows of the dataset served in this JVM (1000000) and optionally
+     * the url of a running server, e.g. http://localhost:8080
+     * @throws Exception if the dataset can not be loaded or the server can not be reached
+     */
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int rows = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+        TransactionQueryServer server = null;
+        String url;
+        if (args.length > 3) {
+            url = args[3];
+        } else {
+            //the responses of keep-alive connections are not delayed by Nagle's algorithm, unless set otherwise at launch
+            if (System.getProperty(TransactionQueryServer.NODELAY_PROPERTY) == null) {
+                System.setProperty(TransactionQueryServer.NODELAY_PROPERTY, "true");
+            }
+            ConcurrentTransactionDataFetcher dataFetcher = new ConcurrentTransactionDataFetcher();
+            dataFetcher.setIndexingEnabled(true);
+            server = new TransactionQueryServer(dataFetcher, BenchmarkData.snapshot(rows, 1000, 16).getPath(),
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            server.reload();
+            server.start();
+            url = "http://localhost:" + server.getPort();
+            System.out.println("Serving " + rows + " rows on " + (server.isVirtualThreads() ? "virtual threads"
+                    : TransactionQueryServer.FALLBACK_THREADS + " platform threads"));
+        }
+        try {
+            run(url, clients, seconds);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private static void run(String url, int clients, int seconds) throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        List<URI> uris = uris(client, url);
+        LatencyHistogram latencies = new LatencyHistogram();
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(clients);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+        for (int index = 0; index < clients; index++) {
+            send(client, uris, index, deadline, latencies, errors, done);
+        }
+        done.await();
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d clients, %d requests in %.1f s: %.0f requests/s, %d errors%n", clients,
+                latencies.getCount(), elapsedSeconds, latencies.getCount() / elapsedSeconds, errors.get());
+        System.out.printf("latency ms: mean %.2f, p50 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n",
+                latencies.getMeanNanos() / 1e6, latencies.getPercentileNanos(50) / 1e6,
+                latencies.getPercentileNanos(99) / 1e6, latencies.getPercentileNanos(99.9) / 1e6,
+                latencies.getMaxNanos() / 1e6);
+    }
+
+    /**
+     * Sends the next request of a client, and the one after it once it is answered, until the deadline.
+     */
+    private static void send(HttpClient client, List<URI> uris, int next, long deadline, LatencyHistogram latencies,
+                             AtomicLong errors, CountDownLatch done) {
+        long sent = System.nanoTime();
+        if (sent - deadline >= 0) {
+            done.countDown();
+            return;
+        }
+        HttpRequest request = HttpRequest.newBuilder(uris.get(next % uris.size())).build();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+            if (failure != null || response.statusCode() != 200) {
+                errors.incrementAndGet();
+            } else {
+                latencies.record(System.nanoTime() - sent);
+            }
+            send(client, uris, next + 1, deadline, latencies, errors, done);
+        });
+    }
+
+    /**
+     * @return the queries cycled through, the client names are the top senders of the served dataset
+     */
+    private static List<URI> uris(HttpClient client, String url) throws IOException, InterruptedException {
+        List<URI> uris = new ArrayList<>();
+        String topSenders = client.send(HttpRequest.newBuilder(URI.create(url + "/top-senders?n=16")).build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+        int issueId = 1;
+        for (String line : topSenders.lines().toList()) {
+            Map<String, Object> sender = OBJECT_MAPPER.readValue(line, new TypeReference<>(){});
+            String name = URLEncoder.encode((String) sender.get("clientFullName"), StandardCharsets.UTF_8);
+            uris.add(URI.create(url + "/open-compliance-issues?clientFullName=" + name));
+            uris.add(URI.create(url + "/total-amount-sent?senderFullName=" + name));
+            uris.add(URI.create(url + "/issues?issueId=" + issueId));
+            issueId += 7;
+        }
+        uris.add(URI.create(url + "/total-amount"));
+        uris.add(URI.create(url + "/max-amount"));
+        uris.add(URI.create(url + "/unique-clients"));
+        uris.add(URI.create(url + "/top-senders?n=3"));
+        return uris;
+    }
+}
@@ -0,0 +1,171 @@
+package com.smallworld.benchmark;
+
+import com.smallworld.metrics.FetcherMetrics;
+import com.smallworld.model.ClientAmount;
+import com.smallworld.model.Transaction;
+import com.smallworld.service.IndexStats;
+import com.smallworld.service.TransactionDataFetcher;
+import com.smallworld.util.NormalizationStats;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every public query of TransactionDataFetcher on a loaded synthetic dataset, with and without the client
+ * indexes, sequentially or with -p parallel=true on the common ForkJoinPool, and with -p cache=true answered
+ * from the query result cache after the first call, and with -p metrics=true timed into a FetcherMetrics. The score of a benchmark is one
+ * call of the method, reported both as throughput and as average latency. Smaller or larger datasets are
+ * selected with e.g. -p rows=1000,10000000 -p clients=100000.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionDataFetcherBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int rows;
+
+    @Param({"1000"})
+    public int clients;
+
+    @Param({"16"})
+    public int messages;
+
+    @Param({"false", "true"})
+    public boolean indexing;
+
+    /**
+     * Scans on the common ForkJoinPool, compared with the sequential ones with -p parallel=false,true
+     */
+    @Param({"false"})
+    public boolean parallel;
+
+    /**
+     * Query result cache, compared with the computed results with -p cache=false,true
+     */
+    @Param({"false"})
+    public boolean cache;
+
+    /**
+     * Timing of every call into a FetcherMetrics, compared with the disabled metrics with -p metrics=false,true
+     */
+    @Param({"false"})
+    public boolean metrics;
+
+    private TransactionDataFetcher dataFetcher;
+    private String sender;
+    private String beneficiary;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataFetcher = new TransactionDataFetcher();
+        dataFetcher.setIndexingEnabled(indexing);
+        dataFetcher.setParallelExecutionEnabled(parallel);
+        dataFetcher.setQueryCacheEnabled(cache);
+        dataFetcher.setMetricsListener(metrics ? new FetcherMetrics() : null);
+        dataFetcher.setTransactionsFromJSON(BenchmarkData.file(rows, clients, messages).getPath());
+        //clients from the middle of the dataset so a scan can not stop early
+        Transaction transaction = dataFetcher.getTransactions().get(dataFetcher.getTransactions().size() / 2);
+        sender = transaction.getSenderInformation().getSenderFullName();
+        beneficiary = transaction.getBeneficiaryInformation().getBeneficiaryFullName();
+    }
+
+    @Benchmark
+    public double getTotalTransactionAmount() {
+        return dataFetcher.getTotalTransactionAmount();
+    }
+
+    @Benchmark
+    public double getTotalTransactionAmountSentBy() {
+        return dataFetcher.getTotalTransactionAmountSentBy(sender);
+    }
+
+    @Benchmark
+    public double getMaxTransactionAmount() {
+        return dataFetcher.getMaxTransactionAmount();
+    }
+
+    @Benchmark
+    public long countUniqueClients() {
+        return dataFetcher.countUniqueClients();
+    }
+
+    @Benchmark
+    public boolean hasOpenComplianceIssues() {
+        return dataFetcher.hasOpenComplianceIssues(beneficiary);
+    }
+
+    @Benchmark
+    public Map<String, List<Transaction>> getTransactionsByBeneficiaryName() {
+        return dataFetcher.getTransactionsByBeneficiaryName();
+    }
+
+    @Benchmark
+    public Set<Integer> getUnsolvedIssueIds() {
+        return dataFetcher.getUnsolvedIssueIds();
+    }
+
+    @Benchmark
+    public List<String> getAllSolvedIssueMessages() {
+        return dataFetcher.getAllSolvedIssueMessages();
+    }
+
+    @Benchmark
+    public List<Transaction> getTop3TransactionsByAmount() {
+        return dataFetcher.getTop3TransactionsByAmount();
+    }
+
+    @Benchmark
+    public List<Transaction> getTopTransactions() {
+        return dataFetcher.getTopTransactions(100);
+    }
+
+    @Benchmark
+    public Optional<Map<String, Double>> getTopSender() {
+        return dataFetcher.getTopSender();
+    }
+
+    @Benchmark
+    public List<ClientAmount> getTopSenders() {
+        return dataFetcher.getTopSenders(100);
+    }
+
+    @Benchmark
+    public List<ClientAmount> getTopBeneficiaries() {
+        return dataFetcher.getTopBeneficiaries(100);
+    }
+
+    /**
+     * Reads every transaction of the list, which creates all the views.
+     */
+    @Benchmark
+    public void getTransactions(Blackhole blackhole) {
+        for (Transaction transaction : dataFetcher.getTransactions()) {
+            blackhole.consume(transaction);
+        }
+    }
+
+    @Benchmark
+    public NormalizationStats getNormalizationStats() {
+        return dataFetcher.getNormalizationStats();
+    }
+
+    /**
+     * Enabling the indexes builds them, so this is the build time when indexing is false.
+     */
+    @Benchmark
+    public Optional<IndexStats> setIndexingEnabled() {
+        dataFetcher.setIndexingEnabled(!indexing);
+        dataFetcher.setIndexingEnabled(indexing);
+        return dataFetcher.getIndexStats();
+    }
+}
@@ -0,0 +1,55 @@
+package com.smallworld.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smallworld.model.Transaction;
+import com.smallworld.util.ConversionUtils;
+import com.smallworld.util.SyntheticTransactions;
+import com.smallworld.util.TransactionJsonReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming loader with the map based loader (ObjectMapper + ConversionUtils).
+ * Every invocation loads ROWS rows, so the primary score is rows per second and with
+ * '-prof gc' the 'gc.alloc.rate.norm' metric is the number of bytes allocated per row.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(TransactionLoadBenchmark.ROWS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionLoadBenchmark {
+
+    static final int ROWS = 100_000;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("transactions", ".json").toFile();
+        SyntheticTransactions.write(file, ROWS, 5_000, 42);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public List<Transaction> streamingLoader() throws IOException {
+        return TransactionJsonReader.read(file);
+    }
+
+    @Benchmark
+    public List<Transaction> mapBasedLoader() throws IOException {
+        return ConversionUtils.convertMapToObject(new ObjectMapper().readValue(file, new TypeReference<>(){}));
+    }
+}
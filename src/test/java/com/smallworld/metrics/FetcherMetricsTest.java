@@ -0,0 +1,72 @@
+package com.smallworld.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for FetcherMetrics class
+ */
+public class FetcherMetricsTest {
+
+    @Test
+    public void testAggregatesQueriesAndLoads() {
+        FetcherMetrics metrics = new FetcherMetrics();
+
+        // Actual method calls
+        metrics.queryCompleted("getTopSenders", 2_000);
+        metrics.queryCompleted("getTopSenders", 4_000);
+        metrics.queryCompleted("getTotalTransactionAmount", 10);
+        metrics.loadCompleted(new LoadMetrics("setTransactionsFromJSON", 1_000, 50_000, 1_000_000, 300_000));
+        metrics.loadCompleted(new LoadMetrics("append", 1_000, 0, 1_000_000, 100_000));
+
+        assertEquals(2, metrics.getQueryHistogram("getTopSenders").getCount());
+        assertNull(metrics.getQueryHistogram("getTopBeneficiaries"));
+        // The queries are listed by name
+        assertEquals("getTopSenders", metrics.getQueryLatencies().get(0).getQuery());
+        assertEquals(4_000, metrics.getQueryLatencies().get(0).getMaxNanos());
+        assertEquals(3_000, metrics.getQueryLatencies().get(0).getMeanNanos());
+        assertEquals(2, metrics.getLoadCount());
+        assertEquals(2_000, metrics.getLoadedRowCount());
+        assertEquals(1_000_000, metrics.getLoadRowsPerSecond());
+        // Only the load with a known size counts for the bytes per second
+        assertEquals(50_000_000, metrics.getLoadBytesPerSecond());
+        assertEquals(400_000, metrics.getLoadAllocatedBytes());
+        assertEquals("append", metrics.getLastLoad().getOperation());
+
+        metrics.reset();
+        assertTrue(metrics.getQueryLatencies().isEmpty());
+        assertEquals(0, metrics.getLoadCount());
+        assertNull(metrics.getLastLoad());
+    }
+
+    @Test
+    public void testRegisterMBean() throws JMException {
+        FetcherMetrics metrics = new FetcherMetrics();
+        metrics.queryCompleted("getUnsolvedIssueIds", 5_000);
+        metrics.loadCompleted(new LoadMetrics("setTransactions", 10, 0, 1_000, -1));
+
+        // Actual method call
+        ObjectName name = metrics.registerMBean("test");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            // Reading the attributes as a JMX client does
+            assertEquals(1L, server.getAttribute(name, "LoadCount"));
+            assertEquals(-1L, server.getAttribute(name, "LoadAllocatedBytes"));
+            CompositeData[] latencies = (CompositeData[]) server.getAttribute(name, "QueryLatencies");
+            assertEquals("getUnsolvedIssueIds", latencies[0].get("query"));
+            assertEquals(1L, latencies[0].get("count"));
+            assertEquals("setTransactions", ((CompositeData) server.getAttribute(name, "LastLoad")).get("operation"));
+            assertThrows(JMException.class, () -> new FetcherMetrics().registerMBean("test"));
+        } finally {
+            metrics.unregisterMBean();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+}
@@ -0,0 +1,74 @@
+package com.smallworld.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for LatencyHistogram class
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsCoverEveryValue() {
+        // Values below 128 have their own bucket
+        for (long value = 0; value < 128; value++) {
+            assertEquals(value, LatencyHistogram.lowestValueOf(LatencyHistogram.bucketOf(value)));
+        }
+        // Every other value is at most 1/64 above the lowest value of its bucket
+        Random random = new Random(3);
+        for (int i = 0; i < 100_000; i++) {
+            long value = random.nextLong() >>> (1 + random.nextInt(63));
+            long lowest = LatencyHistogram.lowestValueOf(LatencyHistogram.bucketOf(value));
+            assertTrue(lowest <= value);
+            assertTrue(value - lowest <= lowest / 64, () -> value + " in bucket of " + lowest);
+        }
+        assertEquals(3711, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentilesMatchSortedValues() {
+        Random random = new Random(11);
+        long[] values = new long[50_000];
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < values.length; i++) {
+            // Log-normal like latencies from 100 ns to tens of milliseconds
+            values[i] = (long) Math.exp(5 + random.nextDouble() * 12);
+            // Actual method call
+            histogram.record(values[i]);
+        }
+
+        // Reference: the percentiles of the sorted values
+        Arrays.sort(values);
+        for (double percentile : new double[]{0, 50, 90, 99, 99.9, 100}) {
+            long expected = values[Math.max(0, (int) Math.ceil(percentile / 100 * values.length) - 1)];
+            long actual = histogram.getPercentileNanos(percentile);
+            assertTrue(actual <= expected && expected - actual <= actual / 64, () -> percentile + ": " + actual + " for " + expected);
+        }
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[values.length - 1], histogram.getMaxNanos());
+        assertEquals(Arrays.stream(values).sum(), histogram.getTotalNanos());
+    }
+
+    @Test
+    public void testResetAndEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileNanos(99));
+        assertEquals(0, histogram.getMeanNanos());
+
+        // Actual method calls
+        histogram.record(-5);
+        histogram.record(1_000);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(50));
+        assertEquals(1_000, histogram.getPercentileNanos(100));
+        assertEquals(500, histogram.getMeanNanos());
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+        assertThrows(IllegalArgumentException.class, () -> histogram.getPercentileNanos(101));
+    }
+}
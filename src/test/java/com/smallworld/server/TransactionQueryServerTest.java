@@ -0,0 +1,183 @@
+package com.smallworld.server;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smallworld.service.ConcurrentTransactionDataFetcher;
+import com.smallworld.service.TransactionDataFetcher;
+import com.smallworld.util.SyntheticTransactions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for TransactionQueryServer class
+ */
+public class TransactionQueryServerTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @TempDir
+    File tempDir;
+
+    private File dataset;
+    private ConcurrentTransactionDataFetcher dataFetcher;
+    private TransactionQueryServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        dataset = new File(tempDir, "transactions.json");
+        Files.copy(new File("../coding_test/transactions.json").toPath(), dataset.toPath());
+        dataFetcher = new ConcurrentTransactionDataFetcher();
+        server = new TransactionQueryServer(dataFetcher, dataset.getPath(), new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.reload();
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void testQueriesAsJson() throws IOException, InterruptedException {
+        // Actual method calls
+        Map<String, Object> totalAmount = readJson(get("/total-amount").body());
+        Map<String, Object> openIssues = readJson(get("/open-compliance-issues?clientFullName=" + URLEncoder.encode("Aunt Polly", StandardCharsets.UTF_8)).body());
+        Map<String, Object> issue = readJson(get("/issues?issueId=3").body());
+        Map<String, Object> missingIssue = readJson(get("/issues?issueId=999").body());
+
+        // Matching expected with the actual result
+        assertEquals(dataFetcher.getTotalTransactionAmount(), ((Number) totalAmount.get("totalAmount")).doubleValue());
+        assertEquals("Aunt Polly", openIssues.get("clientFullName"));
+        assertEquals(dataFetcher.hasOpenComplianceIssues("Aunt Polly"), openIssues.get("hasOpenComplianceIssues"));
+        assertEquals(dataFetcher.isIssueOpen(3), issue.get("open"));
+        assertEquals(dataFetcher.getMtnOfIssue(3).orElseThrow(), ((Number) issue.get("mtn")).longValue());
+        assertTrue(missingIssue.containsKey("mtn"));
+        assertNull(missingIssue.get("mtn"));
+
+        // Bad requests
+        assertEquals(404, get("/total-amount/more").statusCode());
+        assertEquals(400, get("/top-transactions?n=-1").statusCode());
+        assertEquals(400, get("/total-amount-sent").statusCode());
+        assertEquals(405, send(HttpRequest.newBuilder(uri("/total-amount")).POST(HttpRequest.BodyPublishers.noBody())).statusCode());
+    }
+
+    @Test
+    public void testListsAreStreamedAsLines() throws IOException, InterruptedException {
+        // Actual method calls
+        HttpResponse<String> transactions = get("/transactions");
+        HttpResponse<String> unsolvedIssueIds = get("/unsolved-issue-ids");
+        HttpResponse<String> topSenders = get("/top-senders?n=2");
+
+        // The rows load back into the same transactions
+        assertEquals("application/x-ndjson", transactions.headers().firstValue("Content-Type").orElseThrow());
+        TransactionDataFetcher loaded = new TransactionDataFetcher();
+        loaded.appendFromNDJSON(new ByteArrayInputStream(transactions.body().getBytes(StandardCharsets.UTF_8)));
+        assertEquals(dataFetcher.getTransactions(), loaded.getTransactions());
+        assertEquals(dataFetcher.getUnsolvedIssueIds(), unsolvedIssueIds.body().lines().map(Integer::valueOf).collect(Collectors.toSet()));
+        assertEquals(2, topSenders.body().lines().count());
+
+        // Screening the names of the request body
+        HttpResponse<String> screenings = send(HttpRequest.newBuilder(uri("/screen"))
+                .POST(HttpRequest.BodyPublishers.ofString("Aunt Polly\nUnknown client\n\nTom Shelby\n")));
+        List<Map<String, Object>> lines = screenings.body().lines().map(this::readJson).toList();
+        assertEquals(3, lines.size());
+        assertEquals("Unknown client", lines.get(1).get("clientFullName"));
+        assertEquals(false, lines.get(1).get("hasOpenComplianceIssues"));
+        assertEquals(dataFetcher.hasOpenComplianceIssues("Tom Shelby"), lines.get(2).get("hasOpenComplianceIssues"));
+        assertEquals(lines.get(0).get("openIssueCount"), ((List<?>) lines.get(0).get("openIssueIds")).size());
+    }
+
+    @Test
+    public void testReloadWithoutDowntime() throws Exception {
+        long initialTransactions = dataFetcher.getNormalizationStats().getTransactionCount();
+        File next = new File(tempDir, "next.json");
+        SyntheticTransactions.write(next, 20_000, 100, 3);
+
+        // Requests keep being sent while the dataset is replaced and reloaded
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger failures = new AtomicInteger();
+        Set<Long> seenTransactionCounts = new HashSet<>();
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                try {
+                    HttpResponse<String> stats = get("/stats");
+                    if (stats.statusCode() != 200) {
+                        failures.incrementAndGet();
+                    }
+                    synchronized (seenTransactionCounts) {
+                        seenTransactionCounts.add(((Number) readJson(stats.body()).get("transactions")).longValue());
+                    }
+                } catch (IOException | InterruptedException e) {
+                    failures.incrementAndGet();
+                }
+            }
+        });
+        reader.start();
+        Files.move(next.toPath(), dataset.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        // Actual method call
+        HttpResponse<String> reload = send(HttpRequest.newBuilder(uri("/reload")).POST(HttpRequest.BodyPublishers.noBody()));
+        get("/stats");
+        running.set(false);
+        reader.join();
+
+        // Matching expected with the actual result: every request was answered, from one dataset or the other
+        assertEquals(200, reload.statusCode());
+        long reloadedTransactions = ((Number) readJson(reload.body()).get("transactions")).longValue();
+        assertEquals(dataFetcher.getNormalizationStats().getTransactionCount(), reloadedTransactions);
+        assertEquals(0, failures.get());
+        assertTrue(Set.of(initialTransactions, reloadedTransactions).containsAll(seenTransactionCounts), seenTransactionCounts.toString());
+
+        // A failed reload keeps the transactions
+        assertTrue(dataset.delete());
+        assertEquals(500, send(HttpRequest.newBuilder(uri("/reload")).POST(HttpRequest.BodyPublishers.noBody())).statusCode());
+        assertEquals(reloadedTransactions, ((Number) readJson(get("/stats").body()).get("transactions")).longValue());
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(uri(path)).GET());
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.getPort() + path);
+    }
+
+    private Map<String, Object> readJson(String json) {
+        try {
+            return OBJECT_MAPPER.readValue(json, new TypeReference<>(){});
+        } catch (IOException e) {
+            throw new AssertionError(json, e);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.smallworld.service;
+
+import com.smallworld.model.IssueInformation;
+import com.smallworld.model.Transaction;
+import com.smallworld.util.Money;
+import com.smallworld.util.TransactionGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ConcurrentTransactionDataFetcher class
+ */
+public class ConcurrentTransactionDataFetcherTest {
+
+    private static final int BATCH_SIZE = 40;
+    private static final int BATCHES = 150;
+    private static final int READERS = 3;
+
+    @Test
+    public void testSnapshotIsNotChangedByAppend() {
+        ConcurrentTransactionDataFetcher dataFetcher = new ConcurrentTransactionDataFetcher();
+        List<Transaction> rows = rows(2);
+        dataFetcher.setTransactions(rows.subList(0, BATCH_SIZE));
+        TransactionQueries snapshot = dataFetcher.snapshot();
+        double total = snapshot.getTotalTransactionAmount();
+        List<Transaction> transactions = snapshot.getTransactions();
+
+        // Actual method call
+        dataFetcher.append(rows.subList(BATCH_SIZE, 2 * BATCH_SIZE).toArray(new Transaction[0]));
+
+        // The old snapshot and the lists it returned are unchanged, the fetcher answers from the new one
+        assertEquals(BATCH_SIZE, transactions.size());
+        assertEquals(total, snapshot.getTotalTransactionAmount());
+        assertEquals(2 * BATCH_SIZE, dataFetcher.getTransactions().size());
+    }
+
+    @Test
+    public void testReadersSeeConsistentSnapshotsWhileAppending() throws Exception {
+        ConcurrentTransactionDataFetcher dataFetcher = new ConcurrentTransactionDataFetcher();
+        dataFetcher.setIndexingEnabled(true);
+        // The readers of a snapshot share its query cache
+        dataFetcher.setQueryCache(8);
+        List<Transaction> rows = rows(BATCHES);
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        ExecutorService executor = Executors.newFixedThreadPool(READERS);
+        try {
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int reader = 0; reader < READERS; reader++) {
+                readers.add(executor.submit(() -> {
+                    int snapshots = 0;
+                    int lastSize = 0;
+                    do {
+                        lastSize = checkSnapshot(dataFetcher.snapshot(), lastSize);
+                        snapshots++;
+                    } while (writing.get());
+                    return snapshots;
+                }));
+            }
+
+            // Actual method calls: every batch adds new transactions and solves the issues of the previous batch
+            for (int batch = 0; batch < BATCHES; batch++) {
+                List<Transaction> appended = new ArrayList<>(rows.subList(batch * BATCH_SIZE, (batch + 1) * BATCH_SIZE));
+                if (batch > 0) {
+                    for (Transaction row : rows.subList((batch - 1) * BATCH_SIZE, batch * BATCH_SIZE)) {
+                        appended.add(solved(row));
+                    }
+                }
+                dataFetcher.append(appended.toArray(new Transaction[0]));
+            }
+            writing.set(false);
+
+            for (Future<Integer> reader : readers) {
+                assertTrue(reader.get(1, TimeUnit.MINUTES) > 0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Everything but the last batch is solved
+        assertEquals(BATCHES * BATCH_SIZE, dataFetcher.getTransactions().size());
+        assertEquals(BATCH_SIZE, dataFetcher.getUnsolvedIssueIds().size());
+        checkSnapshot(dataFetcher.snapshot(), BATCHES * BATCH_SIZE);
+        checkSnapshot(dataFetcher.snapshot(), BATCHES * BATCH_SIZE);
+        assertTrue(dataFetcher.getQueryCacheStats().orElseThrow().getHitCount() > 0);
+    }
+
+    /**
+     * Checks that the queries of a snapshot agree with its transactions and that appends were published whole.
+     * @return number of transactions of the snapshot
+     */
+    private static int checkSnapshot(TransactionQueries snapshot, int previousSize) {
+        List<Transaction> transactions = snapshot.getTransactions();
+        int size = transactions.size();
+        assertEquals(0, size % BATCH_SIZE, "a batch was partially published");
+        assertTrue(size >= previousSize, "a snapshot went back in time");
+
+        long total = 0;
+        Set<Integer> unsolvedIssueIds = new HashSet<>();
+        int beneficiaryTransactions = 0;
+        for (Transaction transaction : transactions) {
+            total += transaction.getAmountInMinorUnits();
+            for (IssueInformation issue : transaction.getIssues()) {
+                if (!issue.isIssueSolved()) {
+                    unsolvedIssueIds.add(Integer.parseInt(issue.getIssueId()));
+                }
+            }
+        }
+        for (List<Transaction> beneficiaryList : snapshot.getTransactionsByBeneficiaryName().values()) {
+            beneficiaryTransactions += beneficiaryList.size();
+        }
+        assertEquals(Money.toDouble(total), snapshot.getTotalTransactionAmount());
+        assertEquals(unsolvedIssueIds, snapshot.getUnsolvedIssueIds());
+        assertEquals(size, beneficiaryTransactions);
+        //only the issues of the last batch can be open
+        assertTrue(unsolvedIssueIds.size() <= BATCH_SIZE);
+        return size;
+    }
+
+    private static List<Transaction> rows(int batches) {
+        TransactionGenerator generator = new TransactionGenerator(31);
+        generator.setRows(batches * BATCH_SIZE);
+        generator.setSenders(200);
+        generator.setBeneficiaries(200);
+        generator.setSolvedRatio(0.0);
+        //one issue per transaction, so every row is a new mtn
+        generator.setIssuesPerMtnWeights(0.0, 1.0);
+        List<Transaction> rows = new ArrayList<>();
+        generator.forEach(rows::add);
+        return rows;
+    }
+
+    private static Transaction solved(Transaction row) {
+        Transaction solvedRow = new Transaction();
+        solvedRow.setMtn(row.getMtn());
+        solvedRow.setAmountInMinorUnits(row.getAmountInMinorUnits());
+        solvedRow.setSenderInformation(row.getSenderInformation());
+        solvedRow.setBeneficiaryInformation(row.getBeneficiaryInformation());
+        for (IssueInformation issue : row.getIssues()) {
+            IssueInformation solvedIssue = new IssueInformation();
+            solvedIssue.setIssueId(issue.getIssueId());
+            solvedIssue.setIssueMessage(issue.getIssueMessage());
+            solvedIssue.setIssueSolved(true);
+            solvedRow.addIssue(solvedIssue);
+        }
+        return solvedRow;
+    }
+}
@@ -0,0 +1,202 @@
+package com.smallworld.service;
+
+import com.smallworld.model.ClientScreening;
+import com.smallworld.model.Transaction;
+import com.smallworld.util.TransactionGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for PartitionedTransactionDataFetcher class, every query over the shards is checked against
+ * TransactionDataFetcher loaded with the rows of all of them
+ */
+public class PartitionedTransactionDataFetcherTest {
+
+    @TempDir
+    File tempDir;
+
+    private final List<List<Transaction>> days = new ArrayList<>();
+    private final List<String> paths = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        TransactionGenerator generator = new TransactionGenerator(23);
+        generator.setRows(20_000);
+        generator.setSenders(500);
+        generator.setBeneficiaries(5_000);
+        List<Transaction> rows = new ArrayList<>();
+        generator.forEach(rows::add);
+
+        //three days of consecutive transactions, the rows of a transaction are in the same day
+        int start = 0;
+        for (int day = 1; day <= 3; day++) {
+            int end = day == 3 ? rows.size() : rows.size() * day / 3;
+            while (end < rows.size() && rows.get(end).getMtn() == rows.get(end - 1).getMtn()) {
+                end++;
+            }
+            days.add(rows.subList(start, end));
+            start = end;
+        }
+        //one file of every format
+        paths.add(writeJson(days.get(0), "transactions-20230101.json"));
+        paths.add(writeNDJSON(days.get(1), "transactions-20230102.ndjson"));
+        TransactionDataFetcher lastDay = new TransactionDataFetcher();
+        lastDay.setTransactions(days.get(2));
+        paths.add(new File(tempDir, "transactions-20230103.snapshot").getPath());
+        lastDay.saveSnapshot(paths.get(2));
+    }
+
+    @Test
+    public void testQueriesMatchOneFetcherOfAllFiles() throws IOException {
+        PartitionedTransactionDataFetcher dataFetcher = new PartitionedTransactionDataFetcher();
+        dataFetcher.setIndexingEnabled(true);
+
+        // Actual method call: the files are loaded two at a time
+        dataFetcher.addShards(paths, 2);
+
+        // Matching expected with the actual result
+        assertEquals(List.of("transactions-20230101.json", "transactions-20230102.ndjson", "transactions-20230103.snapshot"),
+                dataFetcher.getShardNames());
+        assertSameResults(fetcherOf(days.get(0), days.get(1), days.get(2)), dataFetcher);
+        assertEquals(days.get(1).size(), dataFetcher.getShard("transactions-20230102.ndjson").orElseThrow()
+                .getNormalizationStats().getRowCount());
+        assertTrue(dataFetcher.getIndexStats().isPresent());
+    }
+
+    @Test
+    public void testShardsAreAddedAndDroppedWithoutReloadingTheOthers() throws IOException {
+        PartitionedTransactionDataFetcher dataFetcher = new PartitionedTransactionDataFetcher();
+        dataFetcher.addShards(paths, 3);
+        TransactionQueries lastDay = dataFetcher.getShard("transactions-20230103.snapshot").orElseThrow();
+
+        // Actual method calls
+        assertTrue(dataFetcher.dropShard("transactions-20230102.ndjson"));
+        assertFalse(dataFetcher.dropShard("transactions-20230102.ndjson"));
+
+        // Matching expected with the actual result: the other shards are the same objects
+        assertSameResults(fetcherOf(days.get(0), days.get(2)), dataFetcher);
+        assertSame(lastDay, dataFetcher.getShard("transactions-20230103.snapshot").orElseThrow());
+        assertTrue(dataFetcher.getShard("transactions-20230102.ndjson").isEmpty());
+
+        // A failed load adds none of the files
+        List<String> withMissingFile = List.of(paths.get(1), new File(tempDir, "transactions-20230104.json").getPath());
+        assertThrows(IOException.class, () -> dataFetcher.addShards(withMissingFile, 2));
+        assertEquals(2, dataFetcher.getShardNames().size());
+
+        // A file of the name of a shard is only loaded by replaceShard, even from another directory
+        File otherDirectory = new File(tempDir, "copy");
+        assertTrue(otherDirectory.mkdir());
+        File copy = new File(otherDirectory, "transactions-20230103.snapshot");
+        Files.copy(new File(paths.get(2)).toPath(), copy.toPath());
+        assertThrows(IllegalArgumentException.class, () -> dataFetcher.addShard(copy.getPath()));
+        assertThrows(IllegalArgumentException.class, () -> dataFetcher.addShards(List.of(paths.get(1), copy.getPath()), 2));
+        assertThrows(IllegalArgumentException.class, () -> dataFetcher.replaceShard(paths.get(1)));
+        List<String> sameNames = List.of(paths.get(1), new File(otherDirectory, "transactions-20230102.ndjson").getPath());
+        assertThrows(IllegalArgumentException.class, () -> dataFetcher.addShards(sameNames, 2));
+        assertSame(lastDay, dataFetcher.getShard("transactions-20230103.snapshot").orElseThrow());
+
+        // Adding the day again puts it last, and replacing a shard keeps its position
+        dataFetcher.addShard(paths.get(1));
+        dataFetcher.replaceShard(copy.getPath());
+        assertSameResults(fetcherOf(days.get(0), days.get(2), days.get(1)), dataFetcher);
+        assertNotSame(lastDay, dataFetcher.getShard("transactions-20230103.snapshot").orElseThrow());
+    }
+
+    private void assertSameResults(TransactionQueries expected, PartitionedTransactionDataFetcher actual) throws IOException {
+        assertEquals(expected.getTransactions(), actual.getTransactions());
+        assertEquals(expected.getNormalizationStats().getRowCount(), actual.getNormalizationStats().getRowCount());
+        assertEquals(expected.getNormalizationStats().getTransactionCount(), actual.getNormalizationStats().getTransactionCount());
+        assertEquals(expected.getTotalTransactionAmount(), actual.getTotalTransactionAmount());
+        assertEquals(expected.getMaxTransactionAmount(), actual.getMaxTransactionAmount());
+        assertEquals(expected.countUniqueClients(), actual.countUniqueClients());
+        assertEquals(expected.getTransactionsByBeneficiaryName(), actual.getTransactionsByBeneficiaryName());
+        assertEquals(expected.getUnsolvedIssueIds(), actual.getUnsolvedIssueIds());
+        assertEquals(expected.getAllSolvedIssueMessages(), actual.getAllSolvedIssueMessages());
+        assertEquals(expected.getTopTransactions(25), actual.getTopTransactions(25));
+        assertEquals(expected.getTop3TransactionsByAmount(), actual.getTop3TransactionsByAmount());
+        assertEquals(expected.getTopSender(), actual.getTopSender());
+        assertEquals(expected.getTopSenders(20), actual.getTopSenders(20));
+        assertEquals(expected.getTopBeneficiaries(20), actual.getTopBeneficiaries(20));
+
+        List<String> clients = new ArrayList<>();
+        for (Transaction transaction : expected.getTransactions().subList(0, 3_000)) {
+            clients.add(transaction.getSenderInformation().getSenderFullName());
+            clients.add(transaction.getBeneficiaryInformation().getBeneficiaryFullName());
+        }
+        clients.add("Unknown Client");
+        for (String client : clients.subList(0, 50)) {
+            assertEquals(expected.getTotalTransactionAmountSentBy(client), actual.getTotalTransactionAmountSentBy(client));
+            assertEquals(expected.hasOpenComplianceIssues(client), actual.hasOpenComplianceIssues(client));
+        }
+        //more names than a screening chunk
+        assertEquals(screen(expected, clients), screen(actual, clients));
+        for (int issueId : expected.getUnsolvedIssueIds().stream().limit(50).toList()) {
+            assertTrue(actual.isIssueOpen(issueId));
+            assertEquals(expected.getMtnOfIssue(issueId), actual.getMtnOfIssue(issueId));
+        }
+
+        assertEquals(export(expected::exportTransactionsAsNDJSON), export(actual::exportTransactionsAsNDJSON));
+        assertEquals(export(expected::exportTransactionsByBeneficiaryNameAsNDJSON),
+                export(actual::exportTransactionsByBeneficiaryNameAsNDJSON));
+        assertEquals(export(output -> expected.exportTopTransactionsAsNDJSON(10, output)),
+                export(output -> actual.exportTopTransactionsAsNDJSON(10, output)));
+        assertEquals(export(output -> expected.exportTopSendersAsNDJSON(10, output)),
+                export(output -> actual.exportTopSendersAsNDJSON(10, output)));
+    }
+
+    private static List<ClientScreening> screen(TransactionQueries queries, List<String> clients) {
+        List<ClientScreening> screenings = new ArrayList<>();
+        queries.screenClients(clients, screenings::add);
+        assertEquals(clients.size(), screenings.size());
+        return screenings;
+    }
+
+    @SafeVarargs
+    private static TransactionDataFetcher fetcherOf(List<Transaction>... days) {
+        List<Transaction> rows = new ArrayList<>();
+        for (List<Transaction> day : days) {
+            rows.addAll(day);
+        }
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher();
+        dataFetcher.setTransactions(rows);
+        return dataFetcher;
+    }
+
+    private String writeNDJSON(List<Transaction> rows, String name) throws IOException {
+        File file = new File(tempDir, name);
+        try (OutputStream output = new FileOutputStream(file)) {
+            fetcherOf(rows).exportTransactionsAsNDJSON(output);
+        }
+        return file.getPath();
+    }
+
+    private String writeJson(List<Transaction> rows, String name) throws IOException {
+        String ndjson = export(fetcherOf(rows)::exportTransactionsAsNDJSON);
+        File file = new File(tempDir, name);
+        Files.writeString(file.toPath(), "[" + String.join(",", ndjson.split("\n")) + "]");
+        return file.getPath();
+    }
+
+    private static String export(Export export) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        export.write(output);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private interface Export {
+        void write(OutputStream output) throws IOException;
+    }
+}
@@ -0,0 +1,126 @@
+package com.smallworld.service;
+
+import com.smallworld.model.BeneficiaryInformation;
+import com.smallworld.model.IssueInformation;
+import com.smallworld.model.SenderInformation;
+import com.smallworld.model.Transaction;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the aggregations of TransactionDataFetcher grow linearly (or n log k) with the number of
+ * transactions. Going from 10^4 to 10^6 transactions multiplies a linear runtime by 100 but a quadratic
+ * one by 10000, so the bounds below leave plenty of room for timing noise while still failing for O(n^2).
+ */
+public class TransactionDataFetcherScalingTests {
+
+    private static final int[] SIZES = {10_000, 100_000, 1_000_000};
+
+    /**
+     * Upper bound of the runtime ratio between 10^6 and 10^4 transactions.
+     */
+    private static final double MAX_RATIO_SMALL_TO_LARGE = 1_000;
+
+    /**
+     * Upper bound of the runtime ratio between 10^6 and 10^5 transactions, quadratic would be 100.
+     */
+    private static final double MAX_RATIO_MEDIUM_TO_LARGE = 40;
+
+    /**
+     * countUniqueClients reads a count maintained by the aggregates, so the work which grows with the transactions
+     * is building them while the transactions are set, which is what is timed.
+     */
+    @Test
+    public void testUniqueClientsAggregationScalesLinearly() {
+        long[] nanos = new long[SIZES.length];
+        for (int i = 0; i < SIZES.length; i++) {
+            List<Transaction> transactions = stubTransactions(SIZES[i]);
+            long best = Long.MAX_VALUE;
+            for (int run = 0; run < 3; run++) {
+                TransactionDataFetcher dataFetcher = new TransactionDataFetcher();
+                long start = System.nanoTime();
+                dataFetcher.setTransactions(transactions);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            nanos[i] = best;
+        }
+        assertRatios(nanos);
+    }
+
+    @Test
+    public void testGetTransactionsByBeneficiaryNameScalesLinearly() {
+        assertScalesLinearly(TransactionDataFetcher::getTransactionsByBeneficiaryName);
+    }
+
+    @Test
+    public void testGetTop3TransactionsByAmountScalesLinearly() {
+        assertScalesLinearly(TransactionDataFetcher::getTop3TransactionsByAmount);
+    }
+
+    private void assertScalesLinearly(Query query) {
+        long[] nanos = new long[SIZES.length];
+        for (int i = 0; i < SIZES.length; i++) {
+            TransactionDataFetcher dataFetcher = new TransactionDataFetcher();
+            dataFetcher.setTransactions(stubTransactions(SIZES[i]));
+            nanos[i] = bestOf(5, dataFetcher, query);
+        }
+        assertRatios(nanos);
+    }
+
+    private static void assertRatios(long[] nanos) {
+        double smallToLarge = (double) nanos[2] / Math.max(1, nanos[0]);
+        double mediumToLarge = (double) nanos[2] / Math.max(1, nanos[1]);
+        assertTrue(smallToLarge < MAX_RATIO_SMALL_TO_LARGE, "10^4 -> 10^6 runtime ratio " + smallToLarge);
+        assertTrue(mediumToLarge < MAX_RATIO_MEDIUM_TO_LARGE, "10^5 -> 10^6 runtime ratio " + mediumToLarge);
+    }
+
+    /**
+     * Runs the query a few times and returns the fastest run, the first runs also warm up the JIT.
+     */
+    private long bestOf(int runs, TransactionDataFetcher dataFetcher, Query query) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < runs; run++) {
+            long start = System.nanoTime();
+            query.run(dataFetcher);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    /**
+     * Returns distinct transactions between a few thousand clients, names are shared between transactions.
+     */
+    private List<Transaction> stubTransactions(int count) {
+        String[] names = new String[Math.max(2, count / 100)];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "Client " + i;
+        }
+        List<Transaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            SenderInformation senderInformation = new SenderInformation();
+            senderInformation.setSenderFullName(names[i % names.length]);
+            BeneficiaryInformation beneficiaryInformation = new BeneficiaryInformation();
+            beneficiaryInformation.setBeneficiaryFullName(names[(i * 7 + 1) % names.length]);
+            IssueInformation issueInformation = new IssueInformation();
+            issueInformation.setIssueId(String.valueOf(i));
+            issueInformation.setIssueSolved(i % 2 == 0);
+
+            Transaction transaction = new Transaction();
+            transaction.setMtn(i);
+            transaction.setAmount((i * 7919L % 100_000) / 100.0);
+            transaction.setSenderInformation(senderInformation);
+            transaction.setBeneficiaryInformation(beneficiaryInformation);
+            transaction.addIssue(issueInformation);
+            transactions.add(transaction);
+        }
+        return transactions;
+    }
+
+    private interface Query {
+        Object run(TransactionDataFetcher dataFetcher);
+    }
+}
@@ -1,14 +1,35 @@
 package com.smallworld.service;
 
+import com.smallworld.metrics.FetcherMetrics;
+import com.smallworld.metrics.LoadMetrics;
 import com.smallworld.model.BeneficiaryInformation;
+import com.smallworld.model.ClientAmount;
+import com.smallworld.model.ClientScreening;
 import com.smallworld.model.IssueInformation;
 import com.smallworld.model.SenderInformation;
 import com.smallworld.model.Transaction;
+import com.smallworld.sketch.TransactionSketches;
+import com.smallworld.store.ColumnStorage;
+import com.smallworld.util.InvalidTransactionException;
+import com.smallworld.util.NormalizationStats;
+import com.smallworld.util.RejectedRows;
+import com.smallworld.util.SyntheticTransactions;
+import com.smallworld.util.TransactionGenerator;
+import com.smallworld.util.ValidationPolicy;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -33,18 +54,33 @@ public class TransactionDataFetcherTests {
         dataFetcher.setTransactionsFromJSON(filePath);
 
         // Checking the list is empty or not
-        assertNotNull(dataFetcher.transactions);
+        assertNotNull(dataFetcher.getTransactions());
+    }
+
+    @Test
+    public void testSetTransactionsFromJSONInParallel() throws IOException {
+        String filePath = "../coding_test/transactions.json";
+
+        // Actual method calls
+        dataFetcher.setTransactionsFromJSON(filePath);
+        List<Transaction> sequential = dataFetcher.getTransactions();
+        dataFetcher.setTransactionsFromJSON(filePath, 2);
+
+        // Checking the parallel loader returns the same transactions
+        assertEquals(sequential.size(), dataFetcher.getTransactions().size());
+        for (int i = 0; i < sequential.size(); i++) {
+            assertEquals(sequential.get(i).toString(), dataFetcher.getTransactions().get(i).toString());
+        }
     }
 
     @Test
     public void testGetTotalTransactionAmount() {
         // Set the mock list
-        dataFetcher.transactions = stubListOfTransactions();
+        dataFetcher.setTransactions(stubListOfTransactions());
 
-        // Calculate the expected total amount
-        double expectedTotalAmount = dataFetcher.transactions.get(0).getAmount()
-                + dataFetcher.transactions.get(1).getAmount()
-                +dataFetcher.transactions.get(2).getAmount();
+        // Calculate the expected total amount, the two rows of mtn 1 are one transaction
+        double expectedTotalAmount = dataFetcher.getTransactions().get(0).getAmount()
+                + dataFetcher.getTransactions().get(1).getAmount();
 
         // Actual method call
         double actualTotalAmount = dataFetcher.getTotalTransactionAmount();
@@ -52,16 +88,43 @@ public class TransactionDataFetcherTests {
         // Matching expected with the actual result
         assertEquals(expectedTotalAmount, actualTotalAmount);
     }
+    @Test
+    public void testGetTotalTransactionAmountIsExact() {
+        // Ten transactions of 0.1, which add up to 0.9999999999999999 as doubles
+        List<Transaction> transactions = new ArrayList<>();
+        for (int mtn = 1; mtn <= 10; mtn++) {
+            Transaction transaction = stubTransaction();
+            transaction.setMtn(mtn);
+            transaction.setAmount(0.1);
+            transactions.add(transaction);
+        }
+        dataFetcher.setTransactions(transactions);
+
+        // Actual method calls, the sums are done in cents
+        assertEquals(1.0, dataFetcher.getTotalTransactionAmount());
+        assertEquals(1.0, dataFetcher.getTotalTransactionAmountSentBy("Test sender1"));
+        assertEquals(1.0, dataFetcher.getTopSenders(1).get(0).getAmount());
+    }
+
+    @Test
+    public void testGetTotalTransactionAmountThrowsOnOverflow() {
+        List<Transaction> transactions = stubListOfTransactions();
+        transactions.get(2).setAmountInMinorUnits(Long.MAX_VALUE);
+        dataFetcher.setTransactions(transactions);
+
+        // The overflow is reported instead of wrapping around
+        assertThrows(ArithmeticException.class, () -> dataFetcher.getTotalTransactionAmount());
+    }
+
     @Test
     public void testGetTotalTransactionAmountSentBy() {
         // Set the mock list
-        dataFetcher.transactions = stubListOfTransactions();
+        dataFetcher.setTransactions(stubListOfTransactions());
 
-        // Calculate the expected total amount for senderFullName "Test sender1"
-        double expectedTotalAmountForTestSender1 = dataFetcher.transactions.get(0).getAmount() +
-                dataFetcher.transactions.get(1).getAmount();
+        // Calculate the expected total amount for senderFullName "Test sender1", mtn 1 is counted once
+        double expectedTotalAmountForTestSender1 = dataFetcher.getTransactions().get(0).getAmount();
         // Calculate the expected total amount for senderFullName "Test sender2"
-        double expectedTotalAmountForTestSender2 = dataFetcher.transactions.get(2).getAmount();
+        double expectedTotalAmountForTestSender2 = dataFetcher.getTransactions().get(1).getAmount();
 
         // Actual method call
         double actualTotalAmountForTestSender1 = dataFetcher.getTotalTransactionAmountSentBy("Test sender1");
@@ -77,11 +140,11 @@ public class TransactionDataFetcherTests {
     @Test
     public void testGetMaxTransactionAmount() {
         // Set the mock list
-        dataFetcher.transactions = stubListOfTransactions();
+        dataFetcher.setTransactions(stubListOfTransactions());
 
         // Calculate the expected maximum amount among the transactions
-        double expectedMaxAmount = Math.max(dataFetcher.transactions.get(0).getAmount(),
-                Math.max(dataFetcher.transactions.get(1).getAmount(), dataFetcher.transactions.get(2).getAmount()));
+        double expectedMaxAmount = Math.max(dataFetcher.getTransactions().get(0).getAmount(),
+                dataFetcher.getTransactions().get(1).getAmount());
 
         // Actual method call
         double actualMaxAmount = dataFetcher.getMaxTransactionAmount();
@@ -93,10 +156,10 @@ public class TransactionDataFetcherTests {
     @Test
     public void testCountUniqueClients() {
         // Set the mock list
-        dataFetcher.transactions = stubListOfTransactions();
+        dataFetcher.setTransactions(stubListOfTransactions());
 
         // Calculate the expected count of unique clients
-        long expectedUniqueClientsCount = 2; // Set the expected count based on your mock transactions
+        long expectedUniqueClientsCount = 4; // Every client is part of exactly one distinct transaction
 
         // Actual method call
         long actualUniqueClientsCount = dataFetcher.countUniqueClients();
@@ -108,7 +171,7 @@ public class TransactionDataFetcherTests {
     @Test
     public void testHasOpenComplianceIssues() {
         // Set the mock list
-        dataFetcher.transactions = stubListOfTransactions();
+        dataFetcher.setTransactions(stubListOfTransactions());
 
         // Assuming the clientFullName has open compliance issues in the mock data
         String clientWithOpenComplianceIssues = "Test sender2";
@@ -128,7 +191,7 @@ public class TransactionDataFetcherTests {
     @Test
     public void testGetTransactionsByBeneficiaryName() {
         // Set the mock list
-        dataFetcher.transactions = stubListOfTransactions();
+        dataFetcher.setTransactions(stubListOfTransactions());
 
         // Actual method call
         Map<String, List<Transaction>> transactionsByBeneficiaryName = dataFetcher.getTransactionsByBeneficiaryName();
@@ -146,7 +209,7 @@ public class TransactionDataFetcherTests {
     @Test
     public void testGetUnsolvedIssueIds() {
         // Set the mock list
-        dataFetcher.transactions = stubListOfTransactions();
+        dataFetcher.setTransactions(stubListOfTransactions());
 
         // Actual method call
         Set<Integer> unsolvedIssueIds = dataFetcher.getUnsolvedIssueIds();
@@ -162,7 +225,7 @@ public class TransactionDataFetcherTests {
     @Test
     public void testGetAllSolvedIssueMessages() {
         // Set the mock list
-        dataFetcher.transactions = stubListOfTransactions();
+        dataFetcher.setTransactions(stubListOfTransactions());
 
         // Actual method call
         List<String> solvedIssueMessages = dataFetcher.getAllSolvedIssueMessages();
@@ -177,7 +240,7 @@ public class TransactionDataFetcherTests {
     @Test
     public void testGetTop3TransactionsByAmount() {
         // Set the mock list
-        dataFetcher.transactions = stubListOfTransactions();
+        dataFetcher.setTransactions(stubListOfTransactions());
 
         // Actual method call
         List<Transaction> top3Transactions = dataFetcher.getTop3TransactionsByAmount();
@@ -185,8 +248,8 @@ public class TransactionDataFetcherTests {
         // Checking whether the list is empty or not
         assertNotNull(top3Transactions);
 
-        // Check if the size is 3
-        assertEquals(3, top3Transactions.size());
+        // Check if the size is 2, as there are only two distinct transactions
+        assertEquals(2, top3Transactions.size());
 
         // Checking the first transaction's amount is as expected
         assertEquals(1000, top3Transactions.get(0).getAmount());
@@ -195,7 +258,7 @@ public class TransactionDataFetcherTests {
     @Test
     public void testGetTopSender() {
         // Set the mock list
-        dataFetcher.transactions = stubListOfTransactions();
+        dataFetcher.setTransactions(stubListOfTransactions());
 
         //Actual method call
         Optional<Map<String, Double>> topSender = dataFetcher.getTopSender();
@@ -207,7 +270,700 @@ public class TransactionDataFetcherTests {
         assertTrue(topSender.get().containsKey("Test sender1"));
 
         // Check if the sent amount is as expected
-        assertTrue(topSender.get().containsValue(2000.0));
+        assertTrue(topSender.get().containsValue(1000.0));
+    }
+
+    @Test
+    public void testSetTransactionsGroupsRowsByMtn() throws IOException {
+        String filePath = "../coding_test/transactions.json";
+
+        // Actual method call
+        dataFetcher.setTransactionsFromJSON(filePath);
+
+        // mtn 1284564 has two rows in the file, so it must be a single transaction with both issues
+        List<Transaction> withMtn = dataFetcher.getTransactions().stream()
+                .filter(t -> t.getMtn() == 1284564)
+                .toList();
+        assertEquals(1, withMtn.size());
+        assertEquals(2, withMtn.get(0).getIssues().size());
+        assertEquals("2", withMtn.get(0).getIssues().get(0).getIssueId());
+        assertEquals("3", withMtn.get(0).getIssues().get(1).getIssueId());
+
+        // mtn 96132456 has no issue
+        assertTrue(dataFetcher.getTransactions().stream()
+                .filter(t -> t.getMtn() == 96132456)
+                .allMatch(t -> t.getIssues().isEmpty()));
+    }
+
+    @Test
+    public void testGetNormalizationStats() {
+        // Set the mock list
+        dataFetcher.setTransactions(stubListOfTransactions());
+
+        // Actual method call
+        NormalizationStats stats = dataFetcher.getNormalizationStats();
+
+        // Three rows, two transactions and two distinct issues (the second row of mtn 1 repeats issue 1)
+        assertEquals(3, stats.getRowCount());
+        assertEquals(2, stats.getTransactionCount());
+        assertEquals(2, stats.getIssueCount());
+        assertTrue(stats.getEstimatedBytesSaved() > 0);
+    }
+
+    @Test
+    public void testIndexedLookupsMatchScans() throws IOException {
+        String filePath = "../coding_test/transactions.json";
+        dataFetcher.setTransactionsFromJSON(filePath);
+        Set<String> clients = new HashSet<>();
+        for (Transaction transaction : dataFetcher.getTransactions()) {
+            clients.add(transaction.getSenderInformation().getSenderFullName());
+            clients.add(transaction.getBeneficiaryInformation().getBeneficiaryFullName());
+        }
+        clients.add("Unknown client");
+
+        // Results of the full scans
+        Map<String, Double> sentByScan = new HashMap<>();
+        Map<String, Boolean> openIssuesByScan = new HashMap<>();
+        for (String client : clients) {
+            sentByScan.put(client, dataFetcher.getTotalTransactionAmountSentBy(client));
+            openIssuesByScan.put(client, dataFetcher.hasOpenComplianceIssues(client));
+        }
+
+        Map<String, List<Transaction>> byBeneficiaryByScan = dataFetcher.getTransactionsByBeneficiaryName();
+
+        // Actual method calls with the indexes
+        dataFetcher.setIndexingEnabled(true);
+        assertEquals(byBeneficiaryByScan, dataFetcher.getTransactionsByBeneficiaryName());
+        for (String client : clients) {
+            assertEquals(sentByScan.get(client), dataFetcher.getTotalTransactionAmountSentBy(client));
+            assertEquals(openIssuesByScan.get(client), dataFetcher.hasOpenComplianceIssues(client));
+        }
+    }
+
+    @Test
+    public void testGetIndexStats() {
+        // Indexing is disabled by default
+        dataFetcher.setTransactions(stubListOfTransactions());
+        assertTrue(dataFetcher.getIndexStats().isEmpty());
+
+        // Actual method calls
+        dataFetcher.setIndexingEnabled(true);
+        dataFetcher.setTransactions(stubListOfTransactions());
+        IndexStats indexStats = dataFetcher.getIndexStats().orElseThrow();
+
+        // Two beneficiaries and the two clients of the unsolved transaction
+        assertEquals(2, indexStats.getBeneficiaryCount());
+        assertEquals(2, indexStats.getClientsWithOpenIssuesCount());
+        assertTrue(indexStats.getEstimatedBytes() > 0);
+        assertTrue(indexStats.getBuildNanos() >= 0);
+    }
+
+    @Test
+    public void testGetTopTransactionsMatchesFullSort(@TempDir File tempDir) throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 20_000, 300, 13);
+        dataFetcher.setTransactionsFromJSON(file.getPath());
+
+        // Reference: stable sort of all the transactions by amount descending
+        List<Transaction> sorted = new ArrayList<>(dataFetcher.getTransactions());
+        sorted.sort(Comparator.comparingDouble(Transaction::getAmount).reversed());
+
+        for (int n : new int[]{0, 1, 3, 1_000}) {
+            assertEquals(sorted.subList(0, n), dataFetcher.getTopTransactions(n));
+        }
+        assertEquals(sorted.subList(0, 3), dataFetcher.getTop3TransactionsByAmount());
+    }
+
+    @Test
+    public void testGetTopSendersAndBeneficiariesMatchFullSort(@TempDir File tempDir) throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 20_000, 1_500, 17);
+        dataFetcher.setTransactionsFromJSON(file.getPath());
+
+        // Reference: totals of every client computed separately and fully sorted
+        Map<String, Double> beneficiaryTotals = new HashMap<>();
+        Set<String> senders = new HashSet<>();
+        for (Transaction transaction : dataFetcher.getTransactions()) {
+            senders.add(transaction.getSenderInformation().getSenderFullName());
+            beneficiaryTotals.merge(transaction.getBeneficiaryInformation().getBeneficiaryFullName(),
+                    transaction.getAmount(), Double::sum);
+        }
+        List<ClientAmount> sortedSenders = new ArrayList<>();
+        for (String sender : senders) {
+            sortedSenders.add(new ClientAmount(sender, dataFetcher.getTotalTransactionAmountSentBy(sender)));
+        }
+        sortedSenders.sort(TransactionDataFetcher.CLIENT_AMOUNT_ORDER.reversed());
+        List<ClientAmount> sortedBeneficiaries = new ArrayList<>();
+        beneficiaryTotals.forEach((name, total) -> sortedBeneficiaries.add(new ClientAmount(name, Math.round(total * 100.0) / 100.0)));
+        sortedBeneficiaries.sort(TransactionDataFetcher.CLIENT_AMOUNT_ORDER.reversed());
+
+        for (int n : new int[]{0, 1, 10, 1_000}) {
+            assertEquals(sortedSenders.subList(0, n), dataFetcher.getTopSenders(n));
+            assertEquals(sortedBeneficiaries.subList(0, n), dataFetcher.getTopBeneficiaries(n));
+        }
+        // Fewer clients than requested
+        assertEquals(sortedSenders, dataFetcher.getTopSenders(10_000));
+        assertEquals(Map.of(sortedSenders.get(0).getClientFullName(), sortedSenders.get(0).getAmount()),
+                dataFetcher.getTopSender().orElseThrow());
+    }
+
+    @Test
+    public void testGetTopSendersBreaksTiesByName() {
+        // Set the mock list, both senders are given the same total
+        List<Transaction> transactions = stubListOfTransactions();
+        transactions.get(2).setAmount(1000.0);
+        dataFetcher.setTransactions(transactions);
+
+        // Actual method call
+        List<ClientAmount> topSenders = dataFetcher.getTopSenders(2);
+
+        // Matching expected with the actual result
+        assertEquals(List.of(new ClientAmount("Test sender1", 1000.0), new ClientAmount("Test sender2", 1000.0)), topSenders);
+    }
+
+    @Test
+    public void testGetTopSenderWithoutTransactions() {
+        dataFetcher.setTransactions(new ArrayList<>());
+
+        // No sender without transactions
+        assertTrue(dataFetcher.getTopSender().isEmpty());
+    }
+
+    @Test
+    public void testParallelExecutionMatchesSequential(@TempDir File tempDir) throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 20_000, 500, 19);
+        dataFetcher.setTransactionsFromJSON(file.getPath());
+        TransactionDataFetcher parallelFetcher = new TransactionDataFetcher();
+        parallelFetcher.setTransactionsFromJSON(file.getPath());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // Actual method calls: a small threshold so every scan is split into many ranges
+            parallelFetcher.setParallelExecution(pool, 100);
+            assertTrue(parallelFetcher.isParallelExecutionEnabled());
+
+            // Matching the sequential results, including the order of ties and of the lists
+            assertEquals(dataFetcher.getTransactionsByBeneficiaryName(), parallelFetcher.getTransactionsByBeneficiaryName());
+            assertEquals(dataFetcher.getUnsolvedIssueIds(), parallelFetcher.getUnsolvedIssueIds());
+            assertEquals(dataFetcher.getAllSolvedIssueMessages(), parallelFetcher.getAllSolvedIssueMessages());
+            for (int n : new int[]{0, 1, 3, 1_000}) {
+                assertEquals(dataFetcher.getTopTransactions(n), parallelFetcher.getTopTransactions(n));
+                assertEquals(dataFetcher.getTopSenders(n), parallelFetcher.getTopSenders(n));
+                assertEquals(dataFetcher.getTopBeneficiaries(n), parallelFetcher.getTopBeneficiaries(n));
+            }
+            assertEquals(dataFetcher.getTopSender(), parallelFetcher.getTopSender());
+            assertEquals(dataFetcher.getTotalTransactionAmount(), parallelFetcher.getTotalTransactionAmount());
+            assertEquals(dataFetcher.getMaxTransactionAmount(), parallelFetcher.getMaxTransactionAmount());
+            assertEquals(dataFetcher.countUniqueClients(), parallelFetcher.countUniqueClients());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSnapshotRoundTrip(@TempDir File tempDir) throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 20_000, 700, 23);
+        dataFetcher.setTransactionsFromJSON(file.getPath());
+        File snapshot = new File(tempDir, "transactions.snapshot");
+
+        // Actual method calls
+        dataFetcher.saveSnapshot(snapshot.getPath());
+        TransactionDataFetcher restored = new TransactionDataFetcher();
+        restored.setTransactionsFromSnapshot(snapshot.getPath());
+
+        // Matching every query with the ones of the loaded JSON
+        assertEquals(dataFetcher.getTransactions(), restored.getTransactions());
+        assertEquals(dataFetcher.getNormalizationStats().toString(), restored.getNormalizationStats().toString());
+        assertEquals(dataFetcher.getTotalTransactionAmount(), restored.getTotalTransactionAmount());
+        assertEquals(dataFetcher.getMaxTransactionAmount(), restored.getMaxTransactionAmount());
+        assertEquals(dataFetcher.countUniqueClients(), restored.countUniqueClients());
+        assertEquals(dataFetcher.getTransactionsByBeneficiaryName(), restored.getTransactionsByBeneficiaryName());
+        assertEquals(dataFetcher.getUnsolvedIssueIds(), restored.getUnsolvedIssueIds());
+        assertEquals(dataFetcher.getAllSolvedIssueMessages(), restored.getAllSolvedIssueMessages());
+        assertEquals(dataFetcher.getTopTransactions(20), restored.getTopTransactions(20));
+        assertEquals(dataFetcher.getTopSenders(20), restored.getTopSenders(20));
+        assertEquals(dataFetcher.getTopBeneficiaries(20), restored.getTopBeneficiaries(20));
+        for (Transaction transaction : dataFetcher.getTransactions().subList(0, 200)) {
+            String sender = transaction.getSenderInformation().getSenderFullName();
+            String beneficiary = transaction.getBeneficiaryInformation().getBeneficiaryFullName();
+            assertEquals(dataFetcher.getTotalTransactionAmountSentBy(sender), restored.getTotalTransactionAmountSentBy(sender));
+            assertEquals(dataFetcher.hasOpenComplianceIssues(beneficiary), restored.hasOpenComplianceIssues(beneficiary));
+        }
+
+        // The restored transactions can still be appended to
+        Transaction row = dataFetcher.getTransactions().get(0);
+        row.setMtn(-1);
+        restored.append(row);
+        assertEquals(dataFetcher.getTransactions().size() + 1, restored.getTransactions().size());
+    }
+
+    @Test
+    public void testOffHeapStorageMatchesHeap(@TempDir File tempDir) throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 40_000, 600, 29);
+        dataFetcher.setTransactionsFromJSON(file.getPath());
+
+        // Actual method calls: loading off-heap, with and without the indexes
+        TransactionDataFetcher offHeapFetcher = new TransactionDataFetcher();
+        offHeapFetcher.setColumnStorage(ColumnStorage.OFF_HEAP);
+        offHeapFetcher.setTransactionsFromJSON(file.getPath());
+        assertEquals(ColumnStorage.OFF_HEAP, offHeapFetcher.getColumnStorage());
+
+        for (boolean indexingEnabled : new boolean[]{false, true}) {
+            offHeapFetcher.setIndexingEnabled(indexingEnabled);
+
+            // Matching every query with the heap store
+            assertEquals(dataFetcher.getTransactions(), offHeapFetcher.getTransactions());
+            assertEquals(dataFetcher.getTotalTransactionAmount(), offHeapFetcher.getTotalTransactionAmount());
+            assertEquals(dataFetcher.getMaxTransactionAmount(), offHeapFetcher.getMaxTransactionAmount());
+            assertEquals(dataFetcher.countUniqueClients(), offHeapFetcher.countUniqueClients());
+            assertEquals(dataFetcher.getTransactionsByBeneficiaryName(), offHeapFetcher.getTransactionsByBeneficiaryName());
+            assertEquals(dataFetcher.getUnsolvedIssueIds(), offHeapFetcher.getUnsolvedIssueIds());
+            assertEquals(dataFetcher.getAllSolvedIssueMessages(), offHeapFetcher.getAllSolvedIssueMessages());
+            assertEquals(dataFetcher.getTopTransactions(20), offHeapFetcher.getTopTransactions(20));
+            assertEquals(dataFetcher.getTopSenders(20), offHeapFetcher.getTopSenders(20));
+            assertEquals(dataFetcher.getTopBeneficiaries(20), offHeapFetcher.getTopBeneficiaries(20));
+            for (Transaction transaction : dataFetcher.getTransactions().subList(0, 200)) {
+                String sender = transaction.getSenderInformation().getSenderFullName();
+                String beneficiary = transaction.getBeneficiaryInformation().getBeneficiaryFullName();
+                assertEquals(dataFetcher.getTotalTransactionAmountSentBy(sender), offHeapFetcher.getTotalTransactionAmountSentBy(sender));
+                assertEquals(dataFetcher.hasOpenComplianceIssues(beneficiary), offHeapFetcher.hasOpenComplianceIssues(beneficiary));
+            }
+        }
+
+        // Moving the loaded transactions back to the heap and through a snapshot keeps them as they are
+        File snapshot = new File(tempDir, "transactions.snapshot");
+        offHeapFetcher.saveSnapshot(snapshot.getPath());
+        offHeapFetcher.setColumnStorage(ColumnStorage.HEAP);
+        assertEquals(dataFetcher.getTransactions(), offHeapFetcher.getTransactions());
+        offHeapFetcher.setColumnStorage(ColumnStorage.OFF_HEAP);
+        offHeapFetcher.setTransactionsFromSnapshot(snapshot.getPath());
+        assertEquals(dataFetcher.getTransactions(), offHeapFetcher.getTransactions());
+    }
+
+    @Test
+    public void testQueryCacheMatchesUncachedQueries(@TempDir File tempDir) throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 10_000, 300, 17);
+        dataFetcher.setTransactionsFromJSON(file.getPath());
+        TransactionDataFetcher cachedFetcher = new TransactionDataFetcher();
+        cachedFetcher.setTransactionsFromJSON(file.getPath());
+
+        // Actual method calls: every query twice, the second one is answered from the cache
+        cachedFetcher.setQueryCacheEnabled(true);
+        assertTrue(cachedFetcher.isQueryCacheEnabled());
+        for (int call = 0; call < 2; call++) {
+            assertEquals(dataFetcher.getTransactionsByBeneficiaryName(), cachedFetcher.getTransactionsByBeneficiaryName());
+            assertEquals(dataFetcher.getUnsolvedIssueIds(), cachedFetcher.getUnsolvedIssueIds());
+            assertEquals(dataFetcher.getAllSolvedIssueMessages(), cachedFetcher.getAllSolvedIssueMessages());
+            assertEquals(dataFetcher.getTopTransactions(5), cachedFetcher.getTopTransactions(5));
+            assertEquals(dataFetcher.getTopSender(), cachedFetcher.getTopSender());
+            assertEquals(dataFetcher.getTopSenders(5), cachedFetcher.getTopSenders(5));
+            assertEquals(dataFetcher.getTopBeneficiaries(5), cachedFetcher.getTopBeneficiaries(5));
+        }
+        QueryCacheStats stats = cachedFetcher.getQueryCacheStats().orElseThrow();
+        assertEquals(7, stats.getMissCount());
+        assertEquals(7, stats.getHitCount());
+        assertEquals(0, stats.getEvictionCount());
+
+        // The cached results are shared, so they can not be changed, the transactions are still new objects
+        assertThrows(UnsupportedOperationException.class, () -> cachedFetcher.getUnsolvedIssueIds().clear());
+        assertThrows(UnsupportedOperationException.class, () -> cachedFetcher.getTopSenders(5).clear());
+        assertNotSame(cachedFetcher.getTopTransactions(5).get(0), cachedFetcher.getTopTransactions(5).get(0));
+        assertTrue(dataFetcher.getQueryCacheStats().isEmpty());
+    }
+
+    @Test
+    public void testIssueLookupsWithoutScan() {
+        List<Transaction> transactions = stubListOfTransactions();
+        // An unsolved issue without an id is left out of the ids instead of failing the query
+        IssueInformation issueWithoutId = new IssueInformation();
+        issueWithoutId.setIssueSolved(false);
+        transactions.get(2).addIssue(issueWithoutId);
+        dataFetcher.setTransactions(transactions);
+
+        // Actual method calls
+        Set<Integer> unsolvedIssueIds = dataFetcher.getUnsolvedIssueIds();
+        assertEquals(Set.of(2), unsolvedIssueIds);
+        assertTrue(dataFetcher.isIssueOpen(2));
+        assertFalse(dataFetcher.isIssueOpen(1));
+        assertEquals(OptionalLong.of(2), dataFetcher.getMtnOfIssue(2));
+        assertEquals(OptionalLong.of(1), dataFetcher.getMtnOfIssue(1));
+        assertEquals(OptionalLong.empty(), dataFetcher.getMtnOfIssue(3));
+
+        // Solving issue 2, the set returned before is not changed
+        Transaction solvedRow = stubListOfTransactions().get(2);
+        solvedRow.getIssues().get(0).setIssueSolved(true);
+        dataFetcher.append(solvedRow);
+        assertFalse(dataFetcher.isIssueOpen(2));
+        assertEquals(Set.of(), dataFetcher.getUnsolvedIssueIds());
+        assertEquals(Set.of(2), unsolvedIssueIds);
+        assertEquals(List.of("Test solved issue message", "Test unsolved issue message"), dataFetcher.getAllSolvedIssueMessages());
+    }
+
+    @Test
+    public void testScreenClientsMatchesTransactions(@TempDir File tempDir) throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 3_000, 200, 17);
+        dataFetcher.setTransactionsFromJSON(file.getPath());
+
+        // Reference: the open issue ids of every client from the transactions
+        Map<String, List<String>> expected = new LinkedHashMap<>();
+        for (Transaction transaction : dataFetcher.getTransactions()) {
+            String sender = transaction.getSenderInformation().getSenderFullName();
+            String beneficiary = transaction.getBeneficiaryInformation().getBeneficiaryFullName();
+            expected.putIfAbsent(sender, new ArrayList<>());
+            expected.putIfAbsent(beneficiary, new ArrayList<>());
+            for (IssueInformation issue : transaction.getIssues()) {
+                if (!issue.isIssueSolved()) {
+                    expected.get(sender).add(issue.getIssueId());
+                    if (!beneficiary.equals(sender)) {
+                        expected.get(beneficiary).add(issue.getIssueId());
+                    }
+                }
+            }
+        }
+        List<String> names = new ArrayList<>(expected.keySet());
+        names.add("Unknown client");
+        names.add(null);
+
+        // Actual method call, the names are given one at a time
+        List<ClientScreening> screenings = new ArrayList<>();
+        dataFetcher.screenClients(names::iterator, screenings::add);
+
+        // Matching expected with the actual result, in the order of the names
+        assertEquals(names.size(), screenings.size());
+        for (int i = 0; i < names.size(); i++) {
+            ClientScreening screening = screenings.get(i);
+            String name = names.get(i);
+            assertEquals(name, screening.getClientFullName());
+            List<String> openIssueIds = expected.getOrDefault(name, List.of());
+            assertEquals(new HashSet<>(openIssueIds), new HashSet<>(screening.getOpenIssueIds()));
+            assertEquals(openIssueIds.size(), screening.getOpenIssueCount());
+            assertEquals(dataFetcher.hasOpenComplianceIssues(name), screening.hasOpenComplianceIssues());
+        }
+        assertTrue(screenings.stream().anyMatch(ClientScreening::hasOpenComplianceIssues));
+        assertTrue(screenings.stream().anyMatch(screening -> !screening.hasOpenComplianceIssues()));
+    }
+
+    @Test
+    public void testScreenClientsAfterAppend() {
+        dataFetcher.setQueryCacheEnabled(true);
+        dataFetcher.setTransactions(stubListOfTransactions());
+        List<ClientScreening> screenings = new ArrayList<>();
+        List<String> names = List.of("Test sender2", "Test beneficiary2", "Test sender1");
+
+        // Actual method calls: before and after issue 2 is solved, the second batch is not answered from the cache
+        dataFetcher.screenClients(names, screenings::add);
+        Transaction solvedRow = stubListOfTransactions().get(2);
+        solvedRow.getIssues().get(0).setIssueSolved(true);
+        dataFetcher.append(solvedRow);
+        dataFetcher.screenClients(names, screenings::add);
+
+        // Matching expected with the actual result
+        assertEquals(List.of(new ClientScreening("Test sender2", List.of("2")), new ClientScreening("Test beneficiary2", List.of("2")),
+                new ClientScreening("Test sender1", List.of()), new ClientScreening("Test sender2", List.of()),
+                new ClientScreening("Test beneficiary2", List.of()), new ClientScreening("Test sender1", List.of())), screenings);
+    }
+
+    @Test
+    public void testQueryCacheIsInvalidatedByEveryChange() {
+        dataFetcher.setQueryCacheEnabled(true);
+        dataFetcher.setTransactions(stubListOfTransactions());
+        assertEquals(Set.of(2), dataFetcher.getUnsolvedIssueIds());
+
+        // Actual method call: appending a row which solves issue 2
+        Transaction solvedRow = stubListOfTransactions().get(2);
+        solvedRow.getIssues().get(0).setIssueSolved(true);
+        dataFetcher.append(solvedRow);
+        assertEquals(Set.of(), dataFetcher.getUnsolvedIssueIds());
+
+        // Setting the transactions again
+        dataFetcher.setTransactions(stubListOfTransactions());
+        assertEquals(Set.of(2), dataFetcher.getUnsolvedIssueIds());
+        assertEquals(3, dataFetcher.getQueryCacheStats().orElseThrow().getMissCount());
+        assertEquals(0, dataFetcher.getQueryCacheStats().orElseThrow().getHitCount());
+    }
+
+    @Test
+    public void testQueryCacheEvictsLeastRecentlyUsed() {
+        dataFetcher.setTransactions(stubListOfTransactions());
+
+        // Actual method calls: room for two results
+        dataFetcher.setQueryCache(2);
+        dataFetcher.getTopSenders(1);
+        dataFetcher.getTopSenders(2);
+        dataFetcher.getTopSenders(1);
+        dataFetcher.getTopSenders(3);
+
+        // topSenders/2 was used least recently, so it was evicted and topSenders/1 was kept
+        dataFetcher.getTopSenders(1);
+        QueryCacheStats stats = dataFetcher.getQueryCacheStats().orElseThrow();
+        assertEquals(1, stats.getEvictionCount());
+        assertEquals(2, stats.getHitCount());
+        assertEquals(3, stats.getMissCount());
+        assertEquals(2, stats.getSize());
+        assertThrows(IllegalArgumentException.class, () -> dataFetcher.setQueryCache(0));
+    }
+
+    @Test
+    public void testMetricsListenerReceivesQueriesAndLoads() throws IOException {
+        String filePath = "../coding_test/transactions.json";
+        FetcherMetrics metrics = new FetcherMetrics();
+
+        // Actual method calls
+        dataFetcher.setMetricsListener(metrics);
+        dataFetcher.setTransactionsFromJSON(filePath);
+        dataFetcher.getTotalTransactionAmount();
+        dataFetcher.getTopSenders(3);
+        dataFetcher.getTopSender();
+        dataFetcher.getTop3TransactionsByAmount();
+        dataFetcher.hasOpenComplianceIssues("Unknown client");
+
+        // Every query is counted under the name of its method, the shortcuts under the method they call
+        assertEquals(1, metrics.getQueryHistogram("getTotalTransactionAmount").getCount());
+        assertEquals(2, metrics.getQueryHistogram("getTopSenders").getCount());
+        assertEquals(1, metrics.getQueryHistogram("getTopTransactions").getCount());
+        assertEquals(1, metrics.getQueryHistogram("hasOpenComplianceIssues").getCount());
+        LoadMetrics load = metrics.getLastLoad();
+        assertEquals("setTransactionsFromJSON", load.getOperation());
+        assertEquals(dataFetcher.getNormalizationStats().getRowCount(), load.getRowCount());
+        assertEquals(new File(filePath).length(), load.getByteCount());
+        assertTrue(load.getDurationNanos() > 0);
+
+        // An append reports the rows it added
+        dataFetcher.append(stubListOfTransactions().get(0));
+        assertEquals("append", metrics.getLastLoad().getOperation());
+        assertEquals(1, metrics.getLastLoad().getRowCount());
+
+        // Nothing is reported once the listener is removed
+        dataFetcher.setMetricsListener(null);
+        dataFetcher.getTotalTransactionAmount();
+        assertEquals(1, metrics.getQueryHistogram("getTotalTransactionAmount").getCount());
+        assertEquals(2, metrics.getLoadCount());
+    }
+
+    @Test
+    public void testValidationPolicySkipsInvalidRows() throws IOException {
+        String valid = "{\"mtn\": 1, \"amount\": 1.0, \"senderFullName\": \"a\", \"senderAge\": 1,"
+                + " \"beneficiaryFullName\": \"b\", \"beneficiaryAge\": 1, \"issueId\": 1, \"issueSolved\": false}";
+        String json = "[" + valid + ", " + valid.replace("\"mtn\": 1", "\"mtn\": \"x\"") + ", {}]";
+
+        // By default the first invalid row fails the append
+        assertThrows(InvalidTransactionException.class,
+                () -> dataFetcher.appendFromJSON(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))));
+
+        // Actual method calls: the invalid rows are skipped and reported
+        TransactionDataFetcher skippingFetcher = new TransactionDataFetcher();
+        skippingFetcher.setValidationPolicy(ValidationPolicy.COLLECT_ERRORS);
+        skippingFetcher.appendFromJSON(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(1, skippingFetcher.getTransactions().size());
+        assertEquals(Set.of(1), skippingFetcher.getUnsolvedIssueIds());
+        RejectedRows rejectedRows = skippingFetcher.getRejectedRows();
+        assertEquals(2, rejectedRows.getRejectedCount());
+        assertEquals("mtn", rejectedRows.getErrors().get(0).getField());
+        assertEquals(3, rejectedRows.getErrors().get(1).getRowNumber());
+
+        // A valid file rejects nothing
+        skippingFetcher.setTransactionsFromJSON("../coding_test/transactions.json");
+        assertEquals(0, skippingFetcher.getRejectedRows().getRejectedCount());
+        assertEquals(skippingFetcher.getNormalizationStats().getRowCount(), skippingFetcher.getRejectedRows().getAcceptedCount());
+    }
+
+    @Test
+    public void testNDJSONExportLoadsBack(@TempDir File tempDir) throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 3_000, 50, 21);
+        dataFetcher.setTransactionsFromJSON(file.getPath());
+        File lines = new File(tempDir, "transactions.ndjson");
+
+        // Actual method calls: exporting every transaction and loading the lines back
+        try (FileOutputStream outputStream = new FileOutputStream(lines)) {
+            dataFetcher.exportTransactionsAsNDJSON(outputStream);
+        }
+        TransactionDataFetcher linesFetcher = new TransactionDataFetcher();
+        linesFetcher.setTransactionsFromNDJSON(lines.getPath());
+        assertEquals(dataFetcher.getTransactions(), linesFetcher.getTransactions());
+        assertEquals(dataFetcher.getTotalTransactionAmount(), linesFetcher.getTotalTransactionAmount());
+        linesFetcher.setTransactionsFromNDJSON(lines.getPath(), 4);
+        assertEquals(dataFetcher.getTransactions(), linesFetcher.getTransactions());
+    }
+
+    @Test
+    public void testNDJSONExportOfQueryResults() throws IOException {
+        dataFetcher.setTransactionsFromJSON("../coding_test/transactions.json");
+
+        // Actual method calls
+        ByteArrayOutputStream byBeneficiary = new ByteArrayOutputStream();
+        dataFetcher.exportTransactionsByBeneficiaryNameAsNDJSON(byBeneficiary);
+        ByteArrayOutputStream topTransactions = new ByteArrayOutputStream();
+        dataFetcher.exportTopTransactionsAsNDJSON(3, topTransactions);
+        ByteArrayOutputStream topSenders = new ByteArrayOutputStream();
+        dataFetcher.exportTopSendersAsNDJSON(2, topSenders);
+
+        // The groups are the ones of getTransactionsByBeneficiaryName, every group written in one run
+        TransactionDataFetcher groups = new TransactionDataFetcher();
+        groups.appendFromNDJSON(new ByteArrayInputStream(byBeneficiary.toByteArray()));
+        Map<String, List<Transaction>> expected = dataFetcher.getTransactionsByBeneficiaryName();
+        assertEquals(expected, groups.getTransactionsByBeneficiaryName());
+        List<String> beneficiaries = new ArrayList<>();
+        for (Transaction transaction : groups.getTransactions()) {
+            String beneficiary = transaction.getBeneficiaryInformation().getBeneficiaryFullName();
+            if (beneficiaries.isEmpty() || !beneficiaries.get(beneficiaries.size() - 1).equals(beneficiary)) {
+                beneficiaries.add(beneficiary);
+            }
+        }
+        assertEquals(expected.size(), beneficiaries.size());
+
+        // Top n in the order of the queries
+        TransactionDataFetcher top = new TransactionDataFetcher();
+        top.appendFromNDJSON(new ByteArrayInputStream(topTransactions.toByteArray()));
+        assertEquals(dataFetcher.getTop3TransactionsByAmount(), top.getTransactions());
+        ClientAmount topSender = dataFetcher.getTopSenders(2).get(0);
+        assertEquals(String.format("{\"clientFullName\":\"%s\",\"amount\":%.2f}", topSender.getClientFullName(), topSender.getAmount()),
+                topSenders.toString(StandardCharsets.UTF_8).lines().findFirst().orElseThrow());
+        assertEquals(2, topSenders.toString(StandardCharsets.UTF_8).lines().count());
+    }
+
+    @Test
+    public void testAppendFromNDJSONFollowsFile(@TempDir File tempDir) throws IOException {
+        dataFetcher.setTransactionsFromJSON("../coding_test/transactions.json");
+        File lines = new File(tempDir, "transactions.ndjson");
+        ByteArrayOutputStream exported = new ByteArrayOutputStream();
+        dataFetcher.exportTransactionsAsNDJSON(exported);
+        byte[] bytes = exported.toByteArray();
+        // The file holds the first half of the bytes, the last line is cut
+        Files.write(lines.toPath(), Arrays.copyOf(bytes, bytes.length / 2));
+
+        // Actual method calls: appending as the file grows
+        ConcurrentTransactionDataFetcher followingFetcher = new ConcurrentTransactionDataFetcher();
+        long offset = followingFetcher.appendFromNDJSON(lines.getPath(), 0);
+        int firstCount = followingFetcher.getTransactions().size();
+        assertTrue(offset < bytes.length / 2 && firstCount > 0);
+        assertEquals(offset, followingFetcher.appendFromNDJSON(lines.getPath(), offset));
+        Files.write(lines.toPath(), Arrays.copyOfRange(bytes, bytes.length / 2, bytes.length), StandardOpenOption.APPEND);
+        assertEquals(bytes.length, followingFetcher.appendFromNDJSON(lines.getPath(), offset));
+
+        // Same transactions as the loaded ones
+        assertEquals(dataFetcher.getTransactions(), followingFetcher.getTransactions());
+        assertEquals(dataFetcher.getUnsolvedIssueIds(), followingFetcher.getUnsolvedIssueIds());
+    }
+
+    @Test
+    public void testAppendMatchesFullLoad() {
+        TransactionGenerator generator = new TransactionGenerator(23);
+        generator.setRows(5_000);
+        generator.setSenders(400);
+        generator.setBeneficiaries(400);
+        List<Transaction> rows = new ArrayList<>();
+        generator.forEach(rows::add);
+
+        // Reference: all the rows loaded at once
+        TransactionDataFetcher fullLoad = new TransactionDataFetcher();
+        fullLoad.setTransactions(rows);
+
+        // Actual method calls: half of the rows loaded, the rest appended in small batches
+        dataFetcher.setIndexingEnabled(true);
+        dataFetcher.setTransactions(rows.subList(0, 2_500));
+        for (int from = 2_500; from < rows.size(); from += 7) {
+            dataFetcher.append(rows.subList(from, Math.min(from + 7, rows.size())).toArray(new Transaction[0]));
+        }
+
+        // Matching every query with the full load
+        assertEquals(fullLoad.getTransactions(), dataFetcher.getTransactions());
+        assertEquals(fullLoad.getTotalTransactionAmount(), dataFetcher.getTotalTransactionAmount());
+        assertEquals(fullLoad.getMaxTransactionAmount(), dataFetcher.getMaxTransactionAmount());
+        assertEquals(fullLoad.countUniqueClients(), dataFetcher.countUniqueClients());
+        assertEquals(fullLoad.getTransactionsByBeneficiaryName(), dataFetcher.getTransactionsByBeneficiaryName());
+        assertEquals(fullLoad.getUnsolvedIssueIds(), dataFetcher.getUnsolvedIssueIds());
+        assertEquals(fullLoad.getAllSolvedIssueMessages(), dataFetcher.getAllSolvedIssueMessages());
+        assertEquals(fullLoad.getTopTransactions(10), dataFetcher.getTopTransactions(10));
+        assertEquals(fullLoad.getTopSenders(10), dataFetcher.getTopSenders(10));
+        assertEquals(fullLoad.getTopBeneficiaries(10), dataFetcher.getTopBeneficiaries(10));
+        for (Transaction row : rows.subList(0, 100)) {
+            String sender = row.getSenderInformation().getSenderFullName();
+            String beneficiary = row.getBeneficiaryInformation().getBeneficiaryFullName();
+            assertEquals(fullLoad.getTotalTransactionAmountSentBy(sender), dataFetcher.getTotalTransactionAmountSentBy(sender));
+            assertEquals(fullLoad.hasOpenComplianceIssues(sender), dataFetcher.hasOpenComplianceIssues(sender));
+            assertEquals(fullLoad.hasOpenComplianceIssues(beneficiary), dataFetcher.hasOpenComplianceIssues(beneficiary));
+        }
+    }
+
+    @Test
+    public void testAppendSolvesIssue() {
+        // Set the mock list, issue 2 of mtn 2 is unsolved
+        dataFetcher.setTransactions(stubListOfTransactions());
+        assertTrue(dataFetcher.hasOpenComplianceIssues("Test sender2"));
+        assertEquals(Set.of(2), dataFetcher.getUnsolvedIssueIds());
+
+        // Actual method call: a new row of mtn 2 with issue 2 solved
+        Transaction solvedRow = stubListOfTransactions().get(2);
+        solvedRow.getIssues().get(0).setIssueSolved(true);
+        dataFetcher.append(solvedRow);
+
+        // The issue is solved, nothing else changed
+        assertFalse(dataFetcher.hasOpenComplianceIssues("Test sender2"));
+        assertFalse(dataFetcher.hasOpenComplianceIssues("Test beneficiary2"));
+        assertEquals(Set.of(), dataFetcher.getUnsolvedIssueIds());
+        assertEquals(List.of("Test solved issue message", "Test unsolved issue message"), dataFetcher.getAllSolvedIssueMessages());
+        assertEquals(1100.0, dataFetcher.getTotalTransactionAmount());
+        assertEquals(2, dataFetcher.getTransactions().size());
+    }
+
+    @Test
+    public void testAppendFromJSON() throws IOException {
+        dataFetcher.setTransactions(stubListOfTransactions());
+        String json = "[{\"mtn\": 3, \"amount\": 12.34, \"senderFullName\": \"Test sender2\", \"senderAge\": 2,"
+                + " \"beneficiaryFullName\": \"Test beneficiary3\", \"beneficiaryAge\": 3, \"issueId\": 3,"
+                + " \"issueSolved\": false, \"issueMessage\": \"Test new issue\"}]";
+
+        // Actual method call
+        dataFetcher.appendFromJSON(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        // Matching expected with the actual result
+        assertEquals(3, dataFetcher.getTransactions().size());
+        assertEquals(1112.34, dataFetcher.getTotalTransactionAmount());
+        assertEquals(112.34, dataFetcher.getTotalTransactionAmountSentBy("Test sender2"));
+        assertEquals(Set.of(2, 3), dataFetcher.getUnsolvedIssueIds());
+        assertTrue(dataFetcher.hasOpenComplianceIssues("Test beneficiary3"));
+        assertEquals(1, dataFetcher.getTransactionsByBeneficiaryName().get("Test beneficiary3").size());
+    }
+
+    @Test
+    public void testSketchesFollowLoadsAndAppends() throws IOException {
+        assertEquals(Optional.empty(), dataFetcher.getSketches());
+        dataFetcher.setTransactions(stubListOfTransactions());
+
+        // Actual method call: enabled after the load, the loaded transactions are sketched
+        dataFetcher.setSketchesEnabled(true);
+        TransactionSketches sketches = dataFetcher.getSketches().orElseThrow();
+
+        // Matching expected with the actual result
+        assertEquals(2, sketches.getTransactionCount());
+        assertEquals(4, sketches.estimateDistinctClients());
+        assertEquals(List.of(new ClientAmount("Test sender1", 1000.0), new ClientAmount("Test sender2", 100.0)),
+                sketches.getTopSenders(2));
+
+        // An appended transaction is added, the copy returned before is not changed
+        String json = "[{\"mtn\": 3, \"amount\": 12.34, \"senderFullName\": \"Test sender2\", \"senderAge\": 2,"
+                + " \"beneficiaryFullName\": \"Test beneficiary3\", \"beneficiaryAge\": 3, \"issueId\": 3,"
+                + " \"issueSolved\": false, \"issueMessage\": \"Test new issue\"}]";
+        dataFetcher.appendFromJSON(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        TransactionSketches appended = dataFetcher.getSketches().orElseThrow();
+        assertEquals(3, appended.getTransactionCount());
+        assertEquals(5, appended.estimateDistinctClients());
+        assertEquals(11234, appended.estimateAmountSentBy("Test sender2"));
+        assertEquals(2, sketches.getTransactionCount());
+
+        // Transactions set again are sketched from scratch, with the configured settings
+        dataFetcher.setSketches(10, 256, 4, 8);
+        dataFetcher.setTransactions(stubListOfTransactions());
+        assertEquals(2, dataFetcher.getSketches().orElseThrow().getTransactionCount());
+        assertThrows(IllegalArgumentException.class, () -> dataFetcher.getSketches().orElseThrow().getTopSenders(9));
+        dataFetcher.setSketchesEnabled(false);
+        assertFalse(dataFetcher.isSketchesEnabled());
     }
 
     /**
@@ -235,7 +991,7 @@ public class TransactionDataFetcherTests {
         transaction.setAmount(100.0);
         transaction.setSenderInformation(senderInformation);
         transaction.setBeneficiaryInformation(beneficiaryInformation);
-        transaction.setIssueInformation(issueInformation);
+        transaction.addIssue(issueInformation);
 
         listOfTransactions.add(stubTransaction());
         listOfTransactions.add(stubTransaction());
@@ -267,7 +1023,7 @@ public class TransactionDataFetcherTests {
         transaction.setAmount(1000.0);
         transaction.setSenderInformation(senderInformation);
         transaction.setBeneficiaryInformation(beneficiaryInformation);
-        transaction.setIssueInformation(issueInformation);
+        transaction.addIssue(issueInformation);
 
         return transaction;
     }
@@ -0,0 +1,66 @@
+package com.smallworld.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for CountMinSketch class
+ */
+public class CountMinSketchTest {
+
+    @Test
+    public void testEstimatesWithinErrorBound() {
+        Random random = new Random(11);
+        CountMinSketch sketch = new CountMinSketch(512, 5);
+        Map<String, Long> exact = new HashMap<>();
+
+        // Actual method calls: 20000 keys, a few of them far more frequent
+        for (int i = 0; i < 300_000; i++) {
+            String key = "Client " + (random.nextInt(10) == 0 ? random.nextInt(20) : random.nextInt(20_000));
+            long count = 1 + random.nextInt(10_000);
+            exact.merge(key, count, Long::sum);
+            sketch.add(key, count);
+        }
+
+        // Matching expected with the actual result: never below, above by e / width of the total for 1 - e^-5 of the keys
+        long bound = (long) Math.ceil(sketch.getRelativeError() * sketch.getTotal());
+        int outsideBound = 0;
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            long estimate = sketch.estimate(entry.getKey());
+            assertTrue(estimate >= entry.getValue());
+            if (estimate > entry.getValue() + bound) {
+                outsideBound++;
+            }
+        }
+        assertEquals(exact.values().stream().mapToLong(Long::longValue).sum(), sketch.getTotal());
+        assertTrue(outsideBound <= (1 - sketch.getConfidence()) * exact.size(), outsideBound + " keys outside the bound");
+        assertEquals(512 * 5 * 8, sketch.estimatedBytes());
+    }
+
+    @Test
+    public void testMergeAddsTheCounts() {
+        CountMinSketch first = new CountMinSketch(64, 3);
+        CountMinSketch second = new CountMinSketch(64, 3);
+        CountMinSketch whole = new CountMinSketch(64, 3);
+        for (int i = 0; i < 5_000; i++) {
+            (i % 2 == 0 ? first : second).add("Client " + i % 700, i);
+            whole.add("Client " + i % 700, i);
+        }
+
+        // Actual method call
+        first.merge(second);
+
+        // Matching expected with the actual result
+        assertEquals(whole.getTotal(), first.getTotal());
+        for (int i = 0; i < 700; i++) {
+            assertEquals(whole.estimate("Client " + i), first.estimate("Client " + i));
+        }
+        assertThrows(IllegalArgumentException.class, () -> first.merge(new CountMinSketch(64, 4)));
+        assertThrows(IllegalArgumentException.class, () -> first.add("Client 1", -1));
+    }
+}
@@ -0,0 +1,59 @@
+package com.smallworld.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for HyperLogLog class
+ */
+public class HyperLogLogTest {
+
+    @Test
+    public void testEstimateWithinThreeStandardErrors() {
+        HyperLogLog hyperLogLog = new HyperLogLog();
+        int added = 0;
+
+        // Actual method calls: every cardinality is checked on the way, the small ones by linear counting
+        for (int cardinality : new int[]{10, 1_000, 10_000, 100_000, 1_000_000}) {
+            while (added < cardinality) {
+                //every key twice, a repeated key is not counted again
+                hyperLogLog.add("Client " + added);
+                hyperLogLog.add("Client " + added);
+                added++;
+            }
+
+            // Matching expected with the actual result
+            double error = Math.abs(hyperLogLog.estimate() - cardinality) / (double) cardinality;
+            assertTrue(error <= 3 * hyperLogLog.getStandardError(), cardinality + ": " + hyperLogLog.estimate());
+        }
+        assertEquals(16_384, hyperLogLog.estimatedBytes());
+        assertEquals(0.0081, hyperLogLog.getStandardError(), 0.0001);
+    }
+
+    @Test
+    public void testMergeCountsTheUnion() {
+        HyperLogLog first = new HyperLogLog(12);
+        HyperLogLog second = new HyperLogLog(12);
+        HyperLogLog union = new HyperLogLog(12);
+        for (int i = 0; i < 60_000; i++) {
+            first.add("Client " + i);
+            union.add("Client " + i);
+        }
+        for (int i = 40_000; i < 100_000; i++) {
+            second.add("Client " + i);
+            union.add("Client " + i);
+        }
+
+        // Actual method call
+        HyperLogLog merged = first.copy();
+        merged.merge(second);
+
+        // Matching expected with the actual result: the registers of the union, whatever the partition
+        assertEquals(union.estimate(), merged.estimate());
+        assertEquals(100_000, merged.estimate(), 3 * merged.getStandardError() * 100_000);
+        assertNotEquals(first.estimate(), merged.estimate());
+        assertThrows(IllegalArgumentException.class, () -> merged.merge(new HyperLogLog(14)));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(HyperLogLog.MAX_PRECISION + 1));
+    }
+}
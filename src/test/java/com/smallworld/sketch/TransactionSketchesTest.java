@@ -0,0 +1,115 @@
+package com.smallworld.sketch;
+
+import com.smallworld.model.ClientAmount;
+import com.smallworld.model.Transaction;
+import com.smallworld.service.TransactionDataFetcher;
+import com.smallworld.util.Money;
+import com.smallworld.util.TransactionGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for TransactionSketches class, the estimates are checked against the exact results of
+ * TransactionDataFetcher on generated transactions
+ */
+public class TransactionSketchesTest {
+
+    private TransactionGenerator generator;
+    private TransactionDataFetcher dataFetcher;
+
+    @BeforeEach
+    public void setUp() {
+        generator = new TransactionGenerator(17);
+        generator.setRows(200_000);
+        generator.setSenders(20_000);
+        generator.setBeneficiaries(20_000);
+        dataFetcher = new TransactionDataFetcher();
+        dataFetcher.setTransactions(generator);
+    }
+
+    @Test
+    public void testEstimatesWithinBoundsOfExactResults() throws IOException {
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        dataFetcher.exportTransactionsAsNDJSON(ndjson);
+        TransactionSketches sketches = new TransactionSketches();
+
+        // Actual method call: the feed is sketched without loading it
+        sketches.addFromNDJSON(new ByteArrayInputStream(ndjson.toByteArray()));
+
+        // Matching expected with the actual result
+        long transactions = dataFetcher.getNormalizationStats().getTransactionCount();
+        long clients = dataFetcher.getNormalizationStats().getClientNameCount();
+        assertEquals(transactions, sketches.getTransactionCount());
+        assertEquals(Money.fromDouble(dataFetcher.getTotalTransactionAmount()), sketches.getTotalAmount());
+        assertEquals(clients, sketches.estimateDistinctClients(), 3 * sketches.getDistinctClientsStandardError() * clients);
+        assertWithinBound(sketches, sketches.getTopSenders(20), dataFetcher::getTotalTransactionAmountSentBy);
+        assertWithinBound(sketches, sketches.getTopBeneficiaries(20), name -> receivedBy(name));
+        //the senders are skewed, so the heaviest ones are found
+        List<String> topSenders = sketches.getTopSenders(20).stream().map(ClientAmount::getClientFullName).toList();
+        for (ClientAmount sender : dataFetcher.getTopSenders(10)) {
+            assertTrue(topSenders.contains(sender.getClientFullName()), sender.toString());
+        }
+        assertTrue(sketches.estimatedBytes() < 256 * 1024, sketches.estimatedBytes() + " bytes");
+    }
+
+    @Test
+    public void testMergeOfPartitions() {
+        TransactionSketches whole = new TransactionSketches();
+        TransactionSketches first = new TransactionSketches();
+        TransactionSketches second = new TransactionSketches();
+        List<Transaction> transactions = dataFetcher.getTransactions();
+        for (int i = 0; i < transactions.size(); i++) {
+            whole.add(transactions.get(i));
+            (i < transactions.size() / 3 ? first : second).add(transactions.get(i));
+        }
+
+        // Actual method call
+        first.merge(second);
+
+        // Matching expected with the actual result: the same sketches as if every transaction was added to one
+        assertEquals(whole.getTransactionCount(), first.getTransactionCount());
+        assertEquals(whole.estimateDistinctClients(), first.estimateDistinctClients());
+        assertEquals(whole.getTopSenders(10), first.getTopSenders(10));
+        for (ClientAmount beneficiary : whole.getTopBeneficiaries(10)) {
+            assertEquals(whole.estimateAmountReceivedBy(beneficiary.getClientFullName()),
+                    first.estimateAmountReceivedBy(beneficiary.getClientFullName()));
+        }
+        assertThrows(IllegalArgumentException.class, () -> first.merge(new TransactionSketches(12, 2048, 5, 64)));
+        assertThrows(IllegalArgumentException.class, () -> first.getTopSenders(65));
+    }
+
+    @Test
+    public void testRowsOfOneTransactionCountOnce() {
+        TransactionSketches sketches = new TransactionSketches();
+
+        // Actual method calls: the rows of the generator are one per issue
+        generator.forEach(sketches::add);
+
+        // Matching expected with the actual result
+        assertEquals(dataFetcher.getNormalizationStats().getTransactionCount(), sketches.getTransactionCount());
+        assertEquals(Money.fromDouble(dataFetcher.getTotalTransactionAmount()), sketches.getTotalAmount());
+    }
+
+    private void assertWithinBound(TransactionSketches sketches, List<ClientAmount> estimates, ToDoubleFunction<String> exact) {
+        assertEquals(20, estimates.size());
+        for (ClientAmount estimate : estimates) {
+            long exactAmount = Money.fromDouble(exact.applyAsDouble(estimate.getClientFullName()));
+            long estimatedAmount = Money.fromDouble(estimate.getAmount());
+            assertTrue(estimatedAmount >= exactAmount, estimate.toString());
+            assertTrue(estimatedAmount <= exactAmount + sketches.getAmountErrorBound(), estimate.toString());
+        }
+    }
+
+    private double receivedBy(String beneficiaryFullName) {
+        List<Transaction> received = dataFetcher.getTransactionsByBeneficiaryName().getOrDefault(beneficiaryFullName, List.of());
+        return Money.toDouble(received.stream().mapToLong(Transaction::getAmountInMinorUnits).sum());
+    }
+}
@@ -0,0 +1,95 @@
+package com.smallworld.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for IntBitmap class
+ */
+public class IntBitmapTest {
+
+    @Test
+    public void testMatchesTreeSet() {
+        Random random = new Random(5);
+        IntBitmap bitmap = new IntBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+
+        // Actual method calls: a dense range turning into bitsets and back, and sparse values around it
+        for (int i = 0; i < 200_000; i++) {
+            int value = random.nextInt(4) == 0 ? random.nextInt() : random.nextInt(150_000);
+            //mostly adding, then mostly removing so the bitsets turn back into arrays
+            boolean add = i < 150_000 ? random.nextInt(3) != 0 : random.nextInt(5) == 0;
+            if (add) {
+                assertEquals(expected.add(value), bitmap.add(value));
+            } else {
+                assertEquals(expected.remove(value), bitmap.remove(value));
+            }
+        }
+
+        // Matching expected with the actual result, in unsigned order
+        assertEquals(expected.size(), bitmap.size());
+        List<Integer> unsigned = new ArrayList<>(expected.tailSet(0));
+        unsigned.addAll(expected.headSet(0));
+        List<Integer> iterated = new ArrayList<>();
+        PrimitiveIterator.OfInt iterator = bitmap.iterator();
+        while (iterator.hasNext()) {
+            iterated.add(iterator.nextInt());
+        }
+        assertEquals(unsigned, iterated);
+        assertArrayEquals(unsigned.stream().mapToInt(Integer::intValue).toArray(), bitmap.toArray());
+        for (int value = -10; value < 160_000; value++) {
+            assertEquals(expected.contains(value), bitmap.contains(value));
+        }
+        assertEquals(expected, bitmap.asSet());
+    }
+
+    @Test
+    public void testDenseValuesTakeOneBitEach() {
+        IntBitmap bitmap = new IntBitmap();
+
+        // Actual method calls: a million sequential ids, then every other one removed
+        for (int i = 0; i < 1_000_000; i++) {
+            bitmap.add(i);
+        }
+        long denseBytes = bitmap.estimatedBytes();
+        for (int i = 0; i < 1_000_000; i += 2) {
+            bitmap.remove(i);
+        }
+
+        // About 1/8 of a byte per value, whatever the number of values in the range
+        assertTrue(denseBytes < 1_000_000 / 8 + 10_000, String.valueOf(denseBytes));
+        assertEquals(denseBytes, bitmap.estimatedBytes());
+        assertEquals(500_000, bitmap.size());
+        assertTrue(bitmap.contains(999_999));
+        assertFalse(bitmap.contains(999_998));
+    }
+
+    @Test
+    public void testCopyAndSetView() {
+        IntBitmap bitmap = new IntBitmap();
+        bitmap.add(3);
+        bitmap.add(-1);
+
+        // Actual method calls
+        IntBitmap copy = bitmap.copy();
+        Set<Integer> view = copy.asSet();
+        bitmap.add(4);
+
+        // The copy is not changed with the bitmap, the view can not change it
+        assertEquals(Set.of(3, -1), view);
+        assertTrue(view.contains(-1));
+        assertFalse(view.contains(4));
+        assertFalse(view.contains("3"));
+        assertThrows(UnsupportedOperationException.class, () -> view.add(5));
+        assertThrows(UnsupportedOperationException.class, view::clear);
+        assertEquals(3, bitmap.size());
+    }
+}
@@ -0,0 +1,67 @@
+package com.smallworld.store;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for NameDictionary class
+ */
+public class NameDictionaryTest {
+
+    @Test
+    public void testAddGivesDenseIdsInFirstSeenOrder() {
+        NameDictionary dictionary = new NameDictionary();
+
+        // Actual method calls, more names than the initial table holds
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(i, dictionary.add("Client " + i));
+        }
+        assertEquals(7, dictionary.add("Client 7"));
+
+        // Matching expected with the actual result
+        assertEquals(1_000, dictionary.size());
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(i, dictionary.idOf("Client " + i));
+            assertEquals("Client " + i, dictionary.name(i));
+        }
+        assertEquals(NameDictionary.MISSING, dictionary.idOf("Client 1000"));
+        assertEquals(NameDictionary.MISSING, dictionary.idOf(null));
+        assertThrows(IndexOutOfBoundsException.class, () -> dictionary.name(1_000));
+    }
+
+    @Test
+    public void testInternCharsReturnsCanonicalInstance() {
+        NameDictionary dictionary = new NameDictionary();
+        int id = dictionary.add("Tom Shelby");
+        String canonical = dictionary.name(id);
+
+        // The value is found inside a larger buffer without creating a new entry
+        char[] buffer = "xxTom Shelbyxx".toCharArray();
+        assertEquals(id, dictionary.intern(buffer, 2, 10));
+        assertSame(canonical, dictionary.name(dictionary.intern(buffer, 2, 10)));
+
+        // A new value gets the next id, including non latin1 ones
+        char[] unicode = "Zo\u00eb \u0164est".toCharArray();
+        int newId = dictionary.intern(unicode, 0, unicode.length);
+        assertEquals(1, newId);
+        assertEquals(newId, dictionary.idOf("Zo\u00eb \u0164est"));
+        assertEquals(NameDictionary.MISSING, dictionary.idOf("Tom Shelb"));
+    }
+
+    @Test
+    public void testEstimatedBytesSavedGrowsWithRepeats() {
+        NameDictionary dictionary = new NameDictionary();
+        dictionary.add("Arthur Shelby");
+
+        // A single occurrence only costs the table
+        assertTrue(dictionary.estimatedBytesSaved() < 0);
+
+        for (int i = 0; i < 1_000; i++) {
+            dictionary.add("Arthur Shelby");
+        }
+        // Every repeat saves a String of 13 latin1 chars (24 byte object + 32 byte array)
+        assertTrue(dictionary.estimatedBytesSaved() > 1_000 * 50);
+        assertTrue(dictionary.estimatedBytes() > 0);
+    }
+}
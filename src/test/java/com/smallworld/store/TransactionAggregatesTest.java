@@ -0,0 +1,117 @@
+package com.smallworld.store;
+
+import com.smallworld.model.Transaction;
+import com.smallworld.util.TransactionGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for TransactionAggregates class
+ */
+public class TransactionAggregatesTest {
+
+    @Test
+    public void testAggregatesMatchStoreColumns() {
+        TransactionGenerator generator = new TransactionGenerator(5);
+        generator.setRows(4_000);
+        generator.setSenders(150);
+        generator.setBeneficiaries(150);
+
+        // Actual method call
+        TransactionStore store = new TransactionStore();
+        store.addRows(generator);
+        TransactionAggregates aggregates = store.aggregates();
+
+        // Reference: figures recomputed from the columns
+        int clients = store.clientNames().size();
+        long total = 0;
+        long max = 0;
+        long[] sent = new long[clients];
+        long[] received = new long[clients];
+        int[] occurrences = new int[clients];
+        boolean[] open = new boolean[clients];
+        for (int position = 0; position < store.size(); position++) {
+            long amount = store.amountInMinorUnits(position);
+            total += amount;
+            max = Math.max(max, amount);
+            sent[store.senderId(position)] += amount;
+            received[store.beneficiaryId(position)] += amount;
+            occurrences[store.senderId(position)]++;
+            occurrences[store.beneficiaryId(position)]++;
+            open[store.senderId(position)] |= store.hasOpenIssue(position);
+            open[store.beneficiaryId(position)] |= store.hasOpenIssue(position);
+        }
+        Set<Integer> openIssues = new HashSet<>();
+        for (int issue = 0; issue < store.issueCount(); issue++) {
+            if (!store.isIssueSolved(issue)) {
+                openIssues.add(issue);
+            }
+        }
+
+        // Matching expected with the actual result
+        assertEquals(total, aggregates.getTotalAmount());
+        assertEquals(max, aggregates.getMaxAmount());
+        int unique = 0;
+        for (int clientId = 0; clientId < clients; clientId++) {
+            assertEquals(sent[clientId], aggregates.sentAmount(clientId));
+            assertEquals(received[clientId], aggregates.receivedAmount(clientId));
+            assertEquals(open[clientId], aggregates.hasOpenIssues(clientId));
+            unique += occurrences[clientId] == 1 ? 1 : 0;
+        }
+        assertEquals(unique, aggregates.getUniqueClientCount());
+        Set<Integer> actualOpenIssues = new HashSet<>();
+        for (int index = 0; index < aggregates.openIssueCount(); index++) {
+            actualOpenIssues.add(aggregates.openIssue(index));
+        }
+        assertEquals(openIssues, actualOpenIssues);
+    }
+
+    @Test
+    public void testIssueSolvedThenReopened() {
+        TransactionStore store = new TransactionStore();
+        TransactionGenerator generator = new TransactionGenerator(1);
+        generator.setIssuesPerMtnWeights(0.0, 1.0);
+        Transaction row = generator.iterator().next();
+        row.getIssues().forEach(issue -> issue.setIssueSolved(false));
+        store.addRow(row);
+        int senderId = store.senderId(0);
+        assertTrue(store.hasOpenIssue(0));
+        assertTrue(store.aggregates().hasOpenIssues(senderId));
+
+        // Actual method calls: the same row with its issues solved, then unsolved again
+        row.getIssues().forEach(issue -> issue.setIssueSolved(true));
+        store.addRow(row);
+        assertFalse(store.hasOpenIssue(0));
+        assertFalse(store.aggregates().hasOpenIssues(senderId));
+        assertEquals(0, store.aggregates().openIssueCount());
+
+        row.getIssues().forEach(issue -> issue.setIssueSolved(false));
+        store.addRow(row);
+        assertTrue(store.hasOpenIssue(0));
+        assertEquals(row.getIssues().size(), store.aggregates().openIssueCount());
+
+        // The repeated rows did not add any transaction
+        assertEquals(1, store.size());
+        assertEquals(row.getAmountInMinorUnits(), store.aggregates().getTotalAmount());
+    }
+
+    @Test
+    public void testTotalOverflowThrows() {
+        TransactionStore store = new TransactionStore();
+        TransactionGenerator generator = new TransactionGenerator(3);
+        generator.setRows(2);
+        generator.setIssuesPerMtnWeights(1.0);
+        for (Transaction row : generator) {
+            row.setAmountInMinorUnits(Long.MAX_VALUE);
+            store.addRow(row);
+        }
+
+        // Matching expected with the actual result
+        assertEquals(Long.MAX_VALUE, store.aggregates().getMaxAmount());
+        assertThrows(ArithmeticException.class, () -> store.aggregates().getTotalAmount());
+    }
+}
@@ -0,0 +1,326 @@
+package com.smallworld.store;
+
+import com.smallworld.model.IssueInformation;
+import com.smallworld.model.Transaction;
+import com.smallworld.util.MemoryFootprint;
+import com.smallworld.util.NormalizationStats;
+import com.smallworld.util.SyntheticTransactions;
+import com.smallworld.util.TransactionJsonReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for TransactionStore class
+ */
+public class TransactionStoreTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void testAddRowsKeepsOneTransactionPerMtn() throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 3_000, 50, 11);
+        List<Transaction> rows = TransactionJsonReader.read(file);
+
+        // Reference: rows grouped by mtn in the order of their first row
+        Map<Long, Transaction> expected = new LinkedHashMap<>();
+        for (Transaction row : TransactionJsonReader.read(file)) {
+            Transaction transaction = expected.putIfAbsent(row.getMtn(), row);
+            if (transaction != null) {
+                row.getIssues().forEach(transaction::addIssue);
+            }
+        }
+        long issues = expected.values().stream().mapToLong(t -> t.getIssues().size()).sum();
+
+        // Actual method call
+        TransactionStore store = new TransactionStore();
+        store.addRows(rows);
+
+        // Every mtn is kept once with all of its issues
+        assertEquals(new ArrayList<>(expected.values()), store.transactions());
+        assertEquals(issues, store.issueCount());
+
+        // Checking the reported figures
+        NormalizationStats stats = store.getNormalizationStats();
+        assertEquals(rows.size(), stats.getRowCount());
+        assertEquals(expected.size(), stats.getTransactionCount());
+        assertEquals(issues, stats.getIssueCount());
+        assertTrue(stats.getEstimatedBytesSaved() > (rows.size() - expected.size()) * MemoryFootprint.TRANSACTION);
+    }
+
+    @Test
+    public void testColumnsOfTransaction() throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 300, 7, 2);
+        TransactionStore store = new TransactionStore();
+        TransactionJsonReader.read(file, store::addRow);
+
+        for (int position = 0; position < store.size(); position++) {
+            Transaction transaction = store.transaction(position);
+
+            // Every column matches the view of the transaction
+            assertEquals(position, store.positionOf(transaction.getMtn()));
+            assertEquals(transaction.getAmountInMinorUnits(), store.amountInMinorUnits(position));
+            assertEquals(transaction.getSenderInformation().getSenderFullName(), store.clientNames().name(store.senderId(position)));
+            assertEquals(transaction.getBeneficiaryInformation().getBeneficiaryFullName(), store.clientNames().name(store.beneficiaryId(position)));
+            assertEquals(transaction.getIssues().stream().anyMatch(issue -> !issue.isIssueSolved()), store.hasOpenIssue(position));
+
+            // The issue chain holds the issues of the transaction in order
+            int index = 0;
+            for (int issue = store.firstIssue(position); issue != TransactionStore.NO_ISSUE; issue = store.nextIssue(issue)) {
+                assertEquals(position, store.issueTransaction(issue));
+                assertEquals(transaction.getIssues().get(index++).getIssueId(), store.issueId(issue));
+            }
+            assertEquals(transaction.getIssues().size(), index);
+        }
+        assertEquals(-1, store.positionOf(-5));
+    }
+
+    @Test
+    public void testAddRowWithoutDuplicatesSavesNothing() throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 1, 1, 1);
+
+        // Actual method call
+        TransactionStore store = new TransactionStore();
+        store.addRows(TransactionJsonReader.read(file));
+
+        // Matching expected with the actual result
+        assertEquals(1, store.size());
+        assertEquals(0, store.getNormalizationStats().getEstimatedBytesSaved());
+        assertTrue(store.estimatedBytes() > 0);
+    }
+
+    @Test
+    public void testDictionariesOnRealisticCardinality() throws IOException {
+        // 100k rows between 2000 clients with a handful of distinct messages
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 100_000, 2_000, 5);
+        TransactionStore store = new TransactionStore();
+        TransactionJsonReader.read(file, store::addRow, store.clientNames(), store.issueMessages());
+
+        NormalizationStats stats = store.getNormalizationStats();
+
+        // Every name and message is kept once
+        assertEquals(4_000, stats.getClientNameCount());
+        assertEquals(4, stats.getIssueMessageCount());
+        // Roughly 67k transactions and 67k messages share 4004 strings of ~50 bytes each
+        assertTrue(stats.getEstimatedDictionaryBytesSaved() > 5_000_000, stats.toString());
+
+        // The views hand out the canonical instances
+        Transaction first = store.transaction(0);
+        Transaction same = store.transaction(store.positionOf(first.getMtn()));
+        assertSame(first.getSenderInformation().getSenderFullName(), same.getSenderInformation().getSenderFullName());
+        assertSame(first.getIssues().get(0).getIssueMessage(),
+                store.issueMessages().name(store.issueMessageId(store.firstIssue(0))));
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 5_000, 100, 7);
+        TransactionStore store = new TransactionStore();
+        TransactionJsonReader.read(file, store::addRow, store.clientNames(), store.issueMessages());
+        File snapshot = new File(tempDir, "transactions.snapshot");
+
+        // Actual method calls
+        store.writeSnapshot(snapshot);
+        TransactionStore restored = TransactionStore.readSnapshot(snapshot);
+
+        // Matching expected with the actual result
+        assertEquals(store.transactions(), restored.transactions());
+        assertEquals(store.issueCount(), restored.issueCount());
+        assertEquals(store.getNormalizationStats().toString(), restored.getNormalizationStats().toString());
+        assertEquals(store.aggregates().getTotalAmount(), restored.aggregates().getTotalAmount());
+        assertEquals(store.aggregates().openIssueCount(), restored.aggregates().openIssueCount());
+        assertEquals(store.positionOf(store.mtn(4_000)), restored.positionOf(store.mtn(4_000)));
+        assertFalse(new File(tempDir, "transactions.snapshot.partial").exists());
+    }
+
+    @Test
+    public void testEmptySnapshotRoundTrip() throws IOException {
+        File snapshot = new File(tempDir, "empty.snapshot");
+
+        // Actual method calls
+        new TransactionStore().writeSnapshot(snapshot);
+        TransactionStore restored = TransactionStore.readSnapshot(snapshot);
+
+        // Matching expected with the actual result, rows can still be added
+        assertEquals(0, restored.size());
+        restored.addRows(TransactionJsonReader.read(new File("../coding_test/transactions.json")));
+        assertTrue(restored.size() > 0);
+    }
+
+    @Test
+    public void testCorruptedSnapshotIsRejected() throws IOException {
+        File snapshot = new File(tempDir, "transactions.snapshot");
+        TransactionStore store = new TransactionStore();
+        store.addRows(TransactionJsonReader.read(new File("../coding_test/transactions.json")));
+        store.writeSnapshot(snapshot);
+
+        // Flipping a byte in the middle of the file
+        byte[] bytes = Files.readAllBytes(snapshot.toPath());
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(snapshot.toPath(), bytes);
+        IOException corrupted = assertThrows(IOException.class, () -> TransactionStore.readSnapshot(snapshot));
+        assertTrue(corrupted.getMessage().contains("checksum"));
+
+        // A file which is not a snapshot at all
+        File json = new File("../coding_test/transactions.json");
+        assertThrows(IOException.class, () -> TransactionStore.readSnapshot(json));
+    }
+
+    @Test
+    public void testOffHeapStoreMatchesHeapStore() throws IOException {
+        // More transactions and issues than an off-heap chunk holds
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 60_000, 300, 9);
+        TransactionStore heapStore = new TransactionStore();
+        TransactionJsonReader.read(file, heapStore::addRow);
+
+        // Actual method call
+        TransactionStore offHeapStore = new TransactionStore(ColumnStorage.OFF_HEAP);
+        TransactionJsonReader.read(file, offHeapStore::addRow);
+
+        // Matching expected with the actual result
+        assertEquals(ColumnStorage.OFF_HEAP, offHeapStore.storage());
+        assertEquals(heapStore.transactions(), offHeapStore.transactions());
+        assertEquals(heapStore.getNormalizationStats().toString(), offHeapStore.getNormalizationStats().toString());
+        assertEquals(heapStore.aggregates().getTotalAmount(), offHeapStore.aggregates().getTotalAmount());
+        for (int position = 0; position < heapStore.size(); position += 97) {
+            assertEquals(position, offHeapStore.positionOf(heapStore.mtn(position)));
+            assertEquals(heapStore.hasOpenIssue(position), offHeapStore.hasOpenIssue(position));
+        }
+
+        // The columns are outside of the heap, only their chunk references are on it
+        assertEquals(0, heapStore.offHeapBytes());
+        assertTrue(offHeapStore.offHeapBytes() > 40L * offHeapStore.size(), String.valueOf(offHeapStore.offHeapBytes()));
+        assertTrue(offHeapStore.estimatedBytes() < heapStore.estimatedBytes() / 10,
+                offHeapStore.estimatedBytes() + " " + heapStore.estimatedBytes());
+    }
+
+    @Test
+    public void testCopyIntoOtherStorage() throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 20_000, 100, 5);
+        TransactionStore store = new TransactionStore();
+        TransactionJsonReader.read(file, store::addRow);
+
+        // Actual method calls: off the heap and back
+        TransactionStore offHeapCopy = store.copy(ColumnStorage.OFF_HEAP);
+        TransactionStore heapCopy = offHeapCopy.copy(ColumnStorage.HEAP);
+
+        // Matching expected with the actual result
+        assertEquals(store.transactions(), offHeapCopy.transactions());
+        assertEquals(store.transactions(), heapCopy.transactions());
+        assertEquals(ColumnStorage.HEAP, heapCopy.storage());
+
+        // Rows added to a copy are not seen by the store it was copied from
+        Transaction row = store.transaction(0);
+        row.setMtn(-1);
+        offHeapCopy.addRow(row);
+        assertEquals(store.size() + 1, offHeapCopy.size());
+        assertEquals(store.size() - 1, offHeapCopy.positionOf(store.mtn(store.size() - 1)));
+        assertEquals(-1, store.positionOf(-1));
+    }
+
+    @Test
+    public void testIssueIdsAreGivenBackAsAdded() throws IOException {
+        List<String> issueIds = Arrays.asList("7", "-12", "0", "2147483647", "-2147483648", "007", "+7", "-0",
+                "2147483648", "abc", "", null);
+        List<Transaction> rows = new ArrayList<>();
+        for (String issueId : issueIds) {
+            Transaction row = TransactionJsonReader.read(new File("../coding_test/transactions.json")).get(0);
+            IssueInformation issue = new IssueInformation();
+            issue.setIssueId(issueId);
+            row.setIssues(new ArrayList<>(List.of(issue)));
+            rows.add(row);
+        }
+
+        for (ColumnStorage storage : ColumnStorage.values()) {
+            // Actual method call: every id is an issue of the same transaction
+            TransactionStore issueStore = new TransactionStore(storage);
+            issueStore.addRows(rows);
+            issueStore.addRows(rows);
+
+            // Matching expected with the actual result, "7" and "007" are two issues
+            assertEquals(issueIds.size(), issueStore.issueCount());
+            for (int issue = 0; issue < issueIds.size(); issue++) {
+                assertEquals(issueIds.get(issue), issueStore.issueId(issue));
+                assertEquals(issue < 5, issueStore.hasIntIssueId(issue));
+            }
+            assertEquals(-2147483648, issueStore.intIssueId(4));
+
+            // Through a snapshot as well
+            File snapshot = new File(tempDir, storage + ".snapshot");
+            issueStore.writeSnapshot(snapshot);
+            assertEquals(issueStore.transactions(), TransactionStore.readSnapshot(snapshot).transactions());
+        }
+    }
+
+    @Test
+    public void testIssueIndexFollowsSolvedState() throws IOException {
+        List<String> issueIds = Arrays.asList("7", "007", "abc", null, "8");
+        List<Transaction> rows = new ArrayList<>();
+        for (int i = 0; i < issueIds.size(); i++) {
+            Transaction row = TransactionJsonReader.read(new File("../coding_test/transactions.json")).get(0);
+            row.setMtn(100 + i);
+            IssueInformation issue = new IssueInformation();
+            issue.setIssueId(issueIds.get(i));
+            issue.setIssueSolved(i == 4);
+            row.setIssues(new ArrayList<>(List.of(issue)));
+            rows.add(row);
+        }
+        TransactionStore store = new TransactionStore();
+        store.addRows(rows);
+
+        // "7" and "007" are both issue 7, ids which are not numbers are not indexed
+        assertArrayEquals(new int[]{7}, store.openIssueIds().toArray());
+        assertArrayEquals(new int[]{4}, store.solvedIssues().toArray());
+        assertEquals(100, store.mtn(store.issueTransaction(store.issueOf(7))));
+        assertEquals(104, store.mtn(store.issueTransaction(store.issueOf(8))));
+        assertEquals(TransactionStore.NO_ISSUE, store.issueOf(9));
+
+        // Actual method calls: 7 stays open until both of its issues are solved, 8 is opened again
+        rows.get(0).getIssues().get(0).setIssueSolved(true);
+        store.addRow(rows.get(0));
+        assertArrayEquals(new int[]{7}, store.openIssueIds().toArray());
+        rows.get(1).getIssues().get(0).setIssueSolved(true);
+        store.addRow(rows.get(1));
+        rows.get(4).getIssues().get(0).setIssueSolved(false);
+        store.addRow(rows.get(4));
+        assertArrayEquals(new int[]{8}, store.openIssueIds().toArray());
+        assertArrayEquals(new int[]{0, 1}, store.solvedIssues().toArray());
+
+        // The index is rebuilt the same from a snapshot and in another storage
+        File snapshot = new File(tempDir, "issues.snapshot");
+        store.writeSnapshot(snapshot);
+        for (TransactionStore rebuilt : List.of(TransactionStore.readSnapshot(snapshot), store.copy(ColumnStorage.OFF_HEAP), store.copy())) {
+            assertArrayEquals(new int[]{8}, rebuilt.openIssueIds().toArray());
+            assertArrayEquals(new int[]{0, 1}, rebuilt.solvedIssues().toArray());
+            assertEquals(0, rebuilt.issueOf(7));
+            assertEquals(4, rebuilt.issueOf(8));
+        }
+    }
+
+    @Test
+    public void testTransactionsIsReadOnly() {
+        TransactionStore store = new TransactionStore();
+
+        // The view can not be changed
+        assertThrows(UnsupportedOperationException.class, () -> store.transactions().add(new Transaction()));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.transactions().get(0));
+    }
+}
@@ -55,6 +55,93 @@ public class ConversionUtilsTest {
 
     }
 
+    @Test
+    public void testConvertMapToObjectValidatesEveryRow() {
+        //The invalid row comes after a valid one
+        List<Map<String, Object>> listOfMap = stubListOfMapOfTransactions();
+        listOfMap.get(1).remove("amount");
+
+        //Get the exception from the actual method
+        InvalidTransactionException exception = assertThrows(InvalidTransactionException.class, () -> ConversionUtils.convertMapToObject(listOfMap));
+
+        //Verify the message and the row of the exception
+        assertEquals("Incomplete Transaction!", exception.getMessage());
+        assertEquals(2, exception.getRowError().getRowNumber());
+        assertEquals("amount", exception.getRowError().getField());
+    }
+
+    @Test
+    public void testConvertMapToObjectSkipsAndCountsInvalidRows() {
+        List<Map<String, Object>> listOfMap = new ArrayList<>(stubListOfMapOfTransactions());
+        listOfMap.addAll(stubListOfMapOfInvalidTransactions());
+
+        // Actual method call
+        RejectedRows rejectedRows = new RejectedRows(ValidationPolicy.SKIP_AND_COUNT);
+        List<Transaction> convertedListOfTransactions = ConversionUtils.convertMapToObject(listOfMap, rejectedRows);
+
+        // Only the two valid rows are converted, the others are counted by reason and field
+        assertEquals(2, convertedListOfTransactions.size());
+        assertEquals(6, rejectedRows.getRowCount());
+        assertEquals(4, rejectedRows.getRejectedCount());
+        assertEquals(Map.of(RowError.Reason.EMPTY, 1L, RowError.Reason.MISSING_FIELD, 1L, RowError.Reason.INVALID_FIELD, 2L),
+                rejectedRows.getRejectedCountByReason());
+        assertEquals(Map.of("senderAge", 2L, "issueSolved", 1L), rejectedRows.getRejectedCountByField());
+        assertTrue(rejectedRows.getErrors().isEmpty());
+    }
+
+    @Test
+    public void testConvertMapToObjectCollectsErrorsWithRowNumbers() {
+        List<Map<String, Object>> listOfMap = new ArrayList<>(stubListOfMapOfInvalidTransactions());
+        listOfMap.addAll(stubListOfMapOfTransactions());
+
+        // Actual method call
+        RejectedRows rejectedRows = new RejectedRows(ValidationPolicy.COLLECT_ERRORS);
+        List<Transaction> convertedListOfTransactions = ConversionUtils.convertMapToObject(listOfMap, rejectedRows);
+
+        // Every rejected row is reported in order with its number
+        assertEquals(2, convertedListOfTransactions.size());
+        List<RowError> errors = rejectedRows.getErrors();
+        assertEquals(List.of(1L, 2L, 3L, 4L), errors.stream().map(RowError::getRowNumber).toList());
+        assertEquals(RowError.Reason.EMPTY, errors.get(0).getReason());
+        assertEquals(RowError.Reason.MISSING_FIELD, errors.get(1).getReason());
+        assertEquals("issueSolved", errors.get(1).getField());
+        assertEquals("senderAge", errors.get(2).getField());
+        assertEquals("expected an integer but got String ten", errors.get(2).getDetail());
+        assertEquals(RowError.Reason.INVALID_FIELD, errors.get(3).getReason());
+    }
+
+    @Test
+    public void testConvertMapToObjectAcceptsNumbersAsStrings() {
+        List<Map<String, Object>> listOfMap = stubListOfMapOfTransactions();
+        listOfMap.get(0).put("mtn", "1");
+        listOfMap.get(0).put("amount", "1000.00");
+        listOfMap.get(0).put("senderAge", " 1 ");
+        listOfMap.get(0).put("issueSolved", "TRUE");
+
+        // Actual method call
+        List<Transaction> convertedListOfTransactions = ConversionUtils.convertMapToObject(listOfMap);
+
+        // Same values as the typed ones
+        assertEquals(ConversionUtils.convertMapToObject(stubListOfMapOfTransactions()), convertedListOfTransactions);
+    }
+
+    /**
+     * Returns list of map of transactions which are each invalid in another way: empty, without issueSolved,
+     * with a text age and with an age out of the int range
+     * @return return list of map of invalid transactions
+     */
+    private List<Map<String, Object>> stubListOfMapOfInvalidTransactions(){
+        List<Map<String, Object>> listOfMap = new ArrayList<>();
+        listOfMap.add(new HashMap<>());
+        for(Object senderAge : new Object[]{30, "ten", 1L << 40}){
+            Map<String, Object> transaction = stubListOfMapOfTransactions().get(0);
+            transaction.put("senderAge", senderAge);
+            listOfMap.add(transaction);
+        }
+        listOfMap.get(1).remove("issueSolved");
+        return listOfMap;
+    }
+
     /**
      * Return stub list of map of transactions for happy scenario
      * @return return list of map of transactions
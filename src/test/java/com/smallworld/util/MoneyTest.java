@@ -0,0 +1,59 @@
+package com.smallworld.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for Money class
+ */
+public class MoneyTest {
+
+    @Test
+    public void testParseDecimalDigits() {
+        assertEquals(43020, Money.parse("430.2"));
+        assertEquals(43020, Money.parse(" 430.20 "));
+        assertEquals(5, Money.parse("0.05"));
+        assertEquals(-1099, Money.parse("-10.99"));
+        assertEquals(700, Money.parse("7"));
+        assertEquals(50, Money.parse(".5"));
+        assertEquals(999_999_999_999_999_999L, Money.parse("9999999999999999.99"));
+    }
+
+    @Test
+    public void testParseSlowPath() {
+        // Exponent, extra decimals (rounded half up) and long integer parts
+        assertEquals(150_000, Money.parse("1.5E3"));
+        assertEquals(101, Money.parse("1.005"));
+        assertEquals(-101, Money.parse("-1.005"));
+        assertEquals(1_000_000_000_000_000_000L, Money.parse("10000000000000000"));
+        assertThrows(ArithmeticException.class, () -> Money.parse("100000000000000000"));
+    }
+
+    @Test
+    public void testParseThrowExceptionForInvalidAmount() {
+        assertThrows(NumberFormatException.class, () -> Money.parse("12a"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("-"));
+        assertThrows(NumberFormatException.class, () -> Money.parse(""));
+    }
+
+    @Test
+    public void testFormat() {
+        assertEquals("430.20", Money.format(43020));
+        assertEquals("0.05", Money.format(5));
+        assertEquals("-0.05", Money.format(-5));
+        assertEquals("-10.99", Money.format(-1099));
+        assertEquals(Long.MIN_VALUE, Money.parse(Money.format(Long.MIN_VALUE)));
+    }
+
+    @Test
+    public void testDoubleRoundTrip() {
+        for (long minorUnits = -100_000; minorUnits <= 100_000; minorUnits += 7) {
+            assertEquals(minorUnits, Money.fromDouble(Money.toDouble(minorUnits)));
+        }
+        assertEquals(43020, Money.fromDouble(430.2));
+        assertEquals(0.3, Money.toDouble(Money.fromDouble(0.1) + Money.fromDouble(0.2)));
+        assertThrows(ArithmeticException.class, () -> Money.fromDouble(Double.NaN));
+        assertThrows(ArithmeticException.class, () -> Money.fromDouble(1e300));
+    }
+}
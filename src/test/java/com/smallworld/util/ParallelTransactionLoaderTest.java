@@ -0,0 +1,157 @@
+package com.smallworld.util;
+
+import com.smallworld.model.Transaction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ParallelTransactionLoader class
+ */
+public class ParallelTransactionLoaderTest {
+
+    @TempDir
+    File tempDir;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testLoadInChunksMatchesSequentialReader() throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 5_000, 100, 7);
+
+        // Small chunks so the file is split in many pieces
+        List<Transaction> parallel = new ParallelTransactionLoader(executor, 4, 4_096).loadInChunks(file);
+        List<Transaction> sequential = TransactionJsonReader.read(file);
+
+        // Checking the chunks were parsed and give the same rows in the same order
+        assertNotNull(parallel);
+        assertSameRows(sequential, parallel);
+    }
+
+    @Test
+    public void testLoadFallsBackWhenBoundaryIsInsideAString() throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 200; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"mtn\": ").append(i)
+                    .append(", \"amount\": 1.5, \"senderFullName\": \"Tom Shelby\", \"senderAge\": 22,")
+                    .append(" \"beneficiaryFullName\": \"Arthur Shelby\", \"beneficiaryAge\": 60,")
+                    .append(" \"issueId\": ").append(i).append(", \"issueSolved\": false,")
+                    //every message looks like an object boundary
+                    .append(" \"issueMessage\": \"}, {\\\"mtn\\\": -1}, {\", \"nested\": [{\"a\": 1}, {\"b\": 2}]}");
+        }
+        json.append("]");
+        Files.writeString(file.toPath(), json.toString(), StandardCharsets.UTF_8);
+
+        // Actual method call
+        List<Transaction> loaded = new ParallelTransactionLoader(executor, 4, 64).load(file);
+
+        // Matching expected with the actual result
+        assertSameRows(TransactionJsonReader.read(file), loaded);
+    }
+
+    @Test
+    public void testLoadSmallFileSequentially() throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 10, 5, 1);
+
+        // Files below the minimum chunk size are not split
+        assertNull(new ParallelTransactionLoader(executor, 4).loadInChunks(file));
+        assertSameRows(TransactionJsonReader.read(file), new ParallelTransactionLoader(executor, 4).load(file));
+    }
+
+    @Test
+    public void testLoadThrowExceptionForIncompleteTransaction() throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 2_000, 10, 3);
+        String json = Files.readString(file.toPath(), StandardCharsets.UTF_8);
+        Files.writeString(file.toPath(), json.substring(0, json.lastIndexOf(']')) + ", {\"mtn\": 1}]");
+
+        // The error of the malformed row is reported as by the sequential reader
+        UnsupportedOperationException exception = assertThrows(UnsupportedOperationException.class,
+                () -> new ParallelTransactionLoader(executor, 4, 4_096).load(file));
+        assertEquals("Incomplete Transaction!", exception.getMessage());
+    }
+
+    @Test
+    public void testLoadInChunksNumbersRejectedRowsInFileOrder() throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 5_000, 100, 11);
+        //every 500th row loses its sender age
+        List<Transaction> rows = TransactionJsonReader.read(file);
+        String[] json = Files.readString(file.toPath(), StandardCharsets.UTF_8).split("\"senderAge\"", -1);
+        StringBuilder broken = new StringBuilder(json[0]);
+        for (int i = 1; i < json.length; i++) {
+            broken.append("\"senderAge\"").append(i % 500 == 0 ? json[i].replaceFirst(":\\s*\\d+", ": \"old\"") : json[i]);
+        }
+        Files.writeString(file.toPath(), broken.toString(), StandardCharsets.UTF_8);
+
+        // Actual method call, small chunks so the file is split in many pieces
+        RejectedRows rejectedRows = new RejectedRows(ValidationPolicy.COLLECT_ERRORS);
+        List<Transaction> parallel = new ParallelTransactionLoader(executor, 4, 4_096).loadInChunks(file, rejectedRows);
+
+        // Same report as the sequential reader, with the row numbers of the whole file
+        RejectedRows sequentialRejectedRows = new RejectedRows(ValidationPolicy.COLLECT_ERRORS);
+        List<Transaction> sequential = new ArrayList<>();
+        TransactionJsonReader.read(file, sequential::add, null, null, sequentialRejectedRows);
+        assertNotNull(parallel);
+        assertSameRows(sequential, parallel);
+        assertEquals(rows.size() - 10, parallel.size());
+        assertEquals(rows.size(), rejectedRows.getRowCount());
+        assertEquals(sequentialRejectedRows.getErrors().toString(), rejectedRows.getErrors().toString());
+        assertEquals(500, rejectedRows.getErrors().get(0).getRowNumber());
+    }
+
+    @Test
+    public void testLoadLinesInChunksMatchesSequentialReader() throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 5_000, 100, 13);
+        File lines = new File(tempDir, "transactions.ndjson");
+        try (FileOutputStream outputStream = new FileOutputStream(lines);
+             TransactionJsonWriter writer = new TransactionJsonWriter(outputStream)) {
+            for (Transaction row : TransactionJsonReader.read(file)) {
+                writer.writeTransaction(row);
+            }
+        }
+
+        // Actual method call, small chunks so the file is split at many newlines
+        RejectedRows rejectedRows = new RejectedRows(ValidationPolicy.FAIL_FAST);
+        List<Transaction> parallel = new ParallelTransactionLoader(executor, 4, 4_096).loadInChunks(lines, rejectedRows, true);
+
+        // Checking the chunks were parsed and give the same rows in the same order
+        assertNotNull(parallel);
+        assertSameRows(TransactionJsonReader.read(file), parallel);
+        assertEquals(5_000, rejectedRows.getRowCount());
+    }
+
+    private void assertSameRows(List<Transaction> expected, List<Transaction> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), actual.get(i).toString());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.smallworld.util;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Writes seeded synthetic transactions files in the same format as transactions.json
+ * for the tests and benchmarks which need more rows than the checked-in file.
+ */
+public class SyntheticTransactions {
+
+    private static final String[] MESSAGES = {"Looks like money laundering", "Never gonna give you up",
+            "Something's fishy", "Don't let this transaction make you \"blue\" {or [sad]}"};
+
+    private SyntheticTransactions() {
+    }
+
+    /**
+     * Writes a transactions file with the given number of rows. Every other transaction has two issues
+     * (so two rows share its mtn) and every other single row transaction has no issue at all.
+     * @param file file to write
+     * @param rows number of rows to write
+     * @param clients number of distinct sender and beneficiary names
+     * @param seed seed of the random amounts, ages and issue states
+     * @throws IOException if the file can not be written
+     */
+    public static void write(File file, int rows, int clients, long seed) throws IOException {
+        write(file, rows, clients, MESSAGES.length, seed);
+    }
+
+    /**
+     * Writes a transactions file like {@link #write(File, int, int, long)} with the given number of distinct
+     * issue messages.
+     * @param file file to write
+     * @param rows number of rows to write
+     * @param clients number of distinct sender and beneficiary names
+     * @param messages number of distinct issue messages
+     * @param seed seed of the random amounts, ages and issue states
+     * @throws IOException if the file can not be written
+     */
+    public static void write(File file, int rows, int clients, int messages, long seed) throws IOException {
+        Random random = new Random(seed);
+        try (JsonGenerator generator = new JsonFactory().createGenerator(file, JsonEncoding.UTF8)) {
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartArray();
+            long mtn = 1000;
+            int issueId = 1;
+            for (int row = 0; row < rows; row++) {
+                //rows come in groups of three: a transaction with two issues followed by a single row one
+                boolean repeated = row % 3 == 1;
+                if (!repeated) {
+                    mtn++;
+                }
+                String sender = "Sender " + (int) (mtn % clients);
+                String beneficiary = "Beneficiary " + (int) ((mtn * 31) % clients);
+
+                generator.writeStartObject();
+                generator.writeNumberField("mtn", mtn);
+                //amounts are derived from the mtn so repeated rows carry the same amount
+                generator.writeNumberField("amount", (mtn * 7919 % 100_000) / 100.0);
+                generator.writeStringField("senderFullName", sender);
+                generator.writeNumberField("senderAge", (int) (18 + mtn % 60));
+                generator.writeStringField("beneficiaryFullName", beneficiary);
+                generator.writeNumberField("beneficiaryAge", (int) (18 + (mtn * 31) % 60));
+                if (row % 3 == 2 && (row / 3) % 2 == 0) {
+                    generator.writeNullField("issueId");
+                    generator.writeBooleanField("issueSolved", true);
+                    generator.writeNullField("issueMessage");
+                } else {
+                    generator.writeNumberField("issueId", issueId++);
+                    generator.writeBooleanField("issueSolved", random.nextBoolean());
+                    generator.writeStringField("issueMessage", message(random.nextInt(messages)));
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    private static String message(int index) {
+        return index < MESSAGES.length ? MESSAGES[index] : "Issue message " + index;
+    }
+}
@@ -0,0 +1,71 @@
+package com.smallworld.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for TopN class
+ */
+public class TopNTest {
+
+    @Test
+    public void testMergeMatchesSingleTopN() {
+        Random random = new Random(9);
+        List<int[]> elements = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            elements.add(new int[]{random.nextInt(20), i});
+        }
+        Comparator<int[]> order = Comparator.comparingInt(element -> element[0]);
+
+        // Reference: every element offered to a single TopN
+        TopN<int[]> expected = new TopN<>(50, order);
+        elements.forEach(expected::offer);
+
+        // Actual method calls: three ranges merged left to right
+        TopN<int[]> merged = new TopN<>(50, order);
+        elements.subList(0, 1_000).forEach(merged::offer);
+        for (List<int[]> range : List.of(elements.subList(1_000, 3_500), elements.subList(3_500, 5_000))) {
+            TopN<int[]> rangeTopN = new TopN<>(50, order);
+            range.forEach(rangeTopN::offer);
+            merged.merge(rangeTopN);
+        }
+
+        // Matching expected with the actual result, ties included
+        assertEquals(expected.toList(), merged.toList());
+    }
+
+    @Test
+    public void testToListMatchesFullSort() {
+        Random random = new Random(5);
+        // Few distinct values so there are many ties, elements are [value, offer order]
+        List<int[]> elements = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            elements.add(new int[]{random.nextInt(50), i});
+        }
+
+        for (int n : new int[]{0, 1, 3, 100, 20_000}) {
+            // Actual method calls
+            TopN<int[]> topN = new TopN<>(n, Comparator.comparingInt(element -> element[0]));
+            elements.forEach(topN::offer);
+
+            // Reference: stable sort by value descending keeps the offer order among equal values
+            List<int[]> sorted = new ArrayList<>(elements);
+            sorted.sort(Comparator.comparingInt((int[] element) -> element[0]).reversed());
+            List<int[]> expected = sorted.subList(0, Math.min(n, sorted.size()));
+
+            // Matching expected with the actual result
+            assertEquals(expected, topN.toList());
+        }
+    }
+
+    @Test
+    public void testNegativeNThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> new TopN<Integer>(-1, Comparator.naturalOrder()));
+    }
+}
@@ -0,0 +1,171 @@
+package com.smallworld.util;
+
+import com.smallworld.model.IssueInformation;
+import com.smallworld.model.Transaction;
+import com.smallworld.service.TransactionDataFetcher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for TransactionGenerator class
+ */
+public class TransactionGeneratorTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void testSameSeedGivesSameRows() throws IOException {
+        TransactionGenerator generator = generator(5_000, 7);
+
+        // Iterating twice and writing twice give the same rows and bytes
+        assertEquals(rows(generator), rows(generator));
+        assertEquals(rows(generator), rows(generator(5_000, 7)));
+        assertNotEquals(rows(generator), rows(generator(5_000, 8)));
+        assertArrayEquals(bytes(generator), bytes(generator(5_000, 7)));
+    }
+
+    @Test
+    public void testWrittenFileMatchesRows() throws IOException {
+        TransactionGenerator generator = generator(3_000, 1);
+        File file = new File(tempDir, "transactions.json");
+
+        // Actual method call
+        generator.write(file);
+
+        // The file is read back as the same rows, by both loaders of the fetcher
+        assertEquals(rows(generator), TransactionJsonReader.read(file));
+        TransactionDataFetcher fromFile = new TransactionDataFetcher();
+        fromFile.setTransactionsFromJSON(file.getPath());
+        TransactionDataFetcher streamed = new TransactionDataFetcher();
+        streamed.setTransactions(generator);
+        assertEquals(fromFile.getTransactions(), streamed.getTransactions());
+        assertEquals(fromFile.getTotalTransactionAmount(), streamed.getTotalTransactionAmount());
+    }
+
+    @Test
+    public void testRowsFollowTheSettings() {
+        TransactionGenerator generator = generator(200_000, 3);
+        generator.setSenders(50);
+        generator.setBeneficiaries(500);
+        generator.setIssuesPerMtnWeights(1, 2, 1);
+        generator.setSolvedRatio(0.25);
+        generator.setIssueMessages(20);
+
+        Map<Long, Integer> issuesByMtn = new HashMap<>();
+        Set<String> senders = new HashSet<>();
+        Set<String> beneficiaries = new HashSet<>();
+        Set<String> messages = new HashSet<>();
+        int rows = 0;
+        int issues = 0;
+        int solved = 0;
+        for (Transaction row : generator) {
+            rows++;
+            senders.add(row.getSenderInformation().getSenderFullName());
+            beneficiaries.add(row.getBeneficiaryInformation().getBeneficiaryFullName());
+            issuesByMtn.merge(row.getMtn(), row.getIssues().size(), Integer::sum);
+            for (IssueInformation issue : row.getIssues()) {
+                issues++;
+                solved += issue.isIssueSolved() ? 1 : 0;
+                messages.add(issue.getIssueMessage());
+            }
+        }
+
+        // Exact row count and cardinalities
+        assertEquals(200_000, rows);
+        assertEquals(50, senders.size());
+        assertEquals(500, beneficiaries.size());
+        assertEquals(20, messages.size());
+        senders.retainAll(beneficiaries);
+        assertTrue(senders.isEmpty());
+
+        // 1/4 of the transactions without issue, 1/2 with one and 1/4 with two
+        long[] mtnsByIssueCount = new long[3];
+        issuesByMtn.values().forEach(count -> mtnsByIssueCount[count]++);
+        assertEquals(0.25, (double) mtnsByIssueCount[0] / issuesByMtn.size(), 0.01);
+        assertEquals(0.5, (double) mtnsByIssueCount[1] / issuesByMtn.size(), 0.01);
+        assertEquals(0.25, solved / (double) issues, 0.01);
+    }
+
+    @Test
+    public void testSendersAreZipfDistributed() {
+        TransactionGenerator generator = generator(300_000, 11);
+        generator.setSenders(1_000);
+        generator.setIssuesPerMtnWeights(0, 1);
+
+        Map<String, Integer> transactionsBySender = new HashMap<>();
+        for (Transaction row : generator) {
+            transactionsBySender.merge(row.getSenderInformation().getSenderFullName(), 1, Integer::sum);
+        }
+
+        // With exponent 1 the top sender makes 1/H(1000) = 13.4% of the transactions and the second half of that
+        List<Integer> counts = new ArrayList<>(transactionsBySender.values());
+        counts.sort((a, b) -> b - a);
+        assertEquals(0.1336, counts.get(0) / 300_000.0, 0.005);
+        assertEquals(0.5, counts.get(1) / (double) counts.get(0), 0.03);
+    }
+
+    @Test
+    public void testZipfSamplerWithoutSkewIsUniform() {
+        TransactionGenerator.ZipfSampler sampler = new TransactionGenerator.ZipfSampler(10, 0);
+        SplittableRandom random = new SplittableRandom(5);
+        int[] counts = new int[11];
+        for (int i = 0; i < 100_000; i++) {
+            counts[sampler.sample(random)]++;
+        }
+        assertEquals(0, counts[0]);
+        for (int rank = 1; rank <= 10; rank++) {
+            assertEquals(10_000, counts[rank], 500);
+        }
+    }
+
+    @Test
+    public void testClientNamesAreDistinct() {
+        Set<String> names = new HashSet<>();
+        for (int client = 0; client < 10_000; client++) {
+            names.add(TransactionGenerator.clientName(client));
+        }
+        assertEquals(10_000, names.size());
+    }
+
+    @Test
+    public void testInvalidSettingsThrowException() {
+        TransactionGenerator generator = new TransactionGenerator(1);
+        assertThrows(IllegalArgumentException.class, () -> generator.setRows(-1));
+        assertThrows(IllegalArgumentException.class, () -> generator.setSenders(0));
+        assertThrows(IllegalArgumentException.class, () -> generator.setSolvedRatio(1.5));
+        assertThrows(IllegalArgumentException.class, () -> generator.setIssuesPerMtnWeights(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> generator.setSenderSkew(Double.NaN));
+    }
+
+    private TransactionGenerator generator(int rows, long seed) {
+        TransactionGenerator generator = new TransactionGenerator(seed);
+        generator.setRows(rows);
+        return generator;
+    }
+
+    private List<Transaction> rows(TransactionGenerator generator) {
+        List<Transaction> rows = new ArrayList<>();
+        generator.forEach(rows::add);
+        return rows;
+    }
+
+    private byte[] bytes(TransactionGenerator generator) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        generator.write(outputStream);
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,201 @@
+package com.smallworld.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smallworld.model.IssueInformation;
+import com.smallworld.model.Transaction;
+import com.smallworld.store.NameDictionary;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for TransactionJsonReader class
+ */
+public class TransactionJsonReaderTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void testReadMatchesMapBasedConversion() throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 1_000, 25, 42);
+
+        // Convert the same file with the streaming reader and with the map based path
+        List<Transaction> streamed = TransactionJsonReader.read(file);
+        List<Transaction> mapped = ConversionUtils.convertMapToObject(
+                new ObjectMapper().readValue(file, new TypeReference<>(){}));
+
+        // Every field of every row must be the same
+        assertEquals(mapped.size(), streamed.size());
+        for (int i = 0; i < mapped.size(); i++) {
+            assertEquals(mapped.get(i).toString(), streamed.get(i).toString());
+        }
+    }
+
+    @Test
+    public void testReadWithDictionariesSharesStrings() throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 300, 3, 9);
+        NameDictionary clientNames = new NameDictionary();
+        NameDictionary issueMessages = new NameDictionary();
+
+        // Actual method call
+        List<Transaction> transactions = new ArrayList<>();
+        TransactionJsonReader.read(file, transactions::add, clientNames, issueMessages);
+
+        // Same rows as without dictionaries
+        List<Transaction> plain = TransactionJsonReader.read(file);
+        assertEquals(plain, transactions);
+
+        // Every name and message is the instance held by its dictionary
+        assertEquals(6, clientNames.size());
+        for (Transaction transaction : transactions) {
+            String sender = transaction.getSenderInformation().getSenderFullName();
+            assertSame(clientNames.name(clientNames.idOf(sender)), sender);
+            for (IssueInformation issue : transaction.getIssues()) {
+                assertSame(issueMessages.name(issueMessages.idOf(issue.getIssueMessage())), issue.getIssueMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testReadRowWithoutIssue() throws IOException {
+        List<Transaction> transactions = read("[{\"mtn\": 5, \"amount\": 67.8, \"senderFullName\": \"Aunt Polly\","
+                + " \"senderAge\": 34, \"beneficiaryFullName\": \"Aberama Gold\", \"beneficiaryAge\": 58,"
+                + " \"issueId\": null, \"issueSolved\": true, \"issueMessage\": null, \"comment\": {\"ignored\": [1]}}]");
+
+        // Checking the values of the row and the null issue
+        assertEquals(1, transactions.size());
+        assertEquals(5, transactions.get(0).getMtn());
+        assertEquals(67.8, transactions.get(0).getAmount());
+        assertEquals("Aberama Gold", transactions.get(0).getBeneficiaryInformation().getBeneficiaryFullName());
+        assertTrue(transactions.get(0).getIssues().isEmpty());
+    }
+
+    @Test
+    public void testReadThrowExceptionForIncompleteTransaction() {
+        //Every row is validated, not only the first one
+        UnsupportedOperationException exception = assertThrows(UnsupportedOperationException.class,
+                () -> read("[{\"mtn\": 1, \"amount\": 1.0, \"senderFullName\": \"a\", \"senderAge\": 1,"
+                        + " \"beneficiaryFullName\": \"b\", \"beneficiaryAge\": 1, \"issueSolved\": true},"
+                        + " {\"mtn\": 2}]"));
+
+        //Verify the exception message
+        assertEquals("Incomplete Transaction!", exception.getMessage());
+    }
+
+    @Test
+    public void testReadThrowExceptionForEmptyTransaction() {
+        UnsupportedOperationException exception = assertThrows(UnsupportedOperationException.class,
+                () -> read("[{}]"));
+
+        //Verify the exception message
+        assertEquals("Transaction is Empty!", exception.getMessage());
+    }
+
+    @Test
+    public void testReadCollectsInvalidRows() throws IOException {
+        String valid = "{\"mtn\": 1, \"amount\": 1.0, \"senderFullName\": \"a\", \"senderAge\": 1,"
+                + " \"beneficiaryFullName\": \"b\", \"beneficiaryAge\": 1, \"issueSolved\": true}";
+        String json = "[" + valid + ", {}, " + valid.replace("\"senderAge\": 1", "\"senderAge\": {\"years\": 1}")
+                + ", " + valid.replace("\"amount\": 1.0", "\"amount\": \"12a\"")
+                + ", " + valid.replace("true", "null") + ", " + valid + "]";
+
+        // Actual method call
+        RejectedRows rejectedRows = new RejectedRows(ValidationPolicy.COLLECT_ERRORS);
+        List<Transaction> transactions = new ArrayList<>();
+        TransactionJsonReader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), transactions::add,
+                null, null, rejectedRows);
+
+        // The valid rows are read, the rest of an invalid row is skipped and the next row is read
+        assertEquals(2, transactions.size());
+        assertEquals(6, rejectedRows.getRowCount());
+        List<RowError> errors = rejectedRows.getErrors();
+        assertEquals(4, errors.size());
+        assertEquals(RowError.Reason.EMPTY, errors.get(0).getReason());
+        assertEquals(2, errors.get(0).getRowNumber());
+        assertEquals("senderAge", errors.get(1).getField());
+        assertEquals(RowError.Reason.INVALID_FIELD, errors.get(1).getReason());
+        assertEquals("amount", errors.get(2).getField());
+        assertEquals(RowError.Reason.MISSING_FIELD, errors.get(3).getReason());
+        assertEquals("issueSolved", errors.get(3).getField());
+        assertEquals(5, errors.get(3).getRowNumber());
+    }
+
+    @Test
+    public void testReadLinesMatchesArray() throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 1_000, 25, 42);
+        List<Transaction> rows = TransactionJsonReader.read(file);
+        File lines = writeLines(rows, "transactions.ndjson", false);
+        File gzipLines = writeLines(rows, "transactions.ndjson.gz", true);
+
+        // Actual method calls: plain and gzip compressed lines
+        assertEquals(rows, TransactionJsonReader.readLines(lines));
+        assertEquals(rows, TransactionJsonReader.readLines(gzipLines));
+        // Every line is an object of the input format
+        List<String> text = Files.readAllLines(lines.toPath());
+        assertEquals(rows.size(), text.size());
+        assertTrue(text.get(0).startsWith("{\"mtn\":1001,\"amount\":"));
+    }
+
+    @Test
+    public void testReadLinesFromOffsetLeavesIncompleteLine() throws IOException {
+        File file = new File(tempDir, "transactions.json");
+        SyntheticTransactions.write(file, 30, 5, 4);
+        List<Transaction> rows = TransactionJsonReader.read(file);
+        File lines = writeLines(rows.subList(0, 20), "transactions.ndjson", false);
+        String tail = Files.readString(writeLines(rows.subList(20, 30), "tail.ndjson", false).toPath());
+        // A writer is in the middle of the 21st line
+        Files.writeString(lines.toPath(), tail.substring(0, 25), StandardOpenOption.APPEND);
+
+        // Actual method calls: following the file as it is written
+        List<Transaction> read = new ArrayList<>();
+        RejectedRows rejectedRows = new RejectedRows(ValidationPolicy.FAIL_FAST);
+        long offset = TransactionJsonReader.readLines(lines, 0, read::add, null, null, rejectedRows);
+        assertEquals(rows.subList(0, 20), read);
+        assertEquals(lines.length() - 25, offset);
+        assertEquals(offset, TransactionJsonReader.readLines(lines, offset, read::add, null, null, rejectedRows));
+
+        // The rest of the lines is written, the next call resumes at the offset
+        Files.writeString(lines.toPath(), tail.substring(25), StandardOpenOption.APPEND);
+        assertEquals(lines.length(), TransactionJsonReader.readLines(lines, offset, read::add, null, null, rejectedRows));
+        assertEquals(rows, read);
+        assertEquals(30, rejectedRows.getRowCount());
+    }
+
+    private File writeLines(List<Transaction> rows, String name, boolean gzip) throws IOException {
+        File file = new File(tempDir, name);
+        try (OutputStream outputStream = gzip ? new GZIPOutputStream(new FileOutputStream(file)) : new FileOutputStream(file);
+             TransactionJsonWriter writer = new TransactionJsonWriter(outputStream)) {
+            for (Transaction row : rows) {
+                writer.writeTransaction(row);
+            }
+        }
+        return file;
+    }
+
+    @Test
+    public void testReadThrowExceptionForNonArray() {
+        assertThrows(IOException.class, () -> read("{\"mtn\": 1}"));
+    }
+
+    private List<Transaction> read(String json) throws IOException {
+        return TransactionJsonReader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}